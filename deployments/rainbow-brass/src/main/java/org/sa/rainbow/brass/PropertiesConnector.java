@@ -11,6 +11,14 @@ public class PropertiesConnector {
     public static final String PRISM_BIN_PROPKEY = "prism.bin";
     public static final String MAP_PROPKEY              = "customize.map.json";
     public static final String PRISM_OUTPUT_DIR         = "prism.tmpdir";
+    /** Battery levels are rounded down to a multiple of this when checking (and caching) candidate plans */
+    public static final String PRISM_BATTERY_BUCKET_PROPKEY = "prism.battery.bucket";
+    /** Number of candidate plan scores kept in the cache */
+    public static final String PRISM_CACHE_SIZE_PROPKEY = "prism.cache.size";
+    /** Time, in milliseconds, after which planning uses the best candidate scored so far; 0 waits for all */
+    public static final String PRISM_PLANNING_DEADLINE_PROPKEY = "prism.planning.deadline";
+    /** Number of shortest paths that become candidate plans; 0 uses all non-cyclic paths */
+    public static final String PRISM_CANDIDATES_MAX_PROPKEY = "prism.candidates.max";
     // TODO: Move the hardwired values into some configuration file
     public static final Properties DEFAULT = new Properties ();
 
@@ -1,12 +1,28 @@
 package org.sa.rainbow.brass.adaptation;
 
 import java.awt.geom.Point2D;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.log4j.Logger;
 import org.sa.rainbow.brass.PropertiesConnector;
 import org.sa.rainbow.brass.model.map.EnvMap;
 import org.sa.rainbow.brass.model.map.MapTranslator;
@@ -22,34 +38,104 @@ import com.google.common.base.Objects;
  *
  */
 public class DecisionEngine {
+    static final Logger LOGGER = Logger.getLogger (DecisionEngine.class);
 
     public static String m_export_path;
     public static MapTranslator m_mt;
     public static String m_origin;
     public static String m_destination;
     public static Map<List, String> m_candidates;
+    public static Map<List, String> m_specifications;
     public static Map<List, Double > m_scoreboard;
     public static double m_selected_candidate_time;
     public static PrismPolicy m_plan;
 
     public static final double INFINITY = 999999.0;
 
+    /** The prefix of the strategy files computed for cached candidates, so they do not collide with exported models */
+    private static final String STRATEGY_PREFIX = "strategy-";
+
+    /** Candidate scores, keyed by specification and constants, with the strategy file computed for them */
+    private static Map<CandidateKey, CandidateScore> m_cache;
+    /** The number of candidate scores kept in the cache; never fewer than the candidates being scored */
+    private static int m_cache_capacity;
+    /** The strategies of the candidates scored last and of the selected policy, which must not be deleted */
+    private static final Set<String> m_referenced = new HashSet<> ();
+    private static String m_selected_strategy;
+    /** The scores evicted from the cache whose strategies were still referenced, to be deleted later */
+    private static final List<CandidateScore> m_evicted = new ArrayList<> ();
+    /** Checks the candidates, one at a time because PRISM can only be initialised once per process */
+    static PrismModelChecker m_checker;
+    /** Runs the checks in the background, so that the planning deadline can be enforced */
+    private static ExecutorService m_executor;
+    private static final AtomicInteger m_next_strategy = new AtomicInteger ();
+    private static long m_battery_bucket;
+    private static long m_planning_deadline;
+    private static int m_max_candidates;
+
     /**
      * Initializes decision engine
      * @param props
      */
     public static void init (Properties props) throws Exception {
+        new PrismConnectorAPI (); // PRISM invoked via API
+        init (props, new PrismModelChecker ());
+    }
+
+    /**
+     * Initializes decision engine with the model checker that checks candidates
+     *
+     * @param props
+     * @param checker
+     */
+    static void init (Properties props, PrismModelChecker checker) throws Exception {
         if (props == null) {
             props = PropertiesConnector.DEFAULT;
         }
         m_export_path = props.getProperty (PropertiesConnector.PRISM_OUTPUT_DIR);
         m_export_path = m_export_path.replaceAll ("\\\"", "");
         m_mt = new MapTranslator ();
-        new PrismConnectorAPI (); // PRISM invoked via API
         m_origin="";
         m_destination="";
         m_selected_candidate_time=0.0;
         m_scoreboard= new HashMap<List, Double>();
+        m_candidates = new HashMap<List, String> ();
+        m_specifications = new HashMap<List, String> ();
+
+        m_battery_bucket = Math.max (1, Long.parseLong (props.getProperty (PropertiesConnector.PRISM_BATTERY_BUCKET_PROPKEY, "1")));
+        m_planning_deadline = Long.parseLong (props.getProperty (PropertiesConnector.PRISM_PLANNING_DEADLINE_PROPKEY, "0"));
+        m_max_candidates = Integer.parseInt (props.getProperty (PropertiesConnector.PRISM_CANDIDATES_MAX_PROPKEY, "0"));
+        final int cacheSize = Integer.parseInt (props.getProperty (PropertiesConnector.PRISM_CACHE_SIZE_PROPKEY, "256"));
+        m_cache_capacity = cacheSize;
+        m_cache = new LinkedHashMap<CandidateKey, CandidateScore> (16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<CandidateKey, CandidateScore> eldest) {
+                if (size () > Math.max (cacheSize, m_cache_capacity)) {
+                    CandidateScore score = eldest.getValue ();
+                    if (m_referenced.contains (score.m_strategy)) {
+                        m_evicted.add (score);
+                    }
+                    else {
+                        score.deleteStrategy ();
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        if (m_executor != null) {
+            m_executor.shutdownNow ();
+        }
+        m_checker = checker;
+        m_executor = Executors.newSingleThreadExecutor (new ThreadFactory () {
+            @Override
+            public Thread newThread (Runnable r) {
+                Thread t = new Thread (r, "PRISM Checker");
+                t.setDaemon (true);
+                return t;
+            }
+        });
     }
 
     /**
@@ -62,7 +148,7 @@ public class DecisionEngine {
 
     /**
      * Generates all PRISM specifications corresponding to the different non-cyclic paths between
-     * origin and destination locations
+     * origin and destination locations (only the shortest ones, if prism.candidates.max is set)
      * @param origin String label of origin map location
      * @param destination String label of destination map location
      */
@@ -74,13 +160,13 @@ public class DecisionEngine {
     public static void generateCandidates(String origin, String destination, boolean inhibitTactics){
         m_origin = origin;
         m_destination = destination;
-        m_candidates = m_mt.exportConstrainedTranslationsBetween(m_export_path, origin, destination, inhibitTactics);	
+        m_specifications = m_mt.getConstrainedTranslationsBetween(origin, destination, inhibitTactics, m_max_candidates);
     }
 
     /**
      * Assings a score to each one of the candidate policies synthesized based on the specifications generated by
-     * generateCandidates
-     * 
+     * generateCandidates, waiting for the planning deadline set in the properties
+     *
      * @param map
      * @param batteryLevel
      *            String amount of remaining battery
@@ -89,26 +175,108 @@ public class DecisionEngine {
      * @throws Exception
      */
     public static void scoreCandidates (EnvMap map, String batteryLevel, String robotHeading) throws Exception {
+        scoreCandidates (map, batteryLevel, robotHeading, m_planning_deadline);
+    }
+
+    /**
+     * Assings a score to each one of the candidate policies synthesized based on the specifications generated by
+     * generateCandidates. Candidates are checked one at a time in the background, and candidates that were checked
+     * before with the same specification and constants are not checked again.
+     *
+     * @param map
+     * @param batteryLevel
+     *            String amount of remaining battery, rounded down to the battery bucket
+     * @param robotHeading
+     *            String robot Heading (needs to be converted to an String encoding an int from MissionState.Heading)
+     * @param deadline
+     *            time, in milliseconds, after which only the candidates scored so far are considered (at least one
+     *            candidate is always scored); 0 to score all candidates
+     * @throws Exception
+     */
+    public static void scoreCandidates (EnvMap map, String batteryLevel, String robotHeading, long deadline)
+            throws Exception {
+        long end = System.currentTimeMillis () + deadline;
         m_scoreboard.clear();
+        m_candidates = new HashMap<List, String> ();
+        long battery = Long.parseLong (batteryLevel);
+        battery -= battery % m_battery_bucket;
+        String m_consts;
         synchronized (map){
-            String m_consts = MapTranslator.INITIAL_ROBOT_LOCATION_CONST+"="+String.valueOf(map.getNodeId(m_origin)) +","+ MapTranslator.TARGET_ROBOT_LOCATION_CONST 
-                    + "="+String.valueOf(map.getNodeId(m_destination))+ "," + MapTranslator.INITIAL_ROBOT_BATTERY_CONST+"="+batteryLevel+","+MapTranslator.INITIAL_ROBOT_HEADING_CONST+"="+robotHeading;
-
-            System.out.println(m_consts);
-            String result;
-            for (List candidate_key : m_candidates.keySet() ){                           	
-                result = PrismConnectorAPI.modelCheckFromFileS (m_candidates.get (candidate_key), m_export_path + "/mapbot.props",
-                        m_candidates.get (candidate_key), 0, m_consts);
-                if (!Objects.equal(result, "Infinity")) {
-                    m_scoreboard.put(candidate_key, Double.valueOf(result));
+            m_consts = MapTranslator.INITIAL_ROBOT_LOCATION_CONST+"="+String.valueOf(map.getNodeId(m_origin)) +","+ MapTranslator.TARGET_ROBOT_LOCATION_CONST
+                    + "="+String.valueOf(map.getNodeId(m_destination))+ "," + MapTranslator.INITIAL_ROBOT_BATTERY_CONST+"="+battery+","+MapTranslator.INITIAL_ROBOT_HEADING_CONST+"="+robotHeading;
+        }
+        System.out.println(m_consts);
+
+        synchronized (m_cache) {
+            // The candidates scored last are replaced by these ones, so only the selected policy is still in use
+            m_referenced.clear ();
+            if (m_selected_strategy != null) {
+                m_referenced.add (m_selected_strategy);
+            }
+            for (Iterator<CandidateScore> it = m_evicted.iterator (); it.hasNext ();) {
+                CandidateScore evicted = it.next ();
+                if (!m_referenced.contains (evicted.m_strategy)) {
+                    evicted.deleteStrategy ();
+                    it.remove ();
                 }
-                else {
-                    m_scoreboard.put(candidate_key, INFINITY);
+            }
+            // The scores of all the candidates must fit, so that no candidate evicts another one
+            m_cache_capacity = m_specifications.size ();
+        }
+
+        CompletionService<CandidateScore> completion = new ExecutorCompletionService<> (m_executor);
+        Map<Future<CandidateScore>, List> pending = new HashMap<> ();
+        for (Map.Entry<List, String> candidate : m_specifications.entrySet ()) {
+            CandidateKey key = new CandidateKey (candidate.getValue (), m_consts);
+            CandidateScore cached;
+            synchronized (m_cache) {
+                cached = m_cache.get (key);
+            }
+            if (cached != null) {
+                record (candidate.getKey (), cached);
+            }
+            else {
+                pending.put (completion.submit (new CandidateCheck (key)), candidate.getKey ());
+            }
+        }
+
+        try {
+            while (!pending.isEmpty ()) {
+                Future<CandidateScore> done;
+                long remaining = end - System.currentTimeMillis ();
+                if (deadline <= 0 || m_scoreboard.isEmpty ()) {
+                    done = completion.take ();
                 }
+                else if (remaining <= 0 || (done = completion.poll (remaining, TimeUnit.MILLISECONDS)) == null) {
+                    LOGGER.info ("Planning deadline reached with " + pending.size () + " candidates unscored");
+                    break;
+                }
+                List path = pending.remove (done);
+                try {
+                    record (path, done.get ());
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause () instanceof Exception) throw (Exception )e.getCause ();
+                    throw e;
+                }
+            }
+        }
+        finally {
+            // Checks that are running are left to complete so that their results are cached
+            for (Future<CandidateScore> f : pending.keySet ()) {
+                f.cancel (false);
             }
         }
     }
 
+    private static void record (List path, CandidateScore score) {
+        synchronized (m_cache) {
+            m_referenced.add (score.m_strategy);
+        }
+        m_scoreboard.put (path, score.m_score);
+        m_candidates.put (path, score.m_strategy);
+    }
+
     /**
      * Selects the policy with the best score
      * @return String filename of the selected policy
@@ -124,6 +292,9 @@ public class DecisionEngine {
         }
         m_selected_candidate_time = maxEntry.getValue();
         System.out.println("Selected candidate policy: "+m_candidates.get(maxEntry.getKey()));
+        synchronized (m_cache) {
+            m_selected_strategy = m_candidates.get (maxEntry.getKey ());
+        }
         return m_candidates.get(maxEntry.getKey())+".adv";
     }
 
@@ -131,6 +302,75 @@ public class DecisionEngine {
         return m_selected_candidate_time;
     }
 
+    /**
+     * A candidate check: the specification of the candidate (which depends on the map and the path) and the values
+     * of the constants (locations, battery, and heading)
+     */
+    private static class CandidateKey {
+        private final String m_specification;
+        private final String m_consts;
+
+        CandidateKey (String specification, String consts) {
+            m_specification = specification;
+            m_consts = consts;
+        }
+
+        @Override
+        public int hashCode () {
+            return 31 * m_specification.hashCode () + m_consts.hashCode ();
+        }
+
+        @Override
+        public boolean equals (Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof CandidateKey)) return false;
+            CandidateKey other = (CandidateKey )obj;
+            return m_consts.equals (other.m_consts) && m_specification.equals (other.m_specification);
+        }
+    }
+
+    private static class CandidateScore {
+        private final double m_score;
+        /** The base filename of the policy */
+        private final String m_strategy;
+
+        CandidateScore (double score, String strategy) {
+            m_score = score;
+            m_strategy = strategy;
+        }
+
+        void deleteStrategy () {
+            for (String ext : new String[] {".adv", ".act", ".ind"}) {
+                new File (m_strategy + ext).delete ();
+            }
+        }
+    }
+
+    /**
+     * Checks a candidate, and caches its score
+     */
+    private static class CandidateCheck implements Callable<CandidateScore> {
+        private final CandidateKey m_key;
+
+        CandidateCheck (CandidateKey key) {
+            m_key = key;
+        }
+
+        @Override
+        public CandidateScore call () throws Exception {
+            String strategy = m_export_path + "/" + STRATEGY_PREFIX
+                    + String.valueOf (m_next_strategy.getAndIncrement ());
+            String result = m_checker.modelCheck (m_key.m_specification, m_export_path + "/mapbot.props", strategy, 0,
+                    m_key.m_consts);
+            CandidateScore score = new CandidateScore (
+                    Objects.equal (result, "Infinity") ? INFINITY : Double.valueOf (result), strategy);
+            synchronized (m_cache) {
+                m_cache.put (m_key, score);
+            }
+            return score;
+        }
+    }
+
     /**
      * Class test
      * @param args
@@ -0,0 +1,140 @@
+package org.sa.rainbow.brass.adaptation;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import parser.ast.ModulesFile;
+import parser.ast.PropertiesFile;
+import parser.ast.Property;
+import prism.Prism;
+import prism.PrismException;
+import prism.Result;
+import prism.UndefinedConstants;
+
+/**
+ * A PRISM model checker that parses models from their specification text, so they do not need to be written to files
+ * first. PRISM keeps native state that is global to the process, so it can only be initialised once: models are
+ * checked on the PRISM instance of PrismConnectorAPI, which must have been created first, and checks are serialized
+ * with those of PrismConnectorAPI.
+ */
+public class PrismModelChecker {
+    static final Logger LOGGER = Logger.getLogger (PrismModelChecker.class);
+
+    /**
+     * Model checks properties on a PRISM model specification, waiting for any other check to complete first
+     *
+     * @param specification
+     *            String the PRISM model
+     * @param propertiesFileName
+     *            String filename of PRISM properties
+     * @param strategyFileName
+     *            String output filename for strategy export (if applicable)
+     * @param propertyToCheck
+     *            int index of property to check in the properties file (-1 for all properties)
+     * @param constSwitch
+     *            String encoding all undefined constant (parameter) values (comma-separated, e.g.,
+     *            CONST1=VAL1,..,CONSTN=VALN)
+     * @return the result of checking the (first) property
+     */
+    public String modelCheck (String specification, String propertiesFileName, String strategyFileName,
+            int propertyToCheck, String constSwitch) throws Exception {
+        // PrismConnectorAPI checks models in static synchronized methods
+        synchronized (PrismConnectorAPI.class) {
+            return check (specification, propertiesFileName, strategyFileName, propertyToCheck, constSwitch);
+        }
+    }
+
+    /**
+     * Model checks properties on a PRISM model specification. Only called by one thread at a time.
+     *
+     * @see #modelCheck(String, String, String, int, String)
+     */
+    protected String check (String specification, String propertiesFileName, String strategyFileName,
+            int propertyToCheck, String constSwitch) throws Exception {
+        Prism prism = PrismConnectorAPI.m_prism;
+        if (prism == null) throw new IllegalStateException ("PRISM has not been initialised by PrismConnectorAPI");
+        ModulesFile modulesFile = prism.parseModelString (specification);
+        prism.loadPRISMModel (modulesFile);
+        PropertiesFile propertiesFile;
+        try {
+            propertiesFile = prism.parsePropertiesFile (modulesFile, new File (propertiesFileName));
+        }
+        catch (FileNotFoundException e) {
+            LOGGER.error ("Could not find the properties file " + propertiesFileName, e);
+            throw e;
+        }
+
+        List<Property> propertiesToCheck = new ArrayList<> ();
+        if (propertiesFile != null) {
+            if (propertyToCheck == -1) {
+                for (int i = 0; i < propertiesFile.getNumProperties (); i++) {
+                    propertiesToCheck.add (propertiesFile.getPropertyObject (i));
+                }
+            }
+            else {
+                propertiesToCheck.add (propertiesFile.getPropertyObject (propertyToCheck));
+            }
+        }
+
+        UndefinedConstants undefinedMFConstants = new UndefinedConstants (modulesFile, null);
+        UndefinedConstants[] undefinedConstants = new UndefinedConstants[propertiesToCheck.size ()];
+        for (int i = 0; i < undefinedConstants.length; i++) {
+            undefinedConstants[i] = new UndefinedConstants (modulesFile, propertiesFile, propertiesToCheck.get (i));
+        }
+        try {
+            undefinedMFConstants.defineUsingConstSwitch (constSwitch);
+            for (UndefinedConstants uc : undefinedConstants) {
+                uc.defineUsingConstSwitch (constSwitch);
+            }
+        }
+        catch (PrismException e) {
+            LOGGER.warn ("Could not define the constants " + constSwitch + ": " + e.getMessage ());
+        }
+        try {
+            prism.setPRISMModelConstants (undefinedMFConstants.getMFConstantValues ());
+        }
+        catch (PrismException e) {
+            LOGGER.warn ("Could not set the model constants: " + e.getMessage ());
+        }
+
+        Result result;
+        try {
+            if (propertiesFile != null) {
+                propertiesFile.setSomeUndefinedConstants (undefinedConstants[0].getPFConstantValues ());
+            }
+            result = prism.modelCheck (propertiesFile, propertiesToCheck.get (0));
+        }
+        catch (PrismException e) {
+            LOGGER.error ("Model checking failed", e);
+            throw e;
+        }
+
+        // Export strategy if generated
+        if (result.getStrategy () != null) {
+            try {
+                prism.exportStrategy (result.getStrategy (), Prism.StrategyExportType.ACTIONS,
+                        new File (strategyFileName + ".act"));
+                prism.exportStrategy (result.getStrategy (), Prism.StrategyExportType.INDUCED_MODEL,
+                        new File (strategyFileName + ".ind"));
+                PrismConnectorAPI.mergeActionsInducedModelIntoAdversary (strategyFileName + ".act",
+                        strategyFileName + ".ind", strategyFileName + ".adv");
+            }
+            // in case of error, report it and proceed
+            catch (FileNotFoundException e) {
+                LOGGER.error ("Could not open file \"" + strategyFileName + "\" for output");
+            }
+            catch (PrismException e) {
+                LOGGER.error ("Could not export the strategy to " + strategyFileName + ": " + e.getMessage ());
+            }
+        }
+        else {
+            PrismConnectorAPI.exportTextToFile (strategyFileName + ".adv", "");
+        }
+        return result.getResult ().toString ();
+    }
+
+}
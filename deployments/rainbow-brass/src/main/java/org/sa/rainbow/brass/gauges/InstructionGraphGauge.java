@@ -3,7 +3,7 @@ package org.sa.rainbow.brass.gauges;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 import org.sa.rainbow.core.error.RainbowException;
@@ -47,7 +47,7 @@ public class InstructionGraphGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (IG.equals (matchName)) {
             String node = m.group (1).split ("\\.")[0];
             String status = m.group (3).trim();
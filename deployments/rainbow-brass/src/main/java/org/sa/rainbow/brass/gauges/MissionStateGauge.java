@@ -4,7 +4,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 import org.sa.rainbow.brass.model.map.BatteryPredictor;
@@ -70,7 +70,7 @@ public class MissionStateGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         String group = m.group (1);
         int restGroup = 0;
         if (LOC.equals (matchName)) {
@@ -3,7 +3,7 @@ package org.sa.rainbow.brass.gauges;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 import org.sa.rainbow.core.error.RainbowException;
@@ -26,7 +26,7 @@ public class TargetWaypointGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (TARGET.equals (matchName)) {
             String waypoint = m.group (1).trim ();
             IRainbowOperation op = m_commands.get ("target");
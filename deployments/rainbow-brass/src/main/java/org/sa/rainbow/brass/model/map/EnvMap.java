@@ -2,9 +2,11 @@ package org.sa.rainbow.brass.model.map;
 
 import java.io.FileReader;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -18,6 +20,9 @@ import org.sa.rainbow.core.models.ModelReference;
 
 /**
  * Created by camara on 12/20/2016.
+ *
+ * Changes to the map are synchronized. Reads go to an immutable EnvMapSnapshot, which is built the first time the map
+ * is read after a change, so they do not lock the map.
  */
 
 public class EnvMap {
@@ -31,7 +36,7 @@ public class EnvMap {
         m_last_insertion = new NodeInsertion();
         m_nodes = new HashMap<> ();
         m_new_node_id=0;
-        m_arcs = new LinkedList<EnvMapArc> ();
+        m_arcs = new ArrayList<EnvMapArc> ();
         //initWithSimpleMap(); // TODO: Substitute hardwired version of the map by one parsed from file
         loadFromFile (props.getProperty (PropertiesConnector.MAP_PROPKEY));
     }
@@ -41,7 +46,7 @@ public class EnvMap {
         m_last_insertion = new NodeInsertion ();
         m_nodes = new HashMap<> ();
         m_new_node_id = 0;
-        m_arcs = new LinkedList<EnvMapArc> ();
+        m_arcs = new ArrayList<EnvMapArc> ();
     }
 
     public ModelReference getModelReference () {
@@ -51,81 +56,109 @@ public class EnvMap {
     public synchronized EnvMap copy () {
         EnvMap m = new EnvMap (m_model);
         m.m_nodes = new HashMap<String, EnvMapNode> (m_nodes);
-        m.m_arcs = new LinkedList<EnvMapArc> (m_arcs);
+        m.m_arcs = new ArrayList<EnvMapArc> (m_arcs);
         return m;
     }
 
     private Map<String, EnvMapNode> m_nodes;
-    private LinkedList<EnvMapArc> m_arcs;
+    private List<EnvMapArc> m_arcs;
     private NodeInsertion m_last_insertion;
     private int m_new_node_id;
+    private volatile EnvMapSnapshot m_snapshot;
 
     private final ModelReference m_model;
 
-    public synchronized LinkedList<EnvMapArc> getArcs () {
-        return m_arcs;
+    /**
+     * Returns the current state of the map. The snapshot does not change, so it can be read (e.g., to generate a
+     * PRISM specification) while the map is being updated.
+     * @return EnvMapSnapshot the map as of the last change
+     */
+    public EnvMapSnapshot snapshot () {
+        EnvMapSnapshot s = m_snapshot;
+        if (s == null) {
+            synchronized (this) {
+                s = m_snapshot;
+                if (s == null) {
+                    s = new EnvMapSnapshot (m_nodes, m_arcs, SAME_LOCATION_RADIUS);
+                    m_snapshot = s;
+                }
+            }
+        }
+        return s;
     }
 
-    public synchronized Map<String, EnvMapNode> getNodes () {
-        return m_nodes;
+    /**
+     * @return the arcs of the map, which cannot be modified
+     */
+    public List<EnvMapArc> getArcs () {
+        return snapshot ().getArcs ();
     }
 
-    public synchronized EnvMapNode getNode (double x, double y) {
-        for (EnvMapNode node : m_nodes.values()) {
-            if (node.getX() >= x - SAME_LOCATION_RADIUS && node.getX() <= x + SAME_LOCATION_RADIUS &&
-                    node.getY() >= y - SAME_LOCATION_RADIUS && node.getY() <= y + SAME_LOCATION_RADIUS) return node;
-        }
+    /**
+     * @return the nodes of the map, which cannot be modified
+     */
+    public Map<String, EnvMapNode> getNodes () {
+        return snapshot ().getNodes ();
+    }
 
-        return null;
+    public EnvMapNode getNode (double x, double y) {
+        return snapshot ().getNode (x, y);
     }
 
-    public synchronized int getNodeCount () {
-        return m_nodes.size();
+    public int getNodeCount () {
+        return snapshot ().getNodes ().size ();
     }
 
-    public synchronized int getArcCount () {
-        return m_arcs.size();
+    public int getArcCount () {
+        return snapshot ().getArcs ().size ();
     }
 
-    public synchronized LinkedList<String> getNeighbors (String node) {
-        LinkedList<String> res = new LinkedList<String>();
-        for (int i=0;i<getArcs().size();i++){
-            EnvMapArc a = this.getArcs().get(i);
-            if (a.getSource().equals(node)){
-                res.add(a.getTarget());
-            }
-        }
-        return res;
+    public LinkedList<String> getNeighbors (String node) {
+        return snapshot ().getNeighbors (node);
     }
 
     public synchronized void AddNode (String label, double x, double y) {
         m_nodes.put(label, new EnvMapNode(label, x, y, m_new_node_id));
         m_new_node_id++;
+        m_snapshot = null;
     }
 
     public synchronized void AddNode (String label, double x, double y, boolean charging){
         m_nodes.put(label, new EnvMapNode(label, x, y, m_new_node_id, charging));
         m_new_node_id++;
+        m_snapshot = null;
     }
 
     public synchronized void addArc (String source, String target, double distance, boolean enabled) {
         m_arcs.add(new EnvMapArc(source, target, distance, enabled));
+        m_snapshot = null;
+    }
+
+    // Used while changing the map, to avoid rebuilding the snapshot
+    private double nodeX (String n) {
+        EnvMapNode envMapNode = m_nodes.get (n);
+        return envMapNode != null ? envMapNode.getX () : Double.NEGATIVE_INFINITY;
     }
 
-    public synchronized double getNodeX (String n) {
-        EnvMapNode envMapNode = m_nodes.get(n);
+    private double nodeY (String n) {
+        EnvMapNode envMapNode = m_nodes.get (n);
+        return envMapNode != null ? envMapNode.getY () : Double.NEGATIVE_INFINITY;
+    }
+
+    public double getNodeX (String n) {
+        EnvMapNode envMapNode = snapshot ().getNode (n);
         if (envMapNode != null) return envMapNode.getX ();
         return Double.NEGATIVE_INFINITY;
     }
 
-    public synchronized double getNodeY (String n) {
-        EnvMapNode envMapNode = m_nodes.get (n);
+    public double getNodeY (String n) {
+        EnvMapNode envMapNode = snapshot ().getNode (n);
         if (envMapNode != null) return envMapNode.getY ();
         return Double.NEGATIVE_INFINITY;
     }
 
-    public synchronized int getNodeId (String n) {
-        EnvMapNode envMapNode = m_nodes.get(n);
+    public int getNodeId (String n) {
+        EnvMapNode envMapNode = snapshot ().getNode (n);
         if (envMapNode == null) return -1;
         return envMapNode.getId();
     }
@@ -137,12 +170,13 @@ public class EnvMap {
      * @param nb String node b label
      */
     public synchronized void removeArcs (String na, String nb) {
-        ListIterator<EnvMapArc> iter = getArcs().listIterator();
+        Iterator<EnvMapArc> iter = m_arcs.iterator();
         while(iter.hasNext()){
             if(iter.next().includesNodes(na, nb)) {
                 iter.remove();
             }
         }
+        m_snapshot = null;
     }
 
     public static class NodeInsertion{
@@ -175,9 +209,10 @@ public class EnvMap {
      * @param nb String node label b
      * @return float distance
      */
-    public synchronized double distanceBetween (String na, String nb) {
-        EnvMapNode a = m_nodes.get(na);
-        EnvMapNode b = m_nodes.get(nb);
+    public double distanceBetween (String na, String nb) {
+        EnvMapSnapshot s = snapshot ();
+        EnvMapNode a = s.getNode(na);
+        EnvMapNode b = s.getNode(nb);
         return distanceBetweenCoords(a.getX(), a.getY(), b.getX(), b.getY());
     }
 
@@ -200,22 +235,23 @@ public class EnvMap {
      */
     public synchronized void insertNode (String n, String na, String nb, double x, double y, boolean obstacle) {
         AddNode (n, x, y);
-        addArc (na, n, distanceBetween (na, n), true);
-        addArc (n, na, distanceBetween (na, n), true);
+        double distance = distanceBetweenCoords (nodeX (na), nodeY (na), x, y);
+        addArc (na, n, distance, true);
+        addArc (n, na, distance, true);
         if (obstacle) {
             removeArcs (na, nb);
         }
         else {
-            addArc (nb, n, distanceBetween (nb, n), true);
-            addArc (n, nb, distanceBetween (nb, n), true);
+            distance = distanceBetweenCoords (nodeX (nb), nodeY (nb), x, y);
+            addArc (nb, n, distance, true);
+            addArc (n, nb, distance, true);
         }
         // Somehow, the planning things that n to nb is still valid
 //        else {
 //            addArc (nb, n, distanceBetween (nb, n), false);
 //            addArc (n, nb, distanceBetween (nb, n), false);
 //        }
-        LinkedList<EnvMapArc> arcs = getArcs ();
-        for (EnvMapArc a : arcs) {
+        for (EnvMapArc a : m_arcs) {
             System.out.println (a.m_source + " -> " + a.m_target + "(" + a.m_enabled + ")");
         }
     }
@@ -292,7 +328,7 @@ public class EnvMap {
             JSONArray neighbors = (JSONArray) jsonNode.get("connected-to");
             for (Object neighbor : neighbors) {
                 String ns = String.valueOf(neighbor);
-                double distance = distanceBetweenCoords(getNodeX(id),getNodeY(id),getNodeX(ns),getNodeY(ns));
+                double distance = distanceBetweenCoords(nodeX(id),nodeY(id),nodeX(ns),nodeY(ns));
                 addArc(id, ns, distance, true);
                 System.out.println("Added arc ["+id+","+ns+"] (distance="+ distance +")" );
             }
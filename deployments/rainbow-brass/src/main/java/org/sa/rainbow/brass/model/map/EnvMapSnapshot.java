@@ -0,0 +1,197 @@
+package org.sa.rainbow.brass.model.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.sa.rainbow.brass.model.map.dijkstra.Dijkstra;
+import org.sa.rainbow.brass.model.map.dijkstra.IndexedGraph;
+import org.sa.rainbow.brass.model.map.dijkstra.PathEnumerator;
+
+/**
+ * An immutable view of an EnvMap at some point in time. EnvMap builds one after it changes, the first time it is
+ * read, and shares it with all readers until the next change, so readers do not lock the map or copy it. Besides the
+ * nodes and arcs, the snapshot indexes the arcs by source node, the nodes by location and keeps the shortest
+ * distances between nodes once they have been computed.
+ */
+public final class EnvMapSnapshot {
+
+    private final Map<String, EnvMapNode>   m_nodes;
+    private final List<EnvMapArc>           m_arcs;
+    private final float                     m_radius;
+
+    /** Spatial index: nodes by grid cell. Cells are twice the location radius, so a query looks at 3x3 cells */
+    private final Map<Long, List<EnvMapNode>> m_cells = new HashMap<> ();
+    private final double                    m_cellSize;
+
+    /** All arcs, directed, in map order. Disabled arcs have infinite weight. */
+    private final IndexedGraph              m_arcGraph;
+    /** The undirected graph used for distance rewards: the first enabled arc between each pair of nodes */
+    private final IndexedGraph              m_distanceGraph;
+    private final AtomicReferenceArray<double[]> m_distances;
+
+    EnvMapSnapshot (Map<String, EnvMapNode> nodes, List<EnvMapArc> arcs, float radius) {
+        m_nodes = Collections.unmodifiableMap (new LinkedHashMap<> (nodes));
+        m_arcs = Collections.unmodifiableList (new ArrayList<> (arcs));
+        m_radius = radius;
+        m_cellSize = 2 * radius;
+
+        IndexedGraph.Builder arcGraph = new IndexedGraph.Builder ();
+        IndexedGraph.Builder distanceGraph = new IndexedGraph.Builder ();
+        for (EnvMapNode node : m_nodes.values ()) {
+            arcGraph.addVertex (node.getLabel ());
+            distanceGraph.addVertex (node.getLabel ());
+            List<EnvMapNode> cell = m_cells.get (cell (node.getX (), node.getY ()));
+            if (cell == null) {
+                cell = new ArrayList<> (1);
+                m_cells.put (cell (node.getX (), node.getY ()), cell);
+            }
+            cell.add (node);
+        }
+        Set<String> connected = new HashSet<> ();
+        for (EnvMapArc a : m_arcs) {
+            arcGraph.addEdge (a.getSource (), a.getTarget (),
+                    a.isEnabled () ? a.getDistance () : Double.POSITIVE_INFINITY);
+            if (a.isEnabled () && a.getDistance () < MapTranslator.MAX_DISTANCE
+                    && !a.getSource ().equals (a.getTarget ()) && connected.add (pair (a))) {
+                distanceGraph.addEdge (a.getSource (), a.getTarget (), a.getDistance ());
+                distanceGraph.addEdge (a.getTarget (), a.getSource (), a.getDistance ());
+            }
+        }
+        m_arcGraph = arcGraph.build ();
+        m_distanceGraph = distanceGraph.build ();
+        m_distances = new AtomicReferenceArray<> (m_distanceGraph.vertexCount ());
+    }
+
+    private static String pair (EnvMapArc a) {
+        return a.getSource ().compareTo (a.getTarget ()) < 0 ? a.getSource () + "\0" + a.getTarget ()
+                : a.getTarget () + "\0" + a.getSource ();
+    }
+
+    private long cell (double x, double y) {
+        long cx = (long) Math.floor (x / m_cellSize);
+        long cy = (long) Math.floor (y / m_cellSize);
+        return (cx << 32) ^ (cy & 0xffffffffL);
+    }
+
+    public Map<String, EnvMapNode> getNodes () {
+        return m_nodes;
+    }
+
+    public List<EnvMapArc> getArcs () {
+        return m_arcs;
+    }
+
+    public EnvMapNode getNode (String label) {
+        return m_nodes.get (label);
+    }
+
+    /**
+     * Finds the node at a location
+     *
+     * @return the closest node within the location radius of (x,y) in both axes, or null if there is none
+     */
+    public EnvMapNode getNode (double x, double y) {
+        long cx = (long) Math.floor (x / m_cellSize);
+        long cy = (long) Math.floor (y / m_cellSize);
+        EnvMapNode closest = null;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for (long i = cx - 1; i <= cx + 1; i++) {
+            for (long j = cy - 1; j <= cy + 1; j++) {
+                List<EnvMapNode> cell = m_cells.get ((i << 32) ^ (j & 0xffffffffL));
+                if (cell == null) {
+                    continue;
+                }
+                for (EnvMapNode node : cell) {
+                    double dx = Math.abs (node.getX () - x);
+                    double dy = Math.abs (node.getY () - y);
+                    if (dx <= m_radius && dy <= m_radius && dx * dx + dy * dy < closestDistance) {
+                        closest = node;
+                        closestDistance = dx * dx + dy * dy;
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * @return the targets of the arcs (enabled or not) leaving a node, in map order
+     */
+    public LinkedList<String> getNeighbors (String node) {
+        LinkedList<String> res = new LinkedList<> ();
+        int v = m_arcGraph.indexOf (node);
+        if (v >= 0) {
+            for (int e = m_arcGraph.firstEdge (v); e < m_arcGraph.endEdge (v); e++) {
+                res.add (m_arcGraph.label (m_arcGraph.target (e)));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return the directed graph of all arcs in the map, where disabled arcs have infinite weight
+     */
+    public IndexedGraph getArcGraph () {
+        return m_arcGraph;
+    }
+
+    /**
+     * Returns the shortest distance between two nodes, following enabled arcs in either direction. Distances from a
+     * node are computed the first time they are needed and kept with the snapshot.
+     *
+     * @return the distance, or Dijkstra.MAX_DISTANCE if there is no path
+     */
+    public double shortestPathDistance (String node1, String node2) {
+        int source = m_distanceGraph.indexOf (node1);
+        int target = m_distanceGraph.indexOf (node2);
+        if (source < 0 || target < 0) return Dijkstra.MAX_DISTANCE;
+        double[] distances = m_distances.get (source);
+        if (distances == null) {
+            distances = m_distanceGraph.distancesFrom (source, Dijkstra.MAX_DISTANCE);
+            m_distances.compareAndSet (source, null, distances);
+        }
+        return distances[target];
+    }
+
+    /**
+     * Finds the non-cyclic paths between two nodes, following arcs whether they are enabled or not
+     *
+     * @param maxPaths
+     *            maximum number of paths to return (0 for all)
+     * @return the labels of the nodes in each path, from source to target
+     */
+    public List<List<String>> findAllPaths (String source, String target, int maxPaths) {
+        int s = m_arcGraph.indexOf (source);
+        int t = m_arcGraph.indexOf (target);
+        if (s < 0 || t < 0) return new ArrayList<> ();
+        return labels (PathEnumerator.allSimplePaths (m_arcGraph, s, t, maxPaths, 0));
+    }
+
+    /**
+     * Finds the k shortest non-cyclic paths between two nodes, following enabled arcs
+     *
+     * @return the labels of the nodes in each path, from source to target, shortest first
+     */
+    public List<List<String>> findShortestPaths (String source, String target, int k) {
+        int s = m_arcGraph.indexOf (source);
+        int t = m_arcGraph.indexOf (target);
+        if (s < 0 || t < 0) return new ArrayList<> ();
+        return labels (PathEnumerator.kShortestPaths (m_arcGraph, s, t, k));
+    }
+
+    private List<List<String>> labels (List<int[]> paths) {
+        List<List<String>> res = new ArrayList<> (paths.size ());
+        for (int[] p : paths) {
+            res.add (m_arcGraph.labels (p));
+        }
+        return res;
+    }
+}
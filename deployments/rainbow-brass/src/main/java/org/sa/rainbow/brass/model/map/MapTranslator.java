@@ -13,10 +13,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
-import org.sa.rainbow.brass.model.map.dijkstra.Dijkstra;
-import org.sa.rainbow.brass.model.map.dijkstra.Edge;
-import org.sa.rainbow.brass.model.map.dijkstra.Graph;
-import org.sa.rainbow.brass.model.map.dijkstra.Vertex;
 import org.sa.rainbow.brass.model.mission.MissionState;
 
 import com.google.common.base.Objects;
@@ -155,7 +151,7 @@ public class MapTranslator {
     public static LinkedList<String> generateMoveCommandStrs(){
         synchronized (m_map) {
             LinkedList<String> res = new LinkedList<String> ();
-            LinkedList<EnvMapArc> arcs = m_map.getArcs();
+            List<EnvMapArc> arcs = m_map.getArcs();
             for (int i=0; i<arcs.size(); i++){
                 res.add(arcs.get(i).getSource()+MOVE_CMD_STR+arcs.get(i).getTarget());
             }
@@ -504,41 +500,33 @@ public class MapTranslator {
     }
 
 
-    public static Stack<String> connectionPath = null; // Aux data structures for finding all paths between arbitrary locations
-    public static List<Stack> connectionPaths = null;
-
-
     /**
      * Generates all non-cyclic paths between two locations in map
      * @param node1
      * @param node2
      */
     public static List<Stack> goFindAllPaths(String node1, String node2){
-        connectionPath = new Stack<String>();
-        connectionPath.push(node1);
-        connectionPaths = new ArrayList<>();
-        findAllPaths (node1, node2);
-        for (int i=0; i<connectionPaths.size();i++) {
-            connectionPaths.get(i).add(node2);
-        }
-        return connectionPaths;
+        return toStacks (m_map.snapshot ().findAllPaths (node1, node2, 0));
     }
 
-    public static synchronized void findAllPaths(String src, String tgt) {
-        for (String nextNode : m_map.getNeighbors(src)){		  
-            if (nextNode.equals(tgt)){
-                Stack temp = new Stack<String>();
-                for (String node1 : connectionPath) {
-                    temp.add(node1);
-                }
-                connectionPaths.add(temp);
-            } else if (!connectionPath.contains(nextNode)) {
-                connectionPath.push(nextNode);
-                findAllPaths(nextNode, tgt);
-                connectionPath.pop();
-            }
-        }
+    /**
+     * Generates the k shortest non-cyclic paths between two locations in map, following enabled arcs
+     * @param node1
+     * @param node2
+     * @param k int maximum number of paths
+     */
+    public static List<Stack> goFindShortestPaths(String node1, String node2, int k){
+        return toStacks (m_map.snapshot ().findShortestPaths (node1, node2, k));
+    }
 
+    private static List<Stack> toStacks (List<List<String>> paths) {
+        List<Stack> res = new ArrayList<> (paths.size ());
+        for (List<String> path : paths) {
+            Stack<String> s = new Stack<String> ();
+            s.addAll (path);
+            res.add (s);
+        }
+        return res;
     }
 
     /**
@@ -619,43 +607,8 @@ public class MapTranslator {
      * @return float shortest distance between node1 and node2
      */
     public static double shortestPathDistance (String node1, String node2) {
-        synchronized (m_map) {
-            Graph graph = new Graph();
-            Vertex[] vertices = new Vertex[m_map.getNodeCount()];
-
-            Map<String, Integer> node_indexes = new HashMap<> ();
-
-            int i=0;
-            for (Map.Entry<String,EnvMapNode> entry : m_map.getNodes().entrySet() ){
-                vertices[i] = new Vertex(entry.getKey());
-                graph.addVertex(vertices[i], true);
-                node_indexes.put (entry.getKey (), i);
-                i++;
-            }
-
-            Edge[] edges = new Edge[m_map.getArcCount()];
-
-
-            for (i=0;i<m_map.getArcs().size();i++){
-                EnvMapArc a = m_map.getArcs().get(i);
-                Vertex source = vertices[(node_indexes.get (a.getSource ()))];
-                Vertex target = vertices[(node_indexes.get (a.getTarget ()))];
-                if (a.isEnabled()){
-                    edges[i] = new Edge(source, target, a.getDistance());
-                } else {
-                    edges[i] = new Edge(source, target, MAX_DISTANCE); // If edge is disabled, assign max possible distance                   	
-                }
-            }
-
-            for(Edge e: edges){
-                if (e.getWeight() < MAX_DISTANCE){
-                    graph.addEdge(e.getOne(), e.getTwo(), e.getWeight());
-                }
-            }
-
-            Dijkstra dijkstra = new Dijkstra(graph, node1);
-            return (dijkstra.getDistanceTo(node2));
-        }
+        // Disabled edges are left out; distances from each node are computed once per version of the map
+        return m_map.snapshot ().shortestPathDistance (node1, node2);
     }
 
 
@@ -802,18 +755,46 @@ public class MapTranslator {
     }
 
     public static Map<List, String> exportConstrainedTranslationsBetween(String f_base, String source, String target, boolean inhibitTactics) {
-        List<Stack> paths = goFindAllPaths(source, target);
         Map<List, String> specifications = new HashMap<List, String>();
         int c=0;
-        for ( List path : paths )  {
+        for (Map.Entry<List, String> e : getConstrainedTranslationsBetween (source, target, inhibitTactics).entrySet ())  {
             String filename = f_base + "/" + String.valueOf (c);
-            exportMapTranslation (filename, path, inhibitTactics);
-            specifications.put(path, filename);
+            exportTranslation (filename, e.getValue ());
+            specifications.put(e.getKey (), filename);
             c++;
         }
         return specifications;
     }
 
+    /**
+     * Generates PRISM encoding variants constrained by all non-cyclic paths between two locations, without exporting
+     * them to files
+     * @param source String label of source location
+     * @param target String label of target location
+     * @param inhibitTactics boolean if true, the specifications only have move actions
+     * @return Map from each path to its PRISM specification
+     */
+    public static Map<List, String> getConstrainedTranslationsBetween(String source, String target, boolean inhibitTactics) {
+        return getConstrainedTranslationsBetween (source, target, inhibitTactics, 0);
+    }
+
+    /**
+     * Generates PRISM encoding variants constrained by the shortest non-cyclic paths between two locations
+     * @param source String label of source location
+     * @param target String label of target location
+     * @param inhibitTactics boolean if true, the specifications only have move actions
+     * @param maxPaths int number of shortest paths to generate specifications for (0 for all non-cyclic paths)
+     * @return Map from each path to its PRISM specification
+     */
+    public static Map<List, String> getConstrainedTranslationsBetween(String source, String target, boolean inhibitTactics, int maxPaths) {
+        List<Stack> paths = maxPaths > 0 ? goFindShortestPaths (source, target, maxPaths) : goFindAllPaths(source, target);
+        Map<List, String> specifications = new HashMap<List, String>();
+        for ( List path : paths )  {
+            specifications.put(path, getConstrainedToPathMapTranslation (path, inhibitTactics));
+        }
+        return specifications;
+    }
+
     /**
      * Class test
      * @param args
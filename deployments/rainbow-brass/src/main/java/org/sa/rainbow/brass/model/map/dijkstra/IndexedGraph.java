@@ -0,0 +1,241 @@
+package org.sa.rainbow.brass.model.map.dijkstra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * An immutable, directed, weighted graph with vertices numbered from 0 and the outgoing edges of each vertex stored
+ * contiguously (in the order they were added), so that walking the neighbors of a vertex does not search or allocate.
+ * Unlike Graph, instances can be shared between threads, and searches on them are re-entrant.
+ */
+public final class IndexedGraph {
+
+    private final String[]             m_labels;
+    private final Map<String, Integer> m_index;
+    /** Outgoing edges of vertex v are m_offsets[v] .. m_offsets[v+1]-1 */
+    private final int[]                m_offsets;
+    private final int[]                m_targets;
+    private final double[]             m_weights;
+
+    private IndexedGraph (String[] labels, Map<String, Integer> index, int[] offsets, int[] targets,
+            double[] weights) {
+        m_labels = labels;
+        m_index = index;
+        m_offsets = offsets;
+        m_targets = targets;
+        m_weights = weights;
+    }
+
+    public int vertexCount () {
+        return m_labels.length;
+    }
+
+    public int edgeCount () {
+        return m_targets.length;
+    }
+
+    /**
+     * @return the number of the vertex with a label, or -1 if there is none
+     */
+    public int indexOf (String label) {
+        Integer i = m_index.get (label);
+        return i == null ? -1 : i;
+    }
+
+    public String label (int vertex) {
+        return m_labels[vertex];
+    }
+
+    public int firstEdge (int vertex) {
+        return m_offsets[vertex];
+    }
+
+    public int endEdge (int vertex) {
+        return m_offsets[vertex + 1];
+    }
+
+    public int target (int edge) {
+        return m_targets[edge];
+    }
+
+    public double weight (int edge) {
+        return m_weights[edge];
+    }
+
+    /**
+     * Computes the length of the shortest path from a vertex to every other vertex (Dijkstra's algorithm). Edges with
+     * an infinite weight are not followed.
+     *
+     * @param source
+     *            the number of the source vertex
+     * @param unreachable
+     *            the distance given to vertices that cannot be reached
+     * @return the distances, by vertex number
+     */
+    public double[] distancesFrom (int source, double unreachable) {
+        double[] distances = new double[m_labels.length];
+        shortestPaths (source, -1, null, null, distances, null);
+        for (int v = 0; v < distances.length; v++) {
+            if (distances[v] == Double.POSITIVE_INFINITY) {
+                distances[v] = unreachable;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Finds the shortest path between two vertices, avoiding some vertices and edges
+     *
+     * @param source
+     *            the number of the source vertex
+     * @param target
+     *            the number of the target vertex
+     * @param blockedVertices
+     *            vertices that cannot be used, or null
+     * @param blockedEdges
+     *            edges that cannot be used, or null
+     * @return the vertices in the path, or null if there is none
+     */
+    public int[] shortestPath (int source, int target, boolean[] blockedVertices, boolean[] blockedEdges) {
+        double[] distances = new double[m_labels.length];
+        int[] predecessors = new int[m_labels.length];
+        shortestPaths (source, target, blockedVertices, blockedEdges, distances, predecessors);
+        if (distances[target] == Double.POSITIVE_INFINITY) return null;
+        int length = 1;
+        for (int v = target; v != source; v = predecessors[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = target, i = length - 1; i >= 0; v = predecessors[v], i--) {
+            path[i] = v;
+        }
+        return path;
+    }
+
+    private void shortestPaths (int source, int target, boolean[] blockedVertices, boolean[] blockedEdges,
+            double[] distances, int[] predecessors) {
+        Arrays.fill (distances, Double.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[m_labels.length];
+        distances[source] = 0;
+        PriorityQueue<Reached> queue = new PriorityQueue<> ();
+        queue.add (new Reached (source, 0));
+        while (!queue.isEmpty ()) {
+            Reached r = queue.poll ();
+            if (settled[r.m_vertex]) {
+                continue;
+            }
+            settled[r.m_vertex] = true;
+            if (r.m_vertex == target) return;
+            for (int e = m_offsets[r.m_vertex]; e < m_offsets[r.m_vertex + 1]; e++) {
+                int t = m_targets[e];
+                if (settled[t] || (blockedEdges != null && blockedEdges[e])
+                        || (blockedVertices != null && blockedVertices[t])) {
+                    continue;
+                }
+                double d = r.m_distance + m_weights[e];
+                if (d < distances[t]) {
+                    distances[t] = d;
+                    if (predecessors != null) {
+                        predecessors[t] = r.m_vertex;
+                    }
+                    queue.add (new Reached (t, d));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of the edge from one vertex to another, or -1 if there is none
+     */
+    public int edge (int source, int target) {
+        for (int e = m_offsets[source]; e < m_offsets[source + 1]; e++) {
+            if (m_targets[e] == target) return e;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the labels of a path of vertex numbers
+     */
+    public List<String> labels (int[] path) {
+        List<String> labels = new ArrayList<> (path.length);
+        for (int v : path) {
+            labels.add (m_labels[v]);
+        }
+        return labels;
+    }
+
+    private static class Reached implements Comparable<Reached> {
+        final int    m_vertex;
+        final double m_distance;
+
+        Reached (int vertex, double distance) {
+            m_vertex = vertex;
+            m_distance = distance;
+        }
+
+        @Override
+        public int compareTo (Reached o) {
+            return Double.compare (m_distance, o.m_distance);
+        }
+    }
+
+    /**
+     * Builds indexed graphs. Vertices are numbered in the order they are added.
+     */
+    public static class Builder {
+        private final List<String>         m_labels  = new ArrayList<> ();
+        private final Map<String, Integer> m_index   = new HashMap<> ();
+        private final List<int[]>          m_edges   = new ArrayList<> ();
+        private final List<Double>         m_weights = new ArrayList<> ();
+
+        /**
+         * @return the number of the vertex
+         */
+        public int addVertex (String label) {
+            Integer i = m_index.get (label);
+            if (i == null) {
+                i = m_labels.size ();
+                m_labels.add (label);
+                m_index.put (label, i);
+            }
+            return i;
+        }
+
+        /**
+         * Adds an edge, adding its vertices if they are new
+         */
+        public Builder addEdge (String source, String target, double weight) {
+            m_edges.add (new int[] { addVertex (source), addVertex (target) });
+            m_weights.add (weight);
+            return this;
+        }
+
+        public IndexedGraph build () {
+            int n = m_labels.size ();
+            int[] offsets = new int[n + 1];
+            for (int[] e : m_edges) {
+                offsets[e[0] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf (offsets, n);
+            int[] targets = new int[m_edges.size ()];
+            double[] weights = new double[m_edges.size ()];
+            for (int i = 0; i < m_edges.size (); i++) {
+                int[] e = m_edges.get (i);
+                int slot = next[e[0]]++;
+                targets[slot] = e[1];
+                weights[slot] = m_weights.get (i);
+            }
+            return new IndexedGraph (m_labels.toArray (new String[n]),
+                    Collections.unmodifiableMap (new HashMap<> (m_index)), offsets, targets, weights);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.sa.rainbow.brass.model.map.dijkstra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Enumerates paths between two vertices of an IndexedGraph. The enumeration keeps its state in local variables, so
+ * several threads can enumerate paths on the same graph at the same time.
+ */
+public final class PathEnumerator {
+
+    private PathEnumerator () {
+    }
+
+    /**
+     * Finds the simple (non-cyclic) paths between two vertices, by depth first search. Paths are found in the order
+     * of the edges of each vertex, and a path is found once for each edge into the target.
+     *
+     * @param graph
+     *            the graph
+     * @param source
+     *            the number of the first vertex
+     * @param target
+     *            the number of the last vertex
+     * @param maxPaths
+     *            the search stops after finding this many paths (0 for no limit)
+     * @param maxLength
+     *            paths with more vertices than this are not followed (0 for no limit)
+     * @return the vertices of each path, from source to target
+     */
+    public static List<int[]> allSimplePaths (IndexedGraph graph, int source, int target, int maxPaths,
+            int maxLength) {
+        List<int[]> paths = new ArrayList<> ();
+        int n = graph.vertexCount ();
+        int limit = maxLength <= 0 ? n + 1 : Math.min (maxLength, n + 1);
+        int[] path = new int[limit];
+        int[] cursor = new int[limit];
+        boolean[] onPath = new boolean[n];
+        int depth = 0;
+        path[0] = source;
+        cursor[0] = graph.firstEdge (source);
+        onPath[source] = true;
+        while (depth >= 0) {
+            int v = path[depth];
+            if (cursor[depth] == graph.endEdge (v)) {
+                onPath[v] = false;
+                depth--;
+                continue;
+            }
+            int t = graph.target (cursor[depth]++);
+            if (t == target) {
+                if (depth + 2 <= limit) {
+                    int[] found = Arrays.copyOf (path, depth + 2);
+                    found[depth + 1] = target;
+                    paths.add (found);
+                    if (maxPaths > 0 && paths.size () >= maxPaths) return paths;
+                }
+            }
+            else if (!onPath[t] && depth + 2 < limit) {
+                depth++;
+                path[depth] = t;
+                cursor[depth] = graph.firstEdge (t);
+                onPath[t] = true;
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Finds the k shortest simple paths between two vertices (Yen's algorithm), shortest first. Edges with an
+     * infinite weight are not used.
+     *
+     * @param graph
+     *            the graph
+     * @param source
+     *            the number of the first vertex
+     * @param target
+     *            the number of the last vertex
+     * @param k
+     *            the number of paths to find
+     * @return the vertices of each path, from source to target; fewer than k if there are not that many
+     */
+    public static List<int[]> kShortestPaths (IndexedGraph graph, int source, int target, int k) {
+        List<int[]> shortest = new ArrayList<> ();
+        if (k <= 0) return shortest;
+        int[] first = graph.shortestPath (source, target, null, null);
+        if (first == null) return shortest;
+        shortest.add (first);
+
+        PriorityQueue<Candidate> candidates = new PriorityQueue<> ();
+        Set<List<Integer>> seen = new HashSet<> ();
+        seen.add (asList (first));
+        boolean[] blockedVertices = new boolean[graph.vertexCount ()];
+        boolean[] blockedEdges = new boolean[graph.edgeCount ()];
+        while (shortest.size () < k) {
+            int[] previous = shortest.get (shortest.size () - 1);
+            for (int i = 0; i < previous.length - 1; i++) {
+                int spur = previous[i];
+                Arrays.fill (blockedVertices, false);
+                Arrays.fill (blockedEdges, false);
+                for (int[] p : shortest) {
+                    if (p.length > i + 1 && samePrefix (p, previous, i + 1)) {
+                        for (int e = graph.firstEdge (p[i]); e < graph.endEdge (p[i]); e++) {
+                            if (graph.target (e) == p[i + 1]) {
+                                blockedEdges[e] = true;
+                            }
+                        }
+                    }
+                }
+                for (int j = 0; j < i; j++) {
+                    blockedVertices[previous[j]] = true;
+                }
+                int[] spurPath = graph.shortestPath (spur, target, blockedVertices, blockedEdges);
+                if (spurPath != null) {
+                    int[] path = new int[i + spurPath.length];
+                    System.arraycopy (previous, 0, path, 0, i);
+                    System.arraycopy (spurPath, 0, path, i, spurPath.length);
+                    if (seen.add (asList (path))) {
+                        candidates.add (new Candidate (path, cost (graph, path)));
+                    }
+                }
+            }
+            if (candidates.isEmpty ()) {
+                break;
+            }
+            shortest.add (candidates.poll ().m_path);
+        }
+        return shortest;
+    }
+
+    /**
+     * @return the length of a path, using the shortest edge between each pair of vertices
+     */
+    public static double cost (IndexedGraph graph, int[] path) {
+        double cost = 0;
+        for (int i = 0; i < path.length - 1; i++) {
+            double w = Double.POSITIVE_INFINITY;
+            for (int e = graph.firstEdge (path[i]); e < graph.endEdge (path[i]); e++) {
+                if (graph.target (e) == path[i + 1]) {
+                    w = Math.min (w, graph.weight (e));
+                }
+            }
+            cost += w;
+        }
+        return cost;
+    }
+
+    private static boolean samePrefix (int[] a, int[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    private static List<Integer> asList (int[] path) {
+        List<Integer> l = new ArrayList<> (path.length);
+        for (int v : path) {
+            l.add (v);
+        }
+        return l;
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        final int[]  m_path;
+        final double m_cost;
+
+        Candidate (int[] path, double cost) {
+            m_path = path;
+            m_cost = cost;
+        }
+
+        @Override
+        public int compareTo (Candidate o) {
+            int c = Double.compare (m_cost, o.m_cost);
+            return c != 0 ? c : Integer.compare (m_path.length, o.m_path.length);
+        }
+    }
+}
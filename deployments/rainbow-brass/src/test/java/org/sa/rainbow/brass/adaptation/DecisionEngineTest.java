@@ -0,0 +1,145 @@
+package org.sa.rainbow.brass.adaptation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sa.rainbow.brass.PropertiesConnector;
+import org.sa.rainbow.brass.model.map.EnvMap;
+
+/**
+ * Checks that the decision engine checks candidates one at a time, serialized with PrismConnectorAPI, that it does
+ * not check a candidate again for the same constants, and that the planning deadline uses the candidates scored so
+ * far. The checks are faked, so PRISM is not needed.
+ */
+public class DecisionEngineTest {
+
+    @Rule
+    public TemporaryFolder m_dir = new TemporaryFolder ();
+
+    private FakeChecker m_checker;
+    private EnvMap      m_map;
+
+    /**
+     * A checker whose score is the number at the end of the specification
+     */
+    private static class FakeChecker extends PrismModelChecker {
+        final AtomicInteger checks  = new AtomicInteger ();
+        final AtomicInteger running = new AtomicInteger ();
+        volatile int        maxRunning;
+        volatile long       delay;
+
+        @Override
+        protected String check (String specification, String propertiesFileName, String strategyFileName,
+                int propertyToCheck, String constSwitch) throws Exception {
+            maxRunning = Math.max (maxRunning, running.incrementAndGet ());
+            try {
+                Thread.sleep (delay);
+                return specification.substring (specification.lastIndexOf (' ') + 1);
+            }
+            finally {
+                running.decrementAndGet ();
+                checks.incrementAndGet ();
+            }
+        }
+    }
+
+    @Before
+    public void setUp () throws Exception {
+        Properties props = new Properties ();
+        props.setProperty (PropertiesConnector.PRISM_OUTPUT_DIR, m_dir.getRoot ().getAbsolutePath ());
+        m_checker = new FakeChecker ();
+        DecisionEngine.init (props, m_checker);
+
+        m_map = new EnvMap (null);
+        m_map.AddNode ("l1", 0, 0);
+        m_map.AddNode ("l2", 10, 0);
+        m_map.AddNode ("l3", 5, 5);
+        DecisionEngine.m_origin = "l1";
+        DecisionEngine.m_destination = "l2";
+        Map<List, String> specifications = new HashMap<> ();
+        specifications.put (Arrays.asList ("l1", "l2"), "direct 30");
+        specifications.put (Arrays.asList ("l1", "l3", "l2"), "detour 20");
+        specifications.put (Arrays.asList ("l1", "l3", "l1", "l2"), "loop 40");
+        DecisionEngine.m_specifications = specifications;
+    }
+
+    @Test
+    public void candidatesAreCheckedOnceForTheSameConstants () throws Exception {
+        DecisionEngine.scoreCandidates (m_map, "1000", "1", 0);
+        assertEquals (3, m_checker.checks.get ());
+        assertEquals (3, DecisionEngine.m_scoreboard.size ());
+        assertEquals (20.0, DecisionEngine.m_scoreboard.get (Arrays.asList ("l1", "l3", "l2")), 0);
+        String selected = DecisionEngine.selectPolicy ();
+        assertEquals (20.0, DecisionEngine.getSelectedPolicyTime (), 0);
+
+        DecisionEngine.scoreCandidates (m_map, "1000", "1", 0);
+        assertEquals (3, m_checker.checks.get ());
+        assertEquals (selected, DecisionEngine.selectPolicy ());
+
+        DecisionEngine.scoreCandidates (m_map, "2000", "1", 0);
+        assertEquals (6, m_checker.checks.get ());
+        assertEquals (1, m_checker.maxRunning);
+    }
+
+    @Test
+    public void deadlineUsesTheCandidatesScoredSoFar () throws Exception {
+        m_checker.delay = 200;
+        DecisionEngine.scoreCandidates (m_map, "1000", "1", 50);
+        // At least one candidate is always scored
+        assertEquals (1, DecisionEngine.m_scoreboard.size ());
+
+        // The check that was running at the deadline still completes and fills the cache; the one that had not
+        // started is cancelled
+        Thread.sleep (400);
+        assertEquals (2, m_checker.checks.get ());
+        DecisionEngine.scoreCandidates (m_map, "1000", "1", 0);
+        assertEquals (3, DecisionEngine.m_scoreboard.size ());
+        assertEquals (3, m_checker.checks.get ());
+        assertEquals (1, m_checker.maxRunning);
+    }
+
+    @Test
+    public void checksAreSerializedWithPrismConnectorAPI () throws Exception {
+        final AtomicInteger done = new AtomicInteger ();
+        Runnable check = new Runnable () {
+            @Override
+            public void run () {
+                try {
+                    m_checker.modelCheck ("spec 1", "props", "strategy", 0, "");
+                    done.incrementAndGet ();
+                }
+                catch (Exception e) {
+                    throw new RuntimeException (e);
+                }
+            }
+        };
+        m_checker.delay = 50;
+        Thread[] threads = new Thread[4];
+        synchronized (PrismConnectorAPI.class) {
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread (check);
+                threads[i].start ();
+            }
+            Thread.sleep (200);
+            assertEquals (0, m_checker.checks.get ());
+        }
+        for (Thread t : threads) {
+            t.join (5000);
+            assertFalse (t.isAlive ());
+        }
+        assertEquals (threads.length, done.get ());
+        assertEquals (1, m_checker.maxRunning);
+        assertEquals (0, m_checker.running.get ());
+    }
+}
@@ -0,0 +1,129 @@
+package org.sa.rainbow.brass.model.map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sa.rainbow.brass.model.map.dijkstra.Dijkstra;
+import org.sa.rainbow.brass.model.map.dijkstra.Edge;
+import org.sa.rainbow.brass.model.map.dijkstra.Graph;
+import org.sa.rainbow.brass.model.map.dijkstra.Vertex;
+
+/**
+ * Benchmark for EnvMapSnapshot: builds a grid map and times the location lookups, shortest distances and path
+ * enumeration of the snapshot against the implementations it replaced. Not run as part of the tests.
+ */
+public class EnvMapSnapshotBenchmark {
+
+    /**
+     * Compares the snapshot with the previous implementations on a synthetic grid map
+     *
+     * @param args
+     *            optional grid side (default 40, i.e., 1600 locations)
+     */
+    public static void main (String[] args) {
+        int side = args.length > 0 ? Integer.parseInt (args[0]) : 40;
+        EnvMap map = new EnvMap (null);
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                map.AddNode ("l" + (i * side + j), i * 5.0, j * 5.0);
+            }
+        }
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                String n = "l" + (i * side + j);
+                if (i + 1 < side) {
+                    map.addArc (n, "l" + ((i + 1) * side + j), 5.0, (i + j) % 7 != 0);
+                    map.addArc ("l" + ((i + 1) * side + j), n, 5.0, (i + j) % 7 != 0);
+                }
+                if (j + 1 < side) {
+                    map.addArc (n, "l" + (i * side + j + 1), 5.0, true);
+                    map.addArc ("l" + (i * side + j + 1), n, 5.0, true);
+                }
+            }
+        }
+
+        long start = System.nanoTime ();
+        EnvMapSnapshot snapshot = map.snapshot ();
+        System.out.println ("Snapshot of " + snapshot.getNodes ().size () + " nodes and " + snapshot.getArcs ().size ()
+                + " arcs: " + (System.nanoTime () - start) / 1000000 + " ms");
+
+        int lookups = 100000;
+        start = System.nanoTime ();
+        int found = 0;
+        for (int i = 0; i < lookups; i++) {
+            if (snapshot.getNode ((i % side) * 5.0 + 1, ((i / side) % side) * 5.0 - 1) != null) {
+                found++;
+            }
+        }
+        System.out.println (lookups + " indexed location lookups (" + found + " found): "
+                + (System.nanoTime () - start) / 1000000 + " ms");
+        start = System.nanoTime ();
+        found = 0;
+        for (int i = 0; i < lookups / 100; i++) {
+            double x = (i % side) * 5.0 + 1;
+            double y = ((i / side) % side) * 5.0 - 1;
+            for (EnvMapNode node : snapshot.getNodes ().values ()) {
+                if (node.getX () >= x - 1.75f && node.getX () <= x + 1.75f && node.getY () >= y - 1.75f
+                        && node.getY () <= y + 1.75f) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        System.out.println (lookups / 100 + " linear location lookups (" + found + " found): "
+                + (System.nanoTime () - start) / 1000000 + " ms");
+
+        int pairs = 0;
+        start = System.nanoTime ();
+        double total = 0;
+        for (String a : snapshot.getNodes ().keySet ()) {
+            for (String b : snapshot.getNodes ().keySet ()) {
+                total += snapshot.shortestPathDistance (a, b);
+                pairs++;
+            }
+        }
+        System.out.println (pairs + " indexed shortest distances (sum " + total + "): "
+                + (System.nanoTime () - start) / 1000000 + " ms");
+        start = System.nanoTime ();
+        total = 0;
+        List<String> labels = new ArrayList<> (snapshot.getNodes ().keySet ());
+        for (int i = 0; i < 20; i++) {
+            total += legacyShortestPathDistance (snapshot, labels.get (0), labels.get (i * 37 % labels.size ()));
+        }
+        System.out.println ("20 graph-per-pair shortest distances (sum " + total + "): "
+                + (System.nanoTime () - start) / 1000000 + " ms");
+
+        String source = "l0";
+        String target = "l" + (side * side - 1);
+        start = System.nanoTime ();
+        List<List<String>> paths = snapshot.findAllPaths (source, target, 10000);
+        System.out.println (paths.size () + " simple paths: " + (System.nanoTime () - start) / 1000000 + " ms");
+        start = System.nanoTime ();
+        paths = snapshot.findShortestPaths (source, target, 10);
+        System.out.println (paths.size () + " shortest paths (first has " + paths.get (0).size () + " locations): "
+                + (System.nanoTime () - start) / 1000000 + " ms");
+    }
+
+    /**
+     * The distance computation used before snapshots: a Graph is built for every pair of nodes
+     */
+    private static double legacyShortestPathDistance (EnvMapSnapshot map, String node1, String node2) {
+        Graph graph = new Graph ();
+        Map<String, Vertex> vertices = new HashMap<> ();
+        for (String n : map.getNodes ().keySet ()) {
+            Vertex v = new Vertex (n);
+            vertices.put (n, v);
+            graph.addVertex (v, true);
+        }
+        for (EnvMapArc a : map.getArcs ()) {
+            Edge e = new Edge (vertices.get (a.getSource ()), vertices.get (a.getTarget ()),
+                    a.isEnabled () ? a.getDistance () : MapTranslator.MAX_DISTANCE);
+            if (e.getWeight () < MapTranslator.MAX_DISTANCE) {
+                graph.addEdge (e.getOne (), e.getTwo (), e.getWeight ());
+            }
+        }
+        return new Dijkstra (graph, node1).getDistanceTo (node2);
+    }
+}
@@ -0,0 +1,122 @@
+package org.sa.rainbow.brass.model.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a snapshot of a map keeps the map as it was when the snapshot was taken, whatever changes are made to
+ * the map afterwards, and that the map takes a new snapshot after each change.
+ */
+public class EnvMapSnapshotTest {
+
+    private EnvMap m_map;
+
+    @Before
+    public void setUp () {
+        m_map = new EnvMap (null);
+        m_map.initWithSimpleMap ();
+    }
+
+    private static List<String> arcs (EnvMapSnapshot snapshot) {
+        List<String> arcs = new ArrayList<> ();
+        for (EnvMapArc a : snapshot.getArcs ()) {
+            arcs.add (a.getSource () + "->" + a.getTarget ());
+        }
+        return arcs;
+    }
+
+    private static Set<List<String>> paths (List<List<String>> paths) {
+        return new HashSet<> (paths);
+    }
+
+    @Test
+    public void snapshotIsUnaffectedByLaterChanges () {
+        EnvMapSnapshot before = m_map.snapshot ();
+        assertSame (before, m_map.snapshot ());
+        Set<String> nodes = new HashSet<> (before.getNodes ().keySet ());
+        List<String> arcs = arcs (before);
+        List<String> neighbors = new ArrayList<> (before.getNeighbors ("l2"));
+        double distance = before.shortestPathDistance ("l1", "ls");
+        Set<List<String>> allPaths = paths (before.findAllPaths ("l1", "ls", 0));
+        EnvMapNode l3 = before.getNode (42.5, 69);
+
+        m_map.insertNode ("n1", "l2", "l3", 30, 69, true);
+        m_map.AddNode ("l9", 42.5, 69.5);
+        m_map.addArc ("l1", "l9", 1, true);
+        m_map.removeArcs ("l4", "ls");
+
+        assertEquals (nodes, before.getNodes ().keySet ());
+        assertEquals (arcs, arcs (before));
+        assertEquals (neighbors, before.getNeighbors ("l2"));
+        assertEquals (distance, before.shortestPathDistance ("l1", "ls"), 0);
+        assertEquals (allPaths, paths (before.findAllPaths ("l1", "ls", 0)));
+        assertSame (l3, before.getNode (42.5, 69.5));
+        assertNull (before.getNode ("n1"));
+
+        // The map reads the changes through a new snapshot
+        EnvMapSnapshot after = m_map.snapshot ();
+        assertNotSame (before, after);
+        assertTrue (after.getNodes ().containsKey ("n1"));
+        assertEquals ("l9", after.getNode (42.5, 69.5).getLabel ());
+        assertFalse (m_map.getNeighbors ("l2").contains ("l3"));
+        assertTrue (m_map.getNeighbors ("l2").contains ("n1"));
+        assertTrue (m_map.getNeighbors ("l1").contains ("l9"));
+        assertFalse (m_map.getNeighbors ("l4").contains ("ls"));
+        assertTrue (after.findAllPaths ("l1", "ls", 0).isEmpty ());
+        // Two arcs to n1 replace the two between l2 and l3, one arc to l9 is added, and the two to ls are removed
+        assertEquals (arcs.size () - 1, m_map.getArcCount ());
+    }
+
+    @Test
+    public void snapshotCannotBeModified () {
+        EnvMapSnapshot snapshot = m_map.snapshot ();
+        int arcs = snapshot.getArcs ().size ();
+        try {
+            m_map.getArcs ().clear ();
+            fail ("The arcs of a snapshot can be modified");
+        }
+        catch (UnsupportedOperationException e) {
+        }
+        try {
+            m_map.getNodes ().remove ("l1");
+            fail ("The nodes of a snapshot can be modified");
+        }
+        catch (UnsupportedOperationException e) {
+        }
+        assertEquals (arcs, snapshot.getArcs ().size ());
+        assertTrue (snapshot.getNodes ().containsKey ("l1"));
+        assertSame (snapshot, m_map.snapshot ());
+    }
+
+    @Test
+    public void copyHasItsOwnSnapshots () {
+        EnvMapSnapshot snapshot = m_map.snapshot ();
+        EnvMap copy = m_map.copy ();
+        copy.AddNode ("l9", 0, 0);
+        assertFalse (m_map.getNodes ().containsKey ("l9"));
+        assertSame (snapshot, m_map.snapshot ());
+        assertTrue (copy.getNodes ().containsKey ("l9"));
+        assertEquals (Arrays.asList ("l1", "l3", "l8"), sorted (copy.getNeighbors ("l2")));
+    }
+
+    private static List<String> sorted (List<String> labels) {
+        List<String> sorted = new ArrayList<> (labels);
+        Collections.sort (sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,77 @@
+package org.sa.rainbow.brass.model.map;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Stack;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the PRISM specifications generated from a map, which are now generated from map snapshots, are the same
+ * as those generated before snapshots were introduced (kept in src/test/resources/maptranslator).
+ */
+public class MapTranslatorTest {
+
+    private Locale m_oldLocale;
+    private EnvMap m_map;
+
+    @Before
+    public void setUp () {
+        // The specifications format numbers with the default locale
+        m_oldLocale = Locale.getDefault ();
+        Locale.setDefault (Locale.US);
+        m_map = new EnvMap (null);
+        m_map.initWithSimpleMap ();
+        MapTranslator.setMap (m_map);
+    }
+
+    @After
+    public void tearDown () {
+        Locale.setDefault (m_oldLocale);
+    }
+
+    private static String expected (String name) throws Exception {
+        try (InputStream in = MapTranslatorTest.class.getResourceAsStream ("/maptranslator/" + name)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read (buf)) != -1;) {
+                bytes.write (buf, 0, n);
+            }
+            return bytes.toString ("UTF-8");
+        }
+    }
+
+    @Test
+    public void mapTranslationIsUnchanged () throws Exception {
+        assertEquals (expected ("simple-map.prism"), MapTranslator.getMapTranslation ());
+    }
+
+    @Test
+    public void translationAfterInsertingANodeIsUnchanged () throws Exception {
+        m_map.insertNode ("n1", "l2", "l3", 30, 69, false);
+        assertEquals (expected ("simple-map-inserted-move-only.prism"), MapTranslator.getMapTranslation (true));
+    }
+
+    @Test
+    public void pathsAndPathConstraintsAreUnchanged () throws Exception {
+        List<Stack> paths = MapTranslator.goFindAllPaths ("l1", "ls");
+        StringBuilder actual = new StringBuilder ();
+        for (Stack path : paths) {
+            actual.append (path.toString ()).append ('\n').append (MapTranslator.generatePathConstraintModule (path));
+        }
+        assertEquals (expected ("simple-map-paths.txt"), actual.toString ());
+
+        Map<List, String> specifications = MapTranslator.getConstrainedTranslationsBetween ("l1", "ls", false);
+        assertEquals (paths.size (), specifications.size ());
+        for (Map.Entry<List, String> s : specifications.entrySet ()) {
+            assertEquals (MapTranslator.getConstrainedToPathMapTranslation (s.getKey ()), s.getValue ());
+        }
+    }
+}
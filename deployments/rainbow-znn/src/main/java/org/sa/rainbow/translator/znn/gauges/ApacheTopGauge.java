@@ -35,7 +35,7 @@ import org.sa.rainbow.core.util.TypedAttributeWithValue;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 /**
@@ -93,10 +93,10 @@ public class ApacheTopGauge extends RegularPatternGauge {
 
 
     /* (non-Javadoc)
-     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.Matcher)
+     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.MatchResult)
      */
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         //log(" - line matches pattern \"" + p + "\" with " + m.groupCount() + " groups");
         if (matchName == CURTIME) {
             // should we remember the report time?
@@ -28,7 +28,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 import org.sa.rainbow.core.error.RainbowException;
@@ -86,7 +86,7 @@ public class AuthenticationEnablementGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         boolean authenticationOff = OFF.equals (matchName);
         if (authenticationOff) {
             // Reset everything to unknown
@@ -33,7 +33,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 /**
@@ -92,7 +92,7 @@ public class BlackholeGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch(String matchName, Matcher m) {
+    protected void doMatch(String matchName, MatchResult m) {
         if (Objects.equals (matchName, DEFAULT)) {
 
             // Send the list of attackers
@@ -34,7 +34,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 public class CaptchaGauge extends RegularPatternGauge {
@@ -55,7 +55,7 @@ public class CaptchaGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         boolean captchaOn = ON.equals (matchName);
         IRainbowOperation cmd = m_commands.get (valueNames[0]);
         Map<String, String> pMap = new HashMap<> ();
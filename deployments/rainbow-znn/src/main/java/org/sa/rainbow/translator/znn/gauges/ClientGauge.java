@@ -26,7 +26,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 public class ClientGauge extends RegularPatternGauge {
@@ -134,7 +134,7 @@ public class ClientGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (DEFAULT.equals (matchName)) {
             String ip = m.group (1);
             String lastSeen = m.group (2);
@@ -4,6 +4,8 @@ import org.acmestudio.acme.model.event.AcmeModelEventType;
 import org.sa.rainbow.core.error.RainbowException;
 import org.sa.rainbow.core.event.IRainbowMessage;
 import org.sa.rainbow.core.gauges.RegularPatternGauge;
+import org.sa.rainbow.core.gauges.stats.SlidingWindow;
+import org.sa.rainbow.core.gauges.stats.StatisticsMap;
 import org.sa.rainbow.core.models.ModelReference;
 import org.sa.rainbow.core.models.commands.IRainbowOperation;
 import org.sa.rainbow.core.ports.IModelChangeBusPort;
@@ -19,7 +21,7 @@ import org.sa.rainbow.model.acme.AcmeRainbowOperationEvent.CommandEventT;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 /**
@@ -73,7 +75,10 @@ public class ClientResponseTimeGauge extends RegularPatternGauge {
                 ip = ip.replaceAll ("\"$", "");
                 if (ip != null) {
                     m_IP2ClientName.put (ip, client);
-                    issueResponseTimeCommand (client, m_historyMap.get (ip), m_cumulationMap.get (ip), true);
+                    SlidingWindow history = m_windows.peek (ip);
+                    if (history != null) {
+                        issueResponseTimeCommand (client, history, true);
+                    }
                 }
             }
         }
@@ -158,10 +163,15 @@ public class ClientResponseTimeGauge extends RegularPatternGauge {
     private IModelChangeBusSubscriberPort m_modelChanges;
 
     Map<String, String>        m_IP2ClientName = new HashMap<> ();
-    Map<String, Queue<Double>> m_historyMap    = new HashMap<> ();
-    Map<String, Double>        m_cumulationMap = new HashMap<> ();
     Map<String, Long>          m_lastReport    = new HashMap<> ();
 
+    final StatisticsMap<SlidingWindow> m_windows = new StatisticsMap<SlidingWindow> () {
+        @Override
+        protected SlidingWindow create (String ip) {
+            return new SlidingWindow (AVG_SAMPLE_WINDOW);
+        }
+    };
+
     final Queue<IRainbowOperation> m_ops = new LinkedList<> ();
     Queue<Map<String, String>> m_params = new LinkedList<> ();
 
@@ -181,32 +191,19 @@ public class ClientResponseTimeGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected synchronized void doMatch (String matchName, Matcher m) {
+    protected synchronized void doMatch (String matchName, MatchResult m) {
         if (DEFAULT.equals (matchName)) {
             String ip = m.group (1);
             Long last = m_lastReport.get (ip);
             if (last == null || new Date ().getTime () - last > INTERVAL) {
                 String rtMicro = m.group (4);
-                Double rtms = Double.parseDouble (rtMicro) / 1000; // response time in ms
-                if (!m_historyMap.containsKey (ip)) {
-                    m_historyMap.put (ip, new LinkedList<Double> ());
-                    m_cumulationMap.put (ip, 0.0);
-                }
-                Queue<Double> history = m_historyMap.get (ip);
-                double cumulation = m_cumulationMap.get (ip);
-
-                // add value to cumulation and enquue
-                cumulation += rtms;
-                history.offer (rtms);
-                if (history.size () > AVG_SAMPLE_WINDOW) {
-                    // if queue size reached window size then dequeue and delete olderst value and report average
-                    cumulation -= history.poll ();
-                }
-                m_cumulationMap.put (ip, cumulation);
+                double rtms = Double.parseDouble (rtMicro) / 1000; // response time in ms
+                SlidingWindow history = m_windows.get (ip);
+                history.add (rtms);
                 String client = m_IP2ClientName.get (ip);
                 if (client != null) {
                     // update client with latency
-                    issueResponseTimeCommand (client, history, cumulation, false);
+                    issueResponseTimeCommand (client, history, false);
                 }
                 else {
                     // Client has not yet been registered with the model. Defer this to a component creation end
@@ -233,11 +230,11 @@ public class ClientResponseTimeGauge extends RegularPatternGauge {
         super.runAction ();
     }
 
-    void issueResponseTimeCommand (String client, Queue<Double> history, double cumulation, boolean enqueue) {
-        double avgRTms = cumulation / history.size ();
+    void issueResponseTimeCommand (String client, SlidingWindow history, boolean enqueue) {
+        double avgRTms = history.mean ();
 
         m_reportingPort.trace (getComponentType (),
-                MessageFormat.format ("{0}: {1}, hist{2}", id (), cumulation, Arrays.toString (history.toArray ())));
+                MessageFormat.format ("{0}: {1}, hist{2}", id (), history.sum (), history));
         IRainbowOperation command = getCommand (commandNames[0]);
         Map<String, String> pm = new HashMap<> ();
         pm.put (command.getTarget (), client);
@@ -33,7 +33,7 @@ import org.sa.rainbow.core.util.TypedAttribute;
 import org.sa.rainbow.core.util.TypedAttributeWithValue;
 
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 /**
@@ -79,10 +79,10 @@ public class CpuLoadGauge extends RegularPatternGauge {
     }
 
     /* (non-Javadoc)
-     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.Matcher)
+     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.MatchResult)
      */
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (matchName == DEFAULT) {
             // acquire the recent CPU load data
 //			String tstamp = m.group(1);
@@ -35,7 +35,7 @@ import org.sa.rainbow.core.util.TypedAttributeWithValue;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 /**
@@ -112,10 +112,10 @@ public class DiskIOGauge extends RegularPatternGauge {
 
 
     /* (non-Javadoc)
-     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.Matcher)
+     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.MatchResult)
      */
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (matchName == DEFAULT) {
             // acquire the recent disk IO data and add values to cumulation
             Date tstamp = null;
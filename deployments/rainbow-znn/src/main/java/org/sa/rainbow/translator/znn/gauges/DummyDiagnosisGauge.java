@@ -44,7 +44,7 @@ import org.sa.rainbow.core.util.TypedAttribute;
 import org.sa.rainbow.core.util.TypedAttributeWithValue;
 
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 public class DummyDiagnosisGauge extends RegularPatternGauge {
@@ -130,7 +130,7 @@ public class DummyDiagnosisGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (DEFAULT.equals (matchName)) {
             String LB = m.group (1);
             IRainbowOperation cmd = getCommand (valueNames[0]);
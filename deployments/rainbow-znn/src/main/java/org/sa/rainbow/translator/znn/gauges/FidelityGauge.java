@@ -29,7 +29,7 @@ package org.sa.rainbow.translator.znn.gauges;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 import org.sa.rainbow.core.error.RainbowException;
@@ -71,7 +71,7 @@ public class FidelityGauge extends RegularPatternGauge {
      * @see org.sa.rainbow.translator.gauges.AbstractGauge#initProperty(java.lang.String, java.lang.Object)
      */
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (matchName == DEFAULT) {
             // acquire the recent CPU load data
 //			String tstamp = m.group(1);
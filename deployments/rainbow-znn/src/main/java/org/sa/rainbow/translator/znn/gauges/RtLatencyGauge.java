@@ -34,7 +34,7 @@ import org.sa.rainbow.core.util.TypedAttributeWithValue;
 import org.sa.rainbow.translator.znn.probes.PingRTTProbe;
 
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 /**
@@ -82,10 +82,10 @@ public class RtLatencyGauge extends RegularPatternGauge {
 
 
     /* (non-Javadoc)
-     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.Matcher)
+     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.MatchResult)
      */
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (matchName == DEFAULT) {
             // acquire the next set of ping RTT data, we care for the average
 //			String tstamp = m.group(1);
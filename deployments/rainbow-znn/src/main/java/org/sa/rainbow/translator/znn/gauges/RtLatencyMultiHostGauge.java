@@ -28,13 +28,17 @@ package org.sa.rainbow.translator.znn.gauges;
 
 import org.sa.rainbow.core.error.RainbowException;
 import org.sa.rainbow.core.gauges.RegularPatternGauge;
+import org.sa.rainbow.core.gauges.stats.SlidingWindow;
+import org.sa.rainbow.core.gauges.stats.StatisticsMap;
 import org.sa.rainbow.core.models.commands.IRainbowOperation;
 import org.sa.rainbow.core.util.TypedAttribute;
 import org.sa.rainbow.core.util.TypedAttributeWithValue;
 import org.sa.rainbow.translator.znn.probes.PingRTTProbe;
 
-import java.util.*;
-import java.util.regex.Matcher;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 /**
@@ -59,8 +63,12 @@ public class RtLatencyMultiHostGauge extends RegularPatternGauge {
     };
     private static final String DEFAULT = "DEFAULT";
 
-    private Map<String,Queue<Double>> m_historyMap = null;
-    private Map<String,Double> m_cumulationMap = null;
+    private final StatisticsMap<SlidingWindow> m_windows = new StatisticsMap<SlidingWindow> () {
+        @Override
+        protected SlidingWindow create (String host) {
+            return new SlidingWindow (AVG_SAMPLE_WINDOW);
+        }
+    };
 
     /**
      * Main constructor.
@@ -74,17 +82,14 @@ public class RtLatencyMultiHostGauge extends RegularPatternGauge {
 
         super(NAME, id, beaconPeriod, gaugeDesc, modelDesc, setupParams, mappings);
 
-        m_historyMap = new HashMap<> ();
-        m_cumulationMap = new HashMap<> ();
-
         addPattern(DEFAULT, Pattern.compile("\\[(.+)\\]\\s+(.+?):([0-9.]+)[/]([0-9.]+)[/]([0-9.]+)"));
     }
 
     /* (non-Javadoc)
-     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.Matcher)
+     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.MatchResult)
      */
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (matchName == DEFAULT) {
             // acquire the next set of ping RTT data, we care for the average
 //			String tstamp = m.group(1);
@@ -96,25 +101,11 @@ public class RtLatencyMultiHostGauge extends RegularPatternGauge {
             double bwBPS = PING_SIZE /*B*/ * 1000 /*ms/s*/ / msAvg /*ms*/;
             double latency = LATENCY_DATA_SIZE / bwBPS;
 
-            // setup data struct for host if new
-            if (! m_historyMap.containsKey(host)) {
-                m_historyMap.put(host, new LinkedList<Double>());
-                m_cumulationMap.put(host, 0.0);
-            }
-            Queue<Double> history = m_historyMap.get(host);
-            double cumulation = m_cumulationMap.get(host);
-            // add value to cumulation and enqueue
-            cumulation += latency;
-            history.offer(latency);
-            if (history.size() > AVG_SAMPLE_WINDOW) {
-                // if queue size reached window size, then
-                //   dequeue and delete oldest value and report average
-                cumulation -= history.poll();
-            }
-            m_cumulationMap.put(host, cumulation);  // store updated cumulation
-            latency = cumulation / history.size();
-            m_reportingPort.trace (getComponentType (),
-                    id () + ": " + cumulation + ", hist" + Arrays.toString (history.toArray ()));
+            // report the average over the last AVG_SAMPLE_WINDOW values
+            SlidingWindow history = m_windows.get (host);
+            history.add (latency);
+            latency = history.mean ();
+            m_reportingPort.trace (getComponentType (), id () + ": " + history.sum () + ", hist" + history);
 
             // update connection in model with latency in seconds
             for (String valueName : valueNames) {
@@ -28,13 +28,17 @@ package org.sa.rainbow.translator.znn.gauges;
 
 import org.sa.rainbow.core.error.RainbowException;
 import org.sa.rainbow.core.gauges.RegularPatternGauge;
+import org.sa.rainbow.core.gauges.stats.SlidingWindow;
+import org.sa.rainbow.core.gauges.stats.StatisticsMap;
 import org.sa.rainbow.core.models.commands.IRainbowOperation;
 import org.sa.rainbow.core.util.TypedAttribute;
 import org.sa.rainbow.core.util.TypedAttributeWithValue;
 import org.sa.rainbow.translator.znn.probes.PingRTTProbe;
 
-import java.util.*;
-import java.util.regex.Matcher;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 /**
@@ -61,11 +65,20 @@ public class RtLatencyRateMultiHostGauge extends RegularPatternGauge {
     };
     private static final String DEFAULT = "DEFAULT";
 
-    private Map<String,Queue<Double>> m_historyMap = null;
-    private Map<String,Double> m_cumulationMap = null;
-    private Map<String,Double> m_offsetCumulationMap = null;
-    private Map<String,Queue<Double>> m_rateHistMap = null;
-    private Map<String,Double> m_rateCumuMap = null;
+    private final StatisticsMap<SlidingWindow> m_windows = new StatisticsMap<SlidingWindow> () {
+        @Override
+        protected SlidingWindow create (String host) {
+            return new SlidingWindow (AVG_SAMPLE_WINDOW);
+        }
+    };
+    /** The window sum before the previous value, one per host */
+    private final Map<String, Double> m_offsets = new HashMap<> ();
+    private final StatisticsMap<SlidingWindow> m_rateWindows = new StatisticsMap<SlidingWindow> () {
+        @Override
+        protected SlidingWindow create (String host) {
+            return new SlidingWindow (RATE_SAMPLE_WINDOW);
+        }
+    };
 
     /**
      * Main constructor.
@@ -79,20 +92,14 @@ public class RtLatencyRateMultiHostGauge extends RegularPatternGauge {
 
         super(NAME, id, beaconPeriod, gaugeDesc, modelDesc, setupParams, mappings);
 
-        m_historyMap = new HashMap<> ();
-        m_cumulationMap = new HashMap<> ();
-        m_offsetCumulationMap = new HashMap<> ();
-        m_rateHistMap = new HashMap<> ();
-        m_rateCumuMap = new HashMap<> ();
-
         addPattern(DEFAULT, Pattern.compile("\\[(.+)\\]\\s+(.+?):([0-9.]+)[/]([0-9.]+)[/]([0-9.]+)"));
     }
 
     /* (non-Javadoc)
-     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.Matcher)
+     * @see org.sa.rainbow.translator.gauges.RegularPatternGauge#doMatch(java.lang.String, java.util.regex.MatchResult)
      */
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (matchName == DEFAULT) {
             // acquire the next set of ping RTT data, we care for the average
 //			String tstamp = m.group(1);
@@ -104,43 +111,20 @@ public class RtLatencyRateMultiHostGauge extends RegularPatternGauge {
             double bwBPS = PING_SIZE /*B*/ * 1000 /*ms/s*/ / msAvg /*ms*/;
             double latency = LATENCY_DATA_SIZE / bwBPS;
 
-            // setup data struct for host if new
-            if (! m_historyMap.containsKey(host)) {
-                m_historyMap.put(host, new LinkedList<Double>());
-                m_cumulationMap.put(host, 0.0);
-                m_offsetCumulationMap.put(host, 0.0);
-                m_rateHistMap.put(host, new LinkedList<Double>());
-                m_rateCumuMap.put(host, 0.0);
-            }
-            Queue<Double> history = m_historyMap.get(host);
-            double cumulation = m_cumulationMap.get(host);
-            double offsetCumulation = m_offsetCumulationMap.get(host);
-            // add latency value to cumulation and enqueue
-            m_offsetCumulationMap.put(host, cumulation);  // store previous as offset
-            cumulation += latency;
-            history.offer(latency);
-            if (history.size() > AVG_SAMPLE_WINDOW) {
-                // if queue size reached window size, then
-                //   dequeue and delete oldest value and report average
-                cumulation -= history.poll();
-            }
-            m_cumulationMap.put(host, cumulation);  // store updated cumulation
+            // the rate of change is relative to the window sum before the previous value
+            SlidingWindow history = m_windows.get (host);
+            Double offset = m_offsets.get (host);
+            double offsetCumulation = offset == null ? 0 : offset;
+            m_offsets.put (host, history.sum ());  // store previous as offset
+            history.add (latency);
+            double cumulation = history.sum ();
             if (offsetCumulation == 0) return;  // most likely no history yet
 
-            double rateOfChange = (cumulation - offsetCumulation) / offsetCumulation;
-            Queue<Double> rateHist = m_rateHistMap.get(host);
-            double rateCumu = m_rateCumuMap.get(host);
-            rateCumu += rateOfChange;
-            rateHist.offer(rateOfChange);
-            if (rateHist.size() > RATE_SAMPLE_WINDOW) {
-                rateCumu -= rateHist.poll();
-            }
-            m_rateCumuMap.put(host, rateCumu);
-            rateOfChange = rateCumu / rateHist.size();
-            m_reportingPort.trace (getComponentType (),
-                    id () + ": " + cumulation + ", hist" + Arrays.toString (history.toArray ()));
-            m_reportingPort.trace (getComponentType (),
-                    id () + ": " + rateCumu + ", hist" + Arrays.toString (rateHist.toArray ()));
+            SlidingWindow rateHist = m_rateWindows.get (host);
+            rateHist.add ((cumulation - offsetCumulation) / offsetCumulation);
+            double rateOfChange = rateHist.mean ();
+            m_reportingPort.trace (getComponentType (), id () + ": " + cumulation + ", hist" + history);
+            m_reportingPort.trace (getComponentType (), id () + ": " + rateHist.sum () + ", hist" + rateHist);
 
             // update connection in model with latency in seconds
             for (String valueName : valueNames) {
@@ -37,7 +37,7 @@ import org.sa.rainbow.core.util.TypedAttributeWithValue;
 import org.sa.rainbow.model.acme.AcmeModelInstance;
 
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 /**
@@ -81,7 +81,7 @@ public class ServerEnablementGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (matchName == DEFAULT) {
             Set<String> enabled = new HashSet<> ();
             Set<String> disabled = new HashSet<> ();
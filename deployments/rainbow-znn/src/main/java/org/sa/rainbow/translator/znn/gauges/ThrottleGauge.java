@@ -32,7 +32,7 @@ import org.sa.rainbow.core.util.TypedAttributeWithValue;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 public class ThrottleGauge extends RegularPatternGauge {
@@ -55,7 +55,7 @@ public class ThrottleGauge extends RegularPatternGauge {
     }
 
     @Override
-    protected void doMatch (String matchName, Matcher m) {
+    protected void doMatch (String matchName, MatchResult m) {
         if (matchName == DEFAULT) {
 
             // Send the list of attackers
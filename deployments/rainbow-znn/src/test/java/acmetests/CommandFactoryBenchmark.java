@@ -0,0 +1,72 @@
+package acmetests;
+
+import java.lang.reflect.Constructor;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+import org.acmestudio.acme.element.IAcmeSystem;
+import org.acmestudio.standalone.resource.StandaloneResource;
+import org.acmestudio.standalone.resource.StandaloneResourceProvider;
+import org.sa.rainbow.model.acme.AcmeModelInstance;
+import org.sa.rainbow.model.acme.znn.ZNNModelUpdateOperatorsImpl;
+import org.sa.rainbow.model.acme.znn.commands.ZNNCommandFactory;
+
+/**
+ * Compares the cost of generating the commands that ZNN gauges send most often through the command factory, which
+ * looks the constructor up once, against searching for the constructor on every command as the factory used to. Not
+ * run as part of the tests; {@link CommandFactoryTest} checks the commands generated.
+ */
+public class CommandFactoryBenchmark {
+
+    private static final int WARMUP_ROUNDS = 20000;
+
+    private static double runFactory (ZNNCommandFactory factory, int rounds) throws Exception {
+        long start = System.nanoTime ();
+        for (int i = 0; i < rounds; i++) {
+            int c = i % CommandFactoryTest.NAMES.length;
+            factory.generateCommand (CommandFactoryTest.NAMES[c], CommandFactoryTest.TARGETS[c], "0.5");
+        }
+        return (System.nanoTime () - start) / (rounds * 1000.0);
+    }
+
+    private static double runSearch (AcmeModelInstance model, int rounds) throws Exception {
+        long start = System.nanoTime ();
+        for (int i = 0; i < rounds; i++) {
+            int c = i % CommandFactoryTest.NAMES.length;
+            Constructor<?> constructor = null;
+            for (Constructor<?> candidate : CommandFactoryTest.CLASSES[c].getConstructors ()) {
+                Class<?>[] parameterTypes = candidate.getParameterTypes ();
+                if (Arrays.equals (new Class<?>[] {AcmeModelInstance.class, String.class},
+                                   Arrays.copyOfRange (parameterTypes, 0, 2)) && parameterTypes.length == 3) {
+                    constructor = candidate;
+                    break;
+                }
+            }
+            constructor.newInstance (model, CommandFactoryTest.TARGETS[c], "0.5");
+        }
+        return (System.nanoTime () - start) / (rounds * 1000.0);
+    }
+
+    /**
+     * Times both ways of generating commands
+     *
+     * @param args
+     *            optional number of rounds (default 100000)
+     */
+    public static void main (String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt (args[0]) : 100000;
+        StandaloneResource resource = StandaloneResourceProvider.instance ().acmeResourceForString (
+                "src/test/resources/acme/znn.acme");
+        IAcmeSystem sys = resource.getModel ().getSystems ().iterator ().next ();
+        ZNNModelUpdateOperatorsImpl znn = new ZNNModelUpdateOperatorsImpl (sys, "src/test/resources/acme/znn.acme");
+        ZNNCommandFactory factory = znn.getCommandFactory ();
+
+        runSearch (znn, WARMUP_ROUNDS);
+        runFactory (factory, WARMUP_ROUNDS);
+        double searched = runSearch (znn, rounds);
+        double cached = runFactory (factory, rounds);
+        System.out.println (MessageFormat.format (
+                "Generating ZNN commands: {0,number,0.000} us searching for the constructor, {1,number,0.000} us "
+                        + "with the cached constructor", searched, cached));
+    }
+}
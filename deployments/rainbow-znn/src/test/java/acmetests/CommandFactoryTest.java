@@ -0,0 +1,47 @@
+package acmetests;
+
+import java.util.Arrays;
+
+import org.acmestudio.acme.element.IAcmeSystem;
+import org.acmestudio.standalone.resource.StandaloneResource;
+import org.acmestudio.standalone.resource.StandaloneResourceProvider;
+import org.junit.Test;
+import org.sa.rainbow.core.models.commands.IRainbowModelOperation;
+import org.sa.rainbow.model.acme.znn.ZNNModelUpdateOperatorsImpl;
+import org.sa.rainbow.model.acme.znn.commands.SetLatencyCmd;
+import org.sa.rainbow.model.acme.znn.commands.SetLoadCmd;
+import org.sa.rainbow.model.acme.znn.commands.SetResponseTimeCmd;
+import org.sa.rainbow.model.acme.znn.commands.ZNNCommandFactory;
+
+import auxtestlib.DefaultTCase;
+
+/**
+ * Checks that the command factory, which caches the constructor of each command, generates the commands that ZNN
+ * gauges send most often, however many times they are generated.
+ */
+public class CommandFactoryTest extends DefaultTCase {
+
+    static final String[]   NAMES   = {"setLoad", "setResponseTime", "setLatency"};
+    static final Class<?>[] CLASSES = {SetLoadCmd.class, SetResponseTimeCmd.class, SetLatencyCmd.class};
+    static final String[]   TARGETS = {"ZNewsSys.s0", "ZNewsSys.c0", "ZNewsSys.proxyconn"};
+
+    @Test
+    public void generatesCommandsWithCachedConstructors () throws Exception {
+        StandaloneResource resource = StandaloneResourceProvider.instance ().acmeResourceForString (
+                "src/test/resources/acme/znn.acme");
+        IAcmeSystem sys = resource.getModel ().getSystems ().iterator ().next ();
+        ZNNModelUpdateOperatorsImpl znn = new ZNNModelUpdateOperatorsImpl (sys, "src/test/resources/acme/znn.acme");
+        ZNNCommandFactory factory = znn.getCommandFactory ();
+
+        // The second round uses the constructors cached by the first
+        for (int round = 0; round < 2; round++) {
+            for (int c = 0; c < NAMES.length; c++) {
+                String value = Integer.toString (round * NAMES.length + c);
+                IRainbowModelOperation<?, ?> cmd = factory.generateCommand (NAMES[c], TARGETS[c], value);
+                assertEquals (CLASSES[c], cmd.getClass ());
+                assertEquals (TARGETS[c], cmd.getTarget ());
+                assertEquals (Arrays.asList (value), Arrays.asList (cmd.getParameters ()));
+            }
+        }
+    }
+}
@@ -24,7 +24,9 @@
 package edu.cmu.rainbow_ui.ingestion;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import org.sa.rainbow.core.ports.eseb.AbstractESEBDisposablePort;
 import org.sa.rainbow.core.ports.eseb.ESEBConnector;
@@ -60,8 +62,15 @@ class ESEBRainbowSubscriberPort extends AbstractESEBDisposablePort {
         getConnectionRole().addListener(new ESEBConnector.IESEBListener() {
             @Override
             public void receive(RainbowESEBMessage msg) {
-                for (IRainbowListenerCallback callback : callbacks) {
-                    callback.onEvent(msg);
+                // A batch carries several events; pass them on one at a time, in order
+                List<RainbowESEBMessage> batched = msg.getBatchedMessages();
+                if (batched == null) {
+                    batched = Collections.singletonList(msg);
+                }
+                for (RainbowESEBMessage event : batched) {
+                    for (IRainbowListenerCallback callback : callbacks) {
+                        callback.onEvent(event);
+                    }
                 }
             }
         });
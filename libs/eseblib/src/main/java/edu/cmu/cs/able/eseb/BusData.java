@@ -1,8 +1,15 @@
 package edu.cmu.cs.able.eseb;
 
+import incubator.pval.Ensure;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 import org.apache.commons.lang.ArrayUtils;
 
-import incubator.pval.Ensure;
+import edu.cmu.cs.able.typelib.enc.DataValueEncoding;
 import edu.cmu.cs.able.typelib.type.DataValue;
 
 /**
@@ -14,32 +21,86 @@ import edu.cmu.cs.able.typelib.type.DataValue;
  * representation could not be decoded successfully. In the case the
  * representation failed to be decoded, an exception describing the failure
  * is provided.
+ * <p>The byte encoding, once known, is never modified. A datum may therefore
+ * be written to several connections sharing the same encoding bytes: it is
+ * encoded at most once, by {@link #encode(DataValueEncoding)}.</p>
+ * <p>A datum may also have a topic. The topic is sent in the frame header,
+ * ahead of the encoding, so that the event bus can route data to the
+ * connections that subscribed to the topic without looking at the data
+ * value.</p>
+ * <p>A datum may also have a correlation ID, also sent in the frame header,
+ * that allows receivers to match replies with their requests without
+ * decoding the data value.</p>
  */
 public class BusData {
+	/**
+	 * Correlation ID of data that has no correlation ID.
+	 */
+	public static final long NO_CORRELATION_ID = 0;
+	
 	/**
 	 * The data value.
 	 */
 	private DataValue m_value;
 	
 	/**
-	 * The encoding.
+	 * The encoding. Set at most once, possibly lazily by
+	 * {@link #encode(DataValueEncoding)}.
 	 */
-	private byte[] m_encoding;
+	private volatile byte[] m_encoding;
 	
 	/**
 	 * Failure to decode the data.
 	 */
 	private Exception m_decoding_failure;
 	
+	/**
+	 * The topic, <code>null</code> if none.
+	 */
+	private String m_topic;
+	
+	/**
+	 * The UTF-8 encoding of the topic, <code>null</code> if there is no
+	 * topic.
+	 */
+	private byte[] m_topic_encoding;
+	
+	/**
+	 * The correlation ID, {@link #NO_CORRELATION_ID} if none.
+	 */
+	private long m_correlation_id;
+	
 	/**
 	 * Creates a new datum.
 	 * @param value the value
 	 */
 	public BusData(DataValue value) {
+		this(value, (String) null);
+	}
+	
+	/**
+	 * Creates a new datum with a topic.
+	 * @param value the value
+	 * @param topic the topic, <code>null</code> if none
+	 */
+	public BusData(DataValue value, String topic) {
+		this(value, topic, NO_CORRELATION_ID);
+	}
+	
+	/**
+	 * Creates a new datum with a topic and a correlation ID.
+	 * @param value the value
+	 * @param topic the topic, <code>null</code> if none
+	 * @param correlation_id the correlation ID, {@link #NO_CORRELATION_ID}
+	 * if none
+	 */
+	public BusData(DataValue value, String topic, long correlation_id) {
 		Ensure.not_null(value);
 		m_value = value;
 		m_encoding = null;
 		m_decoding_failure = null;
+		set_topic(topic);
+		m_correlation_id = correlation_id;
 	}
 	
 	/**
@@ -49,12 +110,66 @@ public class BusData {
 	 * @param size the number of bytes of <em>encoding</em> to consider
 	 */
 	public BusData(DataValue value, byte[] encoding, int size) {
+		this(value, encoding, size, null);
+	}
+	
+	/**
+	 * Creates a new bus datum with an associated encoding and a topic.
+	 * @param value the value
+	 * @param encoding the encoding
+	 * @param size the number of bytes of <em>encoding</em> to consider
+	 * @param topic the topic, <code>null</code> if none
+	 */
+	public BusData(DataValue value, byte[] encoding, int size, String topic) {
 		Ensure.not_null(value);
 		Ensure.not_null(encoding);
 		Ensure.greater_equal(size, 0);
 		m_value = value;
 		m_encoding = ArrayUtils.subarray(encoding, 0, size);
 		m_decoding_failure = null;
+		set_topic(topic);
+	}
+	
+	/**
+	 * Creates a new bus datum that takes ownership of an encoding. The
+	 * array is not copied and must not be modified afterwards.
+	 * @param value the value
+	 * @param encoding the encoding
+	 */
+	public BusData(DataValue value, byte[] encoding) {
+		this(value, encoding, (String) null);
+	}
+	
+	/**
+	 * Creates a new bus datum with a topic that takes ownership of an
+	 * encoding. The array is not copied and must not be modified afterwards.
+	 * @param value the value
+	 * @param encoding the encoding
+	 * @param topic the topic, <code>null</code> if none
+	 */
+	public BusData(DataValue value, byte[] encoding, String topic) {
+		this(value, encoding, topic, NO_CORRELATION_ID);
+	}
+	
+	/**
+	 * Creates a new bus datum with a topic and a correlation ID that takes
+	 * ownership of an encoding. The array is not copied and must not be
+	 * modified afterwards.
+	 * @param value the value
+	 * @param encoding the encoding
+	 * @param topic the topic, <code>null</code> if none
+	 * @param correlation_id the correlation ID, {@link #NO_CORRELATION_ID}
+	 * if none
+	 */
+	public BusData(DataValue value, byte[] encoding, String topic,
+			long correlation_id) {
+		Ensure.not_null(value);
+		Ensure.not_null(encoding);
+		m_value = value;
+		m_encoding = encoding;
+		m_decoding_failure = null;
+		set_topic(topic);
+		m_correlation_id = correlation_id;
 	}
 	
 	/**
@@ -65,12 +180,70 @@ public class BusData {
 	 * @param decoding_failure why has decoding failed
 	 */
 	public BusData(byte[] encoding, int size, Exception decoding_failure) {
+		this(encoding, size, decoding_failure, null);
+	}
+	
+	/**
+	 * Creates a new datum with a topic and a byte representation which could
+	 * not be decoded.
+	 * @param encoding the byte representation
+	 * @param size the number of bytes of <em>encoding</em> to consider
+	 * @param decoding_failure why has decoding failed
+	 * @param topic the topic, <code>null</code> if none
+	 */
+	public BusData(byte[] encoding, int size, Exception decoding_failure,
+			String topic) {
+		this(encoding, size, decoding_failure, topic, NO_CORRELATION_ID);
+	}
+	
+	/**
+	 * Creates a new datum with a topic, a correlation ID and a byte
+	 * representation which could not be decoded.
+	 * @param encoding the byte representation
+	 * @param size the number of bytes of <em>encoding</em> to consider
+	 * @param decoding_failure why has decoding failed
+	 * @param topic the topic, <code>null</code> if none
+	 * @param correlation_id the correlation ID, {@link #NO_CORRELATION_ID}
+	 * if none
+	 */
+	public BusData(byte[] encoding, int size, Exception decoding_failure,
+			String topic, long correlation_id) {
 		Ensure.not_null(encoding);
 		Ensure.greater_equal(size, 0);
 		Ensure.not_null(decoding_failure);
 		m_value = null;
 		m_encoding = ArrayUtils.subarray(encoding, 0, size);
 		m_decoding_failure = decoding_failure;
+		set_topic(topic);
+		m_correlation_id = correlation_id;
+	}
+	
+	/**
+	 * Creates a datum with the value, encoding and decoding failure of
+	 * another one, but without a topic or correlation ID.
+	 * @param other the datum to copy
+	 */
+	private BusData(BusData other) {
+		m_value = other.m_value;
+		m_encoding = other.m_encoding;
+		m_decoding_failure = other.m_decoding_failure;
+		set_topic(null);
+		m_correlation_id = NO_CORRELATION_ID;
+	}
+	
+	/**
+	 * Sets the topic of the datum.
+	 * @param topic the topic, <code>null</code> if none
+	 */
+	private void set_topic(String topic) {
+		m_topic = topic;
+		if (topic == null) {
+			m_topic_encoding = null;
+		} else {
+			m_topic_encoding = topic.getBytes(StandardCharsets.UTF_8);
+			Ensure.less_equal(m_topic_encoding.length,
+					BusDataFrame.MAXIMUM_TOPIC_LENGTH, "Topic is too long");
+		}
 	}
 
 	/**
@@ -89,6 +262,77 @@ public class BusData {
 		return m_encoding;
 	}
 	
+	/**
+	 * Obtains the encoding of this datum, encoding the value if it has not
+	 * been encoded yet. The encoding is kept in the datum so later calls,
+	 * possibly from other threads, reuse the same bytes.
+	 * @param enc the encoding to use if the datum has not been encoded yet
+	 * @return the encoding, which must not be modified
+	 * @throws IOException failed to encode the value
+	 */
+	public byte[] encode(DataValueEncoding enc) throws IOException {
+		Ensure.not_null(enc, "enc == null");
+		
+		byte[] bytes = m_encoding;
+		if (bytes != null) {
+			return bytes;
+		}
+		
+		synchronized (this) {
+			if (m_encoding == null) {
+				ByteArrayOutputStream bytes_out = new ByteArrayOutputStream();
+				try (DataOutputStream data_out =
+						new DataOutputStream(bytes_out)) {
+					enc.encode(m_value, data_out);
+				}
+				
+				m_encoding = bytes_out.toByteArray();
+			}
+			
+			return m_encoding;
+		}
+	}
+	
+	/**
+	 * Obtains the topic of this datum.
+	 * @return the topic, <code>null</code> if none
+	 */
+	public String topic() {
+		return m_topic;
+	}
+	
+	/**
+	 * Obtains the correlation ID of this datum.
+	 * @return the correlation ID, {@link #NO_CORRELATION_ID} if none
+	 */
+	public long correlation_id() {
+		return m_correlation_id;
+	}
+	
+	/**
+	 * Obtains this datum as it may be sent to a peer that does not read
+	 * frame headers: with the same value and encoding but without a topic
+	 * or a correlation ID.
+	 * @return this datum if it has neither a topic nor a correlation ID,
+	 * a copy without them otherwise
+	 */
+	public BusData without_header() {
+		if (m_topic == null && m_correlation_id == NO_CORRELATION_ID) {
+			return this;
+		}
+		
+		return new BusData(this);
+	}
+	
+	/**
+	 * Obtains the UTF-8 encoding of the topic.
+	 * @return the encoding, <code>null</code> if there is no topic; must not
+	 * be modified
+	 */
+	byte[] topic_encoding() {
+		return m_topic_encoding;
+	}
+	
 	/**
 	 * Obtains the reason decoding has failed.
 	 * @return the exception or <code>null</code> if decoding hasn't failed;
@@ -0,0 +1,240 @@
+package edu.cmu.cs.able.eseb;
+
+import incubator.pval.Ensure;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Describes how bus data is framed on the wire. A frame starts with a
+ * 4-byte size field. If neither the {@link #TOPIC_FLAG} nor the
+ * {@link #CORRELATION_FLAG} bits of the size field are set, the field holds
+ * the size of the encoded value that follows it.</p>
+ * <p>Otherwise, the remaining bits of the field hold the size of the rest of
+ * the frame, which starts with an optional header: the 8-byte correlation
+ * ID, if {@link #CORRELATION_FLAG} is set, followed by the topic, if
+ * {@link #TOPIC_FLAG} is set, as a 2-byte length and the UTF-8 bytes of the
+ * topic. The encoded value takes the remaining bytes. The header can be read
+ * without decoding the value.</p>
+ */
+public final class BusDataFrame {
+	/**
+	 * Bit set in the size field of frames that carry a topic. Frames are
+	 * never this large so the bit is never part of the size.
+	 */
+	public static final int TOPIC_FLAG = 0x40000000;
+
+	/**
+	 * Bit set in the size field of frames that carry a correlation ID.
+	 */
+	public static final int CORRELATION_FLAG = 0x20000000;
+
+	/**
+	 * Maximum size, in bytes, of the encoding of a topic.
+	 */
+	public static final int MAXIMUM_TOPIC_LENGTH = 0xffff;
+
+	/**
+	 * Size of the size field.
+	 */
+	public static final int SIZE_FIELD_LENGTH = 4;
+
+	/**
+	 * Size of the correlation ID.
+	 */
+	public static final int CORRELATION_ID_LENGTH = 8;
+
+	/**
+	 * Size of the topic length field.
+	 */
+	public static final int TOPIC_LENGTH_FIELD_LENGTH = 2;
+
+	/**
+	 * Utility class: no constructor.
+	 */
+	private BusDataFrame() {
+	}
+
+	/**
+	 * Builds the header of the frame for a bus datum, including the size
+	 * field and, if the datum has them, the correlation ID and the topic.
+	 * @param bd the datum
+	 * @param encoding_length the size of the encoding of the datum
+	 * @return the header
+	 */
+	public static byte[] header(BusData bd, int encoding_length) {
+		Ensure.not_null(bd, "bd == null");
+		Ensure.greater_equal(encoding_length, 0);
+
+		byte[] topic = bd.topic_encoding();
+		long correlation_id = bd.correlation_id();
+		if (topic == null && correlation_id == BusData.NO_CORRELATION_ID) {
+			byte[] header = new byte[SIZE_FIELD_LENGTH];
+			put(header, 0, encoding_length, SIZE_FIELD_LENGTH);
+			return header;
+		}
+
+		int flags = 0;
+		int header_length = SIZE_FIELD_LENGTH;
+		if (correlation_id != BusData.NO_CORRELATION_ID) {
+			flags |= CORRELATION_FLAG;
+			header_length += CORRELATION_ID_LENGTH;
+		}
+
+		if (topic != null) {
+			flags |= TOPIC_FLAG;
+			header_length += TOPIC_LENGTH_FIELD_LENGTH + topic.length;
+		}
+
+		byte[] header = new byte[header_length];
+		put(header, 0, (header_length - SIZE_FIELD_LENGTH + encoding_length)
+				| flags, SIZE_FIELD_LENGTH);
+		int pos = SIZE_FIELD_LENGTH;
+		if (correlation_id != BusData.NO_CORRELATION_ID) {
+			put(header, pos, correlation_id, CORRELATION_ID_LENGTH);
+			pos += CORRELATION_ID_LENGTH;
+		}
+
+		if (topic != null) {
+			put(header, pos, topic.length, TOPIC_LENGTH_FIELD_LENGTH);
+			pos += TOPIC_LENGTH_FIELD_LENGTH;
+			System.arraycopy(topic, 0, header, pos, topic.length);
+		}
+
+		return header;
+	}
+
+	/**
+	 * Writes a big-endian number into an array.
+	 * @param data the array
+	 * @param pos where to write
+	 * @param v the number
+	 * @param length the number of bytes to write
+	 */
+	private static void put(byte[] data, int pos, long v, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			data[pos + i] = (byte) v;
+			v >>>= 8;
+		}
+	}
+
+	/**
+	 * Checks whether a size field announces a frame with a topic.
+	 * @param field the size field
+	 * @return does the frame have a topic?
+	 */
+	public static boolean has_topic(int field) {
+		return (field & TOPIC_FLAG) != 0;
+	}
+
+	/**
+	 * Checks whether a size field announces a frame with a correlation ID.
+	 * @param field the size field
+	 * @return does the frame have a correlation ID?
+	 */
+	public static boolean has_correlation_id(int field) {
+		return (field & CORRELATION_FLAG) != 0;
+	}
+
+	/**
+	 * Obtains the size of the rest of the frame from a size field.
+	 * @param field the size field
+	 * @return the number of bytes that follow the size field
+	 */
+	public static int size(int field) {
+		return field & ~(TOPIC_FLAG | CORRELATION_FLAG);
+	}
+
+	/**
+	 * Obtains the position of the encoded value in the rest of a frame.
+	 * @param field the frame's size field
+	 * @param data the data read after the size field
+	 * @param length the number of valid bytes in <code>data</code>
+	 * @return the offset of the encoded value in <code>data</code>
+	 * @throws IOException the header does not fit in the frame
+	 */
+	public static int encoding_offset(int field, byte[] data, int length)
+			throws IOException {
+		Ensure.not_null(data, "data == null");
+		int offset = topic_offset(field, length);
+		if (has_topic(field)) {
+			if (offset + TOPIC_LENGTH_FIELD_LENGTH > length) {
+				throw new IOException("Frame too short for a topic.");
+			}
+
+			int topic_length = ((data[offset] & 0xff) << 8)
+					| (data[offset + 1] & 0xff);
+			offset += TOPIC_LENGTH_FIELD_LENGTH + topic_length;
+			if (offset > length) {
+				throw new IOException("Topic length " + topic_length
+						+ " exceeds frame size.");
+			}
+		}
+
+		return offset;
+	}
+
+	/**
+	 * Obtains the position of the topic in the rest of a frame.
+	 * @param field the frame's size field
+	 * @param length the number of bytes in the rest of the frame
+	 * @return the offset of the topic length field
+	 * @throws IOException the correlation ID does not fit in the frame
+	 */
+	private static int topic_offset(int field, int length)
+			throws IOException {
+		if (!has_correlation_id(field)) {
+			return 0;
+		}
+
+		if (CORRELATION_ID_LENGTH > length) {
+			throw new IOException("Frame too short for a correlation ID.");
+		}
+
+		return CORRELATION_ID_LENGTH;
+	}
+
+	/**
+	 * Reads the topic in the rest of a frame.
+	 * @param field the frame's size field
+	 * @param data the data read after the size field
+	 * @param length the number of valid bytes in <code>data</code>
+	 * @return the topic, <code>null</code> if the frame has none
+	 * @throws IOException the header does not fit in the frame
+	 */
+	public static String read_topic(int field, byte[] data, int length)
+			throws IOException {
+		if (!has_topic(field)) {
+			return null;
+		}
+
+		int start = topic_offset(field, length) + TOPIC_LENGTH_FIELD_LENGTH;
+		int end = encoding_offset(field, data, length);
+		return new String(data, start, end - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads the correlation ID in the rest of a frame.
+	 * @param field the frame's size field
+	 * @param data the data read after the size field
+	 * @param length the number of valid bytes in <code>data</code>
+	 * @return the correlation ID, {@link BusData#NO_CORRELATION_ID} if the
+	 * frame has none
+	 * @throws IOException the correlation ID does not fit in the frame
+	 */
+	public static long read_correlation_id(int field, byte[] data,
+			int length) throws IOException {
+		Ensure.not_null(data, "data == null");
+		if (!has_correlation_id(field)) {
+			return BusData.NO_CORRELATION_ID;
+		}
+
+		topic_offset(field, length);
+		long id = 0;
+		for (int i = 0; i < CORRELATION_ID_LENGTH; i++) {
+			id = (id << 8) | (data[i] & 0xff);
+		}
+
+		return id;
+	}
+}
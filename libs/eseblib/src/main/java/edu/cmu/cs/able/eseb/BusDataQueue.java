@@ -5,26 +5,94 @@ import incubator.dispatch.DispatcherOp;
 import incubator.dispatch.LocalDispatcher;
 import incubator.pval.Ensure;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.PrintStream;
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Queue used to receive data from the event bus. This queue guarantees that
  * received data is ordered. The queue can notify listener when it receives
  * new data.
+ * <p>
+ * Queues are either unbounded or bounded. A bounded queue is a lock-free ring
+ * with a fixed capacity that does not allocate when data is added; when it is
+ * full the {@link BusDataQueueOverflowPolicy} decides what happens to new
+ * data.
+ * <p>
+ * Listeners are not notified once per added element: several additions that
+ * happen before the listeners run are coalesced into a single
+ * {@link BusDataQueueListener#data_added_to_queue()} notification. Listeners
+ * must therefore poll the queue until it is empty.
  */
 public class BusDataQueue {
     /**
-     * The queue implementation.
+     * How long, in milliseconds, a thread blocked on a full queue waits
+     * before checking the queue again.
+     */
+    private static final long BLOCK_WAIT_MS = 10;
+
+    /**
+     * The queue implementation if the queue is unbounded, <code>null</code>
+     * if the queue is bounded.
      */
     private Queue<BusData> m_queue;
 
-    int count = 0;
-    static final int MOD = 1000;
-    String creationStack;
+    /**
+     * The ring implementation if the queue is bounded, <code>null</code> if
+     * the queue is unbounded.
+     */
+    private Ring m_ring;
+
+    /**
+     * What to do when the queue is full; <code>null</code> if the queue is
+     * unbounded.
+     */
+    private BusDataQueueOverflowPolicy m_policy;
+
+    /**
+     * Number of elements in the queue.
+     */
+    private AtomicInteger m_size;
+
+    /**
+     * Largest number of elements ever in the queue.
+     */
+    private AtomicInteger m_high_water_mark;
+
+    /**
+     * Number of elements added to the queue.
+     */
+    private AtomicLong m_added_count;
+
+    /**
+     * Number of elements discarded from the queue to make room for new ones.
+     */
+    private AtomicLong m_dropped_count;
+
+    /**
+     * Number of elements that were not added because the queue was full.
+     */
+    private AtomicLong m_rejected_count;
+
+    /**
+     * Number of threads waiting for room in the queue.
+     */
+    private AtomicInteger m_waiting;
+
+    /**
+     * Is there a notification scheduled which listeners have not yet
+     * started processing?
+     */
+    private AtomicBoolean m_signal_pending;
+
+    /**
+     * The (only) operation used to notify listeners.
+     */
+    private DispatcherOp<BusDataQueueListener> m_signal_op;
 
     /**
      * Dispatcher that notifies listeners.
@@ -32,46 +100,153 @@ public class BusDataQueue {
     private LocalDispatcher<BusDataQueueListener> m_dispatcher;
 
     /**
-     * Creates a new queue.
+     * Creates a new unbounded queue.
      */
     public BusDataQueue () {
-        m_queue = new LinkedList<> ();
-        m_dispatcher = new LocalDispatcher<> ();
-        try {
-            throw new Exception ();
-        } catch (Exception e) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream ();
-            e.printStackTrace (new PrintStream (baos));
-            try {
-                baos.flush ();
-                baos.close ();
-            } catch (IOException e1) {
-            }
-            creationStack = baos.toString ();
+        this (null, null);
+    }
+
+    /**
+     * Creates a new bounded queue.
+     *
+     * @param capacity the maximum number of elements in the queue
+     * @param policy what to do when data is added to a full queue
+     */
+    public BusDataQueue (int capacity, BusDataQueueOverflowPolicy policy) {
+        this (new Ring (capacity), policy);
+        Ensure.not_null (policy, "policy == null");
+    }
+
+    /**
+     * Creates a new queue.
+     *
+     * @param ring the ring to use, <code>null</code> for an unbounded queue
+     * @param policy the overflow policy, <code>null</code> for an unbounded
+     * queue
+     */
+    private BusDataQueue (Ring ring, BusDataQueueOverflowPolicy policy) {
+        if (ring == null) {
+            m_queue = new ConcurrentLinkedQueue<> ();
         }
+
+        m_ring = ring;
+        m_policy = policy;
+        m_size = new AtomicInteger ();
+        m_high_water_mark = new AtomicInteger ();
+        m_added_count = new AtomicLong ();
+        m_dropped_count = new AtomicLong ();
+        m_rejected_count = new AtomicLong ();
+        m_waiting = new AtomicInteger ();
+        m_signal_pending = new AtomicBoolean ();
+        m_signal_op = new DispatcherOp<BusDataQueueListener> () {
+            @Override
+            public void dispatch (BusDataQueueListener l) {
+                m_signal_pending.set (false);
+                l.data_added_to_queue ();
+            }
+        };
+
+        m_dispatcher = new LocalDispatcher<BusDataQueueListener> () {
+            @Override
+            public synchronized void add (BusDataQueueListener listener) {
+                super.add (listener);
+
+                /*
+                 * Signals raised while there were no listeners were lost by
+                 * the dispatcher.
+                 */
+                m_signal_pending.set (false);
+                if (size () > 0) {
+                    signal ();
+                }
+            }
+        };
     }
 
     /**
-     * Adds data to the queue and notifies listeners.
+     * Adds data to the queue and notifies listeners. If the queue is bounded
+     * and full, the queue's overflow policy is applied.
      *
      * @param v the data to add
+     * @return was the data added? Data is not added if the queue is full and
+     * the policy is {@link BusDataQueueOverflowPolicy#REJECT} or if the
+     * thread is interrupted while waiting for room in the queue
      */
-    public synchronized void add (BusData v) {
+    public boolean add (BusData v) {
         Ensure.not_null (v);
-        m_queue.add (v);
-        count = (count + 1) % MOD;
-        if (count == 0) {
-            System.out.println ("-------------------> Size of data queue after 1000 adds is " + m_queue.size ());
-            if (m_queue.size () > 900) {
-                System.out.println ("This Queue was created with the following stack:\n" + creationStack);
+
+        if (m_ring == null) {
+            m_queue.add (v);
+        } else if (!m_ring.offer (v)) {
+            switch (m_policy) {
+            case DROP_OLDEST:
+                do {
+                    if (m_ring.poll () != null) {
+                        m_size.decrementAndGet ();
+                        m_dropped_count.incrementAndGet ();
+                    }
+                } while (!m_ring.offer (v));
+                break;
+            case BLOCK:
+                if (!wait_and_offer (v)) {
+                    m_rejected_count.incrementAndGet ();
+                    return false;
+                }
+                break;
+            default:
+                m_rejected_count.incrementAndGet ();
+                return false;
             }
         }
-        m_dispatcher.dispatch (new DispatcherOp<BusDataQueueListener> () {
-            @Override
-            public void dispatch (BusDataQueueListener l) {
-                l.data_added_to_queue ();
+
+        m_added_count.incrementAndGet ();
+        int size = m_size.incrementAndGet ();
+        int hwm;
+        while (size > (hwm = m_high_water_mark.get ())) {
+            if (m_high_water_mark.compareAndSet (hwm, size)) {
+                break;
             }
-        });
+        }
+
+        if (m_signal_pending.compareAndSet (false, true)) {
+            signal ();
+        }
+
+        return true;
+    }
+
+    /**
+     * Waits until there is room in the ring and adds data to it.
+     *
+     * @param v the data to add
+     * @return was the data added? <code>false</code> if the thread was
+     * interrupted
+     */
+    private boolean wait_and_offer (BusData v) {
+        m_waiting.incrementAndGet ();
+        try {
+            synchronized (m_waiting) {
+                while (!m_ring.offer (v)) {
+                    try {
+                        m_waiting.wait (BLOCK_WAIT_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread ().interrupt ();
+                        return false;
+                    }
+                }
+            }
+        } finally {
+            m_waiting.decrementAndGet ();
+        }
+
+        return true;
+    }
+
+    /**
+     * Notifies listeners that data has been added.
+     */
+    private void signal () {
+        m_dispatcher.dispatch (m_signal_op);
     }
 
     /**
@@ -88,7 +263,208 @@ public class BusDataQueue {
      *
      * @return the first element or <code>null</code> if the queue is empty
      */
-    public synchronized BusData poll () {
-        return m_queue.poll ();
+    public BusData poll () {
+        BusData v;
+        if (m_ring == null) {
+            v = m_queue.poll ();
+        } else {
+            v = m_ring.poll ();
+        }
+
+        if (v != null) {
+            m_size.decrementAndGet ();
+            if (m_waiting.get () > 0) {
+                synchronized (m_waiting) {
+                    m_waiting.notifyAll ();
+                }
+            }
+        }
+
+        return v;
+    }
+
+    /**
+     * Obtains the queue's capacity.
+     *
+     * @return the capacity or <code>-1</code> if the queue is unbounded
+     */
+    public int capacity () {
+        if (m_ring == null) {
+            return -1;
+        }
+
+        return m_ring.capacity ();
+    }
+
+    /**
+     * Obtains the queue's overflow policy.
+     *
+     * @return the policy or <code>null</code> if the queue is unbounded
+     */
+    public BusDataQueueOverflowPolicy overflow_policy () {
+        return m_policy;
+    }
+
+    /**
+     * Obtains the number of elements in the queue. Since the queue may be
+     * concurrently modified, the result is only an estimate.
+     *
+     * @return the number of elements
+     */
+    public int size () {
+        return Math.max (0, m_size.get ());
+    }
+
+    /**
+     * Obtains the largest number of elements that has ever been in the
+     * queue.
+     *
+     * @return the high-water mark
+     */
+    public int high_water_mark () {
+        return m_high_water_mark.get ();
+    }
+
+    /**
+     * Obtains the number of elements that have been added to the queue.
+     *
+     * @return the number of elements
+     */
+    public long added_count () {
+        return m_added_count.get ();
+    }
+
+    /**
+     * Obtains the number of elements that were discarded from the queue to
+     * make room for newer ones.
+     *
+     * @return the number of elements
+     */
+    public long dropped_count () {
+        return m_dropped_count.get ();
+    }
+
+    /**
+     * Obtains the number of elements that were not added to the queue
+     * because it was full.
+     *
+     * @return the number of elements
+     */
+    public long rejected_count () {
+        return m_rejected_count.get ();
+    }
+
+    /**
+     * Bounded multi-producer, multi-consumer ring. Each slot has a sequence
+     * number that tells producers and consumers whether the slot is free or
+     * full for their position, so that neither needs a lock. Sequence
+     * numbers cannot tell a full slot from a free one with a single slot, so
+     * a ring with capacity 1 uses two slots and checks its size on offer.
+     */
+    private static class Ring {
+        /**
+         * Maximum number of elements in the ring.
+         */
+        private int m_capacity;
+
+        /**
+         * The slots.
+         */
+        private AtomicReferenceArray<BusData> m_slots;
+
+        /**
+         * The sequence number of each slot.
+         */
+        private AtomicLongArray m_sequences;
+
+        /**
+         * Position of the next slot to write.
+         */
+        private AtomicLong m_tail;
+
+        /**
+         * Position of the next slot to read.
+         */
+        private AtomicLong m_head;
+
+        /**
+         * Creates a new ring.
+         *
+         * @param capacity the number of slots
+         */
+        Ring (int capacity) {
+            Ensure.greater (capacity, 0, "capacity <= 0");
+            m_capacity = capacity;
+            int slots = Math.max (capacity, 2);
+            m_slots = new AtomicReferenceArray<> (slots);
+            m_sequences = new AtomicLongArray (slots);
+            for (int i = 0; i < slots; i++) {
+                m_sequences.set (i, i);
+            }
+
+            m_tail = new AtomicLong ();
+            m_head = new AtomicLong ();
+        }
+
+        /**
+         * Obtains the number of slots.
+         *
+         * @return the number of slots
+         */
+        int capacity () {
+            return m_capacity;
+        }
+
+        /**
+         * Adds data to the ring.
+         *
+         * @param v the data
+         * @return was the data added? <code>false</code> if the ring is full
+         */
+        boolean offer (BusData v) {
+            int capacity = m_slots.length ();
+            while (true) {
+                long pos = m_tail.get ();
+                int idx = (int) (pos % capacity);
+                long diff = m_sequences.get (idx) - pos;
+                if (diff == 0) {
+                    if (pos - m_head.get () >= m_capacity) {
+                        return false;
+                    }
+
+                    if (m_tail.compareAndSet (pos, pos + 1)) {
+                        m_slots.set (idx, v);
+                        m_sequences.set (idx, pos + 1);
+                        return true;
+                    }
+                } else if (diff < 0) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Removes the first element from the ring.
+         *
+         * @return the element or <code>null</code> if the ring is empty
+         */
+        BusData poll () {
+            int capacity = m_slots.length ();
+            while (true) {
+                long pos = m_head.get ();
+                int idx = (int) (pos % capacity);
+                long diff = m_sequences.get (idx) - (pos + 1);
+                if (diff == 0) {
+                    if (m_head.compareAndSet (pos, pos + 1)) {
+                        BusData v = m_slots.get (idx);
+                        m_slots.set (idx, null);
+                        m_sequences.set (idx, pos + capacity);
+                        return v;
+                    }
+                } else if (diff < 0) {
+                    return null;
+                }
+            }
+        }
     }
 }
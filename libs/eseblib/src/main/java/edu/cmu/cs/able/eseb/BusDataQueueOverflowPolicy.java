@@ -0,0 +1,23 @@
+package edu.cmu.cs.able.eseb;
+
+/**
+ * Policy applied by a bounded {@link BusDataQueue} when data is added and
+ * the queue is full.
+ */
+public enum BusDataQueueOverflowPolicy {
+	/**
+	 * The oldest data in the queue is discarded to make room for the new
+	 * data.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * The thread adding data blocks until there is room in the queue.
+	 */
+	BLOCK,
+
+	/**
+	 * The new data is discarded.
+	 */
+	REJECT
+}
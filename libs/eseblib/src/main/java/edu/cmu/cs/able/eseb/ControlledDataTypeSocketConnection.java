@@ -58,6 +58,33 @@ public interface ControlledDataTypeSocketConnection extends Closeable {
 	 */
 	void publish_only() throws IOException;
 	
+	/**
+	 * Informs the other end that data with the given topic is to be sent
+	 * through this connection. Once the other end has been informed of at
+	 * least one topic, only data without topic and data with one of the
+	 * subscribed topics is sent.
+	 * @param topic the topic
+	 * @throws IOException failed to inform the other end
+	 */
+	void subscribe(String topic) throws IOException;
+	
+	/**
+	 * Informs the other end that data with the given topic is no longer
+	 * to be sent through this connection.
+	 * @param topic the topic
+	 * @throws IOException failed to inform the other end
+	 */
+	void unsubscribe(String topic) throws IOException;
+	
+	/**
+	 * Checks whether the other end wants data with a topic to be sent
+	 * through this connection. Data without a topic is always wanted and so
+	 * is all data if the other end has not subscribed to any topic.
+	 * @param topic the topic, <code>null</code> if the data has none
+	 * @return should the data be sent?
+	 */
+	boolean peer_subscribed(String topic);
+	
 	/**
 	 * Obtains the incoming event filter chain.
 	 * @return the chain
@@ -10,6 +10,9 @@ import incubator.wt.WorkerThread;
 import incubator.wt.WtState;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
@@ -47,6 +50,26 @@ public class ControlledDataTypeSocketConnectionImpl
 	 */
 	static final String CMD_NOSEND = "nosend";
 	
+	/**
+	 * Prefix of the command stating that data with a topic is to be sent to
+	 * the connection. The topic follows the prefix.
+	 */
+	static final String CMD_SUBSCRIBE = "subscribe:";
+	
+	/**
+	 * Prefix of the command stating that data with a topic is no longer to
+	 * be sent to the connection. The topic follows the prefix.
+	 */
+	static final String CMD_UNSUBSCRIBE = "unsubscribe:";
+	
+	/**
+	 * Command stating that the sender reads frames with a header (a topic
+	 * or a correlation ID, see {@link BusDataFrame}). Each side sends it
+	 * when the connection starts. Peers that do not know the command ignore
+	 * it and never send it, so they are only sent frames without a header.
+	 */
+	static final String CMD_FRAME_HEADERS = "frame-headers";
+	
 	/**
 	 * Default interval to check for pings.
 	 */
@@ -63,6 +86,14 @@ public class ControlledDataTypeSocketConnectionImpl
 	 */
 	private static long PING_MAX_INTERVAL_MS = 2500;
 	
+	/**
+	 * Maximum number of received data waiting to be processed. When the
+	 * receive queue is full the thread reading from the socket blocks, so
+	 * a peer that sends faster than the data is processed is slowed down
+	 * by the socket instead of growing the queue without bounds.
+	 */
+	static final int RECEIVE_QUEUE_CAPACITY = 10_000;
+	
 	/**
 	 * The connection.
 	 */
@@ -83,6 +114,17 @@ public class ControlledDataTypeSocketConnectionImpl
 	 */
 	private boolean m_send_data;
 	
+	/**
+	 * Topics the other end has subscribed to.
+	 */
+	private Set<String> m_peer_topics;
+	
+	/**
+	 * Has the other end announced that it reads frame headers? Until it
+	 * does, data is written without its topic and correlation ID.
+	 */
+	private volatile boolean m_peer_reads_headers;
+	
 	/**
 	 * Has the connection been closed?
 	 */
@@ -112,7 +154,8 @@ public class ControlledDataTypeSocketConnectionImpl
 	private PrimitiveScope m_primitive_scope;
 	
 	/**
-	 * Queue used to receive bus data.
+	 * Queue used to receive bus data, bounded to
+	 * {@link #RECEIVE_QUEUE_CAPACITY} elements.
 	 */
 	private BusDataQueue m_receive_queue;
 	
@@ -165,8 +208,12 @@ public class ControlledDataTypeSocketConnectionImpl
 		m_incoming_chain = new EventFilterChain(
 				new BusDataQueueGroupSink(m_queue_group));
 		m_send_data = true;
+		m_peer_topics = Collections.newSetFromMap(
+				new ConcurrentHashMap<String, Boolean>());
+		m_peer_reads_headers = false;
 		m_closed = false;
-		m_receive_queue = new BusDataQueue();
+		m_receive_queue = new BusDataQueue(RECEIVE_QUEUE_CAPACITY,
+				BusDataQueueOverflowPolicy.BLOCK);
 		m_last_received_ping = 0;
 		m_last_sent_ping = 0;
 		m_ping_check_interval_ms = PING_CHECK_INTERVAL_MS;
@@ -210,6 +257,15 @@ public class ControlledDataTypeSocketConnectionImpl
 		return m_queue_group;
 	}
 	
+	/**
+	 * Obtains the queue where received data waits to be processed. Its
+	 * size, high-water mark and counters show the connection's backlog.
+	 * @return the queue
+	 */
+	BusDataQueue receive_queue() {
+		return m_receive_queue;
+	}
+	
 	/**
 	 * Invoked when the connection has been closed.
 	 * @param e the exception that closed the connection
@@ -245,7 +301,7 @@ public class ControlledDataTypeSocketConnectionImpl
 					String text = ((StringValue) bd.value()).value();
 					if (text.startsWith(CMD_PREFIX)) {
 						process_cmd(text.substring(CMD_PREFIX.length()));
-						return;
+						continue;
 					}
 				}
 				
@@ -271,9 +327,19 @@ public class ControlledDataTypeSocketConnectionImpl
 		case CMD_NOSEND:
 			m_send_data = false;
 			break;
+		case CMD_FRAME_HEADERS:
+			m_peer_reads_headers = true;
+			break;
 		default:
+			if (cmd.startsWith(CMD_SUBSCRIBE)) {
+				m_peer_topics.add(cmd.substring(CMD_SUBSCRIBE.length()));
+			} else if (cmd.startsWith(CMD_UNSUBSCRIBE)) {
+				m_peer_topics.remove(cmd.substring(
+						CMD_UNSUBSCRIBE.length()));
+			}
+			
 			/*
-			 * Unknown command, ignored.
+			 * Unknown commands are ignored.
 			 */
 		}
 	}
@@ -288,6 +354,10 @@ public class ControlledDataTypeSocketConnectionImpl
 	public void write(BusData bd) throws IOException {
 		Ensure.not_null(bd);
 		if (!m_closed && m_send_data) {
+			if (!m_peer_reads_headers) {
+				bd = bd.without_header();
+			}
+			
 			m_outgoing_chain.sink(bd);
 		}
 	}
@@ -325,6 +395,18 @@ public class ControlledDataTypeSocketConnectionImpl
 		m_last_sent_ping = now;
 		
 		m_connection.start();
+		
+		try {
+			m_connection.write(m_primitive_scope.string().make(CMD_PREFIX
+					+ CMD_FRAME_HEADERS));
+		} catch (IOException e) {
+			/*
+			 * The connection has failed and will be closed when the failure
+			 * is detected, like when a ping cannot be sent.
+			 */
+			LOG.info("Failed to announce frame headers.", e);
+		}
+		
 		m_pinger.start();
 	}
 	
@@ -339,6 +421,26 @@ public class ControlledDataTypeSocketConnectionImpl
 		write(m_primitive_scope.string().make(CMD_PREFIX + CMD_NOSEND));
 	}
 	
+	@Override
+	public void subscribe(String topic) throws IOException {
+		Ensure.not_null(topic, "topic == null");
+		write(m_primitive_scope.string().make(CMD_PREFIX + CMD_SUBSCRIBE
+				+ topic));
+	}
+	
+	@Override
+	public void unsubscribe(String topic) throws IOException {
+		Ensure.not_null(topic, "topic == null");
+		write(m_primitive_scope.string().make(CMD_PREFIX + CMD_UNSUBSCRIBE
+				+ topic));
+	}
+	
+	@Override
+	public boolean peer_subscribed(String topic) {
+		return topic == null || m_peer_topics.isEmpty()
+				|| m_peer_topics.contains(topic);
+	}
+	
 	@Override
 	public void close() throws IOException {
 		m_connection.close();
@@ -6,6 +6,8 @@ import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
 import edu.cmu.cs.able.typelib.type.DataValue;
 import incubator.pval.Ensure;
 
+import org.apache.commons.lang.ArrayUtils;
+
 import java.io.*;
 
 /**
@@ -62,7 +64,8 @@ public class DataTypeInputStreamImpl implements DataTypeInputStream {
     InvalidEncodingException {
         if (m_din == null) throw new IllegalStateException("Stream is closed.");
 
-        int size = m_din.readInt();
+        int field = m_din.readInt();
+        int size = BusDataFrame.size(field);
         if (size <= 0 || size > MAXIMUM_PACKET_SIZE) throw new IOException("Packet size is " + size + ".");
 
         int read = 0;
@@ -74,13 +77,19 @@ public class DataTypeInputStreamImpl implements DataTypeInputStream {
             read += r;
         }
 
-        try (ByteArrayInputStream input = new ByteArrayInputStream(m_buffer, 0,
-                size);
+        int offset = BusDataFrame.encoding_offset(field, m_buffer, size);
+        String topic = BusDataFrame.read_topic(field, m_buffer, size);
+        long correlation_id = BusDataFrame.read_correlation_id(field,
+                m_buffer, size);
+
+        byte[] encoding = ArrayUtils.subarray(m_buffer, offset, size);
+        try (ByteArrayInputStream input = new ByteArrayInputStream(encoding);
                 DataInputStream in = new DataInputStream(input)) {
             DataValue value = m_encoding.decode(in, m_pscope);
-            return new BusData(value, m_buffer, size);
+            return new BusData(value, encoding, topic, correlation_id);
         } catch (Exception e) {
-            return new BusData(m_buffer, size, e);
+            return new BusData(encoding, encoding.length, e, topic,
+                    correlation_id);
         }
     }
 
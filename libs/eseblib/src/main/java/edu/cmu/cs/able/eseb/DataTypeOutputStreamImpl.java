@@ -2,7 +2,6 @@ package edu.cmu.cs.able.eseb;
 
 import incubator.pval.Ensure;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -48,17 +47,9 @@ public class DataTypeOutputStreamImpl implements DataTypeOutputStream {
 		Ensure.not_null(bd, "bd == null");
 		Ensure.not_null(m_dos, "Stream is already closed");
 		
-		byte[] bytes = bd.encoding();
-		if (bytes == null) {
-			ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-			try (DataOutputStream dataOut = new DataOutputStream(bytesOut)) {
-				m_encoding.encode(bd.value(), dataOut);
-			}
-			
-			bytes = bytesOut.toByteArray();
-		}
+		byte[] bytes = bd.encode(m_encoding);
 
-		m_dos.writeInt(bytes.length);
+		m_dos.write(BusDataFrame.header(bd, bytes.length));
 		m_dos.write(bytes);
 	}
 
@@ -16,10 +16,12 @@ import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
@@ -47,6 +49,21 @@ import edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding;
  * <p>All connections in the bus have a bus-side input filter chain and
  * bus-side output filter chain that are independent of any other chain that
  * may exist in the other side of the connection.</p>
+ * <p>The bus can run in one of the modes defined in {@link EventBusIoMode}.
+ * In both modes distribution does not hold a bus-wide lock: data from
+ * different connections is distributed concurrently while data from the same
+ * connection is distributed in the order it was received.</p>
+ * <p>Data is encoded at most once regardless of the number of connections it
+ * is forwarded to: data received from a connection keeps the bytes it was
+ * received with and is forwarded without being re-encoded; data whose
+ * encoding is not known (for example, because a bus-side incoming filter
+ * replaced it) is encoded once before being written to all connections.
+ * The counters {@link #encode_count()} and {@link #fan_out_count()} show how
+ * many encodings were needed for how many writes.</p>
+ * <p>Data with a topic is only forwarded to connections whose peer has
+ * subscribed to the topic (or has not subscribed to any topic). The topic is
+ * read from the frame header so routing does not depend on the data value.
+ * {@link #filtered_count()} shows how many writes were avoided.</p>
  */
 public class EventBus implements Closeable {
 	/**
@@ -59,6 +76,18 @@ public class EventBus implements Closeable {
 	 */
 	private static final int SOCKET_TMEOUT_MS = 100;
 	
+	/**
+	 * Default maximum number of frames waiting to be written to a connection
+	 * in {@link EventBusIoMode#SELECTOR} mode.
+	 */
+	private static final int SELECTOR_OUTBOUND_LIMIT = 10_000;
+	
+	/**
+	 * Maximum number of frames waiting to be written to a connection in
+	 * {@link EventBusIoMode#SELECTOR} mode.
+	 */
+	private volatile int m_outbound_limit = SELECTOR_OUTBOUND_LIMIT;
+	
 	/**
 	 * Group with all event bus worker threads.
 	 */
@@ -70,11 +99,27 @@ public class EventBus implements Closeable {
 	private Map<Integer, EventBusConnectionData> m_connections;
 	
 	/**
-	 * The socket where connections are received. It will be
-	 * <code>null</code> when shut down.
+	 * The socket where connections are received in
+	 * {@link EventBusIoMode#BLOCKING} mode, <code>null</code> in other modes.
 	 */
 	private ServerSocket m_accept_socket;
 	
+	/**
+	 * The selector used in {@link EventBusIoMode#SELECTOR} mode,
+	 * <code>null</code> in other modes.
+	 */
+	private EventBusSelector m_selector;
+	
+	/**
+	 * Has the bus been closed?
+	 */
+	private boolean m_closed;
+	
+	/**
+	 * The I/O mode.
+	 */
+	private EventBusIoMode m_mode;
+	
 	/**
 	 * Dispatcher.
 	 */
@@ -110,6 +155,27 @@ public class EventBus implements Closeable {
 	 */
 	private DataValueEncoding m_encoding;
 	
+	/**
+	 * Number of data distributed.
+	 */
+	private AtomicLong m_distributed_count;
+	
+	/**
+	 * Number of data the bus had to encode before distributing.
+	 */
+	private AtomicLong m_encode_count;
+	
+	/**
+	 * Number of writes to connections performed when distributing.
+	 */
+	private AtomicLong m_fan_out_count;
+	
+	/**
+	 * Number of writes to connections not performed because the connection
+	 * did not subscribe to the data's topic.
+	 */
+	private AtomicLong m_filtered_count;
+	
 	/**
 	 * Creates a new event bus in the given port with the default encoding.
 	 * @param port the port used to accept incoming clients.
@@ -129,22 +195,70 @@ public class EventBus implements Closeable {
 	 */
 	public EventBus(short port, PrimitiveScope scope,
 			DataValueEncoding encoding) throws IOException {
+		this(port, scope, encoding, EventBusIoMode.BLOCKING);
+	}
+	
+	/**
+	 * Creates a new event bus in the given port with the default encoding.
+	 * @param port the port used to accept incoming clients.
+	 * @param scope the primitive scope for types
+	 * @param mode the I/O mode
+	 * @throws IOException failed to open the server socket
+	 */
+	public EventBus(short port, PrimitiveScope scope, EventBusIoMode mode)
+			throws IOException {
+		this(port, scope, new DefaultTextEncoding(scope), mode);
+	}
+	
+	/**
+	 * Creates a new event bus in the given port.
+	 * @param port the port used to accept incoming clients.
+	 * @param scope the primitive scope for types
+	 * @param encoding the encoding to use
+	 * @param mode the I/O mode
+	 * @throws IOException failed to open the server socket
+	 */
+	public EventBus(short port, PrimitiveScope scope,
+			DataValueEncoding encoding, EventBusIoMode mode)
+			throws IOException {
 		Ensure.is_true(port > 0);
 		Ensure.not_null(scope);
 		Ensure.not_null(encoding);
+		Ensure.not_null(mode);
 		m_group = new WorkerThreadGroup("Event Bus (" + port + ")");
 		m_encoding = encoding;
-		m_connections = new HashMap<>();
-		m_accept_socket = new ServerSocket(port);
-		m_accept_socket.setSoTimeout(SOCKET_TMEOUT_MS);
-		m_group.add_thread(new CloseableWorkerThread<ServerSocket>(
-				"Event bus (" + port + ") acceptor", m_accept_socket, true) {
-			@Override
-			protected void do_cycle_operation(ServerSocket closeable)
-					throws Exception {
-				accept_cycle(closeable);
-			}
-		});
+		m_connections = new ConcurrentHashMap<>();
+		m_mode = mode;
+		m_closed = false;
+		
+		switch (mode) {
+		case BLOCKING:
+			m_accept_socket = new ServerSocket(port);
+			m_accept_socket.setSoTimeout(SOCKET_TMEOUT_MS);
+			m_group.add_thread(new CloseableWorkerThread<ServerSocket>(
+					"Event bus (" + port + ") acceptor", m_accept_socket,
+					true) {
+				@Override
+				protected void do_cycle_operation(ServerSocket closeable)
+						throws Exception {
+					accept_cycle(closeable);
+				}
+			});
+			break;
+		case SELECTOR:
+			m_selector = new EventBusSelector(port,
+					new EventBusSelector.AcceptHandler() {
+				@Override
+				public void accepted(SocketChannel channel)
+						throws IOException {
+					accept_channel(channel);
+				}
+			});
+			m_group.add_thread(m_selector.thread());
+			break;
+		default:
+			Ensure.unreachable();
+		}
 		
 		m_dispatcher = new LocalDispatcher<>();
 		m_next_connection_id = 1;
@@ -152,6 +266,10 @@ public class EventBus implements Closeable {
 		m_collector = new LocalCollector("Event bus (" + port + ")");
 		m_port = port;
 		m_preprocessors = new ArrayList<>();
+		m_distributed_count = new AtomicLong();
+		m_encode_count = new AtomicLong();
+		m_fan_out_count = new AtomicLong();
+		m_filtered_count = new AtomicLong();
 	}
 	
 	/**
@@ -174,6 +292,35 @@ public class EventBus implements Closeable {
 		Ensure.is_true(removed);
 	}
 	
+	/**
+	 * Obtains the I/O mode of the event bus.
+	 * @return the mode
+	 */
+	public EventBusIoMode mode() {
+		return m_mode;
+	}
+	
+	/**
+	 * Sets the maximum number of frames that may be waiting to be written to
+	 * a connection in {@link EventBusIoMode#SELECTOR} mode. A connection
+	 * whose peer lets more frames than this pile up is disconnected. Only
+	 * affects connections accepted afterwards.
+	 * @param limit the maximum number of frames
+	 */
+	public void outbound_limit(int limit) {
+		Ensure.greater(limit, 0);
+		m_outbound_limit = limit;
+	}
+	
+	/**
+	 * Obtains the maximum number of frames that may be waiting to be written
+	 * to a connection in {@link EventBusIoMode#SELECTOR} mode.
+	 * @return the maximum number of frames
+	 */
+	public int outbound_limit() {
+		return m_outbound_limit;
+	}
+	
 	/**
 	 * Obtains the port where the event bus is listening.
 	 * @return the port
@@ -225,13 +372,12 @@ public class EventBus implements Closeable {
 	 */
 	private synchronized void accept_connection(Socket incoming)
 			throws IOException {
-		if (m_accept_socket == null) {
+		if (m_closed) {
 			incoming.close();
 			return;
 		}
 		
-		InetAddress addr = incoming.getInetAddress();
-		final int id = m_next_connection_id;
+		int id = m_next_connection_id;
 		m_next_connection_id++;
 		
 		/*
@@ -241,6 +387,42 @@ public class EventBus implements Closeable {
 		@SuppressWarnings("resource")
 		DataTypeSocketConnection conn = new DataTypeSocketConnectionImpl(
 				"Client " + id, incoming, m_encoding, m_scope);
+		add_connection(id, incoming.getInetAddress(), conn);
+	}
+	
+	/**
+	 * Accepts an incoming connection in {@link EventBusIoMode#SELECTOR}
+	 * mode. This method is invoked from the selector thread.
+	 * @param incoming the incoming channel, already in non-blocking mode
+	 * @throws IOException failed to accept the connection
+	 */
+	private synchronized void accept_channel(SocketChannel incoming)
+			throws IOException {
+		if (m_closed) {
+			incoming.close();
+			return;
+		}
+		
+		int id = m_next_connection_id;
+		m_next_connection_id++;
+		
+		@SuppressWarnings("resource")
+		DataTypeSocketConnection conn = new SelectorDataTypeSocketConnection(
+				"Client " + id, incoming, m_selector, m_encoding, m_scope,
+				m_outbound_limit);
+		add_connection(id, incoming.socket().getInetAddress(), conn);
+	}
+	
+	/**
+	 * Adds a newly accepted connection to the bus, running all preprocessors
+	 * and starting it if accepted.
+	 * @param id the connection ID
+	 * @param addr the address of the remote peer
+	 * @param conn the connection
+	 * @throws IOException failed to accept the connection
+	 */
+	private synchronized void add_connection(final int id, InetAddress addr,
+			DataTypeSocketConnection conn) throws IOException {
 		final BusDataQueue input_queue = new BusDataQueue();
 		input_queue.dispatcher().add(new BusDataQueueListener() {
 			@Override
@@ -296,11 +478,13 @@ public class EventBus implements Closeable {
 	}
 	
 	/**
-	 * Invoked when a data value has been received from a connection.
+	 * Invoked when a data value has been received from a connection. This
+	 * method does not lock the bus: only the source connection's
+	 * distribution lock is held to keep the order of its data.
 	 * @param q the queue that may have received data
 	 * @param id the connection ID
 	 */
-	private synchronized void received(final BusDataQueue q, int id) {
+	private void received(final BusDataQueue q, int id) {
 		final EventBusConnectionData connection = m_connections.get(id);
 		
 		/*
@@ -311,29 +495,53 @@ public class EventBus implements Closeable {
 			return;
 		}
 		
-		BusData v;
-		while ((v = q.poll()) != null) {
-			LOG.debug("Distributing from client " + id + ": " + v.value());
-			
-			connection.sent();
-			
-			for (EventBusConnectionData d : m_connections.values()) {
-				d.received();
-				try {
-					d.connection().write(v);
-				} catch (IOException e) {
-					m_collector.collect(e, "Writing to client '" + d.id()
-							+ "'.");
+		synchronized (connection.distribution_lock()) {
+			BusData v;
+			while ((v = q.poll()) != null) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Distributing from client " + id + ": "
+							+ v.value());
 				}
-			}
-			
-			final BusData vf = v;
-			m_dispatcher.dispatch(new DispatcherOp<EventBusListener>() {
-				@Override
-				public void dispatch(EventBusListener l) {
-					l.distributed(vf, connection);
+				
+				if (v.encoding() == null) {
+					try {
+						v.encode(m_encoding);
+					} catch (IOException e) {
+						m_collector.collect(e, "Encoding data from client '"
+								+ id + "'.");
+						continue;
+					}
+					
+					m_encode_count.incrementAndGet();
 				}
-			});
+				
+				connection.sent();
+				m_distributed_count.incrementAndGet();
+				
+				for (EventBusConnectionData d : m_connections.values()) {
+					if (!d.connection().peer_subscribed(v.topic())) {
+						m_filtered_count.incrementAndGet();
+						continue;
+					}
+					
+					d.received();
+					m_fan_out_count.incrementAndGet();
+					try {
+						d.connection().write(v);
+					} catch (IOException e) {
+						m_collector.collect(e, "Writing to client '"
+								+ d.id() + "'.");
+					}
+				}
+				
+				final BusData vf = v;
+				m_dispatcher.dispatch(new DispatcherOp<EventBusListener>() {
+					@Override
+					public void dispatch(EventBusListener l) {
+						l.distributed(vf, connection);
+					}
+				});
+			}
 		}
 	}
 	
@@ -372,7 +580,7 @@ public class EventBus implements Closeable {
 		ExceptionSuppress<IOException> ex = new ExceptionSuppress<>();
 		
 		synchronized (this) {
-			if (m_accept_socket == null) {
+			if (m_closed) {
 				/*
 				 * Already closed. We need to support multiple closes because
 				 * that's the contract of Closeable.
@@ -385,7 +593,11 @@ public class EventBus implements Closeable {
 			 * connect while we're disconnecting them.
 			 */
 			try {
-				m_accept_socket.close();
+				if (m_accept_socket != null) {
+					m_accept_socket.close();
+				} else {
+					m_selector.close_server_channel();
+				}
 			} catch (IOException e) {
 				ex.add(e);
 			}
@@ -400,10 +612,22 @@ public class EventBus implements Closeable {
 			
 			LOG.info("Closing event bus.");
 			
-			m_accept_socket = null;
+			m_closed = true;
 		}
 		
 		m_group.stop_all();
+		
+		/*
+		 * The selector can only be closed after its thread has stopped.
+		 */
+		if (m_selector != null) {
+			try {
+				m_selector.close();
+			} catch (IOException e) {
+				ex.add(e);
+			}
+		}
+		
 		ex.maybe_throw();
 	}
 	
@@ -419,18 +643,56 @@ public class EventBus implements Closeable {
 	 * Starts the event bus.
 	 */
 	public void start() {
-		Ensure.not_null(m_accept_socket);
+		Ensure.is_false(closed());
 		
 		LOG.info("Starting event bus.");
 		m_group.start();
 	}
 	
+	/**
+	 * Obtains the number of data distributed by the bus.
+	 * @return the number of data distributed
+	 */
+	public long distributed_count() {
+		return m_distributed_count.get();
+	}
+	
+	/**
+	 * Obtains the number of data the bus had to encode before distributing
+	 * them. Data forwarded with the bytes they were received with are not
+	 * counted.
+	 * @return the number of encodings
+	 */
+	public long encode_count() {
+		return m_encode_count.get();
+	}
+	
+	/**
+	 * Obtains the number of writes to connections performed while
+	 * distributing data. Each write shares the encoding of the distributed
+	 * data.
+	 * @return the number of writes
+	 */
+	public long fan_out_count() {
+		return m_fan_out_count.get();
+	}
+	
+	/**
+	 * Obtains the number of writes to connections that were not performed
+	 * while distributing data because the connection had not subscribed to
+	 * the data's topic.
+	 * @return the number of writes not performed
+	 */
+	public long filtered_count() {
+		return m_filtered_count.get();
+	}
+	
 	/**
 	 * Checks whether the event bus has been closed.
 	 * @return has the event bus been closed?
 	 */
 	public synchronized boolean closed() {
-		return m_accept_socket == null;
+		return m_closed;
 	}
 	
 	/**
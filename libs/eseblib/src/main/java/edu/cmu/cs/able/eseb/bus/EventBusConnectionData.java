@@ -54,6 +54,12 @@ public class EventBusConnectionData {
 	 */
 	private CloseableListener m_closeable_listener;
 	
+	/**
+	 * Lock held while distributing data received from this connection. It
+	 * keeps data from the connection in order without locking the bus.
+	 */
+	private Object m_distribution_lock;
+	
 	/**
 	 * Creates a new client data structure.
 	 * @param id the connection ID
@@ -79,6 +85,7 @@ public class EventBusConnectionData {
 		m_subscribe_count = 0;
 		m_input_queue = bdq;
 		m_closeable_listener = cl;
+		m_distribution_lock = new Object();
 	}
 	
 	/**
@@ -159,6 +166,15 @@ public class EventBusConnectionData {
 		return m_closeable_listener;
 	}
 	
+	/**
+	 * Obtains the lock held while distributing data received from this
+	 * connection.
+	 * @return the lock
+	 */
+	Object distribution_lock() {
+		return m_distribution_lock;
+	}
+	
 	/**
 	 * Obtains the connection's incoming chain.
 	 * @return the incoming chain
@@ -0,0 +1,19 @@
+package edu.cmu.cs.able.eseb.bus;
+
+/**
+ * I/O model used by an {@link EventBus} to service its connections.
+ */
+public enum EventBusIoMode {
+	/**
+	 * Connections are accepted by a dedicated thread and each connection has
+	 * its own input and output threads performing blocking socket I/O.
+	 */
+	BLOCKING,
+
+	/**
+	 * A single selector thread accepts connections and reads and writes
+	 * data only when the sockets are ready. Each connection has its own
+	 * bounded outbound queue which is drained by the selector thread.
+	 */
+	SELECTOR
+}
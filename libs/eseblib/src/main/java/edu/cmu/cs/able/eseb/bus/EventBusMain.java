@@ -17,7 +17,10 @@ import edu.cmu.cs.able.eseb.bus.rci.EventBusRemoteConnectionInfo;
 import edu.cmu.cs.able.eseb.bus.rci.EventBusRemoteControlInterface;
 import edu.cmu.cs.able.eseb.bus.rci.EventBusRemoteControlInterfaceImpl;
 import edu.cmu.cs.able.eseb.bus.rci.SyncConstants;
+import edu.cmu.cs.able.typelib.binenc.BinaryEncoding;
+import edu.cmu.cs.able.typelib.enc.DataValueEncoding;
 import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+import edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding;
 
 /**
  * Main class that starts eseb.
@@ -53,6 +56,8 @@ public class EventBusMain {
 		}
 		
 		short port = -1;
+		EventBusIoMode mode = null;
+		String encoding = null;
 		
 		Pattern p = Pattern.compile("^--([^=]+)=(.*)$");
 		for (String a : args) {
@@ -76,6 +81,26 @@ public class EventBusMain {
 					show_help();
 					return;
 				}
+			} else if (key.equals("mode")) {
+				if (mode != null) {
+					show_help();
+					return;
+				}
+				
+				try {
+					mode = EventBusIoMode.valueOf(value.toUpperCase());
+				} catch (IllegalArgumentException e) {
+					show_help();
+					return;
+				}
+			} else if (key.equals("encoding")) {
+				if (encoding != null || !(value.equals("text")
+						|| value.equals("binary"))) {
+					show_help();
+					return;
+				}
+				
+				encoding = value;
 			} else {
 				show_help();
 				return;
@@ -86,9 +111,19 @@ public class EventBusMain {
 			port = DEFAULT_PORT;
 		}
 		
+		if (mode == null) {
+			mode = EventBusIoMode.BLOCKING;
+		}
+		
 		PrimitiveScope scope = new PrimitiveScope();
+		DataValueEncoding enc;
+		if ("binary".equals(encoding)) {
+			enc = new BinaryEncoding(scope);
+		} else {
+			enc = new DefaultTextEncoding(scope);
+		}
 		
-		try(EventBus srv = new EventBus(port, scope)) {
+		try(EventBus srv = new EventBus(port, scope, enc, mode)) {
 			/*
 			 * Set up the data synchronization.
 			 */
@@ -144,6 +179,7 @@ public class EventBusMain {
 	 * Displays command-line help.
 	 */
 	private static void show_help() {
-		System.out.println("Arguments: [--port=" + DEFAULT_PORT + "]");
+		System.out.println("Arguments: [--port=" + DEFAULT_PORT + "] "
+				+ "[--mode=blocking|selector] [--encoding=text|binary]");
 	}
 }
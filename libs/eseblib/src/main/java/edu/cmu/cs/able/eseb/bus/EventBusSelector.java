@@ -0,0 +1,237 @@
+package edu.cmu.cs.able.eseb.bus;
+
+import incubator.exh.LocalCollector;
+import incubator.pval.Ensure;
+import incubator.wt.WorkerThread;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p>Selector loop used by an {@link EventBus} running in
+ * {@link EventBusIoMode#SELECTOR} mode. A single worker thread accepts
+ * incoming connections on the server channel and services reads and writes
+ * of all {@link SelectorDataTypeSocketConnection}s registered with it.</p>
+ * <p>Operations on selection keys must be performed by the selector thread.
+ * Other threads request them through {@link #run_in_selector(Runnable)}.</p>
+ */
+class EventBusSelector implements Closeable {
+	/**
+	 * Maximum time the selector blocks waiting for ready keys. This bounds
+	 * how long it takes the worker thread to notice it should stop.
+	 */
+	private static final long SELECT_TIMEOUT_MS = 100;
+
+	/**
+	 * Handler invoked when a new connection is accepted.
+	 */
+	interface AcceptHandler {
+		/**
+		 * A new connection has been accepted. The channel is already in
+		 * non-blocking mode.
+		 * @param channel the channel
+		 * @throws IOException failed to set up the connection; the channel
+		 * will be closed
+		 */
+		void accepted(SocketChannel channel) throws IOException;
+	}
+
+	/**
+	 * The selector.
+	 */
+	private Selector m_selector;
+
+	/**
+	 * The channel where connections are accepted.
+	 */
+	private ServerSocketChannel m_server_channel;
+
+	/**
+	 * Handler of accepted connections.
+	 */
+	private AcceptHandler m_handler;
+
+	/**
+	 * Operations that must run in the selector thread.
+	 */
+	private ConcurrentLinkedQueue<Runnable> m_pending;
+
+	/**
+	 * The selector thread.
+	 */
+	private WorkerThread m_thread;
+
+	/**
+	 * Exception collector.
+	 */
+	private LocalCollector m_collector;
+
+	/**
+	 * Creates a new selector bound to the given port.
+	 * @param port the port to accept connections
+	 * @param handler the handler for accepted connections
+	 * @throws IOException failed to open the server channel
+	 */
+	EventBusSelector(short port, AcceptHandler handler) throws IOException {
+		Ensure.is_true(port > 0);
+		Ensure.not_null(handler);
+
+		m_handler = handler;
+		m_pending = new ConcurrentLinkedQueue<>();
+		m_collector = new LocalCollector("Event bus (" + port
+				+ ") selector");
+		m_selector = Selector.open();
+		try {
+			m_server_channel = ServerSocketChannel.open();
+			m_server_channel.socket().bind(new InetSocketAddress(port));
+			m_server_channel.configureBlocking(false);
+			m_server_channel.register(m_selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			if (m_server_channel != null) {
+				m_server_channel.close();
+			}
+
+			m_selector.close();
+			throw e;
+		}
+
+		m_thread = new WorkerThread("Event bus (" + port + ") selector") {
+			@Override
+			protected void do_cycle_operation() throws Exception {
+				select_cycle();
+			}
+
+			@Override
+			protected void interrupt_wait() {
+				m_selector.wakeup();
+			}
+		};
+	}
+
+	/**
+	 * Obtains the selector worker thread. The thread is not started by this
+	 * class.
+	 * @return the thread
+	 */
+	WorkerThread thread() {
+		return m_thread;
+	}
+
+	/**
+	 * Obtains the selector.
+	 * @return the selector
+	 */
+	Selector selector() {
+		return m_selector;
+	}
+
+	/**
+	 * Schedules an operation to be run in the selector thread and wakes up
+	 * the selector.
+	 * @param r the operation
+	 */
+	void run_in_selector(Runnable r) {
+		Ensure.not_null(r);
+		m_pending.add(r);
+		m_selector.wakeup();
+	}
+
+	/**
+	 * Performs one selection cycle: runs pending operations, waits for ready
+	 * keys and handles them.
+	 * @throws IOException the selector failed
+	 */
+	private void select_cycle() throws IOException {
+		Runnable r;
+		while ((r = m_pending.poll()) != null) {
+			r.run();
+		}
+
+		if (!m_selector.isOpen()) {
+			return;
+		}
+
+		m_selector.select(SELECT_TIMEOUT_MS);
+
+		Iterator<SelectionKey> it = m_selector.selectedKeys().iterator();
+		while (it.hasNext()) {
+			SelectionKey key = it.next();
+			it.remove();
+
+			if (!key.isValid()) {
+				continue;
+			}
+
+			if (key.isAcceptable()) {
+				accept();
+			} else {
+				SelectorDataTypeSocketConnection conn =
+						(SelectorDataTypeSocketConnection) key.attachment();
+				conn.ready(key);
+			}
+		}
+	}
+
+	/**
+	 * Accepts all pending connections on the server channel.
+	 */
+	private void accept() {
+		while (true) {
+			SocketChannel incoming;
+			try {
+				incoming = m_server_channel.accept();
+			} catch (IOException e) {
+				m_collector.collect(e, "Accepting connection.");
+				return;
+			}
+
+			if (incoming == null) {
+				return;
+			}
+
+			try {
+				incoming.configureBlocking(false);
+				m_handler.accepted(incoming);
+			} catch (IOException e) {
+				m_collector.collect(e, "Setting up accepted connection.");
+				try {
+					incoming.close();
+				} catch (IOException ee) {
+					/*
+					 * Nothing more we can do about this one.
+					 */
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes the server channel so no more connections are accepted.
+	 * Connections already registered keep being serviced until the selector
+	 * itself is closed with {@link #close()}.
+	 * @throws IOException failed to close the channel
+	 */
+	void close_server_channel() throws IOException {
+		m_server_channel.close();
+	}
+
+	/**
+	 * Closes the selector. The selector thread should have been stopped
+	 * before.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			m_server_channel.close();
+		} finally {
+			m_selector.close();
+		}
+	}
+}
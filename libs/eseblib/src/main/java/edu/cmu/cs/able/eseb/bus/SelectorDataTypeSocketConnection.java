@@ -0,0 +1,521 @@
+package edu.cmu.cs.able.eseb.bus;
+
+import incubator.dispatch.Dispatcher;
+import incubator.dispatch.DispatcherOp;
+import incubator.dispatch.LocalDispatcher;
+import incubator.pval.Ensure;
+import incubator.wt.CloseableListener;
+import incubator.wt.WorkerThreadGroup;
+import incubator.wt.WorkerThreadGroupCI;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.cmu.cs.able.eseb.BusData;
+import edu.cmu.cs.able.eseb.BusDataFrame;
+import edu.cmu.cs.able.eseb.BusDataQueueGroup;
+import edu.cmu.cs.able.eseb.BusDataQueueGroupImpl;
+import edu.cmu.cs.able.eseb.DataTypeSocketConnection;
+import edu.cmu.cs.able.typelib.enc.DataValueEncoding;
+import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * <p>Implementation of a {@link DataTypeSocketConnection} over a
+ * non-blocking socket channel serviced by an {@link EventBusSelector}. The
+ * connection does not own any threads: data is read and decoded when the
+ * selector reports the channel readable and frames are written when it
+ * reports the channel writable.</p>
+ * <p>Writes are encoded in the caller's thread, unless the data is already
+ * encoded, and placed in a bounded outbound queue. The queue holds the
+ * data themselves so data written to several connections shares a single
+ * copy of its encoding. If the queue is full (the peer is not reading fast enough)
+ * the connection is closed, as if it had failed, and the write fails with an
+ * {@link IOException}: a peer that cannot keep up would otherwise silently
+ * miss data.</p>
+ * <p>The wire format is the same as the one used by
+ * {@link edu.cmu.cs.able.eseb.DataTypeOutputStreamImpl}, described in
+ * {@link BusDataFrame}.</p>
+ */
+class SelectorDataTypeSocketConnection implements DataTypeSocketConnection {
+	/**
+	 * Maximum allowed packet size.
+	 */
+	private static final int MAXIMUM_PACKET_SIZE = 20_000_000;
+
+	/**
+	 * The connection name.
+	 */
+	private String m_name;
+
+	/**
+	 * The channel or <code>null</code> if the connection has been closed.
+	 */
+	private volatile SocketChannel m_channel;
+
+	/**
+	 * The selector servicing this connection.
+	 */
+	private EventBusSelector m_selector;
+
+	/**
+	 * The selection key, only accessed from the selector thread. It is
+	 * <code>null</code> while the connection has not been started.
+	 */
+	private SelectionKey m_key;
+
+	/**
+	 * Should the connection be reading?
+	 */
+	private volatile boolean m_running;
+
+	/**
+	 * Has the connection been stopped? Once stopped, the connection never
+	 * asks the selector for reads or writes again, whatever requests are
+	 * still pending in the selector.
+	 */
+	private volatile boolean m_stopped;
+
+	/**
+	 * The encoding to use.
+	 */
+	private DataValueEncoding m_encoding;
+
+	/**
+	 * The primitive scope used while decoding.
+	 */
+	private PrimitiveScope m_scope;
+
+	/**
+	 * Queues informed when data is read.
+	 */
+	private BusDataQueueGroupImpl m_queue_group;
+
+	/**
+	 * Closeable listeners.
+	 */
+	private LocalDispatcher<CloseableListener> m_dispatcher;
+
+	/**
+	 * Empty thread group: this connection has no threads of its own.
+	 */
+	private WorkerThreadGroup m_group;
+
+	/**
+	 * Buffer with the header of the frame being read.
+	 */
+	private ByteBuffer m_read_header;
+
+	/**
+	 * The size field of the frame being read.
+	 */
+	private int m_read_field;
+
+	/**
+	 * Buffer with the body of the frame being read, <code>null</code> if
+	 * the header is still being read.
+	 */
+	private ByteBuffer m_read_body;
+
+	/**
+	 * Data waiting to be written, already encoded.
+	 */
+	private BlockingQueue<BusData> m_outbound;
+
+	/**
+	 * Header and body of the frame currently being written, only accessed
+	 * from the selector thread. <code>null</code> if no frame is being
+	 * written.
+	 */
+	private ByteBuffer[] m_write_current;
+
+	/**
+	 * Has write interest been requested in the selector? Used to avoid
+	 * waking up the selector for every frame written.
+	 */
+	private AtomicBoolean m_write_requested;
+
+	/**
+	 * Creates a new connection.
+	 * @param name the connection name
+	 * @param channel the channel, which must be in non-blocking mode
+	 * @param selector the selector that will service the connection
+	 * @param enc the encoding to use
+	 * @param scope the primitive type scope to use
+	 * @param outbound_limit maximum number of frames waiting to be written
+	 */
+	SelectorDataTypeSocketConnection(String name, SocketChannel channel,
+			EventBusSelector selector, DataValueEncoding enc,
+			PrimitiveScope scope, int outbound_limit) {
+		Ensure.not_null(name);
+		Ensure.not_null(channel);
+		Ensure.is_false(channel.isBlocking());
+		Ensure.not_null(selector);
+		Ensure.not_null(enc);
+		Ensure.not_null(scope);
+		Ensure.greater(outbound_limit, 0);
+
+		m_name = name;
+		m_channel = channel;
+		m_selector = selector;
+		m_key = null;
+		m_running = false;
+		m_stopped = false;
+		m_encoding = enc;
+		m_scope = scope;
+		m_queue_group = new BusDataQueueGroupImpl();
+		m_dispatcher = new LocalDispatcher<>();
+		m_group = new WorkerThreadGroup(name);
+		m_read_header = ByteBuffer.allocate(
+				BusDataFrame.SIZE_FIELD_LENGTH);
+		m_read_body = null;
+		m_outbound = new ArrayBlockingQueue<>(outbound_limit);
+		m_write_current = null;
+		m_write_requested = new AtomicBoolean(false);
+	}
+
+	@Override
+	public void write(DataValue dt) throws IOException {
+		Ensure.not_null(dt, "dt == null");
+		write(new BusData(dt));
+	}
+
+	@Override
+	public void write(BusData bd) throws IOException {
+		Ensure.not_null(bd, "bd == null");
+
+		synchronized (this) {
+			if (m_channel == null) {
+				throw new ClosedChannelException();
+			}
+		}
+
+		bd.encode(m_encoding);
+		if (!m_outbound.offer(bd)) {
+			IOException e = new IOException("Outbound queue of '" + m_name
+					+ "' is full (" + (m_outbound.size()
+					+ m_outbound.remainingCapacity()) + " frames).");
+			closed(e);
+			throw e;
+		}
+
+		if (!m_stopped && m_write_requested.compareAndSet(false, true)) {
+			m_selector.run_in_selector(new Runnable() {
+				@Override
+				public void run() {
+					update_interest();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Updates the interest set of the selection key to match the connection
+	 * state. Must be invoked from the selector thread.
+	 */
+	private void update_interest() {
+		if (m_key == null || !m_key.isValid()) {
+			return;
+		}
+
+		int ops = 0;
+		if (m_running && !m_stopped) {
+			ops |= SelectionKey.OP_READ;
+			if (m_write_requested.get()) {
+				ops |= SelectionKey.OP_WRITE;
+			}
+		}
+
+		m_key.interestOps(ops);
+	}
+
+	/**
+	 * Invoked by the selector thread when the channel is ready.
+	 * @param key the selection key
+	 */
+	void ready(SelectionKey key) {
+		try {
+			if (key.isReadable()) {
+				read_ready();
+			}
+
+			if (key.isValid() && key.isWritable()) {
+				write_ready();
+			}
+		} catch (IOException e) {
+			closed(e);
+		}
+	}
+
+	/**
+	 * Reads all data available in the channel and dispatches all complete
+	 * frames.
+	 * @throws IOException failed to read or the peer sent an invalid frame
+	 */
+	private void read_ready() throws IOException {
+		SocketChannel ch = m_channel;
+		if (ch == null) {
+			return;
+		}
+
+		while (true) {
+			if (m_read_body == null) {
+				if (ch.read(m_read_header) == -1) {
+					throw new EOFException();
+				}
+
+				if (m_read_header.hasRemaining()) {
+					return;
+				}
+
+				m_read_header.flip();
+				int field = m_read_header.getInt();
+				m_read_header.clear();
+				m_read_field = field;
+				int size = BusDataFrame.size(field);
+				if (size <= 0 || size > MAXIMUM_PACKET_SIZE) {
+					throw new IOException("Packet size is " + size + ".");
+				}
+
+				m_read_body = ByteBuffer.allocate(size);
+			}
+
+			if (ch.read(m_read_body) == -1) {
+				throw new EOFException();
+			}
+
+			if (m_read_body.hasRemaining()) {
+				return;
+			}
+
+			byte[] data = m_read_body.array();
+			m_read_body = null;
+			m_queue_group.add(decode(data, m_read_field));
+		}
+	}
+
+	/**
+	 * Decodes a frame.
+	 * @param data the frame data, after the size field
+	 * @param field the frame's size field
+	 * @return the bus data, which may hold a decoding failure
+	 * @throws IOException the frame's header is invalid
+	 */
+	private BusData decode(byte[] data, int field) throws IOException {
+		String topic = BusDataFrame.read_topic(field, data, data.length);
+		long correlation_id = BusDataFrame.read_correlation_id(field, data,
+				data.length);
+		byte[] encoding = data;
+		int offset = BusDataFrame.encoding_offset(field, data, data.length);
+		if (offset > 0) {
+			encoding = Arrays.copyOfRange(data, offset, data.length);
+		}
+
+		try (DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(encoding))) {
+			DataValue value = m_encoding.decode(in, m_scope);
+			return new BusData(value, encoding, topic, correlation_id);
+		} catch (Exception e) {
+			return new BusData(encoding, encoding.length, e, topic,
+					correlation_id);
+		}
+	}
+
+	/**
+	 * Writes as many pending frames as the channel accepts.
+	 * @throws IOException failed to write
+	 */
+	private void write_ready() throws IOException {
+		SocketChannel ch = m_channel;
+		if (ch == null) {
+			return;
+		}
+
+		while (true) {
+			if (m_write_current == null) {
+				BusData bd = m_outbound.poll();
+				if (bd == null) {
+					break;
+				}
+
+				byte[] bytes = bd.encoding();
+				ByteBuffer header = ByteBuffer.wrap(BusDataFrame.header(bd,
+						bytes.length));
+				m_write_current = new ByteBuffer[] { header,
+						ByteBuffer.wrap(bytes).asReadOnlyBuffer() };
+			}
+
+			ch.write(m_write_current);
+			if (m_write_current[1].hasRemaining()) {
+				/*
+				 * Socket buffer is full, keep the write interest.
+				 */
+				return;
+			}
+
+			m_write_current = null;
+		}
+
+		/*
+		 * Nothing left to write. We drop the write interest but need to
+		 * re-check the queue after clearing the flag because a writer may
+		 * have added a frame after our last poll and seen the flag still set.
+		 */
+		m_write_requested.set(false);
+		if (!m_outbound.isEmpty()) {
+			m_write_requested.compareAndSet(false, true);
+		}
+
+		update_interest();
+	}
+
+	@Override
+	public void close() throws IOException {
+		SocketChannel ch;
+
+		synchronized (this) {
+			if (m_channel == null) {
+				return;
+			}
+
+			ch = m_channel;
+			m_channel = null;
+		}
+
+		try {
+			release(ch);
+		} finally {
+			m_dispatcher.dispatch(new DispatcherOp<CloseableListener>() {
+				@Override
+				public void dispatch(CloseableListener l) {
+					l.closed(null);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Invoked when the connection fails.
+	 * @param ex the exception that made the connection fail
+	 */
+	private void closed(final IOException ex) {
+		SocketChannel ch;
+
+		synchronized (this) {
+			if (m_channel == null) {
+				return;
+			}
+
+			ch = m_channel;
+			m_channel = null;
+		}
+
+		try {
+			release(ch);
+		} catch (IOException e) {
+			/*
+			 * Same reasoning as in DataTypeSocketConnectionImpl: the
+			 * connection is already dead and closing the channel is the
+			 * best we can do.
+			 */
+		}
+
+		m_dispatcher.dispatch(new DispatcherOp<CloseableListener>() {
+			@Override
+			public void dispatch(CloseableListener l) {
+				l.closed(ex);
+			}
+		});
+	}
+
+	/**
+	 * Releases all resources associated with the channel.
+	 * @param ch the channel
+	 * @throws IOException failed to close the channel
+	 */
+	private void release(SocketChannel ch) throws IOException {
+		m_running = false;
+		m_outbound.clear();
+
+		/*
+		 * Keys are cancelled by closing the channel. Closing the channel also
+		 * makes the selector release it on the next select.
+		 */
+		ch.close();
+		m_selector.selector().wakeup();
+	}
+
+	@Override
+	public void start() {
+		if (m_stopped) {
+			return;
+		}
+
+		m_running = true;
+		m_selector.run_in_selector(new Runnable() {
+			@Override
+			public void run() {
+				register();
+			}
+		});
+	}
+
+	/**
+	 * Registers the channel with the selector, if not registered, and
+	 * updates the interest set. Must be invoked from the selector thread.
+	 */
+	private void register() {
+		SocketChannel ch = m_channel;
+		if (ch == null) {
+			return;
+		}
+
+		if (m_key == null) {
+			try {
+				m_key = ch.register(m_selector.selector(), 0, this);
+			} catch (ClosedChannelException e) {
+				closed(e);
+				return;
+			}
+		}
+
+		update_interest();
+	}
+
+	@Override
+	public void stop() {
+		m_stopped = true;
+		m_running = false;
+		m_selector.run_in_selector(new Runnable() {
+			@Override
+			public void run() {
+				update_interest();
+			}
+		});
+	}
+
+	@Override
+	public WorkerThreadGroupCI thread_group() {
+		return m_group;
+	}
+
+	@Override
+	public BusDataQueueGroup queue_group() {
+		return m_queue_group;
+	}
+
+	@Override
+	public Dispatcher<CloseableListener> closeable_dispatcher() {
+		return m_dispatcher;
+	}
+}
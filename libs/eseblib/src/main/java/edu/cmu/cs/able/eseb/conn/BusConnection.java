@@ -12,7 +12,9 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.Socket;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
@@ -71,9 +73,15 @@ public class BusConnection implements Closeable {
     private LocalDispatcher<BusConnectionListener> m_dispatcher;
 
     /**
-     * Buffer with pending data values to send.
+     * Buffer with pending data to send.
      */
-    private LinkedList<DataValue> m_out_buffer;
+    private LinkedList<BusData> m_out_buffer;
+
+    /**
+     * Topics this client has subscribed to. They are sent to the bus every
+     * time the connection is established.
+     */
+    private Set<String> m_topics;
 
     /**
      * The socket connection if the client is connected. <code>null</code> if
@@ -175,6 +183,7 @@ public class BusConnection implements Closeable {
         m_state = BusConnectionState.DISCONNECTED;
         m_dispatcher = new LocalDispatcher<>();
         m_out_buffer = new LinkedList<>();
+        m_topics = new LinkedHashSet<>();
         m_connection = null;
         m_connection_establisher = null;
         m_connection_time = new Date();
@@ -200,7 +209,7 @@ public class BusConnection implements Closeable {
             @Override
             public void sink(BusData data) throws IOException {
                 Ensure.not_null(data);
-                internal_send(data.value());
+                internal_send(data);
             }
         });
     }
@@ -330,20 +339,91 @@ public class BusConnection implements Closeable {
      * @param value the value to send
      */
     public synchronized void send(DataValue value) {
+        send(value, null);
+    }
+
+    /**
+     * Sends a data type with a topic to the server or queues it locally if
+     * the connection to the server has not yet been established. The bus
+     * only forwards the value to clients that have subscribed to the topic
+     * or that have not subscribed to any topic.
+     * @param value the value to send
+     * @param topic the topic, <code>null</code> to send to all clients
+     */
+    public synchronized void send(DataValue value, String topic) {
+        send(value, topic, BusData.NO_CORRELATION_ID);
+    }
+
+    /**
+     * Sends a data type with a topic and a correlation ID to the server or
+     * queues it locally if the connection to the server has not yet been
+     * established. The correlation ID is sent in the frame header so that
+     * receivers can match it without decoding the value.
+     * @param value the value to send
+     * @param topic the topic, <code>null</code> to send to all clients
+     * @param correlation_id the correlation ID,
+     * {@link BusData#NO_CORRELATION_ID} if none
+     */
+    public synchronized void send(DataValue value, String topic,
+            long correlation_id) {
         try {
             this.notifyAll ();
-            m_outgoing_chain.sink(new BusData(value));
+            m_outgoing_chain.sink(new BusData(value, topic, correlation_id));
         } catch (IOException e) {
             Ensure.never_thrown(e);
         }
     }
 
+    /**
+     * Subscribes to a topic. Once a client has subscribed to a topic, the
+     * bus only sends it data without topic and data with one of its topics.
+     * The subscription is kept across reconnections.
+     * @param topic the topic
+     */
+    public synchronized void subscribe(String topic) {
+        Ensure.not_null(topic, "topic == null");
+        if (m_topics.add(topic) && m_state == BusConnectionState.CONNECTED) {
+            try {
+                m_connection.subscribe(topic);
+            } catch (IOException e) {
+                m_collector.collect(e, "subscribe");
+                LOG.error("Error while subscribing to '" + topic + "'.", e);
+            }
+        }
+    }
+
+    /**
+     * Removes a subscription to a topic.
+     * @param topic the topic
+     */
+    public synchronized void unsubscribe(String topic) {
+        Ensure.not_null(topic, "topic == null");
+        if (m_topics.remove(topic)
+                && m_state == BusConnectionState.CONNECTED) {
+            try {
+                m_connection.unsubscribe(topic);
+            } catch (IOException e) {
+                m_collector.collect(e, "unsubscribe");
+                LOG.error("Error while unsubscribing from '" + topic + "'.",
+                        e);
+            }
+        }
+    }
+
+    /**
+     * Obtains the topics this client has subscribed to.
+     * @return the topics
+     */
+    public synchronized Set<String> topics() {
+        return new LinkedHashSet<>(m_topics);
+    }
+
     /**
      * Method that actually does the send, after the outgoing chain has been
      * processed.
-     * @param value the value to send
+     * @param value the data to send
      */
-    private synchronized void internal_send(DataValue value) {
+    private synchronized void internal_send(BusData value) {
         Ensure.not_null(value, "value == null");
         m_send_count++;
 
@@ -355,15 +435,16 @@ public class BusConnection implements Closeable {
              * a dispatched event to do that).
              */
             if (m_out_buffer.size() > 0) {
-                LOG.debug("Queueing: " + value);
+                LOG.debug("Queueing: " + value.value());
                 m_out_buffer.addLast(value);
             } else {
                 try {
-                    LOG.debug("Writing (online): " + value);
+                    LOG.debug("Writing (online): " + value.value());
                     m_connection.write(value);
                 } catch (IOException e) {
                     m_collector.collect(e, "send");
-                    LOG.error("Error while writing {" + value + "}.", e);
+                    LOG.error("Error while writing {" + value.value() + "}.",
+                            e);
                 }
             }
 
@@ -502,6 +583,15 @@ public class BusConnection implements Closeable {
         });
 
         m_connection.start();
+        for (String topic : m_topics) {
+            try {
+                m_connection.subscribe(topic);
+            } catch (IOException e) {
+                m_collector.collect(e, "subscribe after connect");
+                LOG.error("Error while subscribing to '" + topic + "'.", e);
+            }
+        }
+
         notify_state_changed();
 
         /*
@@ -597,14 +687,15 @@ public class BusConnection implements Closeable {
                 synchronized (BusConnection.this) {
                     if (m_out_buffer.size() > 0
                             && m_state == BusConnectionState.CONNECTED) {
-                        DataValue v = m_out_buffer.removeFirst();
+                        BusData v = m_out_buffer.removeFirst();
 
                         try {
-                            LOG.debug("Writing (deferred): " + v);
+                            LOG.debug("Writing (deferred): " + v.value());
                             m_connection.write(v);
                         } catch (IOException e) {
                             m_collector.collect(e, "send from buffer");
-                            LOG.error("Error while writing {" + v + "}.", e);
+                            LOG.error("Error while writing {" + v.value()
+                                    + "}.", e);
                         }
 
                         send_clear_out_buffer();
@@ -0,0 +1,226 @@
+package edu.cmu.cs.able.eseb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import auxtestlib.BooleanEvaluation;
+import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+
+/**
+ * Test case checking bus data queues.
+ */
+@SuppressWarnings("javadoc")
+public class BusDataQueueTest extends EsebTestCase {
+	private PrimitiveScope m_scope;
+
+	@Before
+	public void set_up() throws Exception {
+		m_scope = new PrimitiveScope();
+	}
+
+	private BusData make(int v) {
+		return new BusData(m_scope.int32().make(v));
+	}
+
+	private List<BusData> drain(BusDataQueue q) {
+		List<BusData> l = new ArrayList<>();
+		BusData bd;
+		while ((bd = q.poll()) != null) {
+			l.add(bd);
+		}
+
+		return l;
+	}
+
+	@Test
+	public void unbounded_queue_keeps_order_and_counts() throws Exception {
+		BusDataQueue q = new BusDataQueue();
+		assertEquals(-1, q.capacity());
+		assertNull(q.overflow_policy());
+		for (int i = 0; i < 100; i++) {
+			assertTrue(q.add(make(i)));
+		}
+
+		assertEquals(100, q.size());
+		assertEquals(100, q.high_water_mark());
+		List<BusData> l = drain(q);
+		assertEquals(100, l.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(m_scope.int32().make(i), l.get(i).value());
+		}
+
+		assertEquals(0, q.size());
+		assertEquals(100, q.high_water_mark());
+		assertEquals(100, q.added_count());
+		assertEquals(0, q.dropped_count());
+		assertEquals(0, q.rejected_count());
+	}
+
+	@Test
+	public void bounded_queue_wraps_around() throws Exception {
+		BusDataQueue q = new BusDataQueue(3,
+				BusDataQueueOverflowPolicy.REJECT);
+		assertEquals(3, q.capacity());
+		for (int i = 0; i < 10; i++) {
+			assertTrue(q.add(make(2 * i)));
+			assertTrue(q.add(make(2 * i + 1)));
+			assertEquals(m_scope.int32().make(2 * i), q.poll().value());
+			assertEquals(m_scope.int32().make(2 * i + 1), q.poll().value());
+			assertNull(q.poll());
+		}
+
+		assertEquals(2, q.high_water_mark());
+	}
+
+	@Test
+	public void full_queue_rejects_data() throws Exception {
+		BusDataQueue q = new BusDataQueue(2,
+				BusDataQueueOverflowPolicy.REJECT);
+		assertTrue(q.add(make(0)));
+		assertTrue(q.add(make(1)));
+		assertFalse(q.add(make(2)));
+		assertEquals(2, q.size());
+		assertEquals(1, q.rejected_count());
+		assertEquals(0, q.dropped_count());
+		assertEquals(m_scope.int32().make(0), q.poll().value());
+		assertEquals(m_scope.int32().make(1), q.poll().value());
+		assertNull(q.poll());
+	}
+
+	@Test
+	public void full_queue_drops_oldest_data() throws Exception {
+		BusDataQueue q = new BusDataQueue(2,
+				BusDataQueueOverflowPolicy.DROP_OLDEST);
+		for (int i = 0; i < 5; i++) {
+			assertTrue(q.add(make(i)));
+		}
+
+		assertEquals(2, q.size());
+		assertEquals(2, q.high_water_mark());
+		assertEquals(3, q.dropped_count());
+		assertEquals(0, q.rejected_count());
+		assertEquals(m_scope.int32().make(3), q.poll().value());
+		assertEquals(m_scope.int32().make(4), q.poll().value());
+		assertNull(q.poll());
+	}
+
+	@Test
+	public void full_queue_blocks_until_data_is_removed() throws Exception {
+		final BusDataQueue q = new BusDataQueue(1,
+				BusDataQueueOverflowPolicy.BLOCK);
+		assertTrue(q.add(make(0)));
+
+		final AtomicInteger added = new AtomicInteger();
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				if (q.add(make(1))) {
+					added.incrementAndGet();
+				}
+			}
+		};
+
+		t.start();
+		Thread.sleep(100);
+		assertEquals(0, added.get());
+		assertEquals(m_scope.int32().make(0), q.poll().value());
+		t.join(1000);
+		assertEquals(1, added.get());
+		assertEquals(m_scope.int32().make(1), q.poll().value());
+	}
+
+	@Test
+	public void blocked_add_fails_if_interrupted() throws Exception {
+		final BusDataQueue q = new BusDataQueue(1,
+				BusDataQueueOverflowPolicy.BLOCK);
+		assertTrue(q.add(make(0)));
+
+		final AtomicInteger failed = new AtomicInteger();
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				if (!q.add(make(1))) {
+					failed.incrementAndGet();
+				}
+			}
+		};
+
+		t.start();
+		Thread.sleep(100);
+		t.interrupt();
+		t.join(1000);
+		assertEquals(1, failed.get());
+		assertEquals(1, q.rejected_count());
+		assertEquals(1, q.size());
+	}
+
+	@Test
+	public void additions_are_coalesced_into_fewer_notifications()
+			throws Exception {
+		final BusDataQueue q = new BusDataQueue();
+		final AtomicInteger notifications = new AtomicInteger();
+		final List<BusData> received = new ArrayList<>();
+		q.dispatcher().add(new BusDataQueueListener() {
+			@Override
+			public void data_added_to_queue() {
+				notifications.incrementAndGet();
+				synchronized (received) {
+					received.addAll(drain(q));
+				}
+			}
+		});
+
+		for (int i = 0; i < 1000; i++) {
+			q.add(make(i));
+		}
+
+		wait_for_true(new BooleanEvaluation() {
+			@Override
+			public boolean evaluate() throws Exception {
+				synchronized (received) {
+					return received.size() == 1000;
+				}
+			}
+		});
+
+		m_dispatch_helper.wait_dispatch_clear();
+		assertTrue(notifications.get() < 1000);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(m_scope.int32().make(i), received.get(i).value());
+		}
+	}
+
+	@Test
+	public void data_added_before_listener_is_notified() throws Exception {
+		final BusDataQueue q = new BusDataQueue();
+		q.add(make(0));
+
+		final AtomicInteger notifications = new AtomicInteger();
+		q.dispatcher().add(new BusDataQueueListener() {
+			@Override
+			public void data_added_to_queue() {
+				notifications.incrementAndGet();
+				drain(q);
+			}
+		});
+
+		wait_for_true(new BooleanEvaluation() {
+			@Override
+			public boolean evaluate() throws Exception {
+				return notifications.get() == 1;
+			}
+		});
+
+		q.add(make(1));
+		wait_for_true(new BooleanEvaluation() {
+			@Override
+			public boolean evaluate() throws Exception {
+				return notifications.get() == 2;
+			}
+		});
+	}
+}
@@ -33,6 +33,23 @@ public class ControlledConnectionTest extends EsebTestCase {
 				m_connection);
 	}
 	
+	/**
+	 * Starts the controlled connection and removes the announcement that
+	 * it reads frame headers from the data written, checking that it was
+	 * written first.
+	 */
+	private void start() {
+		m_controlled.start();
+		synchronized (m_connection) {
+			assertTrue(m_connection.m_written.size() > 0);
+			assertEquals(m_pscope.string().make(
+					ControlledDataTypeSocketConnectionImpl.CMD_PREFIX
+					+ ControlledDataTypeSocketConnectionImpl
+					.CMD_FRAME_HEADERS),
+					m_connection.m_written.remove(0).value());
+		}
+	}
+	
 	@Test
 	public void startup_shutdown_controlled_operates_on_connection()
 			throws Exception {
@@ -40,7 +57,7 @@ public class ControlledConnectionTest extends EsebTestCase {
 		assertEquals(0, m_connection.m_stop);
 		assertEquals(0, m_connection.m_closed);
 		
-		m_controlled.start();
+		start();
 		
 		assertEquals(1, m_connection.m_start);
 		assertEquals(0, m_connection.m_stop);
@@ -67,7 +84,7 @@ public class ControlledConnectionTest extends EsebTestCase {
 		Thread.sleep(MULT * 3 / 2 * TIME_UNIT_MS);
 		assertEquals(0, m_connection.m_written.size());
 		
-		m_controlled.start();
+		start();
 		
 		Thread.sleep(MULT * 3 / 2 * TIME_UNIT_MS);
 		assertEquals(1, m_connection.m_written.size());
@@ -96,7 +113,7 @@ public class ControlledConnectionTest extends EsebTestCase {
 		m_controlled.m_ping_send_interval_ms = MULT * TIME_UNIT_MS;
 		m_controlled.m_ping_max_interval_ms = MULT * TIME_UNIT_MS;
 		
-		m_controlled.start();
+		start();
 		
 		assertEquals(0, m_connection.m_closed);
 		final StringValue sv = m_pscope.string().make(
@@ -126,7 +143,7 @@ public class ControlledConnectionTest extends EsebTestCase {
 		
 		DataValue v = m_pscope.int32().make(33);
 		
-		m_controlled.start();
+		start();
 		
 		m_controlled.write(v);
 		assertEquals(1, m_connection.m_written.size());
@@ -154,7 +171,7 @@ public class ControlledConnectionTest extends EsebTestCase {
 	
 	@Test
 	public void sends_nosend_when_asked() throws Exception {
-		m_controlled.start();
+		start();
 		
 		m_controlled.publish_only();
 		
@@ -178,7 +195,7 @@ public class ControlledConnectionTest extends EsebTestCase {
 		TestCloseableListener tcl = new TestCloseableListener();
 		m_controlled.closeable_dispatcher().add(tcl);
 		
-		m_controlled.start();
+		start();
 		
 		Thread.sleep(MULT * 3 / 2 * TIME_UNIT_MS);
 		assertEquals(1, m_connection.m_written.size());
@@ -205,7 +222,7 @@ public class ControlledConnectionTest extends EsebTestCase {
 		TestArraySaveQueue asq = new TestArraySaveQueue();
 		m_controlled.queue_group().add(asq);
 		
-		m_controlled.start();
+		start();
 		
 		final Int32Value iv = m_pscope.int32().make(40);
 		final StringValue sv = m_pscope.string().make("foo");
@@ -226,12 +243,91 @@ public class ControlledConnectionTest extends EsebTestCase {
 		assertEquals(sv, asq.m_values.get(1));
 	}
 	
+	@Test
+	public void receive_queue_blocks_reader_when_full() throws Exception {
+		final int capacity =
+				ControlledDataTypeSocketConnectionImpl.RECEIVE_QUEUE_CAPACITY;
+		BusDataQueue receive = m_controlled.receive_queue();
+		assertEquals(capacity, receive.capacity());
+		assertEquals(BusDataQueueOverflowPolicy.BLOCK,
+				receive.overflow_policy());
+		
+		/*
+		 * Data is only processed as fast as this queue is drained.
+		 */
+		BusDataQueue out = new BusDataQueue(1,
+				BusDataQueueOverflowPolicy.BLOCK);
+		m_controlled.queue_group().add(out);
+		start();
+		
+		final int count = capacity + 100;
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < count; i++) {
+					m_connection.add_to_queue(new BusData(
+							m_pscope.int32().make(i)));
+				}
+			}
+		};
+		reader.start();
+		
+		Thread.sleep(MULT * MULT * TIME_UNIT_MS);
+		assertTrue(reader.isAlive());
+		assertEquals(capacity, receive.size());
+		
+		for (int i = 0; i < count; i++) {
+			BusData bd;
+			while ((bd = out.poll()) == null) {
+				Thread.sleep(1);
+			}
+			
+			assertEquals(m_pscope.int32().make(i), bd.value());
+		}
+		
+		reader.join();
+		m_controlled.stop();
+		assertEquals(capacity, receive.high_water_mark());
+		assertEquals(count, receive.added_count());
+		assertEquals(0, receive.rejected_count());
+		assertEquals(0, receive.dropped_count());
+	}
+	
+	@Test
+	public void sends_frame_headers_only_after_peer_announces_them()
+			throws Exception {
+		start();
+		
+		DataValue v = m_pscope.int32().make(5);
+		m_controlled.write(new BusData(v, "topic", 7));
+		
+		final StringValue sv = m_pscope.string().make(
+				ControlledDataTypeSocketConnectionImpl.CMD_PREFIX
+				+ ControlledDataTypeSocketConnectionImpl.CMD_FRAME_HEADERS);
+		m_connection.add_to_queue(new BusData(sv));
+		Thread.sleep(TIME_UNIT_MS);
+		
+		m_controlled.write(new BusData(v, "topic", 7));
+		
+		m_controlled.stop();
+		
+		assertEquals(2, m_connection.m_written.size());
+		BusData before = m_connection.m_written.get(0);
+		assertEquals(v, before.value());
+		assertNull(before.topic());
+		assertEquals(BusData.NO_CORRELATION_ID, before.correlation_id());
+		BusData after = m_connection.m_written.get(1);
+		assertEquals(v, after.value());
+		assertEquals("topic", after.topic());
+		assertEquals(7, after.correlation_id());
+	}
+	
 	@Test
 	public void ignores_unknown_commands() throws Exception {
 		TestArraySaveQueue asq = new TestArraySaveQueue();
 		m_controlled.queue_group().add(asq);
 		
-		m_controlled.start();
+		start();
 		
 		final StringValue cmd = m_pscope.string().make(
 				ControlledDataTypeSocketConnectionImpl.CMD_PREFIX + "foo");
@@ -157,6 +157,29 @@ public class ModifyServerFilterChainTest extends EsebTestCase {
 		
 		assertEquals(m_pscope.int32().make(6), m_save_1.m_values.get(0));
 		assertEquals(m_pscope.int32().make(6), m_save_2.m_values.get(0));
+		assertEquals(1, m_bus.distributed_count());
+		assertEquals(1, m_bus.encode_count());
+		assertEquals(2, m_bus.fan_out_count());
+	}
+	
+	@Test
+	public void unmodified_data_is_forwarded_without_encoding()
+			throws Exception {
+		for (int i = 0; i < 3; i++) {
+			m_conn_1.send(m_pscope.int32().make(i));
+		}
+		
+		wait_for_true(new BooleanEvaluation() {
+			@Override
+			public boolean evaluate() throws Exception {
+				return m_save_1.m_values.size() == 3
+						&& m_save_2.m_values.size() == 3;
+			}
+		});
+		
+		assertEquals(3, m_bus.distributed_count());
+		assertEquals(0, m_bus.encode_count());
+		assertEquals(6, m_bus.fan_out_count());
 	}
 	
 	@Test
@@ -0,0 +1,285 @@
+package edu.cmu.cs.able.eseb;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+
+import org.apache.commons.lang.RandomStringUtils;
+import org.apache.commons.lang.math.RandomUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import auxtestlib.BooleanEvaluation;
+import auxtestlib.RandomGenerator;
+import auxtestlib.TestPropertiesDefinition;
+import edu.cmu.cs.able.eseb.bus.EventBus;
+import edu.cmu.cs.able.eseb.bus.EventBusAcceptPreprocessor;
+import edu.cmu.cs.able.eseb.bus.EventBusConnectionData;
+import edu.cmu.cs.able.eseb.bus.EventBusIoMode;
+import edu.cmu.cs.able.eseb.conn.BusConnection;
+import edu.cmu.cs.able.eseb.conn.BusConnectionState;
+import edu.cmu.cs.able.typelib.prim.Int32Value;
+import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * Test case that checks an event bus running in
+ * {@link EventBusIoMode#SELECTOR} mode.
+ */
+@SuppressWarnings("javadoc")
+public class SelectorBusTest extends EsebTestCase {
+	private short m_port;
+	private PrimitiveScope m_scope;
+
+	@Before
+	public void set_up() throws Exception {
+		m_port = (short) TestPropertiesDefinition.getInt(
+				"free-port-zone-start");
+		m_scope = new PrimitiveScope();
+	}
+
+	@Test
+	public void close_releases_port() throws Exception {
+		try (EventBus b = new EventBus(m_port, m_scope,
+				EventBusIoMode.SELECTOR)) {
+			assertEquals(EventBusIoMode.SELECTOR, b.mode());
+			b.start();
+			Thread.sleep(50);
+			assertFalse(b.closed());
+		}
+
+		try (EventBus b = new EventBus(m_port, m_scope,
+				EventBusIoMode.SELECTOR)) {
+			assertFalse(b.closed());
+		}
+
+		try {
+			new Socket("localhost", m_port).close();
+			fail();
+		} catch (IOException e) {
+			/*
+			 * Expected.
+			 */
+		}
+	}
+
+	@Test
+	public void publish_values_and_check_statistics() throws Exception {
+		CollectingBusServerListener bsl = new CollectingBusServerListener();
+		try (EventBus srv = new EventBus(m_port, m_scope,
+				EventBusIoMode.SELECTOR)) {
+			srv.add_listener(bsl);
+			srv.start();
+
+			final TestArraySaveQueue asq = new TestArraySaveQueue();
+			try (final BusConnection c = new BusConnection("localhost",
+					m_port, m_scope)) {
+				c.queue_group().add(asq);
+				c.start();
+				wait_for_true(new BooleanEvaluation() {
+					@Override
+					public boolean evaluate() throws Exception {
+						return c.state() == BusConnectionState.CONNECTED;
+					}
+				});
+
+				DataValue v = m_scope.int32().make(15);
+				c.send(v);
+
+				wait_for_true(new BooleanEvaluation() {
+					@Override
+					public boolean evaluate() throws Exception {
+						return asq.m_values.size() == 1;
+					}
+				});
+
+				m_dispatch_helper.wait_dispatch_clear();
+				assertEquals(1, bsl.m_accepted.size());
+				assertEquals(1, bsl.m_distributed_values.size());
+				assertEquals(v, bsl.m_distributed_values.get(0).value());
+				assertEquals(v, asq.m_values.get(0));
+
+				EventBusConnectionData cd = bsl.m_distributed_sources.get(0);
+				assertEquals(1, cd.publish_count());
+				assertEquals(1, cd.subscribe_count());
+			}
+
+			Thread.sleep(250);
+			assertEquals(1, bsl.m_disconnected.size());
+		}
+
+		Thread.sleep(250);
+	}
+
+	@Test
+	public void send_multiple_values_and_receives_in_order() throws Exception {
+		final int TO_SEND_COUNT = 5000;
+
+		try (EventBus srv = new EventBus(m_port, m_scope,
+				EventBusIoMode.SELECTOR)) {
+			srv.start();
+			try (BusConnection c1 = new BusConnection("localhost", m_port,
+					m_scope);
+					BusConnection c2 = new BusConnection("localhost", m_port,
+					m_scope)) {
+				c1.start();
+				c2.start();
+
+				Int32Value[] to_send = new Int32Value[TO_SEND_COUNT];
+				for (int i = 0; i < to_send.length; i++) {
+					to_send[i] = m_scope.int32().make(RandomUtils.nextInt());
+				}
+
+				final TestArraySaveQueue tasq1 = new TestArraySaveQueue();
+				c1.queue_group().add(tasq1);
+				final TestArraySaveQueue tasq2 = new TestArraySaveQueue();
+				c2.queue_group().add(tasq2);
+
+				for (int i = 0; i < to_send.length; i++) {
+					c1.send(to_send[i]);
+				}
+
+				wait_for_true(new BooleanEvaluation() {
+					@Override
+					public boolean evaluate() throws Exception {
+						return tasq1.m_values.size() == TO_SEND_COUNT
+								&& tasq2.m_values.size() == TO_SEND_COUNT;
+					}
+				});
+
+				for (int i = 0; i < to_send.length; i++) {
+					assertEquals(to_send[i], tasq1.m_values.get(i));
+					assertEquals(to_send[i], tasq2.m_values.get(i));
+				}
+			}
+		}
+
+		Thread.sleep(250);
+	}
+
+	@Test
+	public void preprocessor_can_deny_connection() throws Exception {
+		try (EventBus srv = new EventBus(m_port, m_scope,
+				EventBusIoMode.SELECTOR)) {
+			srv.add_preprocessor(new EventBusAcceptPreprocessor() {
+				@Override
+				public boolean preprocess(ControlledDataTypeSocketConnection
+						connection) {
+					return false;
+				}
+			});
+			srv.start();
+
+			try (BusConnection c = new BusConnection("localhost", m_port,
+					m_scope)) {
+				c.start();
+				Thread.sleep(1000);
+				assertNotSame(BusConnectionState.CONNECTED, c.state());
+			}
+		}
+
+		Thread.sleep(250);
+	}
+
+	@Test
+	public void slow_subscriber_is_disconnected() throws Exception {
+		final CollectingBusServerListener bsl =
+				new CollectingBusServerListener();
+		try (EventBus srv = new EventBus(m_port, m_scope,
+				EventBusIoMode.SELECTOR)) {
+			srv.outbound_limit(10);
+			srv.add_listener(bsl);
+			srv.start();
+
+			/*
+			 * The slow subscriber connects but never reads.
+			 */
+			try (Socket slow = new Socket("localhost", m_port);
+					final BusConnection c = new BusConnection("localhost",
+					m_port, m_scope)) {
+				slow.setReceiveBufferSize(1024);
+				/*
+				 * The publisher does not get its own data back, so it
+				 * cannot be the one that falls behind.
+				 */
+				c.subscribe("other");
+				c.start();
+				wait_for_true(new BooleanEvaluation() {
+					@Override
+					public boolean evaluate() throws Exception {
+						return c.state() == BusConnectionState.CONNECTED
+								&& bsl.m_accepted.size() == 2;
+					}
+				});
+				Thread.sleep(250);
+
+				String text = RandomStringUtils.randomAlphanumeric(10_000);
+				for (int i = 0; i < 5000 && bsl.m_disconnected.isEmpty();
+						i++) {
+					c.send(m_scope.string().make(text), "data");
+				}
+
+				wait_for_true(new BooleanEvaluation() {
+					@Override
+					public boolean evaluate() throws Exception {
+						return bsl.m_disconnected.size() == 1;
+					}
+				});
+
+				/*
+				 * The publisher is still connected, only the slow
+				 * subscriber was dropped.
+				 */
+				Thread.sleep(250);
+				assertEquals(BusConnectionState.CONNECTED, c.state());
+				assertEquals(1, c.connect_count());
+				assertEquals(1, bsl.m_disconnected.size());
+
+				slow.setSoTimeout(5000);
+				byte[] buffer = new byte[65536];
+				int r;
+				do {
+					try {
+						r = slow.getInputStream().read(buffer);
+					} catch (SocketException e) {
+						r = -1;
+					}
+				} while (r != -1);
+			}
+		}
+
+		Thread.sleep(250);
+	}
+
+	@Test
+	public void client_that_sends_garbage_is_disconnected() throws Exception {
+		try (EventBus b = new EventBus(m_port, m_scope,
+				EventBusIoMode.SELECTOR)) {
+			b.start();
+			try (Socket s = new Socket("localhost", m_port)) {
+				s.setSoTimeout(25);
+				s.getOutputStream().write(RandomGenerator.randBytes(1000));
+
+				long now = System.currentTimeMillis();
+				int r;
+				do {
+					r = 0;
+					try {
+						r = s.getInputStream().read();
+					} catch (SocketTimeoutException e) {
+						/*
+						 * Expected.
+						 */
+					} catch (SocketException e) {
+						r = -1;
+					}
+				} while (r != -1 && System.currentTimeMillis() - now < 5000);
+
+				assertEquals(-1, r);
+			}
+		}
+
+		Thread.sleep(250);
+	}
+}
@@ -0,0 +1,254 @@
+package edu.cmu.cs.able.eseb;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import auxtestlib.BooleanEvaluation;
+import auxtestlib.TestPropertiesDefinition;
+import edu.cmu.cs.able.eseb.bus.EventBus;
+import edu.cmu.cs.able.eseb.bus.EventBusIoMode;
+import edu.cmu.cs.able.eseb.conn.BusConnection;
+import edu.cmu.cs.able.eseb.conn.BusConnectionState;
+import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+
+/**
+ * Test case checking that the event bus only forwards data with a topic to
+ * the connections that subscribed to it.
+ */
+@SuppressWarnings("javadoc")
+public class TopicRoutingTest extends EsebTestCase {
+	private short m_port;
+	private PrimitiveScope m_scope;
+
+	@Before
+	public void set_up() throws Exception {
+		m_port = (short) TestPropertiesDefinition.getInt(
+				"free-port-zone-start");
+		m_scope = new PrimitiveScope();
+	}
+
+	private void wait_connected(final BusConnection... cs) throws Exception {
+		wait_for_true(new BooleanEvaluation() {
+			@Override
+			public boolean evaluate() throws Exception {
+				for (BusConnection c : cs) {
+					if (c.state() != BusConnectionState.CONNECTED) {
+						return false;
+					}
+				}
+
+				return true;
+			}
+		});
+	}
+
+	private void check_routing(EventBusIoMode mode) throws Exception {
+		try (EventBus srv = new EventBus(m_port, m_scope, mode);
+				BusConnection pub = new BusConnection("localhost", m_port,
+				m_scope);
+				BusConnection sub_a = new BusConnection("localhost", m_port,
+				m_scope);
+				BusConnection all = new BusConnection("localhost", m_port,
+				m_scope)) {
+			srv.start();
+			final TestArraySaveQueue q_a = new TestArraySaveQueue();
+			sub_a.queue_group().add(q_a);
+			sub_a.subscribe("a");
+			final TestArraySaveQueue q_all = new TestArraySaveQueue();
+			all.queue_group().add(q_all);
+
+			pub.start();
+			sub_a.start();
+			all.start();
+			wait_connected(pub, sub_a, all);
+
+			/*
+			 * Give the subscription time to reach the bus.
+			 */
+			Thread.sleep(250);
+
+			pub.send(m_scope.int32().make(1), "a");
+			pub.send(m_scope.int32().make(2), "b");
+			pub.send(m_scope.int32().make(3));
+
+			wait_for_true(new BooleanEvaluation() {
+				@Override
+				public boolean evaluate() throws Exception {
+					return q_all.m_values.size() == 3
+							&& q_a.m_values.size() == 2;
+				}
+			});
+
+			assertEquals(m_scope.int32().make(1), q_a.m_values.get(0));
+			assertEquals(m_scope.int32().make(3), q_a.m_values.get(1));
+			assertEquals(m_scope.int32().make(1), q_all.m_values.get(0));
+			assertEquals(m_scope.int32().make(2), q_all.m_values.get(1));
+			assertEquals(m_scope.int32().make(3), q_all.m_values.get(2));
+
+			/*
+			 * "b" is not forwarded to sub_a. The publisher itself has no
+			 * subscriptions and gets everything.
+			 */
+			assertEquals(1, srv.filtered_count());
+			assertEquals(8, srv.fan_out_count());
+
+			sub_a.unsubscribe("a");
+			Thread.sleep(250);
+			pub.send(m_scope.int32().make(4), "b");
+			wait_for_true(new BooleanEvaluation() {
+				@Override
+				public boolean evaluate() throws Exception {
+					return q_all.m_values.size() == 4
+							&& q_a.m_values.size() == 3;
+				}
+			});
+
+			assertEquals(m_scope.int32().make(4), q_a.m_values.get(2));
+		}
+
+		Thread.sleep(250);
+	}
+
+	@Test
+	public void blocking_bus_routes_by_topic() throws Exception {
+		check_routing(EventBusIoMode.BLOCKING);
+	}
+
+	@Test
+	public void selector_bus_routes_by_topic() throws Exception {
+		check_routing(EventBusIoMode.SELECTOR);
+	}
+
+	@Test
+	public void topic_is_received_with_data() throws Exception {
+		try (EventBus srv = new EventBus(m_port, m_scope);
+				BusConnection c = new BusConnection("localhost", m_port,
+				m_scope)) {
+			srv.start();
+			final BusDataQueue q = new BusDataQueue();
+			c.queue_group().add(q);
+			c.start();
+			wait_connected(c);
+
+			/*
+			 * Give the bus's announcement that it reads frame headers time
+			 * to arrive: until then, data is sent without its header.
+			 */
+			Thread.sleep(250);
+
+			c.send(m_scope.string().make("x"), "t\u00f3pico");
+			wait_for_true(new BooleanEvaluation() {
+				@Override
+				public boolean evaluate() throws Exception {
+					return q.size() == 1;
+				}
+			});
+
+			BusData bd = q.poll();
+			assertEquals("t\u00f3pico", bd.topic());
+			assertEquals(m_scope.string().make("x"), bd.value());
+		}
+
+		Thread.sleep(250);
+	}
+
+	private void check_correlation_id(EventBusIoMode mode) throws Exception {
+		try (EventBus srv = new EventBus(m_port, m_scope, mode);
+				BusConnection c = new BusConnection("localhost", m_port,
+				m_scope)) {
+			srv.start();
+			final BusDataQueue q = new BusDataQueue();
+			c.queue_group().add(q);
+			c.start();
+			wait_connected(c);
+
+			/*
+			 * Give the bus's announcement that it reads frame headers time
+			 * to arrive: until then, data is sent without its header.
+			 */
+			Thread.sleep(250);
+
+			c.send(m_scope.int32().make(1), "a", 0x123456789abcdefL);
+			c.send(m_scope.int32().make(2), null, -1);
+			c.send(m_scope.int32().make(3));
+			wait_for_true(new BooleanEvaluation() {
+				@Override
+				public boolean evaluate() throws Exception {
+					return q.size() == 3;
+				}
+			});
+
+			BusData bd = q.poll();
+			assertEquals(0x123456789abcdefL, bd.correlation_id());
+			assertEquals("a", bd.topic());
+			assertEquals(m_scope.int32().make(1), bd.value());
+			bd = q.poll();
+			assertEquals(-1, bd.correlation_id());
+			assertNull(bd.topic());
+			assertEquals(m_scope.int32().make(2), bd.value());
+			bd = q.poll();
+			assertEquals(BusData.NO_CORRELATION_ID, bd.correlation_id());
+			assertEquals(m_scope.int32().make(3), bd.value());
+		}
+
+		Thread.sleep(250);
+	}
+
+	@Test
+	public void blocking_bus_forwards_correlation_id() throws Exception {
+		check_correlation_id(EventBusIoMode.BLOCKING);
+	}
+
+	@Test
+	public void selector_bus_forwards_correlation_id() throws Exception {
+		check_correlation_id(EventBusIoMode.SELECTOR);
+	}
+
+	@Test
+	public void subscriptions_survive_reconnection() throws Exception {
+		final TestArraySaveQueue q = new TestArraySaveQueue();
+		try (final BusConnection pub = new BusConnection("localhost",
+				m_port, m_scope);
+				final BusConnection sub = new BusConnection("localhost",
+				m_port, m_scope)) {
+			sub.subscribe("a");
+			sub.queue_group().add(q);
+
+			try (EventBus srv = new EventBus(m_port, m_scope)) {
+				srv.start();
+				pub.start();
+				sub.start();
+				wait_connected(pub, sub);
+			}
+
+			wait_for_true(new BooleanEvaluation() {
+				@Override
+				public boolean evaluate() throws Exception {
+					return pub.state() != BusConnectionState.CONNECTED
+							&& sub.state() != BusConnectionState.CONNECTED;
+				}
+			});
+
+			try (EventBus srv = new EventBus(m_port, m_scope)) {
+				srv.start();
+				wait_connected(pub, sub);
+				Thread.sleep(250);
+
+				pub.send(m_scope.int32().make(1), "b");
+				pub.send(m_scope.int32().make(2), "a");
+				wait_for_true(new BooleanEvaluation() {
+					@Override
+					public boolean evaluate() throws Exception {
+						return q.m_values.size() > 0;
+					}
+				});
+
+				Thread.sleep(100);
+				assertEquals(1, q.m_values.size());
+				assertEquals(m_scope.int32().make(2), q.m_values.get(0));
+			}
+		}
+
+		Thread.sleep(250);
+	}
+}
@@ -0,0 +1,577 @@
+package edu.cmu.cs.able.typelib.binenc;
+
+import incubator.pval.Ensure;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.cmu.cs.able.typelib.AsciiEncoding;
+import edu.cmu.cs.able.typelib.comp.CollectionDataType;
+import edu.cmu.cs.able.typelib.comp.CollectionDataValue;
+import edu.cmu.cs.able.typelib.comp.MapDataType;
+import edu.cmu.cs.able.typelib.comp.MapDataValue;
+import edu.cmu.cs.able.typelib.comp.OptionalDataType;
+import edu.cmu.cs.able.typelib.comp.OptionalDataValue;
+import edu.cmu.cs.able.typelib.comp.TupleDataType;
+import edu.cmu.cs.able.typelib.comp.TupleDataValue;
+import edu.cmu.cs.able.typelib.enc.DataValueEncoding;
+import edu.cmu.cs.able.typelib.enc.InvalidEncodingException;
+import edu.cmu.cs.able.typelib.enumeration.EnumerationType;
+import edu.cmu.cs.able.typelib.enumeration.EnumerationValue;
+import edu.cmu.cs.able.typelib.parser.DataTypeNameParser;
+import edu.cmu.cs.able.typelib.parser.ParseException;
+import edu.cmu.cs.able.typelib.parser.TokenMgrError;
+import edu.cmu.cs.able.typelib.prim.AsciiType;
+import edu.cmu.cs.able.typelib.prim.AsciiValue;
+import edu.cmu.cs.able.typelib.prim.BooleanType;
+import edu.cmu.cs.able.typelib.prim.BooleanValue;
+import edu.cmu.cs.able.typelib.prim.DoubleType;
+import edu.cmu.cs.able.typelib.prim.DoubleValue;
+import edu.cmu.cs.able.typelib.prim.FloatType;
+import edu.cmu.cs.able.typelib.prim.FloatValue;
+import edu.cmu.cs.able.typelib.prim.Int16Type;
+import edu.cmu.cs.able.typelib.prim.Int16Value;
+import edu.cmu.cs.able.typelib.prim.Int32Type;
+import edu.cmu.cs.able.typelib.prim.Int32Value;
+import edu.cmu.cs.able.typelib.prim.Int64Type;
+import edu.cmu.cs.able.typelib.prim.Int64Value;
+import edu.cmu.cs.able.typelib.prim.Int8Type;
+import edu.cmu.cs.able.typelib.prim.Int8Value;
+import edu.cmu.cs.able.typelib.prim.PeriodType;
+import edu.cmu.cs.able.typelib.prim.PeriodValue;
+import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+import edu.cmu.cs.able.typelib.prim.StringType;
+import edu.cmu.cs.able.typelib.prim.StringValue;
+import edu.cmu.cs.able.typelib.prim.TimeType;
+import edu.cmu.cs.able.typelib.prim.TimeValue;
+import edu.cmu.cs.able.typelib.prim.TypeType;
+import edu.cmu.cs.able.typelib.prim.TypeValue;
+import edu.cmu.cs.able.typelib.scope.AmbiguousNameException;
+import edu.cmu.cs.able.typelib.scope.HierarchicalName;
+import edu.cmu.cs.able.typelib.struct.Field;
+import edu.cmu.cs.able.typelib.struct.StructureDataType;
+import edu.cmu.cs.able.typelib.struct.StructureDataValue;
+import edu.cmu.cs.able.typelib.struct.UnknownFieldException;
+import edu.cmu.cs.able.typelib.txtenc.HNameAsciiEncoding;
+import edu.cmu.cs.able.typelib.type.DataType;
+import edu.cmu.cs.able.typelib.type.DataTypeScope;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * <p>Binary encoding of data values. It supports the same data types as the
+ * {@link edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding} and,
+ * like it, creates data types which were not found in the scope but whose
+ * names can be parsed by {@link DataTypeNameParser}.</p>
+ * <p>Each encoded value is self-contained: it carries its own table of the
+ * data types it uses so encodings can be decoded independently of each other
+ * and shared between several streams.</p>
+ */
+/*
+ * Every value is encoded as a type reference followed by the value's
+ * contents. A type reference is a varint: 0 means a new type follows, encoded
+ * as a string with its absolute name, and gets the next index in the table;
+ * k > 0 refers to the (k - 1)-th entry in the table. The table only lives
+ * while a single top-level value is encoded or decoded.
+ *
+ * Counts and lengths are unsigned varints, int32 values are zig-zag varints,
+ * strings are varint lengths followed by UTF-8 bytes and all other
+ * primitives are written with fixed width.
+ */
+public class BinaryEncoding implements DataValueEncoding {
+	/**
+	 * Maximum length of strings and maximum number of elements in composite
+	 * values accepted when decoding. Protects against allocating huge
+	 * amounts of memory when decoding corrupt data.
+	 */
+	private static final int MAXIMUM_LENGTH = 20_000_000;
+
+	/**
+	 * Charset used for strings.
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The primitive scope.
+	 */
+	private PrimitiveScope m_pscope;
+
+	/**
+	 * Creates a new binary encoding.
+	 * @param pscope the primitive scope to use
+	 */
+	public BinaryEncoding(PrimitiveScope pscope) {
+		Ensure.not_null(pscope);
+		m_pscope = pscope;
+	}
+
+	@Override
+	public void encode(DataValue value, DataOutputStream os)
+			throws IOException {
+		Ensure.not_null(value);
+		Ensure.not_null(os);
+
+		encode(value, os, new HashMap<DataType, Integer>());
+	}
+
+	/**
+	 * Encodes a value with its type reference.
+	 * @param value the value
+	 * @param os the stream to write to
+	 * @param types the types already written with their indexes
+	 * @throws IOException failed to write
+	 */
+	private void encode(DataValue value, DataOutputStream os,
+			Map<DataType, Integer> types) throws IOException {
+		DataType dt = value.type();
+		Integer idx = types.get(dt);
+		if (idx == null) {
+			write_varint(os, 0);
+			write_string(os, new HNameAsciiEncoding().encode(
+					dt.absolute_hname()));
+			types.put(dt, types.size());
+		} else {
+			write_varint(os, idx + 1);
+		}
+
+		if (value instanceof BooleanValue) {
+			os.writeBoolean(((BooleanValue) value).value());
+		} else if (value instanceof Int8Value) {
+			os.writeByte(((Int8Value) value).value());
+		} else if (value instanceof Int16Value) {
+			os.writeShort(((Int16Value) value).value());
+		} else if (value instanceof Int32Value) {
+			int v = ((Int32Value) value).value();
+			write_varint(os, (v << 1) ^ (v >> 31));
+		} else if (value instanceof Int64Value) {
+			os.writeLong(((Int64Value) value).value());
+		} else if (value instanceof FloatValue) {
+			os.writeFloat(((FloatValue) value).value());
+		} else if (value instanceof DoubleValue) {
+			os.writeDouble(((DoubleValue) value).value());
+		} else if (value instanceof TimeValue) {
+			os.writeLong(((TimeValue) value).value());
+		} else if (value instanceof PeriodValue) {
+			os.writeLong(((PeriodValue) value).value());
+		} else if (value instanceof AsciiValue) {
+			write_string(os, ((AsciiValue) value).value());
+		} else if (value instanceof StringValue) {
+			write_string(os, ((StringValue) value).value());
+		} else if (value instanceof TypeValue) {
+			write_string(os, new HNameAsciiEncoding().encode(
+					((TypeValue) value).value().absolute_hname()));
+		} else if (value instanceof EnumerationValue) {
+			write_string(os, ((EnumerationValue) value).name());
+		} else if (value instanceof OptionalDataValue) {
+			DataValue v = ((OptionalDataValue) value).value();
+			os.writeBoolean(v != null);
+			if (v != null) {
+				encode(v, os, types);
+			}
+		} else if (value instanceof CollectionDataValue) {
+			List<DataValue> snapshot = ((CollectionDataValue) value)
+					.snapshot();
+			write_varint(os, snapshot.size());
+			for (DataValue v : snapshot) {
+				encode(v, os, types);
+			}
+		} else if (value instanceof MapDataValue) {
+			Map<DataValue, DataValue> all = ((MapDataValue) value).all();
+			write_varint(os, all.size());
+			for (Map.Entry<DataValue, DataValue> e : all.entrySet()) {
+				encode(e.getKey(), os, types);
+				encode(e.getValue(), os, types);
+			}
+		} else if (value instanceof TupleDataValue) {
+			for (DataValue v : ((TupleDataValue) value).data()) {
+				encode(v, os, types);
+			}
+		} else if (value instanceof StructureDataValue) {
+			Set<Field> fields = ((StructureDataType) dt).fields();
+			write_varint(os, fields.size());
+			for (Field f : fields) {
+				write_string(os, f.name());
+				encode(((StructureDataValue) value).value(f), os, types);
+			}
+		} else {
+			/*
+			 * There is no encoding that supports the data type.
+			 */
+			Ensure.unreachable();
+		}
+	}
+
+	@Override
+	public DataValue decode(DataInputStream is, DataTypeScope scope)
+			throws IOException, InvalidEncodingException {
+		Ensure.not_null(is);
+		Ensure.not_null(scope);
+
+		/*
+		 * Reading the first byte is the only place where EOF means there
+		 * was no data. After that, EOF means the data is truncated.
+		 */
+		int first = is.read();
+		if (first == -1) {
+			throw new EOFException();
+		}
+
+		try {
+			return decode(first, is, scope, new ArrayList<DataType>());
+		} catch (EOFException e) {
+			throw new InvalidEncodingException("EOF found while decoding "
+					+ "data value.", e);
+		}
+	}
+
+	/**
+	 * Decodes a value with its type reference.
+	 * @param first the first byte of the type reference
+	 * @param is the stream to read from
+	 * @param scope the scope where to find data types
+	 * @param types the types already read, by index
+	 * @return the decoded value
+	 * @throws IOException failed to read
+	 * @throws InvalidEncodingException the encoding is invalid
+	 */
+	private DataValue decode(int first, DataInputStream is,
+			DataTypeScope scope, List<DataType> types) throws IOException,
+			InvalidEncodingException {
+		DataType dt;
+		int ref = read_varint(is, first);
+		if (ref == 0) {
+			String name = read_string(is);
+			if (name.length() == 0) {
+				throw new InvalidEncodingException("Empty data type name.");
+			}
+
+			HierarchicalName hn = new HNameAsciiEncoding().decode(name);
+			dt = find_data_type(hn, scope);
+			if (dt == null) {
+				throw new InvalidEncodingException("Cannot find data type '"
+						+ hn.toString() + "'.");
+			}
+
+			types.add(dt);
+		} else if (ref > 0 && ref <= types.size()) {
+			dt = types.get(ref - 1);
+		} else {
+			throw new InvalidEncodingException("Invalid data type reference "
+					+ ref + ".");
+		}
+
+		if (dt instanceof BooleanType) {
+			return ((BooleanType) dt).make(is.readBoolean());
+		} else if (dt instanceof Int8Type) {
+			return ((Int8Type) dt).make(is.readByte());
+		} else if (dt instanceof Int16Type) {
+			return ((Int16Type) dt).make(is.readShort());
+		} else if (dt instanceof Int32Type) {
+			int v = read_varint(is, is.readUnsignedByte());
+			return ((Int32Type) dt).make((v >>> 1) ^ -(v & 1));
+		} else if (dt instanceof Int64Type) {
+			return ((Int64Type) dt).make(is.readLong());
+		} else if (dt instanceof FloatType) {
+			return ((FloatType) dt).make(is.readFloat());
+		} else if (dt instanceof DoubleType) {
+			return ((DoubleType) dt).make(is.readDouble());
+		} else if (dt instanceof TimeType) {
+			return ((TimeType) dt).make(is.readLong());
+		} else if (dt instanceof PeriodType) {
+			return ((PeriodType) dt).make(is.readLong());
+		} else if (dt instanceof AsciiType) {
+			String str = read_string(is);
+			if (!AsciiEncoding.is_ascii(str)) {
+				throw new InvalidEncodingException("Ascii string has non-ascii "
+						+ "characters.");
+			}
+
+			return ((AsciiType) dt).make(str);
+		} else if (dt instanceof StringType) {
+			return ((StringType) dt).make(read_string(is));
+		} else if (dt instanceof TypeType) {
+			return decode_type(is, (TypeType) dt, scope);
+		} else if (dt instanceof EnumerationType) {
+			EnumerationType etype = (EnumerationType) dt;
+			String name = read_string(is);
+			if (!etype.has_value(name)) {
+				throw new InvalidEncodingException("Enumeration type '"
+						+ etype.name() + "' does not contain value '" + name
+						+ "'.");
+			}
+
+			return etype.value(name);
+		} else if (dt instanceof OptionalDataType) {
+			DataValue v = null;
+			if (is.readBoolean()) {
+				v = decode(is.readUnsignedByte(), is, scope, types);
+			}
+
+			return ((OptionalDataType) dt).make(v);
+		} else if (dt instanceof CollectionDataType) {
+			int count = read_length(is);
+			List<DataValue> values = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				values.add(decode(is.readUnsignedByte(), is, scope, types));
+			}
+
+			CollectionDataValue col = ((CollectionDataType) dt).make();
+			col.set_contents(values);
+			return col;
+		} else if (dt instanceof MapDataType) {
+			int count = read_length(is);
+			MapDataValue map = ((MapDataType) dt).make();
+			for (int i = 0; i < count; i++) {
+				DataValue k = decode(is.readUnsignedByte(), is, scope, types);
+				DataValue v = decode(is.readUnsignedByte(), is, scope, types);
+				map.put(k, v);
+			}
+
+			return map;
+		} else if (dt instanceof TupleDataType) {
+			List<DataType> inner = ((TupleDataType) dt).inner_types();
+			List<DataValue> values = new ArrayList<>(inner.size());
+			for (DataType it : inner) {
+				DataValue iv = decode(is.readUnsignedByte(), is, scope, types);
+				if (!it.is_instance(iv)) {
+					throw new InvalidEncodingException("Expected value of "
+							+ "type '" + it.name() + "' but found value of "
+							+ "type '" + iv.type().name() + "' instead.");
+				}
+
+				values.add(iv);
+			}
+
+			return ((TupleDataType) dt).make(values);
+		} else if (dt instanceof StructureDataType) {
+			return decode_structure(is, (StructureDataType) dt, scope, types);
+		} else {
+			throw new InvalidEncodingException("Data type '" + dt.name()
+					+ "' cannot be decoded.");
+		}
+	}
+
+	/**
+	 * Decodes the contents of a type value.
+	 * @param is the stream to read from
+	 * @param type the type type
+	 * @param scope the scope where to find data types
+	 * @return the decoded value
+	 * @throws IOException failed to read
+	 * @throws InvalidEncodingException the encoding is invalid
+	 */
+	private DataValue decode_type(DataInputStream is, TypeType type,
+			DataTypeScope scope) throws IOException,
+			InvalidEncodingException {
+		String name = read_string(is);
+		if (name.length() == 0) {
+			throw new InvalidEncodingException("Empty data type name.");
+		}
+
+		HierarchicalName hname = new HNameAsciiEncoding().decode(name);
+		DataType dt = null;
+		try {
+			dt = scope.find(hname);
+		} catch (AmbiguousNameException e) {
+			/*
+			 * An ambiguous name means there is no type there.
+			 */
+		}
+
+		if (dt == null) {
+			throw new InvalidEncodingException("Type '" + hname +"' was "
+					+ "not found in scope.");
+		}
+
+		return type.make(dt);
+	}
+
+	/**
+	 * Decodes the contents of a structure value.
+	 * @param is the stream to read from
+	 * @param type the structure type
+	 * @param scope the scope where to find data types
+	 * @param types the types already read, by index
+	 * @return the decoded value
+	 * @throws IOException failed to read
+	 * @throws InvalidEncodingException the encoding is invalid
+	 */
+	private DataValue decode_structure(DataInputStream is,
+			StructureDataType type, DataTypeScope scope, List<DataType> types)
+			throws IOException, InvalidEncodingException {
+		Set<Field> fields = type.fields();
+		int count = read_length(is);
+		if (count != fields.size()) {
+			throw new InvalidEncodingException("Decoding of structure of "
+					+ "type '" + type.name() + "' failed: " + fields.size()
+					+ " expected fields but " + count + " found.");
+		}
+
+		Map<Field, DataValue> mv = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			String fname = read_string(is);
+			Field f;
+			try {
+				f = type.field(fname);
+			} catch (AmbiguousNameException | UnknownFieldException e) {
+				throw new InvalidEncodingException("No field named '"
+						+ fname + "' found in structure '" + type.name()
+						+ "'.");
+			}
+
+			if (mv.containsKey(f)) {
+				throw new InvalidEncodingException("Field '" + f.name()
+						+ "' already defined in structure.");
+			}
+
+			mv.put(f, decode(is.readUnsignedByte(), is, scope, types));
+		}
+
+		return type.make(mv);
+	}
+
+	/**
+	 * Finds a data type with the given name. If the type is not found, but
+	 * its name can be parsed, the type is created.
+	 * @param name the name
+	 * @param scope the scope where to look for the data type
+	 * @return the data type or <code>null</code> if not found
+	 * @throws InvalidEncodingException the name is ambiguous
+	 */
+	protected DataType find_data_type(HierarchicalName name,
+			DataTypeScope scope) throws InvalidEncodingException {
+		Ensure.not_null(name);
+		Ensure.not_null(scope);
+
+		try {
+			DataType dt = scope.find(name);
+			if (dt != null) {
+				return dt;
+			}
+		} catch (AmbiguousNameException e) {
+			throw new InvalidEncodingException("Data type '"
+					+ name.toString() + "' is ambiguous.", e);
+		}
+
+		try {
+			/*
+			 * Find the scope the name refers to.
+			 */
+			DataTypeScope nscope = scope;
+			while (!name.leaf()) {
+				nscope = (DataTypeScope) nscope.find_scope(name.peek());
+				if (nscope == null) {
+					return null;
+				}
+
+				name = name.pop_first();
+			}
+
+			if (nscope.find(name) != null) {
+				return null;
+			}
+
+			/*
+			 * See if we can parse the name.
+			 */
+			DataTypeNameParser p = new DataTypeNameParser();
+			return p.parse(name.peek(), m_pscope, nscope);
+		} catch (TokenMgrError | ParseException | AmbiguousNameException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes an unsigned varint: 7 bits per byte, least significant first,
+	 * with the highest bit set in all bytes except the last one.
+	 * @param os the stream to write to
+	 * @param v the value, interpreted as unsigned
+	 * @throws IOException failed to write
+	 */
+	private static void write_varint(DataOutputStream os, int v)
+			throws IOException {
+		while ((v & ~0x7f) != 0) {
+			os.writeByte((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+
+		os.writeByte(v);
+	}
+
+	/**
+	 * Reads an unsigned varint.
+	 * @param is the stream to read from
+	 * @param first the first byte of the varint, already read
+	 * @return the value
+	 * @throws IOException failed to read
+	 * @throws InvalidEncodingException the varint is too long
+	 */
+	private static int read_varint(DataInputStream is, int first)
+			throws IOException, InvalidEncodingException {
+		int v = first & 0x7f;
+		int b = first;
+		for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+			if (shift > 28) {
+				throw new InvalidEncodingException("Varint too long.");
+			}
+
+			b = is.readUnsignedByte();
+			v |= (b & 0x7f) << shift;
+		}
+
+		return v;
+	}
+
+	/**
+	 * Reads a length or count, checking it is within bounds.
+	 * @param is the stream to read from
+	 * @return the length
+	 * @throws IOException failed to read
+	 * @throws InvalidEncodingException the length is invalid
+	 */
+	private static int read_length(DataInputStream is) throws IOException,
+			InvalidEncodingException {
+		int len = read_varint(is, is.readUnsignedByte());
+		if (len < 0 || len > MAXIMUM_LENGTH) {
+			throw new InvalidEncodingException("Invalid length " + len
+					+ ".");
+		}
+
+		return len;
+	}
+
+	/**
+	 * Writes a string as its length followed by its UTF-8 bytes.
+	 * @param os the stream to write to
+	 * @param s the string
+	 * @throws IOException failed to write
+	 */
+	private static void write_string(DataOutputStream os, String s)
+			throws IOException {
+		byte[] bytes = s.getBytes(UTF8);
+		write_varint(os, bytes.length);
+		os.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #write_string(DataOutputStream,
+	 * String)}.
+	 * @param is the stream to read from
+	 * @return the string
+	 * @throws IOException failed to read
+	 * @throws InvalidEncodingException the length is invalid
+	 */
+	private static String read_string(DataInputStream is) throws IOException,
+			InvalidEncodingException {
+		byte[] bytes = new byte[read_length(is)];
+		is.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+}
@@ -0,0 +1,9 @@
+/**
+<p>The <code>binenc</code> package provides a compact binary encoding of
+<code>typelib</code> data values, the
+{@link edu.cmu.cs.able.typelib.binenc.BinaryEncoding}. It supports the same
+data types as the
+{@link edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding} but is
+faster to encode and decode and produces smaller encodings.</p>
+*/
+package edu.cmu.cs.able.typelib.binenc;
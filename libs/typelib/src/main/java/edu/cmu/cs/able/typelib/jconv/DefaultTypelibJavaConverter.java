@@ -1,18 +1,76 @@
 package edu.cmu.cs.able.typelib.jconv;
 
+import java.util.Map;
+
 import incubator.pval.Ensure;
+import edu.cmu.cs.able.typelib.comp.MapDataType;
+import edu.cmu.cs.able.typelib.comp.MapDataValue;
+import edu.cmu.cs.able.typelib.prim.BooleanType;
+import edu.cmu.cs.able.typelib.prim.BooleanValue;
+import edu.cmu.cs.able.typelib.prim.DoubleType;
+import edu.cmu.cs.able.typelib.prim.DoubleValue;
+import edu.cmu.cs.able.typelib.prim.Int32Type;
+import edu.cmu.cs.able.typelib.prim.Int32Value;
+import edu.cmu.cs.able.typelib.prim.Int64Type;
+import edu.cmu.cs.able.typelib.prim.Int64Value;
 import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+import edu.cmu.cs.able.typelib.prim.StringType;
+import edu.cmu.cs.able.typelib.prim.StringValue;
+import edu.cmu.cs.able.typelib.type.DataType;
+import edu.cmu.cs.able.typelib.type.DataValue;
 
 
 /**
  * Typelib/Java value converter that automatically adds all default rules
  * at creation.
+ * <p>Because the default rules always come first, the converter does not
+ * search the rules for the most common values: strings, longs, integers,
+ * doubles and booleans that need no conversion to another type, and maps
+ * converted to and from map data types. These are converted directly, with
+ * the same result as the rules would give.</p>
  */
 public class DefaultTypelibJavaConverter extends TypelibJavaConverter {
+	/**
+	 * The string data type.
+	 */
+	private final StringType m_string;
+	
+	/**
+	 * The int64 data type.
+	 */
+	private final Int64Type m_int64;
+	
+	/**
+	 * The int32 data type.
+	 */
+	private final Int32Type m_int32;
+	
+	/**
+	 * The double data type.
+	 */
+	private final DoubleType m_double;
+	
+	/**
+	 * The bool data type.
+	 */
+	private final BooleanType m_bool;
+	
+	/**
+	 * The rule converting maps.
+	 */
+	private final MapConversionRule m_map_rule;
+	
 	/**
 	 * Creates a new converter.
+	 * @param pscope the primitive scope to draw primitive types from
 	 */
-	private DefaultTypelibJavaConverter() {
+	private DefaultTypelibJavaConverter(PrimitiveScope pscope) {
+		m_string = pscope.string();
+		m_int64 = pscope.int64();
+		m_int32 = pscope.int32();
+		m_double = pscope.double_type();
+		m_bool = pscope.bool();
+		m_map_rule = new MapConversionRule();
 	}
 	
 	/**
@@ -23,12 +81,88 @@ public class DefaultTypelibJavaConverter extends TypelibJavaConverter {
 	public static DefaultTypelibJavaConverter make(PrimitiveScope pscope) {
 		Ensure.not_null(pscope);
 		
-		DefaultTypelibJavaConverter c = new DefaultTypelibJavaConverter();
+		DefaultTypelibJavaConverter c = new DefaultTypelibJavaConverter(
+				pscope);
 		c.add(new PrimitiveValuesConversionRule(pscope));
 		c.add(new OptionaValuesConvertionRule());
 		c.add(new SetConversionRule());
 		c.add(new ListConversionRule());
-		c.add(new MapConversionRule());
+		c.add(c.m_map_rule);
 		return c;
 	}
+	
+	@Override
+	public DataValue from_java(Object obj, DataType type)
+			throws ValueConversionException {
+		if (obj instanceof String) {
+			if (type == null || type == m_string) {
+				return m_string.make((String) obj);
+			}
+		} else if (obj instanceof Long) {
+			if (type == null || type == m_int64) {
+				return m_int64.make((Long) obj);
+			}
+		} else if (obj instanceof Integer) {
+			if (type == null || type == m_int32) {
+				return m_int32.make((Integer) obj);
+			}
+		} else if (obj instanceof Double) {
+			if (type == null || type == m_double) {
+				return m_double.make((Double) obj);
+			}
+		} else if (obj instanceof Boolean) {
+			if (type == null || type == m_bool) {
+				return m_bool.make((Boolean) obj);
+			}
+		} else if (obj instanceof Map && type instanceof MapDataType) {
+			/*
+			 * None of the default rules before the map rule converts maps
+			 * to map data types.
+			 */
+			return m_map_rule.from_java(obj, type, this);
+		}
+		
+		return super.from_java(obj, type);
+	}
+	
+	@Override
+	public <T> T to_java(DataValue value, Class<T> type)
+			throws ValueConversionException {
+		Ensure.not_null(value);
+		
+		DataType vt = value.type();
+		Object j = null;
+		if (vt == m_string) {
+			if (type == null || type.isAssignableFrom(String.class)) {
+				j = ((StringValue) value).value();
+			}
+		} else if (vt == m_int64) {
+			if (type == null || type.isAssignableFrom(Long.class)) {
+				j = ((Int64Value) value).value();
+			}
+		} else if (vt == m_int32) {
+			if (type == null || type.isAssignableFrom(Integer.class)) {
+				j = ((Int32Value) value).value();
+			}
+		} else if (vt == m_double) {
+			if (type == null || type.isAssignableFrom(Double.class)) {
+				j = ((DoubleValue) value).value();
+			}
+		} else if (vt == m_bool) {
+			if (type == null || type.isAssignableFrom(Boolean.class)) {
+				j = ((BooleanValue) value).value();
+			}
+		} else if (value instanceof MapDataValue
+				&& m_map_rule.handles_typelib(value, type)) {
+			return m_map_rule.to_java(value, type, this);
+		}
+		
+		if (j != null) {
+			@SuppressWarnings("unchecked")
+			T t = (T) j;
+			return t;
+		}
+		
+		return super.to_java(value, type);
+	}
 }
@@ -2,20 +2,21 @@ package edu.cmu.cs.able.typelib.jconv;
 
 import incubator.pval.Ensure;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import edu.cmu.cs.able.typelib.type.DataType;
 import edu.cmu.cs.able.typelib.type.DataValue;
 
 /**
- * A rule-based converter of values between Java and typelib.
+ * A rule-based converter of values between Java and typelib. The rules are
+ * kept in an array that is replaced, never modified, when a rule is added,
+ * so conversions do not lock and can run concurrently.
  */
 public class TypelibJavaConverter {
 	/**
 	 * Rules to apply, ordered by precedence.
 	 */
-	private List<TypelibJavaConversionRule> m_rules;
+	private volatile TypelibJavaConversionRule[] m_rules;
 	
 	/**
 	 * Creates a new converter with no rules. The
@@ -24,7 +25,7 @@ public class TypelibJavaConverter {
 	 * create a converter with all default typelib conversion rules.
 	 */
 	public TypelibJavaConverter() {
-		m_rules = new ArrayList<>();
+		m_rules = new TypelibJavaConversionRule[0];
 	}
 	
 	/**
@@ -35,7 +36,10 @@ public class TypelibJavaConverter {
 	 */
 	public synchronized void add(TypelibJavaConversionRule rule) {
 		Ensure.not_null(rule);
-		m_rules.add(rule);
+		TypelibJavaConversionRule[] rules = Arrays.copyOf(m_rules,
+				m_rules.length + 1);
+		rules[m_rules.length] = rule;
+		m_rules = rules;
 	}
 	
 	/**
@@ -45,7 +49,7 @@ public class TypelibJavaConverter {
 	 * @return the converted value
 	 * @throws ValueConversionException failed to convert
 	 */
-	public synchronized DataValue from_java(Object obj, DataType type)
+	public DataValue from_java(Object obj, DataType type)
 			throws ValueConversionException {
 		for (TypelibJavaConversionRule r : m_rules)  {
 			if (r.handles_java(obj, type)) {
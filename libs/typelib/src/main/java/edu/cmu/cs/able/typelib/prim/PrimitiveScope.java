@@ -10,72 +10,74 @@ import edu.cmu.cs.able.typelib.type.DataTypeScope;
  * <p>In general, there will only be one primitive type scope which is the
  * root of the data type scope hierarchy. This is not mandatory through. In
  * unit tests, for example, it may be useful to use other configurations.</p>
+ * <p>The primitive data types are created with the scope and never replaced,
+ * so they are obtained without locking.</p>
  */
 public class PrimitiveScope extends DataTypeScope {
 	/**
 	 * The any data type.
 	 */
-	private AnyType m_any;
+	private final AnyType m_any;
 	
 	/**
 	 * The boolean data type.
 	 */
-	private BooleanType m_bool;
+	private final BooleanType m_bool;
 	
 	/**
 	 * The int8 data type.
 	 */
-	private Int8Type m_int8;
+	private final Int8Type m_int8;
 	
 	/**
 	 * The int16 data type.
 	 */
-	private Int16Type m_int16;
+	private final Int16Type m_int16;
 	
 	/**
 	 * The int32 data type.
 	 */
-	private Int32Type m_int32;
+	private final Int32Type m_int32;
 	
 	/**
 	 * The int64 data type.
 	 */
-	private Int64Type m_int64;
+	private final Int64Type m_int64;
 	
 	/**
 	 * The float data type.
 	 */
-	private FloatType m_float;
+	private final FloatType m_float;
 	
 	/**
 	 * The double data type.
 	 */
-	private DoubleType m_double;
+	private final DoubleType m_double;
 	
 	/**
 	 * The string data type.
 	 */
-	private StringType m_string;
+	private final StringType m_string;
 	
 	/**
 	 * The Ascii data type.
 	 */
-	private AsciiType m_ascii;
+	private final AsciiType m_ascii;
 	
 	/**
 	 * The time type.
 	 */
-	private TimeType m_time;
+	private final TimeType m_time;
 	
 	/**
 	 * The period type.
 	 */
-	private PeriodType m_period;
+	private final PeriodType m_period;
 	
 	/**
 	 * The type type.
 	 */
-	private TypeType m_type;
+	private final TypeType m_type;
 	
 	/**
 	 * Creates a new, empty primitive scope.
@@ -102,7 +104,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>any</code> data type.
 	 * @return the data type
 	 */
-	public synchronized AnyType any() {
+	public AnyType any() {
 		return m_any;
 	}
 	
@@ -110,7 +112,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>bool</code> data type.
 	 * @return the data type
 	 */
-	public synchronized BooleanType bool() {
+	public BooleanType bool() {
 		return m_bool;
 	}
 	
@@ -118,7 +120,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>int8</code> data type.
 	 * @return the data type
 	 */
-	public synchronized Int8Type int8() {
+	public Int8Type int8() {
 		return m_int8;
 	}
 	
@@ -126,7 +128,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>int16</code> data type.
 	 * @return the data type
 	 */
-	public synchronized Int16Type int16() {
+	public Int16Type int16() {
 		return m_int16;
 	}
 	
@@ -134,7 +136,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>int32</code> data type.
 	 * @return the data type
 	 */
-	public synchronized Int32Type int32() {
+	public Int32Type int32() {
 		return m_int32;
 	}
 	
@@ -142,7 +144,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>int64</code> data type.
 	 * @return the data type
 	 */
-	public synchronized Int64Type int64() {
+	public Int64Type int64() {
 		return m_int64;
 	}
 	
@@ -150,7 +152,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>float</code> data type.
 	 * @return the data type
 	 */
-	public synchronized FloatType float_type() {
+	public FloatType float_type() {
 		return m_float;
 	}
 	
@@ -158,7 +160,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>double</code> data type.
 	 * @return the data type
 	 */
-	public synchronized DoubleType double_type() {
+	public DoubleType double_type() {
 		return m_double;
 	}
 	
@@ -166,7 +168,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>string</code> data type.
 	 * @return the data type
 	 */
-	public synchronized StringType string() {
+	public StringType string() {
 		return m_string;
 	}
 	
@@ -174,7 +176,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>ascii</code> data type.
 	 * @return the data type
 	 */
-	public synchronized AsciiType ascii() {
+	public AsciiType ascii() {
 		return m_ascii;
 	}
 	
@@ -182,7 +184,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>time</code> data type.
 	 * @return the data type
 	 */
-	public synchronized TimeType time() {
+	public TimeType time() {
 		return m_time;
 	}
 	
@@ -190,7 +192,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>period</code> data type.
 	 * @return the data type
 	 */
-	public synchronized PeriodType period() {
+	public PeriodType period() {
 		return m_period;
 	}
 	
@@ -198,7 +200,7 @@ public class PrimitiveScope extends DataTypeScope {
 	 * Obtains the <code>type</code> data type.
 	 * @return the data type
 	 */
-	public synchronized TypeType type() {
+	public TypeType type() {
 		return m_type;
 	}
 }
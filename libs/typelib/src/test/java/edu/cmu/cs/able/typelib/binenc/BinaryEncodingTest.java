@@ -0,0 +1,234 @@
+package edu.cmu.cs.able.typelib.binenc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.math.RandomUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import auxtestlib.DefaultTCase;
+import edu.cmu.cs.able.typelib.comp.ListDataType;
+import edu.cmu.cs.able.typelib.comp.ListDataValue;
+import edu.cmu.cs.able.typelib.comp.MapDataType;
+import edu.cmu.cs.able.typelib.comp.MapDataValue;
+import edu.cmu.cs.able.typelib.comp.OptionalDataType;
+import edu.cmu.cs.able.typelib.comp.SetDataType;
+import edu.cmu.cs.able.typelib.comp.TupleDataType;
+import edu.cmu.cs.able.typelib.enc.InvalidEncodingException;
+import edu.cmu.cs.able.typelib.enumeration.EnumerationType;
+import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+import edu.cmu.cs.able.typelib.struct.Field;
+import edu.cmu.cs.able.typelib.struct.FieldDescription;
+import edu.cmu.cs.able.typelib.struct.StructureDataType;
+import edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding;
+import edu.cmu.cs.able.typelib.type.DataType;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * Tests binary encoding and decoding.
+ */
+@SuppressWarnings("javadoc")
+public class BinaryEncodingTest extends DefaultTCase {
+	/**
+	 * The primitive type scope.
+	 */
+	private PrimitiveScope m_pscope;
+
+	/**
+	 * The encoding to test.
+	 */
+	private BinaryEncoding m_enc;
+
+	/**
+	 * Output stream where encoding is done.
+	 */
+	private ByteArrayOutputStream m_output;
+
+	/**
+	 * Output data stream to write to.
+	 */
+	private DataOutputStream m_doutput;
+
+	@Before
+	public void set_up() throws Exception {
+		m_pscope = new PrimitiveScope();
+		m_enc = new BinaryEncoding(m_pscope);
+		m_output = new ByteArrayOutputStream();
+		m_doutput = new DataOutputStream(m_output);
+	}
+
+	private DataInputStream make_din() {
+		return new DataInputStream(new ByteArrayInputStream(
+				m_output.toByteArray()));
+	}
+
+	private void check_encode_decode(DataValue... values) throws Exception {
+		for (DataValue v : values) {
+			m_enc.encode(v, m_doutput);
+		}
+
+		DataInputStream din = make_din();
+		for (DataValue v : values) {
+			assertEquals(v, m_enc.decode(din, m_pscope));
+		}
+
+		try {
+			m_enc.decode(din, m_pscope);
+			fail();
+		} catch (EOFException e) {
+			/*
+			 * Expected.
+			 */
+		}
+	}
+
+	@Test
+	public void encode_decode_primitives() throws Exception {
+		check_encode_decode(m_pscope.bool().make(true),
+				m_pscope.bool().make(false),
+				m_pscope.int8().make(Byte.MIN_VALUE),
+				m_pscope.int16().make(Short.MAX_VALUE),
+				m_pscope.int32().make(0),
+				m_pscope.int32().make(-1),
+				m_pscope.int32().make(Integer.MIN_VALUE),
+				m_pscope.int32().make(Integer.MAX_VALUE),
+				m_pscope.int64().make(Long.MIN_VALUE),
+				m_pscope.float_type().make(-1.5f),
+				m_pscope.double_type().make(Double.NaN),
+				m_pscope.double_type().make(Math.PI),
+				m_pscope.time().make(System.currentTimeMillis()),
+				m_pscope.period().make(-7),
+				m_pscope.ascii().make(""),
+				m_pscope.ascii().make("foo;bar|"),
+				m_pscope.string().make("\u00e1\u00e9 %20;|\u4e2d"),
+				m_pscope.type().make(m_pscope.int64()));
+	}
+
+	@Test
+	public void encode_decode_composites() throws Exception {
+		ListDataType lt = ListDataType.list_of(m_pscope.string(), m_pscope);
+		ListDataValue l = lt.make();
+		l.add(m_pscope.string().make("a"));
+		l.add(m_pscope.string().make("b"));
+
+		MapDataType mt = MapDataType.map_of(m_pscope.string(),
+				m_pscope.any(), m_pscope);
+		MapDataValue m = mt.make();
+		m.put(m_pscope.string().make("list"), l);
+		m.put(m_pscope.string().make("int"), m_pscope.int32().make(4));
+		m.put(m_pscope.string().make("double"),
+				m_pscope.double_type().make(3.5));
+
+		OptionalDataType ot = OptionalDataType.optional_of(m_pscope.int32());
+		TupleDataType tt = TupleDataType.tuple_of(Arrays.asList(
+				(DataType) m_pscope.int32(), m_pscope.string()), m_pscope);
+
+		check_encode_decode(lt.make(), l, m, ot.make(null),
+				ot.make(m_pscope.int32().make(3)),
+				SetDataType.set_of(m_pscope.int64(), m_pscope).make(),
+				tt.make(Arrays.asList((DataValue) m_pscope.int32().make(1),
+				m_pscope.string().make("x"))));
+	}
+
+	@Test
+	public void encode_decode_structures_and_enumerations()
+			throws Exception {
+		Set<FieldDescription> fs = new HashSet<>();
+		fs.add(new FieldDescription("f1", m_pscope.int32()));
+		fs.add(new FieldDescription("f2", m_pscope.string()));
+		StructureDataType st = new StructureDataType("simple", false, fs,
+				m_pscope.any());
+		m_pscope.add(st);
+
+		Map<Field, DataValue> mv = new HashMap<>();
+		mv.put(st.field("f1"), m_pscope.int32().make(40));
+		mv.put(st.field("f2"), m_pscope.string().make("s"));
+
+		EnumerationType et = EnumerationType.make("color",
+				new HashSet<>(Arrays.asList("red", "blue")), m_pscope.any());
+		m_pscope.add(et);
+
+		check_encode_decode(st.make(mv), et.value("red"), et.value("blue"));
+	}
+
+	@Test
+	public void decoding_creates_complex_data_types() throws Exception {
+		PrimitiveScope decode_scope = new PrimitiveScope();
+		MapDataType mt = MapDataType.map_of(m_pscope.string(),
+				m_pscope.int32(), m_pscope);
+		MapDataValue m = mt.make();
+		m.put(m_pscope.string().make("x"), m_pscope.int32().make(1));
+		m_enc.encode(m, m_doutput);
+
+		MapDataType dmt = MapDataType.map_of(decode_scope.string(),
+				decode_scope.int32(), decode_scope);
+		MapDataValue dm = dmt.make();
+		dm.put(decode_scope.string().make("x"), decode_scope.int32().make(1));
+		assertEquals(dm, new BinaryEncoding(decode_scope).decode(make_din(),
+				decode_scope));
+	}
+
+	@Test
+	public void repeated_types_are_written_once() throws Exception {
+		MapDataType mt = MapDataType.map_of(m_pscope.string(),
+				m_pscope.any(), m_pscope);
+		MapDataValue m = mt.make();
+		for (int i = 0; i < 100; i++) {
+			m.put(m_pscope.string().make("k" + i), m_pscope.int32().make(i));
+		}
+
+		m_enc.encode(m, m_doutput);
+		ByteArrayOutputStream txt = new ByteArrayOutputStream();
+		try (DataOutputStream dtxt = new DataOutputStream(txt)) {
+			new DefaultTextEncoding(m_pscope).encode(m, dtxt);
+		}
+
+		assertTrue(m_output.size() * 2 < txt.size());
+		assertEquals(m, m_enc.decode(make_din(), m_pscope));
+	}
+
+	@Test
+	public void decode_truncated_or_corrupt_data() throws Exception {
+		MapDataType mt = MapDataType.map_of(m_pscope.string(),
+				m_pscope.int64(), m_pscope);
+		MapDataValue m = mt.make();
+		m.put(m_pscope.string().make("foo"), m_pscope.int64().make(3));
+		m_enc.encode(m, m_doutput);
+		byte[] data = m_output.toByteArray();
+
+		try {
+			m_enc.decode(new DataInputStream(new ByteArrayInputStream(data,
+					0, data.length - 1)), m_pscope);
+			fail();
+		} catch (InvalidEncodingException e) {
+			/*
+			 * Expected.
+			 */
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			byte[] corrupt = data.clone();
+			corrupt[RandomUtils.nextInt(corrupt.length)] =
+					(byte) RandomUtils.nextInt(256);
+			try {
+				m_enc.decode(new DataInputStream(new ByteArrayInputStream(
+						corrupt)), m_pscope);
+			} catch (IOException | InvalidEncodingException
+					| AssertionError e) {
+				/*
+				 * Either is OK.
+				 */
+			}
+		}
+	}
+}
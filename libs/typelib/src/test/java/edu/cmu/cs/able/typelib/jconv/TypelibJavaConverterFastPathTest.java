@@ -0,0 +1,128 @@
+package edu.cmu.cs.able.typelib.jconv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import auxtestlib.DefaultTCase;
+import edu.cmu.cs.able.typelib.comp.MapDataType;
+import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+import edu.cmu.cs.able.typelib.type.DataType;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * Checks that the default converter gives the same results when it converts
+ * values directly as when it goes through its rules, and that converters can
+ * be used by several threads while rules are added.
+ */
+@SuppressWarnings("javadoc")
+public class TypelibJavaConverterFastPathTest extends DefaultTCase {
+	private PrimitiveScope m_pscope;
+	
+	private DefaultTypelibJavaConverter m_default;
+	
+	/**
+	 * A converter with the default rules, which always searches them.
+	 */
+	private TypelibJavaConverter m_rules;
+	
+	@Before
+	public void set_up() throws Exception {
+		m_pscope = new PrimitiveScope();
+		m_default = DefaultTypelibJavaConverter.make(m_pscope);
+		m_rules = new TypelibJavaConverter();
+		m_rules.add(new PrimitiveValuesConversionRule(m_pscope));
+		m_rules.add(new OptionaValuesConvertionRule());
+		m_rules.add(new SetConversionRule());
+		m_rules.add(new ListConversionRule());
+		m_rules.add(new MapConversionRule());
+	}
+	
+	private Object from_java(TypelibJavaConverter c, Object o, DataType t) {
+		try {
+			return c.from_java(o, t);
+		} catch (ValueConversionException e) {
+			return ValueConversionException.class;
+		}
+	}
+	
+	private Object to_java(TypelibJavaConverter c, DataValue v, Class<?> t) {
+		try {
+			return c.to_java(v, t);
+		} catch (ValueConversionException e) {
+			return ValueConversionException.class;
+		}
+	}
+	
+	@Test
+	public void direct_conversions_match_rules() throws Exception {
+		Map<String, Object> map = new HashMap<>();
+		map.put("a", "x");
+		map.put("b", 3L);
+		List<Object> values = Arrays.<Object>asList("s", 4L, 5, 6.5, true,
+				(short) 7, 1.5f, map);
+		MapDataType mt = MapDataType.map_of(m_pscope.string(),
+				m_pscope.any(), m_pscope);
+		List<DataType> types = Arrays.<DataType>asList(null,
+				m_pscope.string(), m_pscope.int64(), m_pscope.int32(),
+				m_pscope.double_type(), m_pscope.bool(), m_pscope.any(),
+				m_pscope.ascii(), m_pscope.period(), mt);
+		List<Class<?>> classes = Arrays.<Class<?>>asList(null, Object.class,
+				String.class, Long.class, Integer.class, Double.class,
+				Boolean.class, Number.class, Map.class, HashMap.class);
+		
+		for (Object o : values) {
+			for (DataType t : types) {
+				Object expected = from_java(m_rules, o, t);
+				assertEquals(o + " to " + t, expected,
+						from_java(m_default, o, t));
+				if (expected instanceof DataValue) {
+					for (Class<?> c : classes) {
+						DataValue v = (DataValue) expected;
+						assertEquals(v + " to " + c, to_java(m_rules, v, c),
+								to_java(m_default, v, c));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void rules_added_during_conversions() throws Exception {
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final TypelibJavaConverter c = new TypelibJavaConverter();
+		c.add(new PrimitiveValuesConversionRule(m_pscope));
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 10000; j++) {
+							DataValue v = c.from_java("v" + j, null);
+							assertEquals("v" + j, c.to_java(v, String.class));
+						}
+					} catch (Throwable t) {
+						failure.set(t);
+					}
+				}
+			});
+		}
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (int i = 0; i < 100; i++) {
+			c.add(new ListConversionRule());
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertNull(failure.get());
+	}
+}
@@ -39,10 +39,11 @@ import org.sa.rainbow.core.ports.IModelChangeBusSubscriberPort.IRainbowModelChan
 import org.sa.rainbow.model.acme.AcmeModelInstance;
 import org.sa.rainbow.model.acme.AcmeRainbowOperationEvent.CommandEventT;
 import org.sa.rainbow.model.acme.AcmeTypecheckSetCmd;
+import org.sa.rainbow.util.LatencyHistogram;
 
 import java.text.MessageFormat;
 import java.util.*;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Rainbow Architectural Evaluator, which performs change-triggered evaluation of the architectural model. When a
@@ -50,6 +51,12 @@ import java.util.concurrent.LinkedBlockingQueue;
  * <p/>
  * This is backward compatible with the old Rainbow: eventually, IArchEvaluations should be migrated as their own
  * Rainbow analysis
+ * <p/>
+ * Changes are coalesced per model: a model that changes several times before the evaluator runs is checked once, and
+ * models are checked again every {@link RainbowConstants#PROPKEY_ARCH_EVALUATOR_FULL_CHECK_PERIOD} ms even if no
+ * change is reported. Each check typechecks the whole model: the type checker does not say which elements a design
+ * rule or invariant reads, so constraints are not re-evaluated selectively, and the time taken is kept per model
+ * typecheck and per evaluation (see {@link #getCheckTimings()}), not per constraint.
  *
  * @author Shang-Wen Cheng (zensoul@cs.cmu.edu)
  * @history * [2009.03.04] Removed beacon for model evaluation, set sleep period instead.
@@ -99,10 +106,19 @@ public class ArchEvaluator extends AbstractRainbowRunnable implements IRainbowAn
     };
 
     /**
-     * The models to typecheck
+     * The models to typecheck, with the changes reported for each since it was last checked
+     **/
+    private final Map<ModelReference, PendingCheck>      m_pendingChecks = new LinkedHashMap<> ();
+    /**
+     * The models that have been checked, so that they can be checked again periodically
      **/
-    private final LinkedBlockingQueue<AcmeModelInstance> m_modelCheckQ = new LinkedBlockingQueue<> ();
-    private final Map<ModelReference, Boolean>           m_lastResult  = new HashMap<> ();
+    private final Map<ModelReference, AcmeModelInstance> m_checkedModels = new HashMap<> ();
+    private final Map<ModelReference, Boolean>           m_lastResult    = new HashMap<> ();
+
+    private final ConcurrentHashMap<String, LatencyHistogram> m_timings = new ConcurrentHashMap<> ();
+
+    private long m_fullCheckPeriod = 0;
+    private long m_lastFullCheck   = System.currentTimeMillis ();
 
     private Set<IArchEvaluation> m_evaluations;
 
@@ -120,6 +136,10 @@ public class ArchEvaluator extends AbstractRainbowRunnable implements IRainbowAn
         } else { // default to using the long sleep value
             setSleepTime (IRainbowRunnable.LONG_SLEEP_TIME);
         }
+        String fullCheck = Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_ARCH_EVALUATOR_FULL_CHECK_PERIOD);
+        if (fullCheck != null) {
+            m_fullCheckPeriod = Long.parseLong (fullCheck.trim ());
+        }
 
         installEvaluations ();
     }
@@ -184,96 +204,171 @@ public class ArchEvaluator extends AbstractRainbowRunnable implements IRainbowAn
      */
     @Override
     protected void runAction () {
-        final AcmeModelInstance model = m_modelCheckQ.poll ();
-        if (model != null) {
-            // For each Acme model that changed, check to see if it typechecks
-            IAcmeEnvironment env = model.getModelInstance ().getContext ().getEnvironment ();
-            IAcmeTypeChecker typeChecker = env.getTypeChecker ();
-            if (typeChecker instanceof SimpleModelTypeChecker) {
-                SimpleModelTypeChecker synchChecker = (SimpleModelTypeChecker) typeChecker;
-                boolean constraintViolated = !synchChecker.typechecks (model.getModelInstance ());
-                ModelReference ref = new ModelReference (model.getModelName (), model.getModelType ());
-                Boolean last = m_lastResult.get (ref);
-                if (last == null || last != constraintViolated) {
-                    m_lastResult.put (ref, constraintViolated);
-                    AcmeTypecheckSetCmd cmd = model.getCommandFactory ().setTypecheckResultCmd
-                            (model.getModelInstance (), !constraintViolated);
-
-                    try {
-                        m_modelUSPort.updateModel (cmd);
-                    } catch (IllegalStateException e) {
-                        m_reportingPort.error (RainbowComponentT.ANALYSIS,
-                                               "Could not execute set typecheck command on model", e);
-                    }
+        List<PendingCheck> checks;
+        synchronized (m_pendingChecks) {
+            checks = new ArrayList<> (m_pendingChecks.values ());
+            m_pendingChecks.clear ();
+        }
+        long now = System.currentTimeMillis ();
+        if (m_fullCheckPeriod > 0 && now - m_lastFullCheck >= m_fullCheckPeriod) {
+            m_lastFullCheck = now;
+            Set<ModelReference> pending = new HashSet<> ();
+            for (PendingCheck check : checks) {
+                pending.add (check.ref);
+            }
+            for (Map.Entry<ModelReference, AcmeModelInstance> e : m_checkedModels.entrySet ()) {
+                if (!pending.contains (e.getKey ())) {
+                    checks.add (new PendingCheck (e.getKey (), e.getValue ()));
                 }
-                if (constraintViolated) {
-                    try {
-                        Set<? extends AcmeError> errors = env.getAllRegisteredErrors ();
-                        m_reportingPort.info (RainbowComponentT.ANALYSIS,
-                                              "Model " + model.getModelName () + ":" + model.getModelType () + " " +
-                                                      "constraints violated: "
-                                                      + errors.toString ());
-                    } catch (Exception e) {
-                        m_reportingPort.error (RainbowComponentT.ANALYSIS,
-                                               "There's an error reporting the constraint violation", e);
-                        m_reportingPort.info (RainbowComponentT.ANALYSIS, "Model " + model.getModelName () + ":"
-                                + model.getModelType () + " constraints violated: <error in reporting>");
-                    }
-                } else {
+            }
+        }
+        for (PendingCheck check : checks) {
+            m_checkedModels.put (check.ref, check.model);
+            typecheck (check);
+            // Evaluations are only told about models that actually changed
+            if (check.changes > 0) {
+                runEvaluations (check.model);
+            }
+        }
+    }
+
+    private void typecheck (PendingCheck check) {
+        // For each Acme model that changed, check to see if it typechecks
+        AcmeModelInstance model = check.model;
+        IAcmeEnvironment env = model.getModelInstance ().getContext ().getEnvironment ();
+        IAcmeTypeChecker typeChecker = env.getTypeChecker ();
+        if (typeChecker instanceof SimpleModelTypeChecker) {
+            SimpleModelTypeChecker synchChecker = (SimpleModelTypeChecker) typeChecker;
+            long start = System.nanoTime ();
+            boolean constraintViolated = !synchChecker.typechecks (model.getModelInstance ());
+            long elapsed = System.nanoTime () - start;
+            timing ("typecheck " + check.ref.toString ()).record (elapsed);
+            Boolean last = m_lastResult.get (check.ref);
+            if (last == null || last != constraintViolated) {
+                m_lastResult.put (check.ref, constraintViolated);
+                AcmeTypecheckSetCmd cmd = model.getCommandFactory ().setTypecheckResultCmd
+                        (model.getModelInstance (), !constraintViolated);
+
+                try {
+                    m_modelUSPort.updateModel (cmd);
+                } catch (IllegalStateException e) {
+                    m_reportingPort.error (RainbowComponentT.ANALYSIS,
+                                           "Could not execute set typecheck command on model", e);
+                }
+            }
+            String checked = MessageFormat.format (" (checked in {0,number,0.###} ms after {1} change(s) to {2})",
+                                                   elapsed / 1e6, check.changes, check.targets);
+            if (constraintViolated) {
+                try {
+                    Set<? extends AcmeError> errors = env.getAllRegisteredErrors ();
                     m_reportingPort.info (RainbowComponentT.ANALYSIS,
-                                          "Model " + model.getModelName () + ":" + model.getModelType () + " ok");
+                                          "Model " + model.getModelName () + ":" + model.getModelType () + " " +
+                                                  "constraints violated: "
+                                                  + errors.toString () + checked);
+                } catch (Exception e) {
+                    m_reportingPort.error (RainbowComponentT.ANALYSIS,
+                                           "There's an error reporting the constraint violation", e);
+                    m_reportingPort.info (RainbowComponentT.ANALYSIS, "Model " + model.getModelName () + ":"
+                            + model.getModelType () + " constraints violated: <error in reporting>");
                 }
-
+            } else {
+                m_reportingPort.info (RainbowComponentT.ANALYSIS,
+                                      "Model " + model.getModelName () + ":" + model.getModelType () + " ok"
+                                              + checked);
             }
 
-            // This is here for backwards compatibility of sorts; these should be factored out into
-            // separate analyses
-            for (IArchEvaluation evaluation : m_evaluations) {
-                try {
-                    evaluation.modelChanged (new IArchEvaluator () {
-
-                        @Override
-                        public void requestAdaptation () {
-                            AcmeTypecheckSetCmd cmd = model.getCommandFactory ().setTypecheckResultCmd (getModel
-                                                                                                                ()
-                                                                                                                .getModelInstance (),
-                                                                                                        false);
-                            try {
-                                m_modelUSPort.updateModel (cmd);
-                            } catch (IllegalStateException e) {
-                                m_reportingPort.error (RainbowComponentT.ANALYSIS,
-                                                       "Could not execute set typecheck command on model", e);
-                            }
-                        }
+        }
+    }
 
-                        @Override
-                        public AcmeModelInstance getModel () {
-                            return model;
+    private void runEvaluations (final AcmeModelInstance model) {
+        // This is here for backwards compatibility of sorts; these should be factored out into
+        // separate analyses
+        for (IArchEvaluation evaluation : m_evaluations) {
+            long start = System.nanoTime ();
+            try {
+                evaluation.modelChanged (new IArchEvaluator () {
+
+                    @Override
+                    public void requestAdaptation () {
+                        AcmeTypecheckSetCmd cmd = model.getCommandFactory ().setTypecheckResultCmd (getModel
+                                                                                                            ()
+                                                                                                            .getModelInstance (),
+                                                                                                    false);
+                        try {
+                            m_modelUSPort.updateModel (cmd);
+                        } catch (IllegalStateException e) {
+                            m_reportingPort.error (RainbowComponentT.ANALYSIS,
+                                                   "Could not execute set typecheck command on model", e);
                         }
-                    });
-                } catch (Throwable t) {
-                    m_reportingPort.error (RainbowComponentT.ANALYSIS, "Evaluator " + evaluation.getClass ().getName ()
-                            + " threw an exception: " + t.getMessage ());
-                }
+                    }
+
+                    @Override
+                    public AcmeModelInstance getModel () {
+                        return model;
+                    }
+                });
+            } catch (Throwable t) {
+                m_reportingPort.error (RainbowComponentT.ANALYSIS, "Evaluator " + evaluation.getClass ().getName ()
+                        + " threw an exception: " + t.getMessage ());
             }
+            timing (evaluation.getClass ().getName ()).record (System.nanoTime () - start);
         }
     }
 
-/* (non-Javadoc)
- * @see org.sa.rainbow.model.evaluator.IArchEvaluator#getModel()
- */
+    private LatencyHistogram timing (String name) {
+        LatencyHistogram h = m_timings.get (name);
+        if (h == null) {
+            h = new LatencyHistogram ();
+            LatencyHistogram existing = m_timings.putIfAbsent (name, h);
+            if (existing != null) {
+                h = existing;
+            }
+        }
+        return h;
+    }
 
-/* (non-Javadoc)
- * @see org.sa.rainbow.model.evaluator.IArchEvaluator#requestAdaptation()
- */
+    /**
+     * @return the time taken by each check, keyed by "typecheck " followed by the model reference for the typecheck
+     * of a model, or by the class name of an evaluation
+     */
+    public Map<String, LatencyHistogram> getCheckTimings () {
+        return Collections.unmodifiableMap (m_timings);
+    }
 
     @Override
     public void onEvent (ModelReference ref, IRainbowMessage message) {
-        // Assuming that the model manager is local, otherwise this call will be slow when done this often
-        @SuppressWarnings("rawtypes")
-        IModelInstance model = m_modelsManagerPort.getModelInstance (ref); //ref.getModelType (), ref.getModelName ());
-        if (model instanceof AcmeModelInstance) {
-            m_modelCheckQ.offer ((AcmeModelInstance) model);
+        Object target = message.getProperty (IModelChangeBusPort.TARGET_PROP);
+        synchronized (m_pendingChecks) {
+            PendingCheck check = m_pendingChecks.get (ref);
+            if (check == null) {
+                // Only look the model up once per check; assuming that the model manager is local, otherwise this
+                // call will be slow
+                @SuppressWarnings("rawtypes")
+                IModelInstance model = m_modelsManagerPort.getModelInstance (ref);
+                if (!(model instanceof AcmeModelInstance)) return;
+                check = new PendingCheck (ref, (AcmeModelInstance) model);
+                m_pendingChecks.put (ref, check);
+            }
+            check.changes++;
+            if (target != null) {
+                check.targets.add (target.toString ());
+            }
+        }
+        wakeUp ();
+    }
+
+    /**
+     * A check of a model that is waiting to be done, with the changes that led to it
+     */
+    private static class PendingCheck {
+        final ModelReference    ref;
+        final AcmeModelInstance model;
+        final Set<String>       targets = new LinkedHashSet<> ();
+        int changes;
+
+        PendingCheck (ModelReference ref, AcmeModelInstance model) {
+            this.ref = ref;
+            this.model = model;
         }
     }
 
@@ -73,6 +73,8 @@ import org.sa.rainbow.core.error.RainbowAbortException;
 import org.sa.rainbow.core.error.RainbowCopyException;
 import org.sa.rainbow.core.error.RainbowException;
 import org.sa.rainbow.core.error.RainbowModelException;
+import org.sa.rainbow.core.gauges.stats.ExponentialAverage;
+import org.sa.rainbow.core.gauges.stats.StatisticsMap;
 import org.sa.rainbow.core.models.IModelInstance;
 import org.sa.rainbow.util.Util;
 
@@ -90,8 +92,13 @@ public abstract class AcmeModelInstance implements IModelInstance<IAcmeSystem> {
     private static final String PROPKEY_HTTPPORT = "httpPort";
 
     private IAcmeSystem                    m_system;
-    /** Map of qualified name to average values */
-    private final Map<String, Double> m_propExpAvg = new HashMap<> ();
+    /** Map of qualified name to average values; the alpha is read when a property is first averaged */
+    private final StatisticsMap<ExponentialAverage> m_propExpAvg = new StatisticsMap<ExponentialAverage> () {
+        @Override
+        protected ExponentialAverage create (String id) {
+            return new ExponentialAverage (Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_MODEL_ALPHA, .3));
+        }
+    };
     /** Map of additional, non-model properties */
     private final Map<String, Double> m_moreProp = new HashMap<> ();
     private final Map<String, IExpressionNode> m_registeredExpressions = new HashMap<> ();
@@ -187,20 +194,12 @@ public abstract class AcmeModelInstance implements IModelInstance<IAcmeSystem> {
      * @param val
      */
     private void updateExponentialAverage (String id, double val) {
-        double avg = 0.0;
-        // retrieve exponential alpha
-        double alpha = Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_MODEL_ALPHA, .3);
-        if (m_propExpAvg.containsKey (id)) {
-            avg = m_propExpAvg.get (id);
-            avg = (1 - alpha) * avg + alpha * val;
-        }
-        else {
-            avg = val;
-        }
+        ExponentialAverage expAvg = m_propExpAvg.get (id);
+        double avg = expAvg.add (val);
         if (LOGGER.isTraceEnabled ()) {
-            LOGGER.trace (MessageFormat.format ("(iden,val,alpha,avg) == ({0},{1},{2},{3})", id, val, alpha, avg));
+            LOGGER.trace (MessageFormat.format ("(iden,val,alpha,avg) == ({0},{1},{2},{3})", id, val, expAvg.alpha (),
+                    avg));
         }
-        m_propExpAvg.put (id, avg);
     }
 
     @Override
@@ -339,7 +338,7 @@ public abstract class AcmeModelInstance implements IModelInstance<IAcmeSystem> {
 //                        sum += (Double) Oracle.instance().targetSystem()
 //                                .predictProperty(k, dur, StatType.SINGLE);
 //                    else {
-                        sum += m_propExpAvg.get (k);
+                        sum += m_propExpAvg.peek (k).value ();
 //                    }
                     }
                     // 3. take the mean over these exp.avg values
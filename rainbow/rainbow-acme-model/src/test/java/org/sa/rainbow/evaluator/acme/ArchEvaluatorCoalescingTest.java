@@ -0,0 +1,232 @@
+package org.sa.rainbow.evaluator.acme;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.acmestudio.acme.element.IAcmeSystem;
+import org.acmestudio.standalone.resource.StandaloneResource;
+import org.acmestudio.standalone.resource.StandaloneResourceProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sa.rainbow.core.Rainbow;
+import org.sa.rainbow.core.RainbowConstants;
+import org.sa.rainbow.core.event.IRainbowMessage;
+import org.sa.rainbow.core.models.ModelReference;
+import org.sa.rainbow.core.ports.IModelChangeBusPort;
+import org.sa.rainbow.core.ports.IModelUSBusPort;
+import org.sa.rainbow.core.ports.IModelsManagerPort;
+import org.sa.rainbow.core.ports.IRainbowConnectionPortFactory;
+import org.sa.rainbow.core.ports.IRainbowReportingPort;
+import org.sa.rainbow.core.ports.RainbowPortFactory;
+import org.sa.rainbow.model.acme.AcmeModelCommandFactory;
+import org.sa.rainbow.model.acme.AcmeModelInstance;
+
+/**
+ * Checks that the architecture evaluator coalesces the changes reported for a model: however many changes arrive
+ * before it runs, each changed model is typechecked once. Models that were checked are checked again once the full
+ * check period is over, even if they did not change.
+ */
+public class ArchEvaluatorCoalescingTest {
+
+    private static final ModelReference ZNN   = new ModelReference ("ZNewsSys", "Acme");
+    private static final ModelReference OTHER = new ModelReference ("OtherSys", "Acme");
+
+    /** The typecheck results sent by the evaluator */
+    private final List<Object> m_updates = new ArrayList<> ();
+    /** The messages the evaluator reported */
+    private final List<String> m_reports = new ArrayList<> ();
+
+    private AcmeModelInstance m_model;
+    private Object            m_oldFactory;
+    private String            m_oldUserDir;
+
+    @Before
+    public void setUp () throws Exception {
+        m_oldUserDir = System.getProperty ("user.dir");
+        StandaloneResource resource = StandaloneResourceProvider.instance ().acmeResourceForString (
+                "src/test/resources/acme/ZNewsSys.acme");
+        IAcmeSystem sys = resource.getModel ().getSystems ().iterator ().next ();
+        m_model = new AcmeModelInstance (sys, "") {
+
+            @Override
+            public AcmeModelCommandFactory getCommandFactory () {
+                return new AcmeModelCommandFactory (this) {
+                };
+            }
+
+            @Override
+            protected AcmeModelInstance generateInstance (IAcmeSystem sys) {
+                return null;
+            }
+        };
+
+        File testMasterDir = new File (m_oldUserDir, "src/test/resources/RainbowTest/eseb");
+        System.setProperty ("user.dir", testMasterDir.getCanonicalPath ());
+
+        Field factory = RainbowPortFactory.class.getDeclaredField ("m_instance");
+        factory.setAccessible (true);
+        m_oldFactory = factory.get (null);
+        factory.set (null, stub (IRainbowConnectionPortFactory.class, new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getReturnType () == IModelUSBusPort.class) return stub (IModelUSBusPort.class,
+                        new InvocationHandler () {
+
+                    @Override
+                    public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("updateModel".equals (method.getName ())) {
+                            m_updates.add (args[0]);
+                        }
+                        return null;
+                    }
+                });
+                if (method.getReturnType () == IModelsManagerPort.class) return stub (IModelsManagerPort.class,
+                        new InvocationHandler () {
+
+                    @Override
+                    public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                        // Both references are to the same instance; the evaluator keys its checks by reference
+                        return "getModelInstance".equals (method.getName ()) ? m_model : null;
+                    }
+                });
+                return method.getReturnType ().isInterface () ? stub (method.getReturnType (), null) : null;
+            }
+        }));
+    }
+
+    @After
+    public void tearDown () throws Exception {
+        Field factory = RainbowPortFactory.class.getDeclaredField ("m_instance");
+        factory.setAccessible (true);
+        factory.set (null, m_oldFactory);
+        Rainbow.instance ().setProperty (RainbowConstants.PROPKEY_ARCH_EVALUATOR_FULL_CHECK_PERIOD, 0L);
+        System.setProperty ("user.dir", m_oldUserDir);
+    }
+
+    private static Object stub (Class<?> type, final InvocationHandler handler) {
+        return Proxy.newProxyInstance (type.getClassLoader (), new Class<?>[] {type}, new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                if (handler != null) return handler.invoke (proxy, method, args);
+                Class<?> r = method.getReturnType ();
+                if (r == boolean.class) return false;
+                if (r.isPrimitive () && r != void.class) return 0;
+                return null;
+            }
+        });
+    }
+
+    private ArchEvaluator createEvaluator () throws Exception {
+        ArchEvaluator evaluator = new ArchEvaluator ();
+        evaluator.initialize ((IRainbowReportingPort )stub (IRainbowReportingPort.class, new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                if ("info".equals (method.getName ())) {
+                    m_reports.add ((String )args[1]);
+                }
+                return null;
+            }
+        }));
+        return evaluator;
+    }
+
+    private static IRainbowMessage change (final String target) {
+        return (IRainbowMessage )stub (IRainbowMessage.class, new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                if ("getProperty".equals (method.getName ()) && IModelChangeBusPort.TARGET_PROP.equals (args[0]))
+                    return target;
+                return null;
+            }
+        });
+    }
+
+    private static long typechecks (ArchEvaluator evaluator, ModelReference ref) {
+        return evaluator.getCheckTimings ().get ("typecheck " + ref.toString ()).getCount ();
+    }
+
+    @Test
+    public void changesToAModelAreCheckedOnce () throws Exception {
+        ArchEvaluator evaluator = createEvaluator ();
+        for (int i = 0; i < 20; i++) {
+            evaluator.onEvent (ZNN, change ("ZNewsSys.s" + i % 4));
+        }
+        evaluator.runAction ();
+        assertEquals (1, typechecks (evaluator, ZNN));
+        // The first result is always sent
+        assertEquals (1, m_updates.size ());
+        boolean reported = false;
+        for (String report : m_reports) {
+            reported |= report.contains ("after 20 change(s) to [ZNewsSys.s0, ZNewsSys.s1, ZNewsSys.s2, ZNewsSys.s3]");
+        }
+        assertTrue (m_reports.toString (), reported);
+
+        // Nothing changed, and there is no full check period, so there is nothing to check
+        evaluator.runAction ();
+        assertEquals (1, typechecks (evaluator, ZNN));
+
+        for (int i = 0; i < 5; i++) {
+            evaluator.onEvent (ZNN, change ("ZNewsSys.s0"));
+        }
+        evaluator.runAction ();
+        assertEquals (2, typechecks (evaluator, ZNN));
+        // The result did not change, so it is not sent again
+        assertEquals (1, m_updates.size ());
+    }
+
+    @Test
+    public void eachChangedModelIsCheckedOnce () throws Exception {
+        ArchEvaluator evaluator = createEvaluator ();
+        for (int i = 0; i < 10; i++) {
+            evaluator.onEvent (i % 3 == 0 ? OTHER : ZNN, change ("ZNewsSys.s" + i));
+        }
+        evaluator.runAction ();
+        assertEquals (1, typechecks (evaluator, ZNN));
+        assertEquals (1, typechecks (evaluator, OTHER));
+        assertEquals (2, m_updates.size ());
+    }
+
+    @Test
+    public void checkedModelsAreCheckedAgainAfterTheFullCheckPeriod () throws Exception {
+        Rainbow.instance ().setProperty (RainbowConstants.PROPKEY_ARCH_EVALUATOR_FULL_CHECK_PERIOD, 500L);
+        ArchEvaluator evaluator = createEvaluator ();
+        evaluator.onEvent (ZNN, change ("ZNewsSys.s0"));
+        evaluator.runAction ();
+        assertEquals (1, typechecks (evaluator, ZNN));
+
+        // Within the period, a model that did not change is not checked
+        evaluator.runAction ();
+        assertEquals (1, typechecks (evaluator, ZNN));
+
+        Thread.sleep (600);
+        evaluator.runAction ();
+        assertEquals (2, typechecks (evaluator, ZNN));
+        // Only models that were checked before are checked again
+        assertFalse (evaluator.getCheckTimings ().containsKey ("typecheck " + OTHER.toString ()));
+        // The period starts again
+        evaluator.runAction ();
+        assertEquals (2, typechecks (evaluator, ZNN));
+
+        // A model that changes during the period is checked once, not again for the full check
+        Thread.sleep (600);
+        evaluator.onEvent (ZNN, change ("ZNewsSys.s1"));
+        evaluator.runAction ();
+        assertEquals (3, typechecks (evaluator, ZNN));
+        // The result did not change, so it is only sent the first time
+        assertEquals (1, m_updates.size ());
+    }
+}
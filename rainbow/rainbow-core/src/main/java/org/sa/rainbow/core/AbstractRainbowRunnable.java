@@ -29,15 +29,30 @@ package org.sa.rainbow.core;
 import org.sa.rainbow.core.error.RainbowConnectionException;
 import org.sa.rainbow.core.ports.DisconnectedRainbowDelegateConnectionPort;
 import org.sa.rainbow.core.ports.IRainbowReportingPort;
+import org.sa.rainbow.util.LatencyHistogram;
 
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Convenience abstract class that handles the usual thread start/stop/terminate
  * steps, so subclass need not worry about those unless specific actions
  * at those junctions are needed
+ * <p>
+ * By default, each runnable has its own thread that calls runAction every sleepTime ms. A runnable can instead be
+ * event-driven (see {@link #setEventDriven(boolean)}): it then has no thread of its own, and its cycles run on a
+ * scheduler shared by all event-driven runnables, only when it is woken up. Runnables declare what wakes them up by
+ * calling {@link #wakeUp()} when work arrives (e.g., when something is queued for them or when an event they
+ * subscribed to is received), and are also woken every sleepTime ms unless they are not periodic (see
+ * {@link #setPeriodic(boolean)}). In both modes, {@link #wakeUp()} makes the next cycle happen without waiting for
+ * the rest of the period.
  * 
  * @author Shang-Wen Cheng (zensoul@cs.cmu.edu)
  */
@@ -51,6 +66,31 @@ public abstract class AbstractRainbowRunnable implements IRainbowRunnable, Ident
     private State m_threadState = State.RAW;
     private State m_nextState = State.RAW;
     private boolean m_restarting = false;
+    private int m_errorCount = 0;
+
+    private boolean m_eventDriven;
+    private boolean m_periodic = true;
+
+    // Signals that there is work for the runnable; guarded by m_wakeLock
+    private final Object m_wakeLock = new Object ();
+    private boolean m_workPending = false;
+    private long m_workSignalledAt;
+
+    // Used when event-driven: the number of cycles requested, the next periodic release, and its timer
+    private final AtomicInteger m_requestedCycles = new AtomicInteger ();
+    private long m_nextRelease;
+    private ScheduledFuture<?> m_timer;
+    private final Runnable m_cycleTask = new Runnable () {
+        @Override
+        public void run () {
+            runRequestedCycles ();
+        }
+    };
+
+    private final LatencyHistogram m_runTime = new LatencyHistogram ();
+    private final LatencyHistogram m_wakeUpLatency = new LatencyHistogram ();
+
+    private static ScheduledExecutorService s_scheduler;
 
     protected IRainbowReportingPort m_reportingPort;
     protected static final int DELAY_TOLERANCE = 500;
@@ -65,6 +105,7 @@ public abstract class AbstractRainbowRunnable implements IRainbowRunnable, Ident
         m_name = name;
 
         m_thread = new Thread(m_rainbowEnvironment.getThreadGroup(), this, m_name);
+        m_eventDriven = m_rainbowEnvironment.getProperty (RainbowConstants.PROPKEY_RUNNABLE_EVENT_DRIVEN, false);
         try {
             m_reportingPort = new DisconnectedRainbowDelegateConnectionPort ();
         }
@@ -104,12 +145,20 @@ public abstract class AbstractRainbowRunnable implements IRainbowRunnable, Ident
         switch (m_threadState) {
         case RAW:  // note yet started
             m_threadState = State.STARTED;
-            m_thread.start();
+            if (m_eventDriven) {
+                m_nextRelease = System.currentTimeMillis () + m_sleepTime;
+                requestCycle ();
+            } else {
+                m_thread.start();
+            }
             log(m_name + " started.");
             break;
         case STOPPED:
             m_threadState = State.STARTED;
             log(m_name + " started.");
+            if (m_eventDriven) {
+                requestCycle ();
+            }
             break;
         default:
             break;
@@ -197,6 +246,90 @@ public abstract class AbstractRainbowRunnable implements IRainbowRunnable, Ident
         m_sleepTime = time;
     }
 
+    /**
+     * Sets whether this runnable runs on the shared scheduler when woken up, rather than on its own thread. This
+     * must be called before the runnable is started. The default is given by the rainbow.runnable.event.driven
+     * property.
+     */
+    protected void setEventDriven (boolean eventDriven) {
+        if (m_threadState == State.RAW) {
+            m_eventDriven = eventDriven;
+        }
+    }
+
+    public boolean isEventDriven () {
+        return m_eventDriven;
+    }
+
+    /**
+     * Sets whether an event-driven runnable is also woken up every sleepTime ms. A runnable that is not periodic only
+     * runs when {@link #wakeUp()} is called. Runnables with their own thread are always periodic.
+     */
+    protected void setPeriodic (boolean periodic) {
+        m_periodic = periodic;
+    }
+
+    /**
+     * Signals that there is work for this runnable, so that runAction is called as soon as possible rather than at
+     * the end of the current period. Signals that arrive before the runnable gets to run are coalesced.
+     */
+    public void wakeUp () {
+        synchronized (m_wakeLock) {
+            if (!m_workPending) {
+                m_workPending = true;
+                m_workSignalledAt = System.nanoTime ();
+                m_wakeLock.notifyAll ();
+            }
+        }
+        if (m_eventDriven) {
+            requestCycle ();
+        }
+    }
+
+    /**
+     * @return the time taken by each call to runAction
+     */
+    public LatencyHistogram getRunTimeHistogram () {
+        return m_runTime;
+    }
+
+    /**
+     * @return the time between a call to {@link #wakeUp()} and the call to runAction that handles it
+     */
+    public LatencyHistogram getWakeUpLatencyHistogram () {
+        return m_wakeUpLatency;
+    }
+
+    /**
+     * Waits until the timeout expires or there is work for this runnable
+     *
+     * @return whether there is work
+     */
+    private boolean waitForWork (long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis () + timeout;
+        synchronized (m_wakeLock) {
+            long remaining = timeout;
+            while (!m_workPending && remaining > 0) {
+                m_wakeLock.wait (remaining);
+                remaining = deadline - System.currentTimeMillis ();
+            }
+            return m_workPending;
+        }
+    }
+
+    /**
+     * Clears the signal that there is work for this runnable
+     *
+     * @return when the work was signalled, in nanoseconds, or null if there was no work
+     */
+    private Long consumeWork () {
+        synchronized (m_wakeLock) {
+            if (!m_workPending) return null;
+            m_workPending = false;
+            return m_workSignalledAt;
+        }
+    }
+
     /**
      * Returns whether this runnable should terminate.  If <code>true</code>,
      * causes the doTerminate to be called.
@@ -215,7 +348,6 @@ public abstract class AbstractRainbowRunnable implements IRainbowRunnable, Ident
     @Override
     public void run () {
         Thread currentThread = Thread.currentThread();
-        int errorCount = 0;
         long nextRelease = new Date ().getTime () + m_sleepTime;
         
         while (m_thread == currentThread) {
@@ -227,71 +359,172 @@ public abstract class AbstractRainbowRunnable implements IRainbowRunnable, Ident
              */
             boolean isTaskBehind = sleepTime < -DELAY_TOLERANCE;
             boolean interrupted = false;
+            boolean woken = false;
             if (!isTaskBehind) {
                 try {
-                    Thread.sleep (Math.max (0,sleepTime));
+                    // Woken up before the release: run now, but keep the periodic release
+                    woken = waitForWork (Math.max (0,sleepTime)) && new Date ().getTime () < nextRelease;
                 } catch (InterruptedException e) {
                     interrupted = true;
                 }
             }
-            if (!interrupted) {
+            if (!interrupted && !woken) {
             	nextRelease += m_sleepTime;
             }
-            if (m_threadState == State.STARTED) {  // only process if started
-                if (shouldTerminate()) {
-                    // time to stop RainbowRunnable as well
-                    doTerminate();
-                } else if (!isTaskBehind && !interrupted) {
-                    try {
-                        runAction();
-                    } catch (Throwable t) {
-                        if (errorCount < 3) {
-                            // Change this so that the error is reported, but the thread doesn't terminate
-                            String errMsg = MessageFormat
-                                    .format("Runtime error in {0}! ... Continuing for {1} more attempts.",
-                                            m_name, (3 - ++errorCount));
-                            m_reportingPort.error (getComponentType (), errMsg, t);
-                            t.printStackTrace ();
-                        }
-                        else {
-                            // make sure Rainbow can dispose despite error... by terminating
-                            m_reportingPort.fatal (getComponentType (), "Runtime , terminating runnable " + m_name
-                                    + "!", t);
-                            terminate();
-                            // TODO: BRS work out restart strategy
+            Long signalledAt = null;
+            if (!isTaskBehind && !interrupted) {
+                // Work signalled while the runnable is not started is dropped, or the thread would not wait again
+                signalledAt = consumeWork ();
+                if (m_threadState != State.STARTED) {
+                    signalledAt = null;
+                }
+            }
+            cycle (!isTaskBehind && !interrupted, signalledAt);
+        }
+        log ("Terminated " + m_name);
+    }
+
+    /**
+     * Asks for a cycle of an event-driven runnable to run on the shared scheduler. Cycles of a runnable never run
+     * concurrently: requests made while a cycle runs are coalesced into one more cycle.
+     */
+    private void requestCycle () {
+        if (m_requestedCycles.getAndIncrement () == 0) {
+            scheduler ().execute (m_cycleTask);
+        }
+    }
+
+    private void runRequestedCycles () {
+        int requests;
+        do {
+            requests = m_requestedCycles.get ();
+            long now = System.currentTimeMillis ();
+            boolean due = m_periodic && now >= m_nextRelease;
+            if (due) {
+                m_nextRelease = now + m_sleepTime;
+            }
+            try {
+                Long signalledAt = consumeWork ();
+                if (m_threadState != State.STARTED) {
+                    signalledAt = null;
+                }
+                cycle (due || signalledAt != null, signalledAt);
+                scheduleRelease ();
+            } catch (RuntimeException e) {
+                // Keep the scheduler going; the runnable will be tried again at its next wake up
+                m_reportingPort.error (getComponentType (), "Error scheduling " + m_name, e);
+            }
+        } while (m_requestedCycles.addAndGet (-requests) > 0);
+    }
+
+    /**
+     * Sets the timer for the next periodic release of an event-driven runnable
+     */
+    private void scheduleRelease () {
+        if (m_timer != null) {
+            m_timer.cancel (false);
+            m_timer = null;
+        }
+        if (m_periodic && m_threadState != State.TERMINATED && m_threadState != State.RAW) {
+            m_timer = scheduler ().schedule (new Runnable () {
+                @Override
+                public void run () {
+                    requestCycle ();
+                }
+            }, Math.max (0, m_nextRelease - System.currentTimeMillis ()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService scheduler () {
+        if (s_scheduler == null) {
+            final IRainbowEnvironment env = Rainbow.instance ();
+            int threads = env.getProperty (RainbowConstants.PROPKEY_SCHEDULER_THREADS,
+                    Math.max (2, Runtime.getRuntime ().availableProcessors ()));
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor (threads, new ThreadFactory () {
+                private final AtomicInteger m_count = new AtomicInteger ();
+
+                @Override
+                public Thread newThread (Runnable r) {
+                    Thread t = new Thread (env.getThreadGroup (), r, "Rainbow Scheduler " + m_count
+                            .incrementAndGet ());
+                    t.setDaemon (true);
+                    return t;
+                }
+            });
+            scheduler.setRemoveOnCancelPolicy (true);
+            s_scheduler = scheduler;
+        }
+        return s_scheduler;
+    }
+
+    /**
+     * Runs one cycle of the runnable: calls runAction if it is started and released, and then advances its state
+     *
+     * @param release     whether runAction should be called
+     * @param signalledAt when the work handled by this cycle was signalled, or null if it was not woken up
+     */
+    private void cycle (boolean release, Long signalledAt) {
+        if (m_threadState == State.STARTED) {  // only process if started
+            if (shouldTerminate()) {
+                // time to stop RainbowRunnable as well
+                doTerminate();
+            } else if (release) {
+                long start = System.nanoTime ();
+                if (signalledAt != null) {
+                    m_wakeUpLatency.record (start - signalledAt);
+                }
+                try {
+                    runAction();
+                } catch (Throwable t) {
+                    if (m_errorCount < 3) {
+                        // Change this so that the error is reported, but the thread doesn't terminate
+                        String errMsg = MessageFormat
+                                .format("Runtime error in {0}! ... Continuing for {1} more attempts.",
+                                        m_name, (3 - ++m_errorCount));
+                        m_reportingPort.error (getComponentType (), errMsg, t);
+                    }
+                    else {
+                        // make sure Rainbow can dispose despite error... by terminating
+                        m_reportingPort.fatal (getComponentType (), "Runtime , terminating runnable " + m_name
+                                + "!", t);
+                        terminate();
+                        // TODO: BRS work out restart strategy
 //                            // cause a Rainbow restart if we're the event service, or slave
 //                            if (this instanceof IEventService
 //                                    || !Rainbow.isMaster()) {
 //                                Rainbow.signalTerminate(Rainbow.ExitState.RESTART);
 //                            }
-                        }
                     }
                 }
+                m_runTime.record (System.nanoTime () - start);
             }
-            // check whether to advance state, not if terminated
-            if (m_threadState != m_nextState && m_threadState != State.TERMINATED) {
-                switch (m_nextState) {
-                case STARTED:
-                    start();
-                    break;
-                case STOPPED:
-                    doStop();
-                    break;
-                case TERMINATED:
-                    doTerminate();
-                    break;
-                default:
-                    break;
-                }
-                if (m_restarting && m_nextState == State.STOPPED) {
-                    m_nextState = State.STARTED;  // cause restart next
-                    m_restarting = false;
-                } else {
-                    m_nextState = m_threadState;
-                }
+        }
+        // check whether to advance state, not if terminated
+        if (m_threadState != m_nextState && m_threadState != State.TERMINATED) {
+            switch (m_nextState) {
+            case STARTED:
+                start();
+                break;
+            case STOPPED:
+                doStop();
+                break;
+            case TERMINATED:
+                doTerminate();
+                break;
+            default:
+                break;
+            }
+            if (m_restarting && m_nextState == State.STOPPED) {
+                m_nextState = State.STARTED;  // cause restart next
+                m_restarting = false;
+            } else {
+                m_nextState = m_threadState;
             }
         }
-        log ("Terminated " + m_name);
+        if (m_eventDriven && m_threadState != m_nextState && m_threadState != State.TERMINATED) {
+            // Process the next transition (e.g., the start that follows a restart) without waiting for a wake-up
+            requestCycle ();
+        }
     }
 
     protected Thread activeThread () {
@@ -316,6 +549,9 @@ public abstract class AbstractRainbowRunnable implements IRainbowRunnable, Ident
         }
 
         m_nextState = nextState;
+        if (m_eventDriven && m_threadState != State.RAW) {
+            requestCycle ();
+        }
     }
 
     public IRainbowReportingPort reportingPort () {
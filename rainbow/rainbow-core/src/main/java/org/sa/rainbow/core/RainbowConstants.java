@@ -129,6 +129,38 @@ public interface RainbowConstants {
     String PROPKEY_MODEL_LOAD_CLASS_PREFIX = "rainbow.model.load.class_";
     String PROPKEY_MODEL_SAVE_PREFIX = "rainbow.model.saveOnClose_";
     String RAINBOW_MODEL_SAVE_LOCATION_PREFIX = "rainbow.model.saveLocation_";
+    /** Maximum number of queued model updates that the Models Manager executes together; 1 executes one per cycle */
+    String PROPKEY_MODEL_BATCH_SIZE = "rainbow.model.batch.size";
+    /** Time, in milliseconds, that the Models Manager waits for more model updates before executing a batch */
+    String PROPKEY_MODEL_BATCH_LATENCY = "rainbow.model.batch.latency";
+    /**
+     * Whether the events of a model update are published on the model change bus in one batch message, rather than
+     * one message per event. Only subscribers that unpack batches (e.g., the change bus subscription port) receive
+     * batched events, so this is off by default
+     */
+    String PROPKEY_MODEL_CHANGE_BATCH = "rainbow.model.change.batch";
+    /**
+     * Whether the Models Manager journals model operations and snapshots models, and restores models from their last
+     * snapshot and operation journal on startup
+     */
+    String PROPKEY_MODEL_RECOVER = "rainbow.model.recover";
+    /** Time, in milliseconds, between snapshots of the models that have changed; 0 disables snapshots */
+    String PROPKEY_MODEL_SNAPSHOT_PERIOD = "rainbow.model.snapshot.period";
+    /** Size, in bytes, after which a new segment of a model operation journal is started */
+    String PROPKEY_MODEL_JOURNAL_SEGMENT_SIZE = "rainbow.model.journal.segment.size";
+    /** Whether Rainbow runnables run on a shared scheduler when woken, instead of polling on their own thread */
+    String PROPKEY_RUNNABLE_EVENT_DRIVEN = "rainbow.runnable.event.driven";
+    /** Number of threads of the shared scheduler used by event-driven runnables */
+    String PROPKEY_SCHEDULER_THREADS = "rainbow.scheduler.threads";
+    /**
+     * Regular expression matching the names of the model operations that set a property of their target, and can be
+     * coalesced; see OperationCoalescer.DEFAULT_COALESCIBLE_OPERATIONS
+     */
+    String PROPKEY_COALESCE_OPERATIONS = "rainbow.coalesce.operations";
+    /** Time, in milliseconds, for which gauges hold model updates to coalesce them; 0 sends each update at once */
+    String PROPKEY_GAUGE_COALESCE_INTERVAL = "rainbow.gauge.coalesce.interval";
+    /** Whether the Models Manager coalesces the model updates in each batch it executes */
+    String PROPKEY_MODEL_COALESCE = "rainbow.model.coalesce";
 
     String PROPKEY_MODEL_PATH = "customize.model.path";
     /** Rainbow customization parameter: Flag indicating whether to persist model at end of run */
@@ -142,6 +174,11 @@ public interface RainbowConstants {
 //    /** Rainbow customization parameter:  Amount of time to wait between each model evaluation */
     String PROPKEY_MODEL_EVAL_PERIOD = "customize.model.evaluate.period";
     String PROPKEY_ARCH_EVALUATOR_EXTENSIONS = "rainbow.evaluations";
+    /**
+     * Rainbow customization parameter: Period (in ms) after which the architecture evaluator checks every model it
+     * knows about again, even if no change to it was reported (0 to only check on changes)
+     */
+    String PROPKEY_ARCH_EVALUATOR_FULL_CHECK_PERIOD = "rainbow.evaluator.fullcheck.period";
     String PROPKEY_ANALYSIS_COMPONENTS = "rainbow.analyses";
     String PROPKEY_ANALYSIS_COMPONENT_SIZE = "rainbow.analyses.size";
 //    /** Rainbow customization parameter:  Alpha value of exponential average for
@@ -168,6 +205,11 @@ public interface RainbowConstants {
     String PROPKEY_SCENARIO = "customize.utility.scenario";
 //    /** Rainbow customization parameter:  The minimum threshold of utility score below which a strategy is not considered */
     String PROPKEY_UTILITY_MINSCORE_THRESHOLD = "customize.utility.score.minimum.threshold";
+    /**
+     * Number of threads the adaptation manager uses to check the applicability of, and score, the strategies of
+     * different Stitch scripts at the same time; 1 evaluates them one after another
+     */
+    String PROPKEY_ADAPTATION_SELECTION_THREADS = "rainbow.adaptation.selection.threads";
 //    /** Rainbow customization parameter:  Duration into the future to predict for utility computation */
     String PROPKEY_UTILITY_PREDICTION_DURATION = "customize.utility.prediction.duration";
 //    /** Rainbow customization parameter:  Flag to turn on prediction capability */
@@ -197,4 +239,25 @@ public interface RainbowConstants {
     String PROPKEY_EFFECTOR_MANAGER_COMPONENT = "rainbow.effector.manager.class";
 
     String PROPKEY_PORT_TIMEOUT = "rainbow.port.timeout";
+    /** Time, in milliseconds, that script effectors have to finish before they are killed (default 5000) */
+    String PROPKEY_EFFECTOR_TIMEOUT = "rainbow.effector.timeout";
+    /** Number of threads reading the output of continual script probes (default 2) */
+    String PROPKEY_PROBE_READERS = "rainbow.probe.readers";
+    /** Time, in milliseconds, that lines from a script probe are held to be reported together (default 100) */
+    String PROPKEY_PROBE_FLUSH_WINDOW = "rainbow.probe.flush";
+    /** Number of times a crashed continual script probe is restarted before it is considered dead (default 10) */
+    String PROPKEY_PROBE_RESTARTS = "rainbow.probe.restarts";
+    /**
+     * Time, in milliseconds, that probe reports are held so that the reports of all the probes in a process are sent
+     * together (default 0, each report is sent when it is made)
+     */
+    String PROPKEY_PROBE_REPORT_BATCH_WINDOW = "rainbow.probe.report.batch";
+    /** Time, in milliseconds, that UI reports are held to be published together (default 250) */
+    String PROPKEY_UI_REPORT_WINDOW = "rainbow.report.window";
+    /** Maximum number of distinct UI reports published per window; the rest are counted and dropped (default 50) */
+    String PROPKEY_UI_REPORT_LIMIT = "rainbow.report.limit";
+    /** I/O mode of the ESEB event bus run by the master: "blocking" (default) or "selector" */
+    String PROPKEY_ESEB_BUS_MODE = "rainbow.eseb.bus.mode";
+    /** Encoding of values on ESEB: "text" (default) or "binary"; must be the same for all Rainbow processes */
+    String PROPKEY_ESEB_ENCODING = "rainbow.eseb.encoding";
 }
@@ -27,9 +27,11 @@ import incubator.pval.Ensure;
 import org.sa.rainbow.core.AbstractRainbowRunnable;
 import org.sa.rainbow.core.Rainbow;
 import org.sa.rainbow.core.RainbowComponentT;
+import org.sa.rainbow.core.RainbowConstants;
 import org.sa.rainbow.core.error.RainbowConnectionException;
 import org.sa.rainbow.core.error.RainbowException;
 import org.sa.rainbow.core.models.commands.IRainbowOperation;
+import org.sa.rainbow.core.models.commands.OperationCoalescer;
 import org.sa.rainbow.core.ports.*;
 import org.sa.rainbow.core.util.TypedAttribute;
 import org.sa.rainbow.core.util.TypedAttributeWithValue;
@@ -39,6 +41,7 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Abstract definition of a gauge that does not use probes to gather system information. This allows for subclasses to
@@ -80,6 +83,15 @@ public abstract class AbstractGauge extends AbstractRainbowRunnable implements I
 
     private Map<String, IRainbowOperation> m_lastCommands = null;
 
+    /**
+     * Holds the model updates issued by the gauge so that only the newest value of each property is sent every
+     * coalescing interval, or null if updates are sent as soon as they are issued
+     **/
+    private OperationCoalescer m_coalescer        = null;
+    private long               m_coalesceInterval = 0;
+    private long               m_lastFlush        = System.currentTimeMillis ();
+    private final AtomicLong   m_sentUpdates      = new AtomicLong ();
+
     /**
      * Main Constructor for the Gauge.
      *
@@ -133,6 +145,12 @@ public abstract class AbstractGauge extends AbstractRainbowRunnable implements I
             }
         }
 
+        m_coalesceInterval = m_rainbowEnvironment.getProperty (RainbowConstants.PROPKEY_GAUGE_COALESCE_INTERVAL, 0L);
+        if (m_coalesceInterval > 0) {
+            m_coalescer = new OperationCoalescer (m_rainbowEnvironment.getProperty (
+                    RainbowConstants.PROPKEY_COALESCE_OPERATIONS, OperationCoalescer.DEFAULT_COALESCIBLE_OPERATIONS));
+        }
+
         try {
             m_gaugeManagementPort = RainbowPortFactory.createGaugeSideLifecyclePort ();
             m_announcePort = RainbowPortFactory.createModelsManagerClientUSPort (this);
@@ -168,6 +186,7 @@ public abstract class AbstractGauge extends AbstractRainbowRunnable implements I
 
     @Override
     public void dispose () {
+        flushUpdates ();
         m_gaugeManagementPort.reportDeleted (this);
 
 //        Rainbow.eventService().unlisten(m_gaugeEventHandler);
@@ -269,11 +288,64 @@ public abstract class AbstractGauge extends AbstractRainbowRunnable implements I
         actualCmd = formOperation (cmd, parameters, actualCmd, actualsMap);
         m_lastCommands.put (cmd.getName (), actualCmd);
         m_lastCommands.putAll (actualsMap);
-        m_announcePort.updateModel (actualCmd);
+        sendUpdate (actualCmd);
+    }
+
+    /**
+     * Sends a model update, or holds it until the end of the coalescing interval if it can be coalesced. Updates are
+     * reported when they are sent, so held updates that are superseded are not reported.
+     */
+    private void sendUpdate (IRainbowOperation op) {
+        if (m_coalescer != null) {
+            if (m_coalescer.isCoalescible (op)) {
+                m_coalescer.add (op);
+                return;
+            }
+            // Keep the updates in order
+            flushUpdates ();
+        }
+        m_announcePort.updateModel (op);
+        m_sentUpdates.incrementAndGet ();
+        reportUpdate (op);
+    }
+
+    private void reportUpdate (IRainbowOperation op) {
         m_reportingPort.info (RainbowComponentT.GAUGE, MessageFormat.format ("G[{0}]: {1}.{2}({3})", id (),
-                                                                             actualCmd.getTarget (), actualCmd
-                                                                                     .getName (), Arrays.toString
-                        (actualCmd.getParameters ())));
+                                                                             op.getTarget (), op.getName (),
+                                                                             Arrays.toString (op.getParameters ())));
+    }
+
+    /**
+     * Sends the model updates that are being held for coalescing
+     */
+    protected void flushUpdates () {
+        if (m_coalescer == null) return;
+        m_lastFlush = System.currentTimeMillis ();
+        List<IRainbowOperation> ops = m_coalescer.drain ();
+        if (ops.size () == 1) {
+            m_announcePort.updateModel (ops.get (0));
+        } else if (ops.size () > 1) {
+            m_announcePort.updateModel (ops, false);
+        }
+        m_sentUpdates.addAndGet (ops.size ());
+        for (IRainbowOperation op : ops) {
+            reportUpdate (op);
+        }
+    }
+
+    /**
+     * @return the number of model updates that were not sent because the gauge issued a newer value before the end of
+     * the coalescing interval
+     */
+    public long getCoalescedUpdateCount () {
+        return m_coalescer == null ? 0 : m_coalescer.getCoalescedCount ();
+    }
+
+    /**
+     * @return the number of model updates that the gauge sent
+     */
+    public long getSentUpdateCount () {
+        return m_sentUpdates.get ();
     }
 
     private OperationRepresentation formOperation (IRainbowOperation cmd,
@@ -314,12 +386,12 @@ public abstract class AbstractGauge extends AbstractRainbowRunnable implements I
             m_lastCommands.put (op.getName (), actualCmd);
             m_lastCommands.putAll (actualsMap);
         }
+        // Keep the updates in order
+        flushUpdates ();
         m_announcePort.updateModel (actualCommands, true);
+        m_sentUpdates.addAndGet (actualCommands.size ());
         for (IRainbowOperation op : actualCommands) {
-            m_reportingPort.info (
-                    RainbowComponentT.GAUGE,
-                    MessageFormat.format ("G[{0}]: {1}.{2}({3})", id (), op.getTarget (), op.getName (),
-                                          Arrays.toString (op.getParameters ())));
+            reportUpdate (op);
         }
     }
 
@@ -359,6 +431,9 @@ public abstract class AbstractGauge extends AbstractRainbowRunnable implements I
      */
     @Override
     protected void runAction () {
+        if (m_coalescer != null && System.currentTimeMillis () - m_lastFlush >= m_coalesceInterval) {
+            flushUpdates ();
+        }
         // report Gauge's beacon
         if (m_gaugeBeacon.periodElapsed ()) {
             // send beacon signal to Rainbow
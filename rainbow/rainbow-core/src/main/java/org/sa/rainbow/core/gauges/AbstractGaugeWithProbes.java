@@ -108,6 +108,13 @@ public abstract class AbstractGaugeWithProbes extends AbstractGauge {
                         AbstractGaugeWithProbes.this.reportFromProbe (probe, data);
                     }
 
+                    @Override
+                    public void reportData (IProbeIdentifier probe, List<String> data) {
+                        for (String d : data) {
+                            AbstractGaugeWithProbes.this.reportFromProbe (probe, d);
+                        }
+                    }
+
                     @Override
                     public void dispose () {
                     }
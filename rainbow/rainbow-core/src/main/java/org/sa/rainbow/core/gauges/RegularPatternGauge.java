@@ -31,25 +31,46 @@ import org.sa.rainbow.core.util.TypedAttributeWithValue;
 import org.sa.rainbow.translator.probes.IProbeIdentifier;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * This class implements the common methods for a Gauge that processes Probe
- * reports using one or more regular patterns.  Report strings are queued for
- * thread processing.  Probe beacon expiration isn't used by this type of Gauge.
+ * reports using one or more regular patterns.  Report strings are matched once,
+ * when the probe reports, and the matches are queued for thread processing.
+ * Probe beacon expiration isn't used by this type of Gauge.
+ * <p>
+ * The patterns are combined into a single alternation, with a group around each
+ * pattern, so that one pass over a report tells whether, and which, pattern
+ * matches it. The groups of the pattern that matched are read from the combined
+ * match, renumbered as they are in the pattern, and handed to
+ * {@link #doMatch(String, MatchResult)} without matching the report again.
  *
  * @author Shang-Wen Cheng (zensoul@cs.cmu.edu)
  */
 public abstract class RegularPatternGauge extends AbstractGaugeWithProbes {
     public static String MOST_RECENT = "recentProbeValuesFirst";
     public static String MAX_UPDATES_PER_CYCLE = "maxUpdatesPerCycle";
+    public static String MAX_QUEUED_MATCHES = "maxQueuedMatches";
 
-    // This field needs to be synchronized because it is accessed by multiple threads
-    protected Queue<String> m_lines = null;
+    public static final int DEFAULT_MAX_QUEUED_MATCHES = 10 * MAX_UPDATES_PER_SLEEP;
 
-    // The map of patterns that this gauge understands
+    private static final PatternSet NO_PATTERNS = new PatternSet (new String[0], new Pattern[0], new AtomicLong[0]);
+
+    // The matches waiting to be processed. Accessed by the probe and gauge threads
+    private MatchRing m_lines = null;
+
+    // The map of patterns that this gauge understands, in the order they are tried. Guards changes to the patterns
     private Map<String,Pattern> m_patternMap = null;
+    // The patterns as they are matched, replaced as a whole when a pattern is added so that reports are matched
+    // without locking
+    private volatile PatternSet m_patterns = NO_PATTERNS;
+
+    private final Map<String, AtomicLong> m_hits = new HashMap<> ();
+    private final AtomicLong m_reports = new AtomicLong ();
 
     // Process the most recent probes
     private boolean m_mostRecentFirst = false;
@@ -74,11 +95,12 @@ public abstract class RegularPatternGauge extends AbstractGaugeWithProbes {
                     throws RainbowException {
         super (threadName, id, beaconPeriod, gaugeDesc, modelDesc, setupParams, mappings);
 
-        m_lines = new LinkedList<> ();
-        m_patternMap = new HashMap<> ();
+        m_patternMap = new LinkedHashMap<> ();
 
         m_mostRecentFirst = getSetupValue (MOST_RECENT, Boolean.class, false);
         m_updatesPerCycle = getSetupValue (MAX_UPDATES_PER_CYCLE, Integer.class, MAX_UPDATES_PER_SLEEP);
+        int capacity = getSetupValue (MAX_QUEUED_MATCHES, Integer.class, DEFAULT_MAX_QUEUED_MATCHES);
+        m_lines = new MatchRing (Math.max (capacity, Math.min (MAX_UPDATES_PER_SLEEP, m_updatesPerCycle)));
     }
 
 
@@ -87,14 +109,16 @@ public abstract class RegularPatternGauge extends AbstractGaugeWithProbes {
      */
     @Override
     public void dispose () {
-        synchronized (m_lines) {
+        if (m_lines != null) {
             m_lines.clear ();
         }
-        m_patternMap.clear();
+        synchronized (m_patternMap) {
+            m_patternMap.clear ();
+            m_patterns = NO_PATTERNS;
+        }
 
         // null-out data members
         m_lines = null;
-        m_patternMap = null;
 
         super.dispose();
     }
@@ -105,80 +129,312 @@ public abstract class RegularPatternGauge extends AbstractGaugeWithProbes {
 
     /**
      * This method is called when a probe reports. Takes the data and the probe and
-     * adds the data to a queue for processing by the gauge, but only if the data
+     * adds the match to a queue for processing by the gauge, but only if the data
      * matches one of the patterns for this gauge. Otherwise it is discarded.
      * @param probe
      * @param data
      */
     @Override
     public void reportFromProbe (IProbeIdentifier probe, String data) {
-        if (m_lines == null) return;
-        synchronized (m_lines) {
-            // Only offer if we have a match
-            for (Map.Entry<String,Pattern> e : m_patternMap.entrySet()) {
-                Matcher m = e.getValue ().matcher (data);
-                if (m.matches()) {
-                    m_lines.offer (data);
-                    break;
-                }
-            }
+        MatchRing lines = m_lines;
+        if (lines == null) return;
+        Match match = match (data);
+        if (match != null) {
+            lines.offer (match);
+            wakeUp ();
         }
 
         super.reportFromProbe (probe, data);
     }
 
+    /**
+     * Finds the first pattern, in the order they were added, that matches the data
+     *
+     * @return the match, or null if no pattern matches the data
+     */
+    private Match match (String data) {
+        PatternSet patterns = m_patterns;
+        m_reports.incrementAndGet ();
+        if (patterns.combined != null) {
+            Matcher c = patterns.combined.matcher (data);
+            if (!c.matches ()) return null;
+            for (int i = 0; i < patterns.names.length; i++) {
+                if (c.start (patterns.groups[i]) != -1) {
+                    patterns.hits[i].incrementAndGet ();
+                    return new Match (patterns.names[i], new PatternGroups (c, patterns.groups[i],
+                            patterns.groupCounts[i]));
+                }
+            }
+            return null;
+        }
+        // The patterns could not be combined: try them one by one
+        for (int i = 0; i < patterns.names.length; i++) {
+            Matcher m = patterns.patterns[i].matcher (data);
+            if (m.matches ()) {
+                patterns.hits[i].incrementAndGet ();
+                return new Match (patterns.names[i], m);
+            }
+        }
+        return null;
+    }
+
     /* (non-Javadoc)
      * @see org.sa.rainbow.translator.gauges.AbstractGauge#runAction()
      */
     @Override
     protected void runAction() {
-        // Pull probe values off the queue and process them
-        Matcher m = null;
-        String name = null;
-        int cnt = Math.min (MAX_UPDATES_PER_SLEEP, m_updatesPerCycle);
-        // We need to do some processing of the queue, so make a copy
-        // so that the manipulation doesn't affect probe reporting
-        Queue<String> lines = new LinkedList<String> ();
-        synchronized (m_lines) {
-            lines.addAll (m_lines);
-            if (m_mostRecentFirst) m_lines.clear ();
-            else {
-                // delete the first cnt elements from the list
-                int c = cnt;
-                while (m_lines.size () > 0 && c-- > 0)  m_lines.poll ();
+        MatchRing lines = m_lines;
+        if (lines != null) {
+            // Pull matches off the ring and process them
+            int cnt = Math.min (MAX_UPDATES_PER_SLEEP, m_updatesPerCycle);
+            if (m_mostRecentFirst) {
+                // Flush the oldest values so that we're not keeping increasingly old values around
+                lines.discardAllBut (cnt);
+            }
+            for (Match match : lines.poll (cnt)) {
+                doMatch (match.name, match.result);
+            }
+        }
+
+        super.runAction();
+    }
+
+    protected void addPattern (String matchName, Pattern p) {
+        synchronized (m_patternMap) {
+            String name = matchName.intern ();
+            m_patternMap.put (name, p);
+            if (!m_hits.containsKey (name)) {
+                m_hits.put (name, new AtomicLong ());
+            }
+            int size = m_patternMap.size ();
+            String[] names = m_patternMap.keySet ().toArray (new String[size]);
+            Pattern[] patterns = m_patternMap.values ().toArray (new Pattern[size]);
+            AtomicLong[] hits = new AtomicLong[size];
+            for (int i = 0; i < size; i++) {
+                hits[i] = m_hits.get (names[i]);
             }
+            m_patterns = new PatternSet (names, patterns, hits);
         }
+    }
+
+    /**
+     * @return the number of probe reports that the pattern matched
+     */
+    public long getPatternHits (String matchName) {
+        AtomicLong hits;
+        synchronized (m_patternMap) {
+            hits = m_hits.get (matchName);
+        }
+        return hits == null ? 0 : hits.get ();
+    }
+
+    /**
+     * @return the number of probe reports that the pattern did not match, either because they matched an earlier
+     * pattern or none at all
+     */
+    public long getPatternMisses (String matchName) {
+        return m_reports.get () - getPatternHits (matchName);
+    }
+
+    /**
+     * @return the number of matches that were discarded because they were not processed in time
+     */
+    public long getDroppedMatches () {
+        MatchRing lines = m_lines;
+        return lines == null ? 0 : lines.dropped ();
+    }
+
+    /**
+     * Processes a probe report that matched one of the patterns of this gauge
+     *
+     * @param matchName the name the pattern was added with
+     * @param m         the groups of the pattern, numbered as they are in the pattern
+     */
+    protected abstract void doMatch (String matchName, MatchResult m);
+
+    /**
+     * A probe report that matched one of the patterns
+     */
+    private static class Match {
+        final String      name;
+        final MatchResult result;
+
+        Match (String name, MatchResult result) {
+            this.name = name;
+            this.result = result;
+        }
+    }
+
+    /**
+     * The patterns of the gauge, in the order they are tried, and the alternation that combines them
+     */
+    private static class PatternSet {
+        final String[]     names;
+        final Pattern[]    patterns;
+        final AtomicLong[] hits;
+        // All the patterns as one alternation, or null if they cannot be combined
+        final Pattern      combined;
+        // The index, in the combined pattern, of the group around each pattern
+        final int[]        groups;
+        final int[]        groupCounts;
 
-        if (m_mostRecentFirst) {
-            // Flush the oldest values so that we're not keeping increasingly old values around
-            while (lines.size () > cnt) {
-                lines.poll ();
+        PatternSet (String[] names, Pattern[] patterns, AtomicLong[] hits) {
+            this.names = names;
+            this.patterns = patterns;
+            this.hits = hits;
+            groups = new int[patterns.length];
+            groupCounts = new int[patterns.length];
+            for (int i = 0; i < patterns.length; i++) {
+                groupCounts[i] = patterns[i].matcher ("").groupCount ();
             }
+            combined = combine ();
         }
 
-        while (lines.size() > 0 && cnt-- > 0) {
-            String line = lines.poll();
-            // process the line for stats
-            //log("Got line: " + line);
-            for (Map.Entry<String,Pattern> e : m_patternMap.entrySet()) {
-                name = e.getKey();
-                m = e.getValue().matcher(line);
-                if (m.matches()) {
-                    break;
+        /**
+         * Builds a single pattern that matches whatever one of the patterns matches, with a group around each pattern
+         * to tell which one matched. A single pattern is used as it is. Patterns that use flags or back references
+         * cannot be embedded without changing their meaning, so in that case there is no combined pattern.
+         */
+        private Pattern combine () {
+            if (patterns.length == 1) return patterns[0];
+            StringBuilder combined = new StringBuilder ();
+            int group = 1;
+            for (int i = 0; i < patterns.length; i++) {
+                Pattern p = patterns[i];
+                String regex = p.pattern ();
+                if (p.flags () != 0 || regex.matches ("(?s).*\\\\([1-9]|k<).*")) return null;
+                if (i > 0) {
+                    combined.append ('|');
                 }
+                combined.append ('(').append (regex).append (')');
+                groups[i] = group;
+                group += 1 + groupCounts[i];
             }
-            if (m != null && m.matches()) {
-                doMatch(name, m);
+            try {
+                return Pattern.compile (combined.toString ());
+            } catch (PatternSyntaxException e) {
+                return null;
             }
         }
-
-        super.runAction();
     }
 
-    protected void addPattern (String matchName, Pattern p) {
-        m_patternMap.put(matchName.intern(), p);
+    /**
+     * The groups of one of the patterns in a match of the combined pattern, renumbered so that group 0 is the whole
+     * match and the groups of the pattern start at 1
+     */
+    private static class PatternGroups implements MatchResult {
+        private final Matcher m_combined;
+        private final int     m_offset;
+        private final int     m_groupCount;
+
+        PatternGroups (Matcher combined, int offset, int groupCount) {
+            m_combined = combined;
+            m_offset = offset;
+            m_groupCount = groupCount;
+        }
+
+        private int index (int group) {
+            if (group < 0 || group > m_groupCount) throw new IndexOutOfBoundsException ("No group " + group);
+            return m_offset + group;
+        }
+
+        @Override
+        public int start () {
+            return m_combined.start (m_offset);
+        }
+
+        @Override
+        public int start (int group) {
+            return m_combined.start (index (group));
+        }
+
+        @Override
+        public int end () {
+            return m_combined.end (m_offset);
+        }
+
+        @Override
+        public int end (int group) {
+            return m_combined.end (index (group));
+        }
+
+        @Override
+        public String group () {
+            return m_combined.group (m_offset);
+        }
+
+        @Override
+        public String group (int group) {
+            return m_combined.group (index (group));
+        }
+
+        @Override
+        public int groupCount () {
+            return m_groupCount;
+        }
     }
 
-    protected abstract void doMatch (String matchName, Matcher m);
+    /**
+     * A bounded ring of matches. When it is full, the oldest match is discarded to make room for a new one.
+     */
+    private static class MatchRing {
+        private final Match[] m_ring;
+        private int  m_head    = 0;
+        private int  m_size    = 0;
+        private long m_dropped = 0;
+
+        MatchRing (int capacity) {
+            m_ring = new Match[capacity];
+        }
+
+        synchronized void offer (Match match) {
+            if (m_size == m_ring.length) {
+                discard (1);
+            }
+            m_ring[(m_head + m_size) % m_ring.length] = match;
+            m_size++;
+        }
+
+        synchronized List<Match> poll (int max) {
+            int n = Math.min (max, m_size);
+            List<Match> matches = new ArrayList<> (n);
+            for (int i = 0; i < n; i++) {
+                matches.add (m_ring[m_head]);
+                m_ring[m_head] = null;
+                m_head = (m_head + 1) % m_ring.length;
+            }
+            m_size -= n;
+            return matches;
+        }
+
+        synchronized void discardAllBut (int keep) {
+            if (m_size > keep) {
+                discard (m_size - keep);
+            }
+        }
+
+        private void discard (int n) {
+            for (int i = 0; i < n; i++) {
+                m_ring[m_head] = null;
+                m_head = (m_head + 1) % m_ring.length;
+            }
+            m_size -= n;
+            m_dropped += n;
+        }
+
+        synchronized void clear () {
+            Arrays.fill (m_ring, null);
+            m_head = 0;
+            m_size = 0;
+        }
+
+        synchronized int size () {
+            return m_size;
+        }
+
+        synchronized long dropped () {
+            return m_dropped;
+        }
+    }
 
 }
@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.gauges.stats;
+
+/**
+ * The rate at which events happen, per second, with the weight of each event decaying exponentially with its age. An
+ * event that happened one half-life ago counts half as much as one that happens now, so the rate follows changes in
+ * the event stream within a few half-lives.
+ * <p>
+ * This class is not thread safe.
+ */
+public class DecayingRate {
+
+    private final double m_decayPerMs;
+    private final double m_halfLifeMs;
+    private double m_weight = 0;
+    private long   m_lastMs = -1;
+
+    /**
+     * @param halfLifeMs the time, in milliseconds, after which the weight of an event halves
+     */
+    public DecayingRate (long halfLifeMs) {
+        if (halfLifeMs <= 0) throw new IllegalArgumentException ("The half-life must be positive");
+        m_halfLifeMs = halfLifeMs;
+        m_decayPerMs = Math.log (2) / halfLifeMs;
+    }
+
+    private void decayTo (long nowMs) {
+        if (m_lastMs >= 0 && nowMs > m_lastMs) {
+            m_weight *= Math.exp (-m_decayPerMs * (nowMs - m_lastMs));
+        }
+        if (nowMs > m_lastMs) {
+            m_lastMs = nowMs;
+        }
+    }
+
+    /**
+     * Records events
+     *
+     * @param count the number of events (or the amount, e.g. of bytes)
+     * @param nowMs the time of the events, in milliseconds
+     */
+    public void add (double count, long nowMs) {
+        decayTo (nowMs);
+        m_weight += count;
+    }
+
+    /**
+     * @return the rate, in events per second, at the given time
+     */
+    public double rate (long nowMs) {
+        decayTo (nowMs);
+        // The decayed weight of a steady rate r (per ms) converges to r / decayPerMs
+        return m_weight * m_decayPerMs * 1000;
+    }
+
+    public long halfLife () {
+        return (long) m_halfLifeMs;
+    }
+}
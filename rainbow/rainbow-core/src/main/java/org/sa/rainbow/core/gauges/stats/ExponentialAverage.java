@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.gauges.stats;
+
+/**
+ * An exponentially weighted moving average. The first value is taken as the average; each later value v updates the
+ * average a to (1 - alpha) * a + alpha * v.
+ * <p>
+ * This class is not thread safe.
+ */
+public class ExponentialAverage {
+
+    private final double m_alpha;
+    private double m_average = Double.NaN;
+    private long   m_count   = 0;
+
+    /**
+     * @param alpha the weight of each new value, between 0 and 1
+     */
+    public ExponentialAverage (double alpha) {
+        if (alpha < 0 || alpha > 1) throw new IllegalArgumentException ("alpha must be between 0 and 1: " + alpha);
+        m_alpha = alpha;
+    }
+
+    /**
+     * @return the updated average
+     */
+    public double add (double value) {
+        m_average = m_count++ == 0 ? value : (1 - m_alpha) * m_average + m_alpha * value;
+        return m_average;
+    }
+
+    /**
+     * @return the average, or NaN if no value was added
+     */
+    public double value () {
+        return m_average;
+    }
+
+    public boolean hasValue () {
+        return m_count > 0;
+    }
+
+    public long count () {
+        return m_count;
+    }
+
+    public double alpha () {
+        return m_alpha;
+    }
+
+    @Override
+    public String toString () {
+        return Double.toString (m_average);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.gauges.stats;
+
+import java.util.Arrays;
+
+/**
+ * Estimates a quantile of a stream in constant space using the P-square algorithm (Jain and Chlamtac, 1985): five
+ * markers track the minimum, the maximum, the quantile, and the quantiles halfway to each extreme, and are adjusted
+ * with a parabolic formula as values arrive. Until five values are seen, the quantile is computed exactly.
+ * <p>
+ * This class is not thread safe.
+ */
+public class QuantileSketch {
+
+    private final double   m_p;
+    private final double[] m_heights   = new double[5];
+    private final double[] m_positions = new double[5];
+    private final double[] m_desired   = new double[5];
+    private final double[] m_increment = new double[5];
+    private long m_count = 0;
+
+    /**
+     * @param p the quantile to estimate, between 0 and 1 (e.g., 0.95)
+     */
+    public QuantileSketch (double p) {
+        if (p < 0 || p > 1) throw new IllegalArgumentException ("The quantile must be between 0 and 1: " + p);
+        m_p = p;
+        m_increment[0] = 0;
+        m_increment[1] = p / 2;
+        m_increment[2] = p;
+        m_increment[3] = (1 + p) / 2;
+        m_increment[4] = 1;
+    }
+
+    public void add (double value) {
+        if (m_count < 5) {
+            m_heights[(int) m_count++] = value;
+            if (m_count == 5) {
+                Arrays.sort (m_heights);
+                for (int i = 0; i < 5; i++) {
+                    m_positions[i] = i + 1;
+                    m_desired[i] = 1 + 4 * m_increment[i];
+                }
+            }
+            return;
+        }
+        m_count++;
+
+        // Find the cell of the value, extending the extremes if needed
+        int k;
+        if (value < m_heights[0]) {
+            m_heights[0] = value;
+            k = 0;
+        } else if (value >= m_heights[4]) {
+            m_heights[4] = Math.max (m_heights[4], value);
+            k = 3;
+        } else {
+            k = 0;
+            while (k < 3 && value >= m_heights[k + 1]) {
+                k++;
+            }
+        }
+        for (int i = k + 1; i < 5; i++) {
+            m_positions[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            m_desired[i] += m_increment[i];
+        }
+
+        // Move the middle markers towards their desired positions
+        for (int i = 1; i < 4; i++) {
+            double d = m_desired[i] - m_positions[i];
+            if ((d >= 1 && m_positions[i + 1] - m_positions[i] > 1)
+                    || (d <= -1 && m_positions[i - 1] - m_positions[i] < -1)) {
+                int sign = d > 0 ? 1 : -1;
+                double h = parabolic (i, sign);
+                if (m_heights[i - 1] < h && h < m_heights[i + 1]) {
+                    m_heights[i] = h;
+                } else {
+                    m_heights[i] = linear (i, sign);
+                }
+                m_positions[i] += sign;
+            }
+        }
+    }
+
+    private double parabolic (int i, int d) {
+        double n = m_positions[i];
+        double nPrev = m_positions[i - 1];
+        double nNext = m_positions[i + 1];
+        return m_heights[i] + d / (nNext - nPrev)
+                * ((n - nPrev + d) * (m_heights[i + 1] - m_heights[i]) / (nNext - n)
+                + (nNext - n - d) * (m_heights[i] - m_heights[i - 1]) / (n - nPrev));
+    }
+
+    private double linear (int i, int d) {
+        return m_heights[i] + d * (m_heights[i + d] - m_heights[i]) / (m_positions[i + d] - m_positions[i]);
+    }
+
+    /**
+     * @return the estimate of the quantile, or NaN if no value was added
+     */
+    public double value () {
+        if (m_count == 0) return Double.NaN;
+        if (m_count < 5) {
+            double[] sorted = Arrays.copyOf (m_heights, (int) m_count);
+            Arrays.sort (sorted);
+            return sorted[(int) Math.min (m_count - 1, Math.round (m_p * (m_count - 1)))];
+        }
+        return m_heights[2];
+    }
+
+    public long count () {
+        return m_count;
+    }
+
+    public double quantile () {
+        return m_p;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.gauges.stats;
+
+/**
+ * A window over the last N values of a stream, kept in a ring of primitive doubles. Adding a value does not allocate.
+ * The sum is maintained as values enter and leave the window; the minimum and maximum are found by scanning the
+ * window, which is meant to be small.
+ * <p>
+ * This class is not thread safe.
+ */
+public class SlidingWindow {
+
+    private final double[] m_values;
+    private int    m_next  = 0;
+    private int    m_size  = 0;
+    private double m_sum   = 0;
+    private long   m_count = 0;
+
+    /**
+     * @param capacity the number of values in the window
+     */
+    public SlidingWindow (int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException ("The window must hold at least one value");
+        m_values = new double[capacity];
+    }
+
+    /**
+     * Adds a value to the window, evicting the oldest one if the window is full
+     *
+     * @return the value that was evicted, or NaN if the window was not full
+     */
+    public double add (double value) {
+        double evicted = Double.NaN;
+        if (m_size == m_values.length) {
+            evicted = m_values[m_next];
+            m_sum -= evicted;
+        } else {
+            m_size++;
+        }
+        m_values[m_next] = value;
+        m_next = (m_next + 1) % m_values.length;
+        m_sum += value;
+        m_count++;
+        return evicted;
+    }
+
+    public int size () {
+        return m_size;
+    }
+
+    public int capacity () {
+        return m_values.length;
+    }
+
+    public boolean isFull () {
+        return m_size == m_values.length;
+    }
+
+    /**
+     * @return the number of values ever added to the window
+     */
+    public long count () {
+        return m_count;
+    }
+
+    public double sum () {
+        return m_sum;
+    }
+
+    /**
+     * @return the mean of the values in the window, or NaN if it is empty
+     */
+    public double mean () {
+        return m_size == 0 ? Double.NaN : m_sum / m_size;
+    }
+
+    /**
+     * @return the smallest value in the window, or NaN if it is empty
+     */
+    public double min () {
+        if (m_size == 0) return Double.NaN;
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < m_size; i++) {
+            min = Math.min (min, m_values[i]);
+        }
+        return min;
+    }
+
+    /**
+     * @return the largest value in the window, or NaN if it is empty
+     */
+    public double max () {
+        if (m_size == 0) return Double.NaN;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < m_size; i++) {
+            max = Math.max (max, m_values[i]);
+        }
+        return max;
+    }
+
+    /**
+     * @return the most recent value, or NaN if the window is empty
+     */
+    public double last () {
+        return m_size == 0 ? Double.NaN : m_values[(m_next + m_values.length - 1) % m_values.length];
+    }
+
+    public void clear () {
+        m_next = 0;
+        m_size = 0;
+        m_sum = 0;
+    }
+
+    @Override
+    public String toString () {
+        StringBuilder sb = new StringBuilder ("[");
+        int first = m_size == m_values.length ? m_next : 0;
+        for (int i = 0; i < m_size; i++) {
+            if (i > 0) {
+                sb.append (", ");
+            }
+            sb.append (m_values[(first + i) % m_values.length]);
+        }
+        return sb.append (']').toString ();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.gauges.stats;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps one statistic per key (e.g., per host or per model property), creating it the first time the key is seen.
+ * Gauges and models typically keep a sliding window or an average for every element they report on; after the first
+ * value for a key, updating its statistic does not allocate.
+ * <p>
+ * Subclasses say how to create the statistic for a new key, for example:
+ *
+ * <pre>
+ * StatisticsMap&lt;SlidingWindow&gt; windows = new StatisticsMap&lt;SlidingWindow&gt; () {
+ *     protected SlidingWindow create (String key) {
+ *         return new SlidingWindow (5);
+ *     }
+ * };
+ * double mean = windows.get (host).add (latency) ... windows.get (host).mean ();
+ * </pre>
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <S> the type of statistic
+ */
+public abstract class StatisticsMap<S> {
+
+    private final Map<String, S> m_statistics = new HashMap<> ();
+
+    /**
+     * Creates the statistic for a key that has not been seen before
+     */
+    protected abstract S create (String key);
+
+    /**
+     * @return the statistic for the key, created if the key is new
+     */
+    public S get (String key) {
+        S s = m_statistics.get (key);
+        if (s == null) {
+            s = create (key);
+            m_statistics.put (key, s);
+        }
+        return s;
+    }
+
+    /**
+     * @return the statistic for the key, or null if the key has not been seen
+     */
+    public S peek (String key) {
+        return m_statistics.get (key);
+    }
+
+    public boolean containsKey (String key) {
+        return m_statistics.containsKey (key);
+    }
+
+    public Set<String> keys () {
+        return Collections.unmodifiableSet (m_statistics.keySet ());
+    }
+
+    public void remove (String key) {
+        m_statistics.remove (key);
+    }
+
+    public void clear () {
+        m_statistics.clear ();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The utility functions and the weights of one scenario of a UtilityPreferenceDescription, resolved to array indices
+ * so that scoring does not look anything up by name. Each utility function is a dimension, numbered in the order of
+ * the utility names; a dimension with no weight in the scenario does not count towards scores.
+ * <p>
+ * Profiles are immutable; get them from {@link UtilityPreferenceDescription#compiledProfile(String)}.
+ */
+public class CompiledUtilityProfile {
+
+    private final String[]             m_names;
+    private final Map<String, Integer> m_index;
+    private final String[]             m_mappings;
+    private final UtilityFunction[]    m_functions;
+    /** The weight of each dimension, 0 if the scenario does not weigh it **/
+    private final double[]             m_weights;
+    private final boolean[]            m_weighted;
+
+    CompiledUtilityProfile (Map<String, UtilityFunction> functions, Map<String, Double> weights) {
+        Map<String, UtilityFunction> sorted = new TreeMap<> (functions);
+        int n = sorted.size ();
+        m_names = new String[n];
+        m_mappings = new String[n];
+        m_functions = new UtilityFunction[n];
+        m_weights = new double[n];
+        m_weighted = new boolean[n];
+        Map<String, Integer> index = new HashMap<> ();
+        int i = 0;
+        for (Map.Entry<String, UtilityFunction> e : sorted.entrySet ()) {
+            m_names[i] = e.getKey ();
+            m_functions[i] = e.getValue ();
+            m_mappings[i] = e.getValue ().mapping ();
+            Double w = weights == null ? null : weights.get (e.getKey ());
+            if (w != null) {
+                m_weights[i] = w;
+                m_weighted[i] = true;
+            }
+            index.put (e.getKey (), i);
+            i++;
+        }
+        m_index = Collections.unmodifiableMap (index);
+    }
+
+    public int dimensionCount () {
+        return m_names.length;
+    }
+
+    /**
+     * @return the number of the dimension of a utility, or -1 if there is no utility function with this name
+     */
+    public int dimension (String utility) {
+        Integer i = m_index.get (utility);
+        return i == null ? -1 : i;
+    }
+
+    public String name (int dimension) {
+        return m_names[dimension];
+    }
+
+    /**
+     * @return the model property that gives the current value of the dimension
+     */
+    public String mapping (int dimension) {
+        return m_mappings[dimension];
+    }
+
+    public boolean isWeighted (int dimension) {
+        return m_weighted[dimension];
+    }
+
+    public double weight (int dimension) {
+        return m_weights[dimension];
+    }
+
+    /**
+     * @return the utility of a value of a dimension
+     */
+    public double utility (int dimension, double value) {
+        return m_functions[dimension].f (value);
+    }
+
+    /**
+     * Computes the weighted utility of a vector of values
+     *
+     * @param values
+     *            the value of each dimension; NaN for dimensions that should not count
+     * @return the sum of the weighted utilities
+     */
+    public double score (double[] values) {
+        double score = 0.0;
+        for (int d = 0; d < m_names.length; d++) {
+            double v = values[d];
+            if (m_weighted[d] && v == v) {
+                score += m_weights[d] * m_functions[d].f (v);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Scores many candidates (such as the aggregate attributes of strategies) in one pass. The scores are computed a
+     * dimension at a time, so each utility function is used for every candidate before moving on to the next one.
+     *
+     * @param attributes
+     *            the value of each dimension for each candidate, by candidate then dimension; NaN for dimensions that
+     *            the candidate does not have, which do not count
+     * @param conditions
+     *            a value added to each dimension of every candidate before computing its utility (for example, the
+     *            current value of the mapped property), or null
+     * @param utilities
+     *            if not null, receives the (unweighted) utility of each dimension of each candidate, NaN for
+     *            dimensions the candidate does not have
+     * @return the weighted score of each candidate
+     */
+    public double[] scoreAll (double[][] attributes, double[] conditions, double[][] utilities) {
+        double[] scores = new double[attributes.length];
+        for (int d = 0; d < m_names.length; d++) {
+            UtilityFunction f = m_functions[d];
+            double w = m_weights[d];
+            double c = conditions == null ? 0.0 : conditions[d];
+            boolean weighted = m_weighted[d];
+            for (int s = 0; s < attributes.length; s++) {
+                double v = attributes[s][d];
+                if (v != v) {
+                    if (utilities != null) {
+                        utilities[s][d] = Double.NaN;
+                    }
+                    continue;
+                }
+                double u = f.f (v + c);
+                if (utilities != null) {
+                    utilities[s][d] = u;
+                }
+                if (weighted) {
+                    scores[s] += w * u;
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * @return a vector of values with no dimension set, to be filled in for score or scoreAll
+     */
+    public double[] emptyVector () {
+        double[] v = new double[m_names.length];
+        Arrays.fill (v, Double.NaN);
+        return v;
+    }
+
+}
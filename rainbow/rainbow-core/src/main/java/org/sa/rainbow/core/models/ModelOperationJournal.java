@@ -0,0 +1,359 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.models;
+
+import org.apache.log4j.Logger;
+import org.sa.rainbow.core.gauges.OperationRepresentation;
+import org.sa.rainbow.core.models.commands.IRainbowOperation;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the operations executed on a model, used to recover the model when Rainbow restarts.
+ * <p/>
+ * The journal is split into numbered segments, <code>&lt;model&gt;-&lt;type&gt;.&lt;n&gt;.journal</code>. Records are
+ * buffered and only forced to disk by {@link #sync()}, so that several operations are committed with one fsync. Each
+ * record is framed with its length and a CRC, so a record torn by a crash ends the replay instead of corrupting it.
+ * <p/>
+ * A snapshot of the model is stored as <code>&lt;model&gt;-&lt;type&gt;.&lt;n&gt;.snapshot</code>, which holds the
+ * state of the model before the operations in segment n. The model is recovered by loading the latest snapshot and
+ * replaying the segments from n on. Older segments and snapshots are deleted once a snapshot is complete.
+ */
+public class ModelOperationJournal implements Closeable {
+    static final Logger LOGGER = Logger.getLogger (ModelOperationJournal.class);
+
+    private static final String JOURNAL_SUFFIX  = ".journal";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String TEMP_SUFFIX     = ".tmp";
+
+    private final File           m_dir;
+    private final ModelReference m_ref;
+    private final String         m_prefix;
+    private final long           m_segmentSize;
+
+    private long             m_segment;
+    private FileOutputStream m_file;
+    private DataOutputStream m_out;
+    private long             m_segmentLength;
+    private boolean          m_dirty;
+
+    private final ByteArrayOutputStream m_record    = new ByteArrayOutputStream ();
+    private final DataOutputStream      m_recordOut = new DataOutputStream (m_record);
+    private final CRC32                 m_crc       = new CRC32 ();
+
+    /**
+     * Opens the journal of a model, starting a new segment after any existing ones.
+     *
+     * @param dir         the directory containing the journal
+     * @param ref         the model
+     * @param segmentSize the size, in bytes, after which a new segment is started
+     * @throws IOException
+     */
+    public ModelOperationJournal (File dir, ModelReference ref, long segmentSize) throws IOException {
+        m_dir = dir;
+        m_ref = ref;
+        m_prefix = ref.getModelName () + "-" + ref.getModelType () + ".";
+        m_segmentSize = segmentSize;
+        m_dir.mkdirs ();
+        List<Long> segments = segments (JOURNAL_SUFFIX);
+        Long snapshot = latestSnapshot ();
+        long next = segments.isEmpty () ? 0 : segments.get (segments.size () - 1) + 1;
+        if (snapshot != null) {
+            next = Math.max (next, snapshot);
+        }
+        openSegment (next);
+    }
+
+    private File file (long segment, String suffix) {
+        return new File (m_dir, m_prefix + String.format ("%010d", segment) + suffix);
+    }
+
+    /**
+     * @return the numbers of the existing files with the suffix, in ascending order
+     */
+    private List<Long> segments (String suffix) {
+        TreeMap<Long, File> found = new TreeMap<> ();
+        File[] files = m_dir.listFiles ();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName ();
+                if (name.startsWith (m_prefix) && name.endsWith (suffix)) {
+                    try {
+                        found.put (Long.parseLong (name.substring (m_prefix.length (), name.length ()
+                                - suffix.length ())), f);
+                    }
+                    catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+        return new ArrayList<> (found.keySet ());
+    }
+
+    private void openSegment (long segment) throws IOException {
+        m_segment = segment;
+        m_file = new FileOutputStream (file (segment, JOURNAL_SUFFIX), true);
+        m_out = new DataOutputStream (new BufferedOutputStream (m_file, 64 * 1024));
+        m_segmentLength = m_file.getChannel ().size ();
+        m_dirty = false;
+    }
+
+    /**
+     * Appends an operation to the journal. The operation is not durable until the next call to {@link #sync()}.
+     *
+     * @param op      the operation
+     * @param success whether the operation was executed successfully
+     * @throws IOException
+     */
+    public synchronized void append (IRainbowOperation op, boolean success) throws IOException {
+        m_record.reset ();
+        m_recordOut.writeLong (System.currentTimeMillis ());
+        m_recordOut.writeBoolean (success);
+        m_recordOut.writeUTF (op.getName ());
+        m_recordOut.writeUTF (op.getTarget () == null ? "" : op.getTarget ());
+        String[] parameters = op.getParameters ();
+        m_recordOut.writeInt (parameters.length);
+        for (String p : parameters) {
+            m_recordOut.writeUTF (p == null ? "" : p);
+        }
+        m_recordOut.writeUTF (op.getOrigin () == null ? "" : op.getOrigin ());
+        m_recordOut.flush ();
+
+        m_crc.reset ();
+        m_crc.update (m_record.toByteArray (), 0, m_record.size ());
+        m_out.writeInt (m_record.size ());
+        m_record.writeTo (m_out);
+        m_out.writeInt ((int )m_crc.getValue ());
+        m_segmentLength += m_record.size () + 8;
+        m_dirty = true;
+
+        if (m_segmentLength >= m_segmentSize) {
+            sync ();
+            close ();
+            openSegment (m_segment + 1);
+        }
+    }
+
+    /**
+     * Forces the records appended since the last sync to disk
+     *
+     * @throws IOException
+     */
+    public synchronized void sync () throws IOException {
+        if (!m_dirty) return;
+        m_out.flush ();
+        m_file.getFD ().sync ();
+        m_dirty = false;
+    }
+
+    /**
+     * Starts a new segment for the operations that will follow a snapshot. The caller should write the snapshot to
+     * the returned file, without any operations being executed in the meantime, and then call
+     * {@link #snapshotTaken(File)}.
+     *
+     * @return the file to write the snapshot to
+     * @throws IOException
+     */
+    public synchronized File startSnapshot () throws IOException {
+        sync ();
+        close ();
+        openSegment (m_segment + 1);
+        return file (m_segment, SNAPSHOT_SUFFIX + TEMP_SUFFIX);
+    }
+
+    /**
+     * Completes a snapshot started with {@link #startSnapshot()}, deleting the segments and snapshots it replaces.
+     *
+     * @param snapshot the file returned by startSnapshot, which now contains the snapshot
+     * @throws IOException
+     */
+    public synchronized void snapshotTaken (File snapshot) throws IOException {
+        String name = snapshot.getName ();
+        File target = new File (snapshot.getParentFile (), name.substring (0, name.length () - TEMP_SUFFIX.length ()));
+        if (!snapshot.renameTo (target))
+            throw new IOException (MessageFormat.format ("Could not rename {0} to {1}", snapshot, target));
+        long first = segmentOf (target, SNAPSHOT_SUFFIX);
+        for (long s : segments (JOURNAL_SUFFIX)) {
+            if (s < first) {
+                file (s, JOURNAL_SUFFIX).delete ();
+            }
+        }
+        for (long s : segments (SNAPSHOT_SUFFIX)) {
+            if (s < first) {
+                file (s, SNAPSHOT_SUFFIX).delete ();
+            }
+        }
+    }
+
+    private long segmentOf (File f, String suffix) {
+        String name = f.getName ();
+        return Long.parseLong (name.substring (m_prefix.length (), name.length () - suffix.length ()));
+    }
+
+    private Long latestSnapshot () {
+        List<Long> snapshots = segments (SNAPSHOT_SUFFIX);
+        return snapshots.isEmpty () ? null : snapshots.get (snapshots.size () - 1);
+    }
+
+    /**
+     * @return the latest complete snapshot of the model, or null if there is none
+     */
+    public synchronized File getSnapshot () {
+        Long snapshot = latestSnapshot ();
+        return snapshot == null ? null : file (snapshot, SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Reads the operations that were executed successfully since the latest snapshot (or since the journal was
+     * started, if there is no snapshot), in the order in which they were executed. Reading stops at the first record
+     * that is incomplete or corrupt.
+     *
+     * @return the operations
+     * @throws IOException
+     */
+    public synchronized List<IRainbowOperation> readOperations () throws IOException {
+        Long snapshot = latestSnapshot ();
+        List<IRainbowOperation> ops = new ArrayList<> ();
+        for (long s : segments (JOURNAL_SUFFIX)) {
+            if ((snapshot != null && s < snapshot) || s == m_segment) {
+                continue;
+            }
+            if (!readSegment (file (s, JOURNAL_SUFFIX), ops)) {
+                break;
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * @return false if the segment ended with a torn or corrupt record
+     */
+    private boolean readSegment (File segment, List<IRainbowOperation> ops) throws IOException {
+        try (DataInputStream in = new DataInputStream (new BufferedInputStream (new FileInputStream (segment)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt ();
+                }
+                catch (EOFException e) {
+                    return true;
+                }
+                if (length <= 0 || length > m_segmentSize + 1024 * 1024) {
+                    LOGGER.warn (MessageFormat.format ("Corrupt record in {0}; ignoring the rest of the journal",
+                            segment));
+                    return false;
+                }
+                byte[] record = new byte[length];
+                int crc;
+                try {
+                    in.readFully (record);
+                    crc = in.readInt ();
+                }
+                catch (EOFException e) {
+                    LOGGER.warn (MessageFormat.format ("Incomplete record at the end of {0}", segment));
+                    return false;
+                }
+                m_crc.reset ();
+                m_crc.update (record, 0, record.length);
+                if ((int )m_crc.getValue () != crc) {
+                    LOGGER.warn (MessageFormat.format ("Corrupt record in {0}; ignoring the rest of the journal",
+                            segment));
+                    return false;
+                }
+                IRainbowOperation op = decode (record);
+                if (op != null) {
+                    ops.add (op);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the operation, or null if it was not executed successfully
+     */
+    private IRainbowOperation decode (byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream (new ByteArrayInputStream (record));
+        in.readLong ();
+        boolean success = in.readBoolean ();
+        String name = in.readUTF ();
+        String target = in.readUTF ();
+        String[] parameters = new String[in.readInt ()];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = in.readUTF ();
+        }
+        String origin = in.readUTF ();
+        if (!success) return null;
+        OperationRepresentation op = new OperationRepresentation (name, m_ref, target, parameters);
+        op.setOrigin (origin.isEmpty () ? null : origin);
+        return op;
+    }
+
+    /**
+     * Deletes all the segments and snapshots of the journal, and starts again with an empty segment
+     *
+     * @throws IOException
+     */
+    public synchronized void clear () throws IOException {
+        close ();
+        for (long s : segments (JOURNAL_SUFFIX)) {
+            file (s, JOURNAL_SUFFIX).delete ();
+        }
+        for (long s : segments (SNAPSHOT_SUFFIX)) {
+            file (s, SNAPSHOT_SUFFIX).delete ();
+        }
+        openSegment (0);
+    }
+
+    @Override
+    public synchronized void close () throws IOException {
+        if (m_out != null) {
+            m_out.flush ();
+            m_out.close ();
+            m_out = null;
+            m_file = null;
+        }
+    }
+
+    List<Long> getSegments () {
+        return Collections.unmodifiableList (segments (JOURNAL_SUFFIX));
+    }
+}
@@ -32,20 +32,25 @@ import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.sa.rainbow.core.AbstractRainbowRunnable;
@@ -61,6 +66,7 @@ import org.sa.rainbow.core.models.commands.AbstractLoadModelCmd;
 import org.sa.rainbow.core.models.commands.AbstractSaveModelCmd;
 import org.sa.rainbow.core.models.commands.IRainbowModelOperation;
 import org.sa.rainbow.core.models.commands.IRainbowOperation;
+import org.sa.rainbow.core.models.commands.OperationCoalescer;
 import org.sa.rainbow.core.ports.DisconnectedRainbowDelegateConnectionPort;
 import org.sa.rainbow.core.ports.IModelChangeBusPort;
 import org.sa.rainbow.core.ports.IModelUSBusPort;
@@ -106,8 +112,51 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
 
     protected final Map<ModelReference, File> m_modelsToSave = new HashMap<> ();
 
+    /**
+     * The logs of the operations executed on each model, which are always kept whether or not models are recovered
+     **/
     protected final Map<ModelReference, FileChannel> m_modelLogs = new HashMap<> ();
 
+    /**
+     * The journals of the operations executed on each model, used to recover the models
+     **/
+    protected final Map<ModelReference, ModelOperationJournal> m_journals = new HashMap<> ();
+
+    /**
+     * The models that have changed since their last snapshot
+     **/
+    private final Set<ModelReference> m_changedSinceSnapshot = new HashSet<> ();
+
+    public static final long DEFAULT_SNAPSHOT_PERIOD = 300000;
+
+    public static final long DEFAULT_JOURNAL_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private long m_snapshotPeriod = DEFAULT_SNAPSHOT_PERIOD;
+
+    private long m_lastSnapshot = System.currentTimeMillis ();
+
+    /**
+     * The default maximum number of queued entries executed together
+     **/
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * The maximum number of queued entries executed together; 1 disables batching
+     **/
+    private int m_batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * How long, in milliseconds, to wait for more entries before executing a batch
+     **/
+    private long m_batchLatency = 0;
+
+    /**
+     * Coalesces the updates of each batch, or null if updates are not coalesced
+     **/
+    private OperationCoalescer m_coalescer;
+
+    private long m_executedUpdates = 0;
+
     public ModelsManager () {
         super ("Models Manager");
         try {
@@ -121,6 +170,16 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
     @Override
     public void initialize (IRainbowReportingPort port) throws RainbowConnectionException {
         super.initialize (port);
+        m_batchSize = Math.max (1, m_rainbowEnvironment.getProperty (RainbowConstants.PROPKEY_MODEL_BATCH_SIZE,
+                DEFAULT_BATCH_SIZE));
+        m_batchLatency = Math.max (0, m_rainbowEnvironment.getProperty (RainbowConstants.PROPKEY_MODEL_BATCH_LATENCY,
+                0L));
+        if (m_rainbowEnvironment.getProperty (RainbowConstants.PROPKEY_MODEL_COALESCE, false)) {
+            m_coalescer = new OperationCoalescer (m_rainbowEnvironment.getProperty (
+                    RainbowConstants.PROPKEY_COALESCE_OPERATIONS, OperationCoalescer.DEFAULT_COALESCIBLE_OPERATIONS));
+        }
+        m_snapshotPeriod = m_rainbowEnvironment.getProperty (RainbowConstants.PROPKEY_MODEL_SNAPSHOT_PERIOD,
+                DEFAULT_SNAPSHOT_PERIOD);
         initializeConnections ();
         initializeModels ();
     }
@@ -165,19 +224,28 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
                                             " to generate modelInstances",
                                             method.getDeclaringClass ()
                                             .getCanonicalName ()));
-                AbstractLoadModelCmd load = (AbstractLoadModelCmd) method.invoke (null, this, modelName,
-                        modelPath == null ? null : new
-                                FileInputStream (modelPath)
-                                , modelPath == null ? null
-                                        : modelPath.getAbsolutePath
-                                        ());
-                List<? extends IRainbowMessage> events = load.execute (null, m_changeBusPort);
-                // Announce the loading on the change bus.
-                // Q: should this be done in clients or in the commands themselves?
-                if (m_changeBusPort != null) {
-                    m_changeBusPort.announce (events);
+                String source = modelPath == null ? null : modelPath.getAbsolutePath ();
+                AbstractLoadModelCmd<?> load = (AbstractLoadModelCmd<?>) method.invoke (null, this, modelName,
+                        modelPath == null ? null : new FileInputStream (modelPath), source);
+
+                // If models are recovered, open the operation journal and load the model from its latest snapshot
+                // instead of its source
+                ModelOperationJournal journal = null;
+                File snapshot = null;
+                if (m_rainbowEnvironment.getProperty (RainbowConstants.PROPKEY_MODEL_RECOVER, false)) {
+                    journal = openJournal (load.getModelReference ());
+                    snapshot = journal == null ? null : journal.getSnapshot ();
+                    if (snapshot != null) {
+                        closeQuietly (load.getStream ());
+                        load = (AbstractLoadModelCmd<?>) method.invoke (null, this, modelName,
+                                new FileInputStream (snapshot), source);
+                    }
+                }
+                IModelInstance<?> instance = loadModel (load);
+                if (journal != null) {
+                    replayJournal (instance, journal, snapshot);
+                    m_journals.put (load.getModelReference (), journal);
                 }
-                IModelInstance instance = (IModelInstance) load.getResult ();
                 boolean toSave = saveOnClose == null ? false : Boolean.valueOf (saveOnClose);
                 ModelReference ref = new ModelReference (instance.getModelName (), instance.getModelType ());
                 if (toSave) {
@@ -192,8 +260,7 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
                 }
 
                 // Open log files
-                File targetPath = Rainbow.instance ().getTargetPath ();
-                File logPath = new File (targetPath, "log");
+                File logPath = new File (Rainbow.instance ().getTargetPath (), "log");
                 logPath.mkdirs ();
                 File logFile = new File (logPath, ref.getModelName () + "-" + ref.getModelType () + ".log");
 
@@ -240,6 +307,72 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
         }
     }
 
+    private IModelInstance<?> loadModel (AbstractLoadModelCmd<?> load) throws RainbowException {
+        List<? extends IRainbowMessage> events = load.execute (null, m_changeBusPort);
+        // Announce the loading on the change bus.
+        // Q: should this be done in clients or in the commands themselves?
+        if (m_changeBusPort != null) {
+            m_changeBusPort.announce (events);
+        }
+        return load.getResult ();
+    }
+
+    /**
+     * Opens the operation journal of a model, which is only kept when models are recovered
+     *
+     * @return the journal, or null if it could not be opened
+     */
+    private ModelOperationJournal openJournal (ModelReference ref) {
+        File logPath = new File (Rainbow.instance ().getTargetPath (), "log");
+        try {
+            return new ModelOperationJournal (logPath, ref, m_rainbowEnvironment.getProperty (
+                    RainbowConstants.PROPKEY_MODEL_JOURNAL_SEGMENT_SIZE, DEFAULT_JOURNAL_SEGMENT_SIZE));
+        } catch (IOException e) {
+            m_reportingPort.error (getComponentType (), MessageFormat.format (
+                    "Could not open the operation journal of {0}. It will not be recovered.", ref), e, LOGGER);
+            return null;
+        }
+    }
+
+    private static void closeQuietly (InputStream is) {
+        if (is != null) {
+            try {
+                is.close ();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Brings a model loaded from its latest snapshot (or from its source, if there is no snapshot) up to date with the
+     * state it had when Rainbow last stopped, by executing the operations journaled since the snapshot again
+     *
+     * @param snapshot the snapshot the model was loaded from, or null if it was loaded from its source
+     */
+    private void replayJournal (IModelInstance<?> instance, ModelOperationJournal journal, File snapshot) {
+        try {
+            List<IRainbowOperation> ops = journal.readOperations ();
+            int replayed = 0;
+            synchronized (instance.getModelInstance ()) {
+                for (IRainbowOperation op : ops) {
+                    try {
+                        execute (setupCommand (op, instance), instance);
+                        replayed++;
+                    } catch (IllegalStateException | RainbowException e) {
+                        LOGGER.warn (MessageFormat.format ("Could not replay {0} on {1}:{2}", op,
+                                instance.getModelName (), instance.getModelType ()), e);
+                    }
+                }
+            }
+            m_reportingPort.info (getComponentType (), MessageFormat.format (
+                    "Recovered {0}:{1} from {2} and {3} journaled operations", instance.getModelName (),
+                    instance.getModelType (), snapshot == null ? "its source" : snapshot.getName (), replayed), LOGGER);
+        } catch (IOException e) {
+            m_reportingPort.error (getComponentType (), MessageFormat.format ("Could not recover {0}:{1}",
+                    instance.getModelName (), instance.getModelType ()), e, LOGGER);
+        }
+    }
+
     private void initializeConnections () {
         try {
             // Publish to change bus
@@ -407,7 +540,7 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
     public void requestModelUpdate (IRainbowOperation command) throws IllegalStateException,
     RainbowException {
         commandQ.offer (command);
-
+        wakeUp ();
 
     }
 
@@ -433,6 +566,15 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
         return rcmd;
     }
 
+    /**
+     * Executes a command on the model instance that it was set up for (see setupCommand)
+     */
+    @SuppressWarnings ("unchecked")
+    private <T> List<? extends IRainbowMessage> execute (IRainbowModelOperation<?, ?> cmd, IModelInstance<T> instance)
+            throws IllegalStateException, RainbowException {
+        return ((IRainbowModelOperation<?, T>) cmd).execute (instance, m_changeBusPort);
+    }
+
     @Override
     public void requestModelUpdate (List<IRainbowOperation> commands, boolean transaction) {
         LOGGER.info (MessageFormat.format ("Updating the model with {0} commands, transaction = {1}", commands.size (),
@@ -446,6 +588,7 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
                 commandQ.offer (command);
             }
         }
+        wakeUp ();
 
     }
 
@@ -492,40 +635,226 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
 
     }
 
+    /**
+     * Executes the queued model updates. If batching is enabled (the default), this waits on the queue for the length
+     * of a cycle instead of sleeping, and executes whatever has queued up as a batch as soon as it arrives. Otherwise
+     * one update is executed per cycle.
+     */
     @Override
-    protected synchronized void runAction () {
-        Object poll = commandQ.poll ();
-        if (poll instanceof IRainbowOperation) {
-            try {
-                IRainbowOperation command = (IRainbowOperation) poll;
-                IModelInstance<?> modelInstance = getModelInstance (command.getModelReference ());
-                if (modelInstance == null) {
-                    reportingPort ().error (RainbowComponentT.MODEL,
-                            MessageFormat.format ("Could not find model {0} for " +
-                                    "command: {1}",
-                                    command.getModelReference ().toString (),
-                                    command.toString ()));
-                    return;
+    protected void runAction () {
+        if (m_batchSize <= 1) {
+            synchronized (this) {
+                Object queued = commandQ.poll ();
+                if (queued != null) {
+                    m_executedUpdates++;
                 }
-                IRainbowModelOperation cmd = setupCommand (command, modelInstance);
-                List<? extends IRainbowMessage> events;
-                synchronized (modelInstance.getModelInstance ()) {
-                    events = cmd.execute (modelInstance, m_changeBusPort);
+                executeQueued (queued);
+                snapshotModels ();
+            }
+            if (isEventDriven () && !commandQ.isEmpty ()) {
+                wakeUp ();
+            }
+            return;
+        }
+        if (isEventDriven ()) {
+            runBatch ();
+            return;
+        }
+
+        // Return by the end of the cycle so that the runnable can still be stopped or terminated
+        long end = System.currentTimeMillis () + sleepTime ();
+        List<Object> batch = new ArrayList<> (m_batchSize);
+        try {
+            long remaining;
+            while ((remaining = end - System.currentTimeMillis ()) > 0) {
+                Object first = commandQ.poll (remaining, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    break;
                 }
-                if (events.size () > 0) {
-                    m_reportingPort.info (RainbowComponentT.MODEL, MessageFormat.format (
-                            "Executing {0}", command.toString ()));
+                batch.add (first);
+                fillBatch (batch);
+                synchronized (this) {
+                    executeBatch (batch);
+                    snapshotModels ();
                 }
-                if (cmd.canUndo () && events.size () > 0) {
-                    // The command executed correctly if we can undo it.
-                    // Announce all the changes on the the change bus
-                    m_changeBusPort.announce (events);
-                    logModelOperation (command, true);
-                } else {
-                    logModelOperation (command, false);
+                batch.clear ();
+            }
+        } catch (InterruptedException e) {
+            // Being terminated
+        }
+    }
+
+    /**
+     * Executes one batch of the queued model updates without waiting for the first one, so as not to hold a thread of
+     * the shared scheduler, and asks to be woken up again if more are queued.
+     */
+    private void runBatch () {
+        Object first = commandQ.poll ();
+        if (first == null) return;
+        List<Object> batch = new ArrayList<> (m_batchSize);
+        batch.add (first);
+        try {
+            fillBatch (batch);
+        } catch (InterruptedException e) {
+            // Execute what is already in the batch
+        }
+        synchronized (this) {
+            executeBatch (batch);
+            snapshotModels ();
+        }
+        if (!commandQ.isEmpty ()) {
+            wakeUp ();
+        }
+    }
+
+    /**
+     * @return the number of model updates that were not executed because a newer update of the same property was
+     * queued after them
+     */
+    public long getCoalescedUpdateCount () {
+        return m_coalescer == null ? 0 : m_coalescer.getCoalescedCount ();
+    }
+
+    /**
+     * @return the number of model updates (or transactions) that were executed after coalescing
+     */
+    public synchronized long getExecutedUpdateCount () {
+        return m_executedUpdates;
+    }
+
+    /**
+     * Adds queued model updates to a batch, waiting up to the batch latency for more to arrive
+     *
+     * @param batch the batch, which already contains the first update
+     * @throws InterruptedException
+     */
+    private void fillBatch (List<Object> batch) throws InterruptedException {
+        commandQ.drainTo (batch, m_batchSize - batch.size ());
+        long deadline = System.currentTimeMillis () + m_batchLatency;
+        long remaining;
+        while (batch.size () < m_batchSize && (remaining = deadline - System.currentTimeMillis ()) > 0) {
+            Object next = commandQ.poll (remaining, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add (next);
+            commandQ.drainTo (batch, m_batchSize - batch.size ());
+        }
+    }
+
+    /**
+     * Executes a batch of model updates in the order they were queued. Runs of consecutive commands on the same model
+     * are grouped, and each group is executed under one lock of the model and announced on the change bus in one go.
+     * Transactions are executed as before, after the commands that were queued ahead of them.
+     *
+     * @param batch the queued updates, in order
+     */
+    private void executeBatch (List<Object> batch) {
+        if (m_coalescer != null) {
+            m_coalescer.coalesce (batch);
+        }
+        m_executedUpdates += batch.size ();
+        IModelInstance<?> groupModel = null;
+        List<IRainbowOperation> group = new ArrayList<> ();
+        for (Object queued : batch) {
+            if (queued instanceof IRainbowOperation) {
+                IRainbowOperation command = (IRainbowOperation) queued;
+                IModelInstance<?> modelInstance = findModelFor (command);
+                if (modelInstance != null) {
+                    if (modelInstance != groupModel) {
+                        executeGroup (groupModel, group);
+                        groupModel = modelInstance;
+                    }
+                    group.add (command);
                 }
-            } catch (IllegalStateException | RainbowException e) {
-                e.printStackTrace ();
+            } else {
+                executeGroup (groupModel, group);
+                groupModel = null;
+                executeQueued (queued);
+            }
+        }
+        executeGroup (groupModel, group);
+    }
+
+    private void executeGroup (IModelInstance<?> modelInstance, List<IRainbowOperation> group) {
+        if (!group.isEmpty ()) {
+            executeCommands (modelInstance, group);
+            group.clear ();
+        }
+    }
+
+    private IModelInstance<?> findModelFor (IRainbowOperation command) {
+        IModelInstance<?> modelInstance = getModelInstance (command.getModelReference ());
+        if (modelInstance == null) {
+            reportingPort ().error (RainbowComponentT.MODEL,
+                    MessageFormat.format ("Could not find model {0} for " +
+                            "command: {1}",
+                            command.getModelReference ().toString (),
+                            command.toString ()));
+        }
+        return modelInstance;
+    }
+
+    /**
+     * Executes commands on a model while holding its lock, and announces the events of those that succeeded together
+     *
+     * @param modelInstance the model
+     * @param commands      the commands, in order
+     */
+    private void executeCommands (IModelInstance<?> modelInstance, List<IRainbowOperation> commands) {
+        List<IRainbowMessage> events = new LinkedList<> ();
+        synchronized (modelInstance.getModelInstance ()) {
+            for (IRainbowOperation command : commands) {
+                events.addAll (executeCommand (modelInstance, command));
+            }
+        }
+        // Commit the group of commands to the journal before announcing it
+        syncJournal (new ModelReference (modelInstance.getModelName (), modelInstance.getModelType ()));
+        if (!events.isEmpty ()) {
+            // Announce all the changes on the the change bus
+            m_changeBusPort.announce (events);
+        }
+    }
+
+    /**
+     * Executes a command on a model. The caller must hold the lock on the model.
+     *
+     * @return the events to announce, which are empty if the command did not change the model
+     */
+    private List<? extends IRainbowMessage> executeCommand (IModelInstance<?> modelInstance,
+                                                            IRainbowOperation command) {
+        try {
+            IRainbowModelOperation<?, ?> cmd = setupCommand (command, modelInstance);
+            List<? extends IRainbowMessage> events = execute (cmd, modelInstance);
+            if (events.size () > 0) {
+                m_reportingPort.info (RainbowComponentT.MODEL, MessageFormat.format (
+                        "Executing {0}", command.toString ()));
+            }
+            if (cmd.canUndo () && events.size () > 0) {
+                // The command executed correctly if we can undo it.
+                logModelOperation (command, true);
+                return events;
+            } else {
+                logModelOperation (command, false);
+            }
+        } catch (IllegalStateException | RainbowException e) {
+            m_reportingPort.error (getComponentType (), MessageFormat.format ("Could not execute {0}", command), e,
+                    LOGGER);
+        }
+        return Collections.emptyList ();
+    }
+
+    /**
+     * Executes an entry of the command queue: a single command or a transaction
+     *
+     * @param poll the entry, which may be null
+     */
+    private void executeQueued (Object poll) {
+        if (poll instanceof IRainbowOperation) {
+            IRainbowOperation command = (IRainbowOperation) poll;
+            IModelInstance<?> modelInstance = findModelFor (command);
+            if (modelInstance != null) {
+                executeCommands (modelInstance, Collections.singletonList (command));
             }
         } else if (poll instanceof List) {
             List<IRainbowOperation> commands = (List<IRainbowOperation>) poll;
@@ -604,9 +933,10 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
                             }
                         }
                     } else {
+                        logModelOperations (commands, true);
+                        syncJournal (c.getModelReference ());
                         // Announce the changes
                         m_changeBusPort.announce (events);
-                        logModelOperations (commands, true);
                     }
                 }
             }
@@ -625,12 +955,82 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
             Date d = new Date ();
             String log = MessageFormat.format ("{0,number,#},{1},{2}\n", d.getTime (), command.toString (), success);
             try {
-                file.write (java.nio.ByteBuffer.wrap (log.getBytes ()));
+                file.write (ByteBuffer.wrap (log.getBytes ()));
             } catch (IOException e) {
                 LOGGER.error ("Failed to write " + log + " to log file");
             }
         }
+        // The journal, which is only kept when models are recovered, is written separately
+        ModelOperationJournal journal = m_journals.get (command.getModelReference ());
+        if (journal != null) {
+            try {
+                journal.append (command, success);
+                if (success) {
+                    m_changedSinceSnapshot.add (command.getModelReference ());
+                }
+            } catch (IOException e) {
+                LOGGER.error ("Failed to write " + command + " to the operation journal", e);
+            }
+        }
+
+    }
+
+    private void syncJournal (ModelReference ref) {
+        ModelOperationJournal journal = m_journals.get (ref);
+        if (journal != null) {
+            try {
+                journal.sync ();
+            } catch (IOException e) {
+                LOGGER.error ("Failed to sync the operation journal of " + ref, e);
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the models that changed since the last one, if the snapshot period has elapsed. This is
+     * called between batches, so no command is executing.
+     */
+    private void snapshotModels () {
+        long now = System.currentTimeMillis ();
+        if (m_snapshotPeriod <= 0 || now - m_lastSnapshot < m_snapshotPeriod) return;
+        m_lastSnapshot = now;
+        for (ModelReference ref : m_changedSinceSnapshot) {
+            snapshotModel (ref);
+        }
+        m_changedSinceSnapshot.clear ();
+    }
+
+    private void snapshotModel (ModelReference ref) {
+        IModelInstance<?> model = getModelInstance (ref);
+        ModelOperationJournal journal = m_journals.get (ref);
+        if (model == null || journal == null) return;
+        try {
+            File snapshot;
+            synchronized (model.getModelInstance ()) {
+                snapshot = journal.startSnapshot ();
+                if (!save (model, snapshot.getAbsolutePath ())) return;
+            }
+            // Saving does not always report failures, so do not replace a good snapshot with an empty one
+            if (snapshot.length () > 0) {
+                journal.snapshotTaken (snapshot);
+            } else {
+                snapshot.delete ();
+            }
+        } catch (IOException | IllegalStateException | RainbowException e) {
+            m_reportingPort.error (getComponentType (), "Failed to take a snapshot of " + ref, e, LOGGER);
+        }
+    }
 
+    /**
+     * Saves a model with the save command of its command factory
+     *
+     * @return false if the model has no save command
+     */
+    private static <T> boolean save (IModelInstance<T> model, String location) throws RainbowException {
+        AbstractSaveModelCmd<T> saveCommand = model.getCommandFactory ().saveCommand (location);
+        if (saveCommand == null) return false;
+        saveCommand.execute (model, null);
+        return true;
     }
 
 
@@ -647,6 +1047,13 @@ public class ModelsManager extends AbstractRainbowRunnable implements IModelsMan
             } catch (IOException e) {
             }
         }
+        for (ModelOperationJournal journal : m_journals.values ()) {
+            try {
+                journal.sync ();
+                journal.close ();
+            } catch (IOException e) {
+            }
+        }
         super.doTerminate ();
     }
 
@@ -4,6 +4,8 @@
 package org.sa.rainbow.core.models;
 
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -51,6 +53,11 @@ public class UtilityFunction {
 
     private SortedMap<Double,Double> m_values = null;
 
+    /** The domain values, in increasing order, and their range values, used by f() **/
+    private final double[] m_xs;
+
+    private final double[] m_ys;
+
     /**
      * Main Constructor
      */
@@ -68,6 +75,14 @@ public class UtilityFunction {
                 m_values.put(((Number )k).doubleValue(), ((Number )v).doubleValue());
             }
         }
+        m_xs = new double[m_values.size ()];
+        m_ys = new double[m_values.size ()];
+        int i = 0;
+        for (Map.Entry<Double, Double> e : m_values.entrySet ()) {
+            m_xs[i] = e.getKey ();
+            m_ys[i] = e.getValue ();
+            i++;
+        }
     }
 
     /* (non-Javadoc)
@@ -115,7 +130,7 @@ public class UtilityFunction {
 
 
     public Map<Double,Double> values () {
-        return m_values;
+        return Collections.unmodifiableMap (m_values);
     }
 
     /**
@@ -126,25 +141,22 @@ public class UtilityFunction {
      *   <code>f(x) = f(a) + ( (f(b)-f(a))/(b-a) * (x-a) )</code>
      * If x falls below the lowest domain value x_L, then return f(x_L).
      * If x falls above the highest domain value x_H, then return f(x_H).
+     * A function with no values returns 0.
      * @param x  supplied x for which to compute utility value
      * @return exact or estimated value
      */
     public double f (double x) {
-        double rv = 0.0;
-        if (m_values.containsKey(x)) {
-            rv = m_values.get(x);
-        } else if (x < m_values.firstKey()) {
-            rv = m_values.get(m_values.firstKey());
-        } else if (x > m_values.lastKey()) {
-            rv = m_values.get(m_values.lastKey());
-        } else {  // x falls between two known values, extrapolte
-            double a = m_values.headMap(x).lastKey();
-            double b = m_values.tailMap(x).firstKey();
-            double f_a = m_values.get(a);
-            double f_b = m_values.get(b);
-            rv = f_a + ((f_b-f_a)/(b-a))*(x-a);
-        }
-        return rv;
+        int n = m_xs.length;
+        if (n == 0) return 0.0;
+        int i = Arrays.binarySearch (m_xs, x);
+        if (i >= 0) return m_ys[i];
+        // i = -(insertion point) - 1, where the insertion point is the index of the first value above x
+        int b = -i - 1;
+        if (b == 0) return m_ys[0];
+        if (b == n) return m_ys[n - 1];
+        // x falls between two known values, extrapolate
+        int a = b - 1;
+        return m_ys[a] + ((m_ys[b] - m_ys[a]) / (m_xs[b] - m_xs[a])) * (x - m_xs[a]);
     }
 
 }
@@ -27,6 +27,7 @@ package org.sa.rainbow.core.models;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class holds utility preference information parsed from the description file (usu. Yaml).
@@ -63,6 +64,9 @@ public class UtilityPreferenceDescription {
 
     private Map<String, UtilityFunction>    utilityFunctions = null;
 
+    /** Compiled profiles, by scenario; cleared when a utility is added **/
+    private final ConcurrentHashMap<String, CompiledUtilityProfile> compiledProfiles = new ConcurrentHashMap<> ();
+
     /**
      * Default Constructor.
      */
@@ -76,6 +80,7 @@ public class UtilityPreferenceDescription {
     public void addAttributes (String label, UtilityAttributes atts) {
         utilities.put (label, atts);
         utilityFunctions.put (label, new UtilityFunction (label, atts.label, atts.mapping, atts.desc, atts.values));
+        compiledProfiles.clear ();
     }
 
 
@@ -83,5 +88,26 @@ public class UtilityPreferenceDescription {
         return Collections.unmodifiableMap (utilityFunctions);
     }
 
+    /**
+     * Returns the utility functions with the weights of a scenario resolved to array indices. The profile is compiled
+     * the first time it is asked for, so the weights should not be changed after that.
+     *
+     * @param scenario
+     *            the name of the scenario whose weights to use; if the scenario has no weights, no dimension is
+     *            weighted
+     */
+    public CompiledUtilityProfile compiledProfile (String scenario) {
+        String key = scenario == null ? "" : scenario;
+        CompiledUtilityProfile profile = compiledProfiles.get (key);
+        if (profile == null) {
+            profile = new CompiledUtilityProfile (utilityFunctions, weights == null ? null : weights.get (scenario));
+            CompiledUtilityProfile existing = compiledProfiles.putIfAbsent (key, profile);
+            if (existing != null) {
+                profile = existing;
+            }
+        }
+        return profile;
+    }
+
 
 }
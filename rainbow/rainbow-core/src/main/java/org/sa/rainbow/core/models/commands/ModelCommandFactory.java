@@ -31,15 +31,26 @@ import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class ModelCommandFactory<T> {
     private final Class<? extends IModelInstance<T>> m_instanceClass;
     protected final IModelInstance<T> m_modelInstance;
     protected final Map<String, Class<? extends AbstractRainbowModelOperation<?, T>>> m_commandMap = new HashMap<> ();
 
+    /**
+     * The constructors of the commands that have been generated, by command name (as requested) and then by number of
+     * arguments, so that the command map, reflection, and the constructors are only searched once per command
+     */
+    private final ConcurrentMap<String, List<Constructor<? extends AbstractRainbowModelOperation<?, T>>>>
+            m_constructors = new ConcurrentHashMap<> ();
+
     /**
      * Is used by the ModelsManager to load a model into Rainbow. The ModelsManager looks for this method through
      * reflection on the command factory.
@@ -89,28 +100,11 @@ public abstract class ModelCommandFactory<T> {
     public IRainbowModelOperation<?, T> generateCommand (String commandName, String... args)
             throws RainbowModelException {
         try {
-            Class<? extends AbstractRainbowModelOperation<?, T>> cmdClass = m_commandMap
-                    .get (commandName.toLowerCase ());
-            if (cmdClass == null) {
-                cmdClass = tryThroughReflection (commandName);
-            }
-            if (cmdClass == null)
-                throw new RainbowModelException ("Cannot find a command that matches " + commandName);
-            Constructor<? extends AbstractRainbowModelOperation<?, T>>[] constructors = (Constructor<? extends AbstractRainbowModelOperation<?, T>>[] )cmdClass
-                    .getConstructors ();
-            Constructor<? extends AbstractRainbowModelOperation<?, T>> constructor = null;
-            for (Constructor<? extends AbstractRainbowModelOperation<?, T>> c : constructors) {
-                Class<?>[] parameterTypes = c.getParameterTypes ();
-                final Class<?>[] a2 = Arrays.copyOfRange (parameterTypes, 0, 2);
-                if (Arrays.equals (new Class<?>[]{m_instanceClass, String.class},
-                                   a2))
-                    if (parameterTypes.length == 1 + args.length) {
-                        constructor = c;
-                        break;
-                    }
+            Constructor<? extends AbstractRainbowModelOperation<?, T>> constructor = cachedConstructor (commandName,
+                    args.length);
+            if (constructor == null) {
+                constructor = findConstructor (commandName, args.length);
             }
-            if (constructor == null) throw new NoSuchMethodException ("Could not find a constructor for " + cmdClass
-                    .getName () + " (" + m_instanceClass.getName () + ", String, String ...)");
             Object[] cargs = new Object[1 + args.length];
 //            cargs[0] = commandName;
             cargs[0] = m_modelInstance;
@@ -123,6 +117,60 @@ public abstract class ModelCommandFactory<T> {
         }
     }
 
+    private Constructor<? extends AbstractRainbowModelOperation<?, T>> cachedConstructor (String commandName,
+                                                                                         int arity) {
+        List<Constructor<? extends AbstractRainbowModelOperation<?, T>>> byArity = m_constructors.get (commandName);
+        if (byArity == null || arity >= byArity.size ()) return null;
+        return byArity.get (arity);
+    }
+
+    /**
+     * Finds the constructor of the command, taking the model instance and the given number of String arguments, and
+     * remembers it for later commands with the same name and number of arguments
+     */
+    private Constructor<? extends AbstractRainbowModelOperation<?, T>> findConstructor (String commandName, int arity)
+            throws RainbowModelException, NoSuchMethodException {
+        Class<? extends AbstractRainbowModelOperation<?, T>> cmdClass = m_commandMap
+                .get (commandName.toLowerCase ());
+        if (cmdClass == null) {
+            cmdClass = tryThroughReflection (commandName);
+        }
+        if (cmdClass == null)
+            throw new RainbowModelException ("Cannot find a command that matches " + commandName);
+        Constructor<? extends AbstractRainbowModelOperation<?, T>>[] constructors = (Constructor<? extends AbstractRainbowModelOperation<?, T>>[] )cmdClass
+                .getConstructors ();
+        Constructor<? extends AbstractRainbowModelOperation<?, T>> constructor = null;
+        for (Constructor<? extends AbstractRainbowModelOperation<?, T>> c : constructors) {
+            Class<?>[] parameterTypes = c.getParameterTypes ();
+            final Class<?>[] a2 = Arrays.copyOfRange (parameterTypes, 0, 2);
+            if (Arrays.equals (new Class<?>[]{m_instanceClass, String.class},
+                               a2))
+                if (parameterTypes.length == 1 + arity) {
+                    constructor = c;
+                    break;
+                }
+        }
+        if (constructor == null) throw new NoSuchMethodException ("Could not find a constructor for " + cmdClass
+                .getName () + " (" + m_instanceClass.getName () + ", String, String ...)");
+        // The constructor is public, so skipping the access checks on each call changes nothing but the cost
+        constructor.setAccessible (true);
+
+        // Copy on write, so that lookups never lock
+        List<Constructor<? extends AbstractRainbowModelOperation<?, T>>> byArity;
+        List<Constructor<? extends AbstractRainbowModelOperation<?, T>>> updated;
+        do {
+            byArity = m_constructors.get (commandName);
+            updated = byArity == null ? new ArrayList<Constructor<? extends AbstractRainbowModelOperation<?, T>>> ()
+                                      : new ArrayList<> (byArity);
+            while (updated.size () <= arity) {
+                updated.add (null);
+            }
+            updated.set (arity, constructor);
+        } while (byArity == null ? m_constructors.putIfAbsent (commandName, updated) != null
+                                 : !m_constructors.replace (commandName, byArity, updated));
+        return constructor;
+    }
+
     private Class<? extends AbstractRainbowModelOperation<?, T>> tryThroughReflection (String commandName) {
         Method[] methods = this.getClass ().getMethods ();
         for (Method method : methods) {
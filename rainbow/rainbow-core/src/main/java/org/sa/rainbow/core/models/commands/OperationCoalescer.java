@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.models.commands;
+
+import org.sa.rainbow.core.models.ModelReference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Collapses model operations that set a property, so that only the newest value for each target is kept. Operations
+ * are coalesced when they have the same model, name and target, and their name matches the pattern of idempotent
+ * operations. Parameters other than the new value are not compared, so only operations that set one value of their
+ * target can be coalesced. Other setters, such as those that record progress or failures, must not be; the default
+ * pattern therefore lists the setters of the properties that gauges measure, rather than every setter.
+ * <p>
+ * A coalescer holds pending operations until they are drained, replacing older pending operations with newer ones. It
+ * can also coalesce a queue of operations in place (see {@link #coalesce(List)}).
+ * <p>
+ * This class is thread safe.
+ */
+public class OperationCoalescer {
+
+    public static final String DEFAULT_COALESCIBLE_OPERATIONS = "setLoad|setResponseTime|setLatency|setLatencyRate"
+            + "|setFidelity|setClientRequestRate|setReqServiceRate|setByteServiceRate|setNumRequestsClientError"
+            + "|setNumRequestsServerError|setNumSuccessfulRequests|setNumRedirectedRequests|setBatteryCharge"
+            + "|setCurrentLocation";
+
+    private final Pattern m_coalescible;
+
+    private final Map<String, IRainbowOperation> m_pending = new LinkedHashMap<> ();
+
+    private long m_coalesced = 0;
+    private long m_passed    = 0;
+
+    /**
+     * @param coalescible the regular expression matching the names of the operations that can be coalesced; the
+     *                    match is case insensitive
+     */
+    public OperationCoalescer (String coalescible) {
+        m_coalescible = Pattern.compile (coalescible, Pattern.CASE_INSENSITIVE);
+    }
+
+    public boolean isCoalescible (IRainbowOperation op) {
+        return op.getName () != null && m_coalescible.matcher (op.getName ()).matches ();
+    }
+
+    private static String key (IRainbowOperation op) {
+        ModelReference ref = op.getModelReference ();
+        return (ref == null ? "" : ref.toString ()) + "/" + op.getName () + "/" + op.getTarget ();
+    }
+
+    /**
+     * Adds an operation to the pending operations. If an operation that it supersedes is pending, that operation is
+     * discarded and this one takes its place at the end.
+     *
+     * @param op an operation that is coalescible
+     */
+    public synchronized void add (IRainbowOperation op) {
+        if (m_pending.remove (key (op)) != null) {
+            m_coalesced++;
+        }
+        m_pending.put (key (op), op);
+    }
+
+    public synchronized boolean hasPending () {
+        return !m_pending.isEmpty ();
+    }
+
+    /**
+     * Removes and returns the pending operations, in the order in which their newest values were added
+     */
+    public synchronized List<IRainbowOperation> drain () {
+        if (m_pending.isEmpty ()) return Collections.emptyList ();
+        List<IRainbowOperation> ops = new ArrayList<> (m_pending.values ());
+        m_pending.clear ();
+        m_passed += ops.size ();
+        return ops;
+    }
+
+    /**
+     * Removes, from a queue of model updates, the coalescible operations that are superseded by a later operation in
+     * the queue. The queue may also contain lists of operations, which are transactions: these are left alone, and
+     * operations are not coalesced across them.
+     *
+     * @param queue the queued updates, in the order in which they are to be executed
+     * @return the number of operations removed
+     */
+    public synchronized int coalesce (List<Object> queue) {
+        Set<String> newer = new HashSet<> ();
+        List<Object> kept = new ArrayList<> (queue.size ());
+        int removed = 0;
+        for (int i = queue.size () - 1; i >= 0; i--) {
+            Object queued = queue.get (i);
+            if (queued instanceof IRainbowOperation && isCoalescible ((IRainbowOperation) queued)) {
+                if (!newer.add (key ((IRainbowOperation) queued))) {
+                    removed++;
+                    continue;
+                }
+            } else if (!(queued instanceof IRainbowOperation)) {
+                newer.clear ();
+            }
+            kept.add (queued);
+        }
+        if (removed > 0) {
+            Collections.reverse (kept);
+            queue.clear ();
+            queue.addAll (kept);
+        }
+        m_coalesced += removed;
+        m_passed += queue.size ();
+        return removed;
+    }
+
+    /**
+     * @return the number of operations that were discarded because a newer one superseded them
+     */
+    public synchronized long getCoalescedCount () {
+        return m_coalesced;
+    }
+
+    /**
+     * @return the number of operations (or transactions) that were let through
+     */
+    public synchronized long getPassedCount () {
+        return m_passed;
+    }
+}
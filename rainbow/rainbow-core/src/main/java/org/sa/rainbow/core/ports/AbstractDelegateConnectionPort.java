@@ -45,11 +45,21 @@ public abstract class AbstractDelegateConnectionPort extends AbstractESEBDisposa
         m_delegate = delegate;
     }
 
+    /**
+     * Reports from delegates are sent to the master, which logs them, so they are all reported
+     */
+    @Override
+    public boolean isReported (RainbowComponentT type, ReportType reportType) {
+        return true;
+    }
+
     private void report (ReportType type, RainbowComponentT compType, String msg) {
+        if (!isReported (compType, type)) return;
         report (m_delegate.getId (), type, compType, msg);
     }
 
     private void report (ReportType type, RainbowComponentT compType, String msg, Throwable t) {
+        if (!isReported (compType, type)) return;
         ByteArrayOutputStream baos = new ByteArrayOutputStream ();
         PrintStream ps = new PrintStream (baos);
         t.printStackTrace (ps);
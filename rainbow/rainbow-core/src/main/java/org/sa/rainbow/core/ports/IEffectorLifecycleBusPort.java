@@ -34,6 +34,21 @@ public interface IEffectorLifecycleBusPort extends IDisposablePort {
 
     void reportDeleted (IEffectorIdentifier effector);
 
-    void reportExecuted (IEffectorIdentifier effector, Outcome outcome, List<String> args);
+    /**
+     * Reports that an effector was executed
+     * 
+     * @param effector
+     *            the effector
+     * @param executionId
+     *            the id given to the execution, or null
+     * @param outcome
+     *            the outcome of the execution
+     * @param args
+     *            the arguments of the execution
+     * @param latency
+     *            the time, in milliseconds, that the execution took, or -1 if unknown
+     */
+    void reportExecuted (IEffectorIdentifier effector, String executionId, Outcome outcome, List<String> args,
+            long latency);
 
 }
@@ -38,7 +38,8 @@ public interface IModelChangeBusPort extends IRainbowMessageFactory, IDisposable
     void announce (IRainbowMessage event);
 
     /**
-     * Announce a list of messages on the change bus
+     * Announce a list of messages on the change bus. The messages may be published together as one message, but
+     * subscribers receive each of them, in order.
      * 
      * @param events
      */
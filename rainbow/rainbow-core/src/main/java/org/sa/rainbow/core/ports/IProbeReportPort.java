@@ -24,7 +24,19 @@ package org.sa.rainbow.core.ports;
 
 import org.sa.rainbow.translator.probes.IProbeIdentifier;
 
+import java.util.List;
+
 public interface IProbeReportPort extends IDisposablePort {
     void reportData (IProbeIdentifier probe, String data);
 
+    /**
+     * Reports several lines of data from a probe at once
+     * 
+     * @param probe
+     *            the probe
+     * @param data
+     *            the lines, in the order the probe produced them
+     */
+    void reportData (IProbeIdentifier probe, List<String> data);
+
 }
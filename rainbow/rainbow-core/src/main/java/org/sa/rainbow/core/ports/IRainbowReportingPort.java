@@ -25,6 +25,7 @@ package org.sa.rainbow.core.ports;
 
 import org.apache.log4j.Logger;
 import org.sa.rainbow.core.RainbowComponentT;
+import org.sa.rainbow.core.ports.IMasterConnectionPort.ReportType;
 
 public interface IRainbowReportingPort extends IDisposablePort {
 
@@ -58,5 +59,17 @@ public interface IRainbowReportingPort extends IDisposablePort {
 
     void trace (RainbowComponentT type, String msg);
 
+    /**
+     * Checks whether a report would be seen by a UI report subscriber. Reports are logged whatever this returns, so
+     * callers should still make them; this only lets a port skip building messages that only subscribers would see.
+     *
+     * @param type
+     *            the component reporting
+     * @param reportType
+     *            the kind of report
+     * @return false if nobody is subscribed to the report
+     */
+    boolean isReported (RainbowComponentT type, ReportType reportType);
+
 
 }
@@ -33,12 +33,20 @@ import edu.cmu.cs.able.typelib.type.DataValue;
 import org.apache.log4j.Logger;
 import org.sa.rainbow.core.error.RainbowConnectionException;
 import org.sa.rainbow.core.error.RainbowException;
+import org.sa.rainbow.util.LatencyHistogram;
 
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The ESEBConnector implements both a publish/subscribe and call-return connection over ESEB.
@@ -50,6 +58,15 @@ import java.util.UUID;
  * publish and receive information. If a connector is created with the same port as used previously, then the caches
  * server will be used. If a client is requested on a previously used remote host and port, then the cached client will
  * be used.
+ * <p/>
+ * Messages are published with the connector's channel as their ESEB topic, and listening on a connector subscribes the
+ * client to that channel, so the bus only forwards to a client the channels somebody in that client listens to.
+ * Listeners check the topic in the frame header before decoding a message into a RainbowESEBMessage.
+ * <p/>
+ * Requests are given a numeric correlation ID, which is carried in the reply key of the request and in the frame header
+ * of the reply. Replies are matched with pending requests by looking up the ID from the header, so only replies to
+ * requests from this process are decoded. Requests that are sent with a timeout and are not answered in time are
+ * expired by a timing wheel, and the latency of the requests on each channel is kept in a {@link LatencyHistogram}.
  *
  * @author Bradley Schmerl: schmerl
  */
@@ -86,9 +103,70 @@ public class ESEBConnector {
 
     private BusConnection m_client;
     /**
-     * The set of listeners that are awaiting replies.
+     * The timeout of requests that wait for a reply for as long as it takes, as requests sent with sendAndReceive do
+     */
+    public static final long NO_REPLY_TIMEOUT = 0;
+
+    /**
+     * A request that is awaiting a reply
+     */
+    private static class PendingReply {
+        final ESEBReplyFuture      future;
+        final ChannelT             channel;
+        final TimeoutWheel.Timeout timeout;
+        final long                 start = System.nanoTime ();
+
+        PendingReply (ESEBReplyFuture future, ChannelT channel, TimeoutWheel.Timeout timeout) {
+            this.future = future;
+            this.channel = channel;
+            this.timeout = timeout;
+        }
+
+        /**
+         * Removes the request's timeout, if it has one, from the wheel
+         */
+        void cancelTimeout () {
+            if (timeout != null) {
+                timeout.cancel ();
+            }
+        }
+    }
+
+    /**
+     * The requests that are awaiting replies, indexed by correlation ID.
      **/
-    private static final Map<String, IESEBListener> m_replyListeners = new HashMap<> ();
+    private static final Map<Long, PendingReply> m_pendingReplies = new ConcurrentHashMap<> ();
+
+    /**
+     * The high 32 bits of the correlation IDs of this process, so that IDs from different processes sharing a bus do
+     * not collide
+     */
+    private static final long          CORRELATION_ID_PREFIX = ((long )new Random ().nextInt ()) << 32;
+    private static final AtomicInteger m_nextCorrelationId   = new AtomicInteger ();
+
+    private static final Map<ChannelT, LatencyHistogram> m_requestLatencies = new EnumMap<> (ChannelT.class);
+    private static final Map<ChannelT, AtomicLong>       m_requestTimeouts  = new EnumMap<> (ChannelT.class);
+
+    static {
+        for (ChannelT channel : ChannelT.values ()) {
+            m_requestLatencies.put (channel, new LatencyHistogram ());
+            m_requestTimeouts.put (channel, new AtomicLong ());
+        }
+    }
+
+    private static final TimeoutWheel m_replyTimeouts = new TimeoutWheel (100, 512, new TimeoutWheel.IExpiryHandler () {
+
+        @Override
+        public void expired (long id) {
+            PendingReply pending = m_pendingReplies.remove (id);
+            if (pending != null) {
+                m_requestTimeouts.get (pending.channel).incrementAndGet ();
+                pending.future.fail (new RainbowConnectionException (MessageFormat.format (
+                        "No reply was received on {0} for request {1}", pending.channel, Long.toString (id))));
+            }
+        }
+    });
+
     private final ChannelT m_channel;
 
     /**
@@ -143,13 +221,54 @@ public class ESEBConnector {
     }
 
     /**
-     * Publishes a map onto the bus
+     * Publishes a map onto the bus. The frame is sent on the topic named by the channel key of the message, so that a
+     * message may be published on a different channel than the one this connector listens to (e.g., UI reports sent
+     * through a health connector); messages without a channel key go out on the channel of this connector.
      *
      * @param msg the message to publish, as key/value pairs
      */
     public void publish (RainbowESEBMessage msg) {
         msg.setProperty (ESEBConstants.MSG_SENT, System.currentTimeMillis ());
-        m_client.send (msg.getDataValue ());
+        m_client.send (msg.getDataValue (), topicOf (msg), replyCorrelationId (msg));
+    }
+
+    /**
+     * Gets the topic that a message should be published on
+     *
+     * @param msg the message to publish
+     * @return the channel key of the message, or the channel of this connector if the message does not have one
+     */
+    private String topicOf (RainbowESEBMessage msg) {
+        Object channel = msg.getProperty (ESEBConstants.MSG_CHANNEL_KEY);
+        return channel == null ? m_channel.name () : channel.toString ();
+    }
+
+    /**
+     * Gets the correlation ID that should be sent in the frame header of a message: replies carry the ID of their
+     * request, found in the reply key
+     *
+     * @param msg the message to publish
+     * @return the correlation ID, or BusData.NO_CORRELATION_ID if the message is not a reply to a correlated request
+     */
+    private static long replyCorrelationId (RainbowESEBMessage msg) {
+        if (!ESEBConstants.MSG_TYPE_REPLY.equals (msg.getProperty (ESEBConstants.MSG_TYPE_KEY)))
+            return BusData.NO_CORRELATION_ID;
+        Object repKey = msg.getProperty (ESEBConstants.MSG_REPLY_KEY);
+        if (repKey == null) return BusData.NO_CORRELATION_ID;
+        try {
+            return Long.parseLong (repKey.toString ());
+        }
+        catch (NumberFormatException e) {
+            return BusData.NO_CORRELATION_ID;
+        }
+    }
+
+    private static long nextCorrelationId () {
+        long id;
+        do {
+            id = CORRELATION_ID_PREFIX | (m_nextCorrelationId.incrementAndGet () & 0xffffffffL);
+        } while (id == BusData.NO_CORRELATION_ID);
+        return id;
     }
 
     private BusDataQueue replyQ = null;
@@ -157,123 +276,150 @@ public class ESEBConnector {
     /**
      * Implements a call and return connection over the bus. The call is represented in msg, which is sent to the bus.
      * The receiveListener is what is called when a call is responded to. This is done asynchronously, so clients who
-     * want to block will need to handle their own blocking.
+     * want to block will need to handle their own blocking. The request does not expire; use sendRequest to give it a
+     * timeout.
      *
      * @param msg             The call
      * @param receiveListener The listener to call when a response returns
      */
     public void sendAndReceive (RainbowESEBMessage msg, final IESEBListener receiveListener) {
+        sendRequest (msg, receiveListener, NO_REPLY_TIMEOUT);
+    }
 
-        // Generate a random reply key and put it in the message so that responder knows how to respond
-        final String replyKey = UUID.randomUUID ().toString ();
-        msg.setProperty (ESEBConstants.MSG_REPLY_KEY, replyKey);
-
-        // Add the reply listener to the reply queue
-        synchronized (m_replyListeners) {
-            m_replyListeners.put (replyKey, receiveListener);
-        }
+    /**
+     * Sends a request and returns its pending reply. The reply fails with a RainbowConnectionException if it does not
+     * arrive within the timeout, unless the timeout is NO_REPLY_TIMEOUT.
+     *
+     * @param msg             The call
+     * @param receiveListener The listener to call when a response returns, before the future completes; may be null
+     * @param timeout         How long, in milliseconds, to wait for the reply, or NO_REPLY_TIMEOUT to wait forever
+     * @return the pending reply
+     */
+    public Future<RainbowESEBMessage> sendRequest (RainbowESEBMessage msg, IESEBListener receiveListener,
+                                                   long timeout) {
+        // Generate a reply key and put it in the message so that responder knows how to respond
+        final long id = nextCorrelationId ();
+        msg.setProperty (ESEBConstants.MSG_REPLY_KEY, Long.toString (id));
 
-        // Add a reply queue that will process the reply 
-        // Note that if we want the send/receive to be blocking, then that needs to be processed
-        // by the client.
-        if (replyQ == null) {
-        /*final BusDataQueue*/
-            replyQ = new BusDataQueue ();
-            m_client.queue_group ().add (replyQ);
-
-            replyQ.dispatcher ().add (new BusDataQueueListener () {
-                @Override
-                public void data_added_to_queue () {
-                    BusData bd;
-                    while ((bd = replyQ.poll ()) != null) {
-                        DataValue v = bd.value ();
-                        if (v instanceof MapDataValue) {
-                            MapDataValue mdv = (MapDataValue) v;
-                            RainbowESEBMessage msg = new RainbowESEBMessage (mdv);
-                            if (!msg.getProperty (ESEBConstants.MSG_CHANNEL_KEY).equals (m_channel.name ())) {
-                                continue;
-                            }
-                            String repKey = (String) msg.getProperty (ESEBConstants.MSG_REPLY_KEY);
-                            Object msgType = msg.getProperty (ESEBConstants.MSG_TYPE_KEY);
-
-                            // Make sure that the message is a reply, otherwise ignore
-                            // TODO: Bug --> if it isn't a reply, we've removed it so others now cannot process it
-                            if (ESEBConstants.MSG_TYPE_REPLY.equals (msgType)) {
-                                // Get the associated reply listener
-                                IESEBListener l;
-                                synchronized (m_replyListeners) {
-                                    l = m_replyListeners.remove (repKey);
-                                }
-                                // Call the listener
-                                if (l != null) {
-//                                    LOGGER.info ("Processing reply: " + msg.toString ());
-                                    sanitizeMessage (msg);
-                                    l.receive (msg);
-                                } else {
-                                    LOGGER.error (MessageFormat.format (
-                                            "Received a reply on ESEB for which there is no listener. For reply key: {0}",
-
-                                            repKey));
-                                    LOGGER.info (msg.toString ());
-                                    synchronized (m_replyListeners) {
-                                        for (String rk : m_replyListeners.keySet ()) {
-                                            LOGGER.info (rk + " -> " + m_replyListeners.get (rk));
-                                        }
-                                    }
-                                }
-                                // replyQ.dispatcher ().remove (this);
-                                // m_client.queue_group ().remove (replyQ);
-
-                            }
+        ESEBReplyFuture reply = new ESEBReplyFuture (receiveListener) {
 
-                        }
-                    }
+            @Override
+            public boolean cancel (boolean mayInterruptIfRunning) {
+                if (!super.cancel (mayInterruptIfRunning)) return false;
+                PendingReply pending = m_pendingReplies.remove (id);
+                if (pending != null) {
+                    pending.cancelTimeout ();
                 }
-            });
-        }
-
-        // send the call
-//        LOGGER.info ("Publishing " + msg.toString ());
+                return true;
+            }
+        };
+        TimeoutWheel.Timeout expiry = timeout > NO_REPLY_TIMEOUT ? m_replyTimeouts.schedule (id, timeout) : null;
+        m_pendingReplies.put (id, new PendingReply (reply, m_channel, expiry));
 
+        ensureReplyQueue ();
         publish (msg);
-
+        return reply;
     }
 
-    public class BlockingListener implements IESEBListener {
-
-        private final IESEBListener m_l;
-        boolean ret = false;
-
-        public BlockingListener (IESEBListener l) {
-            m_l = l;
-
-        }
+    /**
+     * Sets up the queue that processes replies. Replies are matched with their request using the correlation ID in
+     * the frame header, so other data is never decoded here.
+     */
+    private synchronized void ensureReplyQueue () {
+        if (replyQ != null) return;
+        replyQ = new BusDataQueue ();
+        m_client.queue_group ().add (replyQ);
+        m_client.subscribe (m_channel.name ());
 
-        @Override
-        public void receive (RainbowESEBMessage msg) {
-            m_l.receive (msg);
-            ret = true;
-            synchronized (this) {
-                this.notifyAll ();
+        replyQ.dispatcher ().add (new BusDataQueueListener () {
+            @Override
+            public void data_added_to_queue () {
+                BusData bd;
+                while ((bd = replyQ.poll ()) != null) {
+                    long id = bd.correlation_id ();
+                    if (id == BusData.NO_CORRELATION_ID) {
+                        continue;
+                    }
+                    // Null if the reply is for another process, if it already arrived through another connector
+                    // that shares the client, or if the request has expired
+                    PendingReply pending = m_pendingReplies.remove (id);
+                    if (pending == null) {
+                        continue;
+                    }
+                    pending.cancelTimeout ();
+                    m_requestLatencies.get (pending.channel).record (System.nanoTime () - pending.start);
+                    DataValue v = bd.value ();
+                    if (v instanceof MapDataValue) {
+                        RainbowESEBMessage msg = new RainbowESEBMessage ((MapDataValue) v);
+                        sanitizeMessage (msg);
+                        pending.future.complete (msg);
+                    }
+                    else {
+                        pending.future.fail (new RainbowConnectionException (MessageFormat.format (
+                                "Could not decode the reply to request {0}", Long.toString (id)),
+                                bd.decoding_failure ()));
+                    }
+                }
             }
-        }
-
+        });
     }
 
     public void blockingSendAndReceive (RainbowESEBMessage msg, final IESEBListener l, long timeout)
             throws RainbowConnectionException {
-        BlockingListener bl = new BlockingListener (l);
-        synchronized (bl) {
-            sendAndReceive (msg, bl);
-            try {
-                // TODO: THis should be uncommented
-                bl.wait (timeout);
-            } catch (InterruptedException e) {
+        Future<RainbowESEBMessage> reply = sendRequest (msg, l, timeout);
+        try {
+            // As with Object.wait, a timeout of NO_REPLY_TIMEOUT waits for as long as it takes
+            if (timeout > NO_REPLY_TIMEOUT) {
+                reply.get (timeout, TimeUnit.MILLISECONDS);
+            }
+            else {
+                reply.get ();
             }
         }
-        if (!bl.ret)
+        catch (TimeoutException e) {
+            reply.cancel (false);
             throw new RainbowConnectionException (MessageFormat.format (
                     "Blocking send and receive did not return in specified time {0}", timeout));
+        }
+        catch (ExecutionException e) {
+            if (e.getCause () instanceof RainbowConnectionException) throw (RainbowConnectionException )e.getCause ();
+            throw new RainbowConnectionException ("The request failed", e);
+        }
+        catch (InterruptedException e) {
+            reply.cancel (false);
+            Thread.currentThread ().interrupt ();
+            throw new RainbowConnectionException ("Interrupted while waiting for a reply", e);
+        }
+    }
+
+    /**
+     * @param channel the channel
+     * @return the latencies of the replies to requests sent on the channel
+     */
+    public static LatencyHistogram getRequestLatency (ChannelT channel) {
+        return m_requestLatencies.get (channel);
+    }
+
+    /**
+     * @param channel the channel
+     * @return the number of requests sent on the channel that did not get a reply in time
+     */
+    public static long getRequestTimeouts (ChannelT channel) {
+        return m_requestTimeouts.get (channel).get ();
+    }
+
+    /**
+     * @return the number of requests awaiting a reply
+     */
+    public static int getPendingRequestCount () {
+        return m_pendingReplies.size ();
+    }
+
+    /**
+     * @return the number of requests whose timeout has not expired nor been cancelled
+     */
+    static int getScheduledTimeoutCount () {
+        return m_replyTimeouts.size ();
     }
 
     /**
@@ -286,6 +432,17 @@ public class ESEBConnector {
     }
 
 
+    /**
+     * Checks, using only the topic in the frame header, whether data was published on another channel. Data without a
+     * topic (e.g., from publishers that do not set it) needs to be decoded to find its channel.
+     *
+     * @param bd the data received
+     * @return true if the data has a topic which is not this connector's channel
+     */
+    private boolean isOnOtherChannel (BusData bd) {
+        return bd.topic () != null && !bd.topic ().equals (m_channel.name ());
+    }
+
     /**
      * Adds a listener to the client queue.
      *
@@ -295,17 +452,23 @@ public class ESEBConnector {
         // Set up the queues
         final BusDataQueue clientReceiveQ = new BusDataQueue ();
         m_client.queue_group ().add (clientReceiveQ);
+        m_client.subscribe (m_channel.name ());
         clientReceiveQ.dispatcher ().add (new BusDataQueueListener () {
 
             @Override
             public void data_added_to_queue () {
                 BusData bd;
                 while ((bd = clientReceiveQ.poll ()) != null) {
+                    // Replies to requests are handled by the reply queue
+                    if (isOnOtherChannel (bd) || bd.correlation_id () != BusData.NO_CORRELATION_ID) {
+                        continue;
+                    }
                     DataValue v = bd.value ();
                     if (v instanceof MapDataValue) {
                         MapDataValue mdv = (MapDataValue) v;
                         RainbowESEBMessage msg = new RainbowESEBMessage (mdv);
-                        if (!msg.getProperty (ESEBConstants.MSG_CHANNEL_KEY).equals (m_channel.name ())) {
+                        if (bd.topic () == null
+                                && !msg.getProperty (ESEBConstants.MSG_CHANNEL_KEY).equals (m_channel.name ())) {
                             continue;
                         }
                         // Ignore any replies on this queue
@@ -54,8 +54,24 @@ public interface ESEBConstants {
     String MSG_TYPE_PROBE_REPORT = ESEB_PREFIX + "PROBE_REPORT";
     String MSG_PROBE_ID_KEY = ESEB_PREFIX + "probe_id";
     String MSG_DATA_KEY = ESEB_PREFIX + "data";
+    /** A message carrying a ProbeReportFrame: reports from one or more probes, in columns */
+    String MSG_TYPE_PROBE_REPORT_BATCH = ESEB_PREFIX + "PROBE_REPORT_BATCH";
+    String MSG_FRAME_PROBE_IDS_KEY = ESEB_PREFIX + "frame_probe_ids";
+    String MSG_FRAME_PROBE_TYPES_KEY = ESEB_PREFIX + "frame_probe_types";
+    String MSG_FRAME_PROBE_LOCATIONS_KEY = ESEB_PREFIX + "frame_probe_locations";
+    String MSG_FRAME_REPORT_PROBES_KEY = ESEB_PREFIX + "frame_report_probes";
+    String MSG_FRAME_REPORT_TIMES_KEY = ESEB_PREFIX + "frame_report_times";
+    String MSG_FRAME_REPORT_DATA_KEY = ESEB_PREFIX + "frame_report_data";
     String REPORT_TYPE_KEY = ESEB_PREFIX + "REPORT_TYPE";
     String MSG_TYPE_UI_REPORT = ESEB_PREFIX + "UI_REPORT";
+    /** Announces which reports a UI report subscriber wants, so that publishers can skip the others */
+    String MSG_TYPE_UI_REPORT_INTEREST = ESEB_PREFIX + "UI_REPORT_INTEREST";
+    /** Asks UI report subscribers to announce what they want again */
+    String MSG_TYPE_UI_REPORT_INTEREST_QUERY = ESEB_PREFIX + "UI_REPORT_INTEREST_QUERY";
+    String REPORT_SUBSCRIBER_KEY = ESEB_PREFIX + "REPORT_SUBSCRIBER";
+    /** Comma separated names of the components or report types wanted by a subscriber */
+    String REPORT_COMPONENTS_KEY = ESEB_PREFIX + "REPORT_COMPONENTS";
+    String REPORT_TYPES_KEY = ESEB_PREFIX + "REPORT_TYPES";
     String REPORT_MSG_KEY = ESEB_PREFIX + "MSG";
     String MSG_PROBE_LOCATION_KEY = ESEB_PREFIX + "probe_location";
     String MSG_PROBE_TYPE_KEY = ESEB_PREFIX + "probe_type";
@@ -64,5 +80,7 @@ public interface ESEBConstants {
     String MSG_UPDATE_MODEL_REPLY = ESEB_PREFIX + "UPDATE_MODEL_REPLY";
     String MSG_TRANSACTION = ESEB_PREFIX + "TRANSACTION";
     String COMMAND_ORIGIN = ESEB_PREFIX + "ORIGIN";
+    String MSG_TYPE_BATCH = ESEB_PREFIX + "BATCH";
+    String MSG_BATCH_KEY = ESEB_PREFIX + "BATCHED_MESSAGES";
 
 }
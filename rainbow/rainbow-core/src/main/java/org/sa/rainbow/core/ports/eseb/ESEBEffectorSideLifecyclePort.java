@@ -67,11 +67,16 @@ public class ESEBEffectorSideLifecyclePort extends AbstractESEBDisposablePort im
     }
 
     @Override
-    public void reportExecuted (IEffectorIdentifier effector, Outcome outcome, List<String> args) {
+    public void reportExecuted (IEffectorIdentifier effector, String executionId, Outcome outcome, List<String> args,
+            long latency) {
         RainbowESEBMessage msg = getConnectionRole().createMessage ();
         msg.setProperty (ESEBConstants.MSG_TYPE_KEY, IEffectorProtocol.EFFECTOR_EXECUTED);
         setCommonEffectorProperties (effector, msg);
+        if (executionId != null) {
+            msg.setProperty (IEffectorProtocol.EXECUTION_ID, executionId);
+        }
         msg.setProperty (IEffectorProtocol.OUTCOME, outcome.name ());
+        msg.setProperty (IEffectorProtocol.LATENCY, latency);
         msg.setProperty (IEffectorProtocol.ARGUMENT + IEffectorProtocol.SIZE, args.size ());
         for (int i = 0; i < args.size (); i++) {
             msg.setProperty (IEffectorProtocol.ARGUMENT + i, args.get (i));
@@ -31,18 +31,27 @@ import org.sa.rainbow.core.ports.IRainbowReportingPort;
 import org.sa.rainbow.core.ports.eseb.ESEBConnector.ChannelT;
 import org.sa.rainbow.util.Util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.text.MessageFormat;
 
 public class ESEBMasterReportingPort extends AbstractESEBDisposablePort implements IRainbowReportingPort {
     private final Logger LOGGER = Logger.getLogger (this.getClass ());
 
 
+    private final ESEBUIReportPublisher m_publisher;
+
     public ESEBMasterReportingPort () throws IOException {
         super (
-                ESEBProvider.getESEBClientPort (RainbowConstants.PROPKEY_MASTER_CONNECTION_PORT), ChannelT.HEALTH);
+                ESEBProvider.getESEBClientPort (RainbowConstants.PROPKEY_MASTER_CONNECTION_PORT), ChannelT.UIREPORT);
+        m_publisher = new ESEBUIReportPublisher (getConnectionRole ());
+    }
+
+    @Override
+    public void dispose () {
+        m_publisher.close ();
+        super.dispose ();
     }
 
     @Override
@@ -129,34 +138,25 @@ public class ESEBMasterReportingPort extends AbstractESEBDisposablePort implemen
 
     }
 
-    private void report (ReportType type, RainbowComponentT compT, String msg) {
-        report (type, compT, msg, (String )null);
+    @Override
+    public boolean isReported (RainbowComponentT type, ReportType reportType) {
+        return m_publisher.isReported (type, reportType);
     }
 
-    private void report (ReportType type, RainbowComponentT compT, String msg, String additionalInfo) {
+    private void report (ReportType type, RainbowComponentT compT, String msg) {
         LOGGER.log (Util.reportTypeToPriority (type), compT.name () + ": " + msg);
-        LOGGER.info (additionalInfo);
-        if (getConnectionRole () == null) return;
-        RainbowESEBMessage esebMsg = getConnectionRole().createMessage ();
-        esebMsg.setProperty (ESEBConstants.MSG_CHANNEL_KEY, ChannelT.UIREPORT.name ());
-        esebMsg.setProperty (ESEBConstants.COMPONENT_TYPE_KEY, compT.name ());
-        esebMsg.setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_UI_REPORT);
-        esebMsg.setProperty (ESEBConstants.REPORT_TYPE_KEY, type.name ());
-        esebMsg.setProperty (ESEBConstants.REPORT_MSG_KEY, msg);
-        esebMsg.setProperty (ESEBConstants.MSG_DELEGATE_ID_KEY, "master");
-        if (additionalInfo != null) {
-            esebMsg.setProperty (ESEBConstants.REPORT_MSG_ADDITIONAL_INFO, additionalInfo);
-        }
-        getConnectionRole().publish (esebMsg);
-
+        m_publisher.report ("master", type, compT, msg, null);
     }
 
     private void report (ReportType type, RainbowComponentT compType, String msg, Throwable t) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream ();
-        PrintStream ps = new PrintStream (baos);
-        t.printStackTrace (ps);
-        ps.close ();
-        report (type, compType, MessageFormat.format ("{0}. Exception: {1}.", msg, t.getMessage ()), baos.toString ());
+        String message = MessageFormat.format ("{0}. Exception: {1}.", msg, t.getMessage ());
+        LOGGER.log (Util.reportTypeToPriority (type), compType.name () + ": " + message, t);
+        // Only render the stack trace if somebody will see it
+        if (m_publisher.isReported (compType, type)) {
+            StringWriter trace = new StringWriter ();
+            t.printStackTrace (new PrintWriter (trace));
+            m_publisher.report ("master", type, compType, message, trace.toString ());
+        }
     }
 
     @Override
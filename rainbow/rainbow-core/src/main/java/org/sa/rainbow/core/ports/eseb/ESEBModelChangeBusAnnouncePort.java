@@ -24,19 +24,28 @@
 package org.sa.rainbow.core.ports.eseb;
 
 
+import org.sa.rainbow.core.Rainbow;
+import org.sa.rainbow.core.RainbowConstants;
 import org.sa.rainbow.core.event.IRainbowMessage;
 import org.sa.rainbow.core.models.IModelsManager;
 import org.sa.rainbow.core.ports.IModelChangeBusPort;
 import org.sa.rainbow.core.ports.eseb.ESEBConnector.ChannelT;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class ESEBModelChangeBusAnnouncePort extends AbstractESEBDisposablePort implements IModelChangeBusPort {
 
+    /**
+     * Whether a list of events is published as one batch message; see RainbowConstants.PROPKEY_MODEL_CHANGE_BATCH
+     */
+    private final boolean m_publishBatches;
+
     public ESEBModelChangeBusAnnouncePort (IModelsManager modelsManager) throws IOException {
         super (ESEBProvider.getESEBClientHost (), ESEBProvider.getESEBClientPort (), ChannelT.MODEL_CHANGE);
         // Runs on master
+        m_publishBatches = Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_MODEL_CHANGE_BATCH, false);
 
     }
 
@@ -51,9 +60,23 @@ public class ESEBModelChangeBusAnnouncePort extends AbstractESEBDisposablePort i
 
     @Override
     public void announce (List<? extends IRainbowMessage> event) {
+        if (!m_publishBatches || event.size () == 1) {
+            for (IRainbowMessage msg : event) {
+                announce (msg);
+            }
+            return;
+        }
+        if (event.isEmpty ()) return;
+        // Publish all the events in one message
+        List<RainbowESEBMessage> messages = new ArrayList<> (event.size ());
         for (IRainbowMessage msg : event) {
-            announce (msg);
+            if (!(msg instanceof RainbowESEBMessage))
+                throw new IllegalArgumentException ("Cannot pass a non ESEB Rainbow message to an ESEB port");
+            messages.add ((RainbowESEBMessage )msg);
         }
+        RainbowESEBMessage batch = getConnectionRole ().createMessage ();
+        batch.setBatchedMessages (messages);
+        getConnectionRole ().publish (batch);
     }
 
 
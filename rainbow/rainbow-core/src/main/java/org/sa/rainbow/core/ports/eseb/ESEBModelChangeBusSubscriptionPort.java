@@ -34,6 +34,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 
 public class ESEBModelChangeBusSubscriptionPort extends AbstractESEBDisposablePort implements
 IModelChangeBusSubscriberPort {
@@ -51,22 +52,35 @@ IModelChangeBusSubscriberPort {
 
             @Override
             public void receive (RainbowESEBMessage msg) {
-                if (msg.getProperty (ESEBConstants.MSG_CHANNEL_KEY).equals (ChannelT.MODEL_CHANGE.name ())) {
-                    synchronized (m_subscribers) {
-                        for (Pair<IRainbowChangeBusSubscription, IRainbowModelChangeCallback> pair : m_subscribers) {
-                            if (pair.firstValue ().matches (msg)) {
-                                ModelReference mr = new ModelReference ((String )msg
-                                        .getProperty (IModelChangeBusPort.MODEL_NAME_PROP), (String )msg
-                                        .getProperty (IModelChangeBusPort.MODEL_TYPE_PROP));
-                                pair.secondValue ().onEvent (mr, msg);
-                            }
-                        }
+                List<RainbowESEBMessage> batch = msg.getBatchedMessages ();
+                if (batch == null) {
+                    dispatch (msg);
+                }
+                else {
+                    // Events that were announced together are delivered in the order they were announced
+                    for (RainbowESEBMessage event : batch) {
+                        dispatch (event);
                     }
                 }
             }
         });
     }
 
+    private void dispatch (RainbowESEBMessage msg) {
+        if (ChannelT.MODEL_CHANGE.name ().equals (msg.getProperty (ESEBConstants.MSG_CHANNEL_KEY))) {
+            synchronized (m_subscribers) {
+                for (Pair<IRainbowChangeBusSubscription, IRainbowModelChangeCallback> pair : m_subscribers) {
+                    if (pair.firstValue ().matches (msg)) {
+                        ModelReference mr = new ModelReference ((String )msg
+                                .getProperty (IModelChangeBusPort.MODEL_NAME_PROP), (String )msg
+                                .getProperty (IModelChangeBusPort.MODEL_TYPE_PROP));
+                        pair.secondValue ().onEvent (mr, msg);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public void subscribe (IRainbowChangeBusSubscription subscriber, IRainbowModelChangeCallback callback) {
         Pair<IRainbowChangeBusSubscription, IRainbowModelChangeCallback> subscription = new Pair<> (subscriber,
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.ports.eseb;
+
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.sa.rainbow.core.Rainbow;
+import org.sa.rainbow.core.RainbowConstants;
+import org.sa.rainbow.core.ports.eseb.ESEBConnector.ChannelT;
+import org.sa.rainbow.translator.probes.IProbeIdentifier;
+
+/**
+ * Collects the reports of all the probes in a process into a ProbeReportFrame, which is published when the batch
+ * window set by {@link RainbowConstants#PROPKEY_PROBE_REPORT_BATCH_WINDOW} has passed since its first report, or
+ * when it holds MAX_FRAME_SIZE reports.
+ */
+class ESEBProbeReportBatcher {
+
+    static final int MAX_FRAME_SIZE = 1000;
+
+    private static ESEBProbeReportBatcher s_instance;
+    private static boolean                s_configured = false;
+
+    private final ESEBConnector            m_connector;
+    private final long                     m_window;
+    private final ScheduledExecutorService m_timer;
+    private final ProbeReportFrame         m_frame          = new ProbeReportFrame ();
+    private boolean                        m_flushScheduled = false;
+
+    private final Runnable m_flush = new Runnable () {
+
+        @Override
+        public void run () {
+            flush ();
+        }
+    };
+
+    ESEBProbeReportBatcher (ESEBConnector connector, long window) {
+        m_connector = connector;
+        m_window = window;
+        m_timer = Executors.newSingleThreadScheduledExecutor (new ThreadFactory () {
+
+            @Override
+            public Thread newThread (Runnable r) {
+                Thread t = new Thread (r, "Probe Report Batcher");
+                t.setDaemon (true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * @return the batcher for this process, or null if probe reports are not batched
+     */
+    static synchronized ESEBProbeReportBatcher instance () {
+        if (!s_configured) {
+            s_configured = true;
+            long window = 0;
+            String value = Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_PROBE_REPORT_BATCH_WINDOW);
+            if (value != null) {
+                try {
+                    window = Long.parseLong (value.trim ());
+                }
+                catch (NumberFormatException e) {
+                    ESEBConnector.LOGGER.warn (MessageFormat.format ("Ignoring invalid value of {0}: {1}",
+                            RainbowConstants.PROPKEY_PROBE_REPORT_BATCH_WINDOW, value));
+                }
+            }
+            if (window > 0) {
+                s_instance = new ESEBProbeReportBatcher (new ESEBConnector (ESEBProvider.getESEBClientHost (),
+                        ESEBProvider.getESEBClientPort (), ChannelT.SYSTEM_US), window);
+            }
+        }
+        return s_instance;
+    }
+
+    /**
+     * Adds reports made by a probe at the same time to the frame being collected
+     */
+    synchronized void add (IProbeIdentifier probe, long time, List<String> data) {
+        for (String d : data) {
+            m_frame.add (probe, time, d);
+        }
+        if (m_frame.size () >= MAX_FRAME_SIZE) {
+            publish ();
+        }
+        else if (!m_flushScheduled) {
+            m_flushScheduled = true;
+            m_timer.schedule (m_flush, m_window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publishes the reports collected so far
+     */
+    synchronized void flush () {
+        m_flushScheduled = false;
+        if (!m_frame.isEmpty ()) {
+            publish ();
+        }
+    }
+
+    // Publishing with the lock held keeps the frames of a probe in order
+    private void publish () {
+        RainbowESEBMessage msg = m_connector.createMessage ();
+        m_frame.writeTo (msg);
+        m_connector.publish (msg);
+        m_frame.clear ();
+    }
+}
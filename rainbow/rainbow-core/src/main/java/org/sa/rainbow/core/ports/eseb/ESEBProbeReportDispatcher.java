@@ -0,0 +1,286 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.ports.eseb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.sa.rainbow.core.ports.IProbeReportPort;
+import org.sa.rainbow.core.ports.eseb.ESEBConnector.ChannelT;
+import org.sa.rainbow.core.ports.eseb.ESEBConnector.IESEBListener;
+import org.sa.rainbow.translator.probes.IProbeIdentifier;
+
+import edu.cmu.cs.able.typelib.comp.MapDataValue;
+import edu.cmu.cs.able.typelib.prim.StringType;
+import edu.cmu.cs.able.typelib.prim.StringValue;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * Delivers the probe reports on SYSTEM_US to all the probe report subscriber ports of a process. There is one listener
+ * on the bus for all the ports, so each report is decoded once, however many gauges there are. The subscriptions of
+ * the ports are compiled into a lookup from probe type and location to the callbacks (gauges) that want the reports,
+ * which is rebuilt whenever a subscription changes and read without locking.
+ */
+class ESEBProbeReportDispatcher {
+    static final Logger LOGGER = Logger.getLogger (ESEBProbeReportDispatcher.class);
+
+    private static final StringType        STRING = ESEBProvider.SCOPE.string ();
+    private static final IProbeReportPort[] NONE  = new IProbeReportPort[0];
+
+    private static ESEBProbeReportDispatcher s_instance;
+
+    /**
+     * The callbacks for reports of one probe type
+     */
+    private static class Routes {
+        /** Callbacks for the locations that are named in some subscription to the type **/
+        final Map<String, IProbeReportPort[]> m_byLocation;
+        /** Callbacks for any other location **/
+        final IProbeReportPort[]              m_anyLocation;
+
+        Routes (Map<String, IProbeReportPort[]> byLocation, IProbeReportPort[] anyLocation) {
+            m_byLocation = byLocation;
+            m_anyLocation = anyLocation;
+        }
+    }
+
+    private static class ReportingProbe implements IProbeIdentifier {
+        private final String m_id;
+        private final String m_type;
+        private final String m_location;
+
+        ReportingProbe (String id, String type, String location) {
+            m_id = id;
+            m_type = type;
+            m_location = location;
+        }
+
+        @Override
+        public String id () {
+            return m_id;
+        }
+
+        @Override
+        public String type () {
+            return m_type;
+        }
+
+        @Override
+        public String name () {
+            return m_id;
+        }
+
+        @Override
+        public String location () {
+            return m_location;
+        }
+    }
+
+    private final ESEBConnector                           m_connector;
+    private final Set<ESEBProbeReportSubscriberPort>      m_ports  = new LinkedHashSet<> ();
+    private volatile Map<String, Routes>                  m_routes = Collections.emptyMap ();
+
+    /**
+     * Creates a dispatcher that is not connected to the bus; messages are given to it through dispatch()
+     */
+    ESEBProbeReportDispatcher () {
+        m_connector = null;
+    }
+
+    private ESEBProbeReportDispatcher (ESEBConnector connector) {
+        m_connector = connector;
+        m_connector.addListener (new IESEBListener () {
+
+            @Override
+            public void receive (RainbowESEBMessage msg) {
+                dispatch (msg);
+            }
+        });
+    }
+
+    /**
+     * Adds a port to the dispatcher of this process, connecting the dispatcher to the bus if this is the first port
+     */
+    static synchronized ESEBProbeReportDispatcher attach (ESEBProbeReportSubscriberPort port) {
+        if (s_instance == null) {
+            s_instance = new ESEBProbeReportDispatcher (new ESEBConnector (ESEBProvider.getESEBClientHost (),
+                    ESEBProvider.getESEBClientPort (), ChannelT.SYSTEM_US));
+        }
+        s_instance.add (port);
+        return s_instance;
+    }
+
+    /**
+     * Removes a port from the dispatcher, disconnecting it from the bus if this was the last port
+     */
+    static synchronized void detach (ESEBProbeReportDispatcher dispatcher, ESEBProbeReportSubscriberPort port) {
+        if (dispatcher.remove (port) && dispatcher == s_instance) {
+            s_instance.m_connector.close ();
+            s_instance = null;
+        }
+    }
+
+    void add (ESEBProbeReportSubscriberPort port) {
+        synchronized (m_ports) {
+            m_ports.add (port);
+        }
+        subscriptionsChanged ();
+    }
+
+    /**
+     * @return true if there are no ports left
+     */
+    boolean remove (ESEBProbeReportSubscriberPort port) {
+        boolean empty;
+        synchronized (m_ports) {
+            m_ports.remove (port);
+            empty = m_ports.isEmpty ();
+        }
+        subscriptionsChanged ();
+        return empty;
+    }
+
+    /**
+     * Recompiles the lookup from the subscriptions of the ports
+     */
+    void subscriptionsChanged () {
+        synchronized (m_ports) {
+            Map<String, Set<String>> locationsByType = new HashMap<> ();
+            for (ESEBProbeReportSubscriberPort port : m_ports) {
+                for (Entry<String, Set<String>> e : port.subscriptions ().entrySet ()) {
+                    Set<String> locations = locationsByType.get (e.getKey ());
+                    if (locations == null) {
+                        locations = new HashSet<> ();
+                        locationsByType.put (e.getKey (), locations);
+                    }
+                    locations.addAll (e.getValue ());
+                }
+            }
+            Map<String, Routes> routes = new HashMap<> ();
+            for (Entry<String, Set<String>> e : locationsByType.entrySet ()) {
+                String type = e.getKey ();
+                Map<String, IProbeReportPort[]> byLocation = new HashMap<> ();
+                for (String location : e.getValue ()) {
+                    if (!"*".equals (location)) {
+                        byLocation.put (location, callbacks (type, location));
+                    }
+                }
+                // No port names the other locations, so only wildcard subscriptions apply to them
+                routes.put (type, new Routes (byLocation, callbacks (type, null)));
+            }
+            m_routes = routes;
+        }
+    }
+
+    private IProbeReportPort[] callbacks (String type, String location) {
+        List<IProbeReportPort> callbacks = new ArrayList<> ();
+        for (ESEBProbeReportSubscriberPort port : m_ports) {
+            if (location == null ? port.subscribedToAnyLocation (type) : port.subscribedToProbe (type, location)) {
+                callbacks.add (port.callback ());
+            }
+        }
+        return callbacks.isEmpty () ? NONE : callbacks.toArray (new IProbeReportPort[callbacks.size ()]);
+    }
+
+    /**
+     * @return the callbacks subscribed to reports from probes of a type at a location
+     */
+    IProbeReportPort[] route (String type, String location) {
+        Routes routes = m_routes.get (type);
+        if (routes == null) return NONE;
+        IProbeReportPort[] callbacks = routes.m_byLocation.get (location);
+        return callbacks == null ? routes.m_anyLocation : callbacks;
+    }
+
+    void dispatch (RainbowESEBMessage msg) {
+        MapDataValue map = msg.getDataValue ();
+        String type = string (map, ESEBConstants.MSG_TYPE_KEY);
+        if (ESEBConstants.MSG_TYPE_PROBE_REPORT.equals (type)) {
+            String probeType = string (map, ESEBConstants.MSG_PROBE_TYPE_KEY);
+            String probeLocation = string (map, ESEBConstants.MSG_PROBE_LOCATION_KEY);
+            IProbeReportPort[] callbacks = route (probeType, probeLocation);
+            if (callbacks.length == 0) return;
+            IProbeIdentifier probe = new ReportingProbe (string (map, ESEBConstants.MSG_PROBE_ID_KEY), probeType,
+                    probeLocation);
+            String data = string (map, ESEBConstants.MSG_DATA_KEY);
+            for (IProbeReportPort callback : callbacks) {
+                callback.reportData (probe, data);
+            }
+        }
+        else if (ESEBConstants.MSG_TYPE_PROBE_REPORT_BATCH.equals (type)) {
+            ProbeReportFrame frame = ProbeReportFrame.readFrom (msg);
+            if (frame == null) {
+                LOGGER.error ("Received a malformed probe report frame");
+                return;
+            }
+            dispatch (frame);
+        }
+    }
+
+    /**
+     * Delivers the reports in a frame, all the reports of each probe in one call
+     */
+    void dispatch (ProbeReportFrame frame) {
+        int probes = frame.probeCount ();
+        IProbeReportPort[][] callbacks = new IProbeReportPort[probes][];
+        List<List<String>> data = new ArrayList<> (probes);
+        boolean any = false;
+        for (int p = 0; p < probes; p++) {
+            callbacks[p] = route (frame.probeType (p), frame.probeLocation (p));
+            any |= callbacks[p].length > 0;
+            data.add (callbacks[p].length == 0 ? null : new ArrayList<String> ());
+        }
+        if (!any) return;
+        for (int r = 0; r < frame.size (); r++) {
+            List<String> d = data.get (frame.probe (r));
+            if (d != null) {
+                d.add (frame.data (r));
+            }
+        }
+        for (int p = 0; p < probes; p++) {
+            if (callbacks[p].length == 0) {
+                continue;
+            }
+            IProbeIdentifier probe = new ReportingProbe (frame.probeId (p), frame.probeType (p),
+                    frame.probeLocation (p));
+            List<String> d = Collections.unmodifiableList (data.get (p));
+            for (IProbeReportPort callback : callbacks[p]) {
+                callback.reportData (probe, d);
+            }
+        }
+    }
+
+    private static String string (MapDataValue map, String key) {
+        DataValue dv = map.get (STRING.make (key));
+        return dv instanceof StringValue ? ((StringValue )dv).value () : null;
+    }
+}
@@ -26,36 +26,38 @@ package org.sa.rainbow.core.ports.eseb;
 
 import org.sa.rainbow.core.ports.IProbeReportPort;
 import org.sa.rainbow.core.ports.IProbeReportSubscriberPort;
-import org.sa.rainbow.core.ports.eseb.ESEBConnector.ChannelT;
-import org.sa.rainbow.core.ports.eseb.ESEBConnector.IESEBListener;
-import org.sa.rainbow.translator.probes.IProbeIdentifier;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
-public class ESEBProbeReportSubscriberPort extends AbstractESEBDisposablePort implements IProbeReportSubscriberPort {
+/**
+ * Subscribes a gauge to probe reports. The reports are received by the ESEBProbeReportDispatcher shared by all the
+ * ports in the process, which calls back the ports that are subscribed to each report.
+ */
+public class ESEBProbeReportSubscriberPort implements IProbeReportSubscriberPort {
 
     private IProbeReportPort m_callback;
     private final Map<String, Set<String>> m_subscriptions = new HashMap<> ();
+    private ESEBProbeReportDispatcher      m_dispatcher;
 
     public ESEBProbeReportSubscriberPort (IProbeReportPort callback) throws IOException {
-        super (ESEBProvider.getESEBClientHost (), ESEBProvider.getESEBClientPort (), ChannelT.SYSTEM_US);
         m_callback = callback;
-        getConnectionRole().addListener (new IESEBListener () {
-
-            @Override
-            public void receive (RainbowESEBMessage msg) {
-                processMessage (msg);
-            }
-        });
+        m_dispatcher = ESEBProbeReportDispatcher.attach (this);
     }
 
     // Should only be used for testing
     ESEBProbeReportSubscriberPort () throws IOException {
-        super (null, (short )-1, null);
+    }
+
+    // Should only be used for testing
+    ESEBProbeReportSubscriberPort (IProbeReportPort callback, ESEBProbeReportDispatcher dispatcher) {
+        m_callback = callback;
+        m_dispatcher = dispatcher;
+        dispatcher.add (this);
     }
 
     @Override
@@ -80,6 +82,7 @@ public class ESEBProbeReportSubscriberPort extends AbstractESEBDisposablePort im
                 }
             }
         }
+        subscriptionsChanged ();
     }
 
     @Override
@@ -98,43 +101,12 @@ public class ESEBProbeReportSubscriberPort extends AbstractESEBDisposablePort im
                 }
             }
         }
+        subscriptionsChanged ();
     }
 
-    private void processMessage (final RainbowESEBMessage msg) {
-        String type = (String )msg.getProperty (ESEBConstants.MSG_TYPE_KEY);
-        if (ESEBConstants.MSG_TYPE_PROBE_REPORT.equals (type)) {
-            final String probeType = (String )msg.getProperty (ESEBConstants.MSG_PROBE_TYPE_KEY);
-            final String probeLocation = (String )msg.getProperty (ESEBConstants.MSG_PROBE_LOCATION_KEY);
-            boolean subscribedToMessage = subscribedToProbe (probeType, probeLocation);
-            if (subscribedToMessage) {
-                m_callback.reportData (new IProbeIdentifier () {
-
-
-                    @Override
-                    public String id () {
-                        return (String )msg.getProperty (ESEBConstants.MSG_PROBE_ID_KEY);
-                    }
-
-
-                    @Override
-                    public String type () {
-                        return probeType;
-                    }
-
-
-                    @Override
-                    public String name () {
-                        return id ();
-                    }
-
-
-                    @Override
-                    public String location () {
-                        return probeLocation;
-                    }
-
-                }, (String )msg.getProperty (ESEBConstants.MSG_DATA_KEY));
-            }
+    private void subscriptionsChanged () {
+        if (m_dispatcher != null) {
+            m_dispatcher.subscriptionsChanged ();
         }
     }
 
@@ -154,4 +126,39 @@ public class ESEBProbeReportSubscriberPort extends AbstractESEBDisposablePort im
         return subscribed;
     }
 
+    /**
+     * @return whether this port is subscribed to probes of a type at locations it does not name
+     */
+    boolean subscribedToAnyLocation (String probeType) {
+        synchronized (m_subscriptions) {
+            Set<String> locations = m_subscriptions.get (probeType);
+            return locations != null && locations.contains ("*");
+        }
+    }
+
+    /**
+     * @return a copy of the subscriptions: the locations of interest for each probe type, where "*" means all
+     *         locations except the others listed
+     */
+    Map<String, Set<String>> subscriptions () {
+        synchronized (m_subscriptions) {
+            Map<String, Set<String>> copy = new HashMap<> ();
+            for (Entry<String, Set<String>> e : m_subscriptions.entrySet ()) {
+                copy.put (e.getKey (), new HashSet<> (e.getValue ()));
+            }
+            return copy;
+        }
+    }
+
+    IProbeReportPort callback () {
+        return m_callback;
+    }
+
+    @Override
+    public void dispose () {
+        if (m_dispatcher == null) return;
+        ESEBProbeReportDispatcher.detach (m_dispatcher, this);
+        m_dispatcher = null;
+    }
+
 }
@@ -31,20 +31,32 @@ import org.sa.rainbow.translator.probes.IProbeIdentifier;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.List;
 
+/**
+ * Publishes the reports of a probe on SYSTEM_US. Reports are sent as they are made, several lines reported together
+ * going in one ProbeReportFrame, unless rainbow.probe.report.batch is set, in which case the reports of all the probes
+ * in the process are collected by the ESEBProbeReportBatcher and sent together.
+ */
 public class ESEBProbeReportingPortSender extends AbstractESEBDisposablePort implements IProbeReportPort {
     private static final Logger LOGGER = Logger.getLogger (ESEBProbeReportingPortSender.class);
     private Identifiable  m_sender;
+    private final ESEBProbeReportBatcher m_batcher;
 
     public ESEBProbeReportingPortSender (Identifiable probe) throws IOException {
         super (ESEBProvider.getESEBClientHost (), ESEBProvider.getESEBClientPort (), ChannelT.SYSTEM_US);
         m_sender = probe;
-
+        m_batcher = ESEBProbeReportBatcher.instance ();
     }
 
     @Override
     public void reportData (IProbeIdentifier probe, String data) {
-        if (probe.id ().equals (m_sender.id ())) {
+        if (!checkSender (probe)) return;
+        if (m_batcher != null) {
+            m_batcher.add (probe, System.currentTimeMillis (), Collections.singletonList (data));
+        }
+        else {
             RainbowESEBMessage msg = getConnectionRole().createMessage ();
             msg.setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_PROBE_REPORT);
             msg.setProperty (ESEBConstants.MSG_PROBE_ID_KEY, m_sender.id ());
@@ -53,9 +65,33 @@ public class ESEBProbeReportingPortSender extends AbstractESEBDisposablePort imp
             msg.setProperty (ESEBConstants.MSG_DATA_KEY, data);
             getConnectionRole().publish (msg);
         }
+    }
+
+    @Override
+    public void reportData (IProbeIdentifier probe, List<String> data) {
+        if (data.isEmpty () || !checkSender (probe)) return;
+        long now = System.currentTimeMillis ();
+        if (m_batcher != null) {
+            m_batcher.add (probe, now, data);
+        }
+        else if (data.size () == 1) {
+            reportData (probe, data.get (0));
+        }
         else {
-            LOGGER.error (MessageFormat.format ("Attempt to send a report on {0}''s reporting port by {1}", m_sender.id (), probe.id ()));
+            ProbeReportFrame frame = new ProbeReportFrame ();
+            for (String line : data) {
+                frame.add (m_sender.id (), probe.type (), probe.location (), now, line);
+            }
+            RainbowESEBMessage msg = getConnectionRole().createMessage ();
+            frame.writeTo (msg);
+            getConnectionRole().publish (msg);
         }
     }
 
+    private boolean checkSender (IProbeIdentifier probe) {
+        if (probe.id ().equals (m_sender.id ())) return true;
+        LOGGER.error (MessageFormat.format ("Attempt to send a report on {0}''s reporting port by {1}", m_sender.id (), probe.id ()));
+        return false;
+    }
+
 }
@@ -24,15 +24,19 @@
 package org.sa.rainbow.core.ports.eseb;
 
 import edu.cmu.cs.able.eseb.bus.EventBus;
+import edu.cmu.cs.able.eseb.bus.EventBusIoMode;
 import edu.cmu.cs.able.eseb.conn.BusConnection;
 import edu.cmu.cs.able.eseb.conn.BusConnectionState;
 import edu.cmu.cs.able.parsec.LocalizedParseException;
 import edu.cmu.cs.able.parsec.ParsecFileReader;
+import edu.cmu.cs.able.typelib.binenc.BinaryEncoding;
+import edu.cmu.cs.able.typelib.enc.DataValueEncoding;
 import edu.cmu.cs.able.typelib.jconv.DefaultTypelibJavaConverter;
 import edu.cmu.cs.able.typelib.jconv.TypelibJavaConversionRule;
 import edu.cmu.cs.able.typelib.parser.DefaultTypelibParser;
 import edu.cmu.cs.able.typelib.parser.TypelibParsingContext;
 import edu.cmu.cs.able.typelib.prim.PrimitiveScope;
+import edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding;
 import org.sa.rainbow.core.Rainbow;
 import org.sa.rainbow.core.RainbowConstants;
 import org.sa.rainbow.core.ports.eseb.converters.*;
@@ -69,7 +73,7 @@ public class ESEBProvider {
         if (s == null || s.closed ()) {
             ESEBConnector.LOGGER.debug (MessageFormat.format ("Constructing a new BusServer on port {0}", port));
             try {
-                s = new EventBus (port, ESEBProvider.SCOPE);
+                s = new EventBus (port, ESEBProvider.SCOPE, getEncoding (), getBusMode ());
                 s_servers.put (port, s);
                 s.start ();
             }
@@ -79,6 +83,37 @@ public class ESEBProvider {
         }
         return s;
     }
+    /**
+     * Return the I/O mode to use for bus servers, as set by {@link RainbowConstants#PROPKEY_ESEB_BUS_MODE}
+     * 
+     * @return the configured mode, or {@link EventBusIoMode#BLOCKING} if none or an unknown one is configured
+     */
+    static EventBusIoMode getBusMode () {
+        String mode = Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_ESEB_BUS_MODE);
+        if (mode == null) return EventBusIoMode.BLOCKING;
+        try {
+            return EventBusIoMode.valueOf (mode.trim ().toUpperCase ());
+        }
+        catch (IllegalArgumentException e) {
+            ESEBConnector.LOGGER.warn (MessageFormat.format ("Unknown event bus mode ''{0}'', using blocking I/O", mode));
+            return EventBusIoMode.BLOCKING;
+        }
+    }
+
+    /**
+     * Return the encoding of values used by bus servers and clients, as set by
+     * {@link RainbowConstants#PROPKEY_ESEB_ENCODING}
+     * 
+     * @return a new binary encoding if configured, a new default text encoding otherwise
+     */
+    static DataValueEncoding getEncoding () {
+        String encoding = Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_ESEB_ENCODING);
+        if (encoding == null || encoding.trim ().equals ("text")) return new DefaultTextEncoding (SCOPE);
+        if (encoding.trim ().equals ("binary")) return new BinaryEncoding (SCOPE);
+        ESEBConnector.LOGGER.warn (MessageFormat.format ("Unknown ESEB encoding ''{0}'', using text encoding", encoding));
+        return new DefaultTextEncoding (SCOPE);
+    }
+
     /**
      * Return the cached BusClient for this host:port combination, or create a new one if it doesn't yet exist
      * 
@@ -95,7 +130,7 @@ public class ESEBProvider {
         BusConnection c = s_clients.get (key);
         if (c == null || c.state () == BusConnectionState.DISCONNECTED) {
             ESEBConnector.LOGGER.debug (MessageFormat.format ("Constructing a new BusClient on {0}", key));
-            c = new BusConnection (remoteHost, remotePort, ESEBProvider.SCOPE);
+            c = new BusConnection (remoteHost, remotePort, ESEBProvider.SCOPE, getEncoding ());
             s_clients.put (key, c);
             c.start ();
         }
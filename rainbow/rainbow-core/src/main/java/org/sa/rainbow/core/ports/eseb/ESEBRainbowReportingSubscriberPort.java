@@ -31,11 +31,18 @@ import org.sa.rainbow.core.ports.eseb.ESEBConnector.IESEBListener;
 
 import java.io.IOException;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
 
+/**
+ * Receives UI reports. The components and report types subscribed to are announced on the UIREPORT channel, so that
+ * publishers (see ESEBUIReportPublisher) do not build reports that no subscriber wants.
+ */
 public class ESEBRainbowReportingSubscriberPort extends AbstractESEBDisposablePort implements
 IRainbowReportingSubscriberPort {
 
     private IRainbowReportingSubscriberCallback m_reportTo;
+    private final String m_id = UUID.randomUUID ().toString ();
     private final EnumSet<RainbowComponentT> m_components = EnumSet.noneOf (RainbowComponentT.class);
     private final EnumSet<ReportType> m_reports = EnumSet.noneOf (ReportType.class);
 
@@ -46,49 +53,104 @@ IRainbowReportingSubscriberPort {
 
             @Override
             public void receive (RainbowESEBMessage msg) {
-                if (msg.getProperty (ESEBConstants.MSG_CHANNEL_KEY).equals (ChannelT.UIREPORT.name ())) {
-                    String componentStr = (String )msg.getProperty (ESEBConstants.COMPONENT_TYPE_KEY);
-                    String reportTypeStr = (String )msg.getProperty (ESEBConstants.REPORT_TYPE_KEY);
-                    RainbowComponentT component = RainbowComponentT.DELEGATE;
-                    try {
-                        component = RainbowComponentT.valueOf (componentStr);
-                    }
-                    catch (Exception e) {
-                    }
-                    ReportType reportType = ReportType.INFO;
-                    try {
-                        reportType = ReportType.valueOf (reportTypeStr);
-                    }
-                    catch (Exception e) {
-                    }
-                    if (m_reports.contains (reportType) && m_components.contains (component)) {
-                        m_reportTo.report (component, reportType,
-                                (String )msg.getProperty (ESEBConstants.REPORT_MSG_KEY));
+                String type = (String )msg.getProperty (ESEBConstants.MSG_TYPE_KEY);
+                if (ESEBConstants.MSG_TYPE_UI_REPORT_INTEREST_QUERY.equals (type)) {
+                    announce ();
+                }
+                else if (ESEBConstants.MSG_TYPE_BATCH.equals (type)) {
+                    List<RainbowESEBMessage> batch = msg.getBatchedMessages ();
+                    if (batch == null) return;
+                    for (RainbowESEBMessage report : batch) {
+                        deliver (report);
                     }
-
+                }
+                else if (ESEBConstants.MSG_TYPE_UI_REPORT.equals (type)) {
+                    deliver (msg);
                 }
             }
         });
     }
 
+    private void deliver (RainbowESEBMessage msg) {
+        String componentStr = (String )msg.getProperty (ESEBConstants.COMPONENT_TYPE_KEY);
+        String reportTypeStr = (String )msg.getProperty (ESEBConstants.REPORT_TYPE_KEY);
+        RainbowComponentT component = RainbowComponentT.DELEGATE;
+        try {
+            component = RainbowComponentT.valueOf (componentStr);
+        }
+        catch (Exception e) {
+        }
+        ReportType reportType = ReportType.INFO;
+        try {
+            reportType = ReportType.valueOf (reportTypeStr);
+        }
+        catch (Exception e) {
+        }
+        synchronized (m_components) {
+            if (!m_reports.contains (reportType) || !m_components.contains (component)) return;
+        }
+        m_reportTo.report (component, reportType, (String )msg.getProperty (ESEBConstants.REPORT_MSG_KEY));
+    }
+
+    /**
+     * Tells the publishers what this port is subscribed to
+     */
+    private void announce () {
+        StringBuilder components = new StringBuilder ();
+        StringBuilder reports = new StringBuilder ();
+        synchronized (m_components) {
+            for (RainbowComponentT c : m_components) {
+                if (components.length () > 0) components.append (',');
+                components.append (c.name ());
+            }
+            for (ReportType r : m_reports) {
+                if (reports.length () > 0) reports.append (',');
+                reports.append (r.name ());
+            }
+        }
+        if (getConnectionRole () == null) return;
+        RainbowESEBMessage msg = getConnectionRole ().createMessage ();
+        msg.setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_UI_REPORT_INTEREST);
+        msg.setProperty (ESEBConstants.REPORT_SUBSCRIBER_KEY, m_id);
+        msg.setProperty (ESEBConstants.REPORT_COMPONENTS_KEY, components.toString ());
+        msg.setProperty (ESEBConstants.REPORT_TYPES_KEY, reports.toString ());
+        getConnectionRole ().publish (msg);
+    }
+
     @Override
     public void subscribe (EnumSet<RainbowComponentT> components, EnumSet<ReportType> reports) {
-        if (components != null) {
-            m_components.addAll (components);
-        }
-        if (reports != null) {
-            m_reports.addAll (reports);
+        synchronized (m_components) {
+            if (components != null) {
+                m_components.addAll (components);
+            }
+            if (reports != null) {
+                m_reports.addAll (reports);
+            }
         }
+        announce ();
     }
 
     @Override
     public void unsubscribe (EnumSet<RainbowComponentT> components, EnumSet<ReportType> reports) {
-        if (components != null) {
-            m_components.removeAll (components);
+        synchronized (m_components) {
+            if (components != null) {
+                m_components.removeAll (components);
+            }
+            if (reports != null) {
+                m_reports.removeAll (reports);
+            }
         }
-        if (reports != null) {
-            m_reports.removeAll (reports);
+        announce ();
+    }
+
+    @Override
+    public void dispose () {
+        synchronized (m_components) {
+            m_components.clear ();
+            m_reports.clear ();
         }
+        announce ();
+        super.dispose ();
     }
 
 }
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.ports.eseb;
+
+import org.sa.rainbow.core.error.RainbowConnectionException;
+import org.sa.rainbow.core.ports.eseb.ESEBConnector.IESEBListener;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending reply to a request sent with {@link ESEBConnector#sendRequest(RainbowESEBMessage, IESEBListener, long)}.
+ * The future completes when the reply arrives, or fails with a {@link RainbowConnectionException} if no reply arrives
+ * before the request's timeout expires. If a listener was given with the request, it is called with the reply before
+ * the future completes.
+ */
+public class ESEBReplyFuture implements Future<RainbowESEBMessage> {
+
+    private final IESEBListener m_listener;
+
+    /**
+     * Set when the outcome of the future is decided, which is before a reply is passed to the listener
+     */
+    private boolean m_settled = false;
+    /**
+     * Set when the outcome is visible to callers of get, which is after the listener has been called
+     */
+    private boolean m_done = false;
+    private boolean m_cancelled = false;
+    private RainbowESEBMessage m_reply;
+    private Exception          m_failure;
+
+    /**
+     * @param listener the listener to call with the reply; may be null
+     */
+    ESEBReplyFuture (IESEBListener listener) {
+        m_listener = listener;
+    }
+
+    /**
+     * Completes the future with a reply, calling the listener first.
+     *
+     * @param reply the reply
+     * @return false if the future had already completed
+     */
+    boolean complete (RainbowESEBMessage reply) {
+        IESEBListener listener;
+        synchronized (this) {
+            if (m_settled) return false;
+            m_settled = true;
+            m_reply = reply;
+            listener = m_listener;
+        }
+        try {
+            if (listener != null) {
+                listener.receive (reply);
+            }
+        }
+        finally {
+            synchronized (this) {
+                m_done = true;
+                notifyAll ();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Completes the future with a failure.
+     *
+     * @param failure why no reply was received
+     * @return false if the future had already completed
+     */
+    synchronized boolean fail (Exception failure) {
+        if (m_settled) return false;
+        m_failure = failure;
+        m_settled = true;
+        m_done = true;
+        notifyAll ();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean cancel (boolean mayInterruptIfRunning) {
+        if (m_settled) return false;
+        m_cancelled = true;
+        m_settled = true;
+        m_done = true;
+        notifyAll ();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled () {
+        return m_cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone () {
+        return m_done;
+    }
+
+    @Override
+    public synchronized RainbowESEBMessage get () throws InterruptedException, ExecutionException {
+        while (!m_done) {
+            wait ();
+        }
+        return result ();
+    }
+
+    @Override
+    public synchronized RainbowESEBMessage get (long timeout, TimeUnit unit) throws InterruptedException,
+    ExecutionException, TimeoutException {
+        long deadline = System.nanoTime () + unit.toNanos (timeout);
+        while (!m_done) {
+            long remaining = deadline - System.nanoTime ();
+            if (remaining <= 0) throw new TimeoutException ();
+            TimeUnit.NANOSECONDS.timedWait (this, remaining);
+        }
+        return result ();
+    }
+
+    private RainbowESEBMessage result () throws ExecutionException {
+        if (m_cancelled) throw new CancellationException ();
+        if (m_failure != null) throw new ExecutionException (m_failure);
+        return m_reply;
+    }
+}
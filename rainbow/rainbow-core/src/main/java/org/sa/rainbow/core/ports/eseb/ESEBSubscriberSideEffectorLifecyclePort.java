@@ -106,7 +106,9 @@ IEffectorLifecycleBusPort {
                     }
                     catch (Exception e) {
                     }
-                    reportExecuted (mei, outcome, args);
+                    Object latency = msg.getProperty (IEffectorProtocol.LATENCY);
+                    reportExecuted (mei, (String )msg.getProperty (IEffectorProtocol.EXECUTION_ID), outcome, args,
+                            latency instanceof Number ? ((Number )latency).longValue () : -1);
                 }
             }
         });
@@ -123,8 +125,9 @@ IEffectorLifecycleBusPort {
     }
 
     @Override
-    public void reportExecuted (IEffectorIdentifier effector, Outcome outcome, List<String> args) {
-        m_delegate.reportExecuted (effector, outcome, args);
+    public void reportExecuted (IEffectorIdentifier effector, String executionId, Outcome outcome, List<String> args,
+            long latency) {
+        m_delegate.reportExecuted (effector, executionId, outcome, args, latency);
     }
 
 }
@@ -0,0 +1,330 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.ports.eseb;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.sa.rainbow.core.Rainbow;
+import org.sa.rainbow.core.RainbowComponentT;
+import org.sa.rainbow.core.RainbowConstants;
+import org.sa.rainbow.core.ports.IMasterConnectionPort.ReportType;
+import org.sa.rainbow.core.ports.eseb.ESEBConnector.IESEBListener;
+
+/**
+ * Publishes UI reports on the UIREPORT channel for a reporting port.
+ * <p>
+ * Subscribers announce the components and report types they want (MSG_TYPE_UI_REPORT_INTEREST), and the publisher
+ * drops any report nobody wants before building a message for it. When it starts, the publisher asks the subscribers
+ * to announce themselves again, so it does not miss subscribers that started first.
+ * <p>
+ * The reports that are wanted are collected and published every {@link RainbowConstants#PROPKEY_UI_REPORT_WINDOW}
+ * milliseconds, in one batch message. A report repeated within a window is sent once, with the number of repeats.
+ * At most {@link RainbowConstants#PROPKEY_UI_REPORT_LIMIT} distinct reports are sent per window; the others are
+ * counted, and a warning says how many were dropped.
+ */
+public class ESEBUIReportPublisher {
+
+    public static final long DEFAULT_WINDOW = 250;
+    public static final int  DEFAULT_LIMIT  = 50;
+
+    private static final ScheduledExecutorService FLUSHER = Executors
+            .newSingleThreadScheduledExecutor (new ThreadFactory () {
+
+                @Override
+                public Thread newThread (Runnable r) {
+                    Thread t = new Thread (r, "UI Report Publisher");
+                    t.setDaemon (true);
+                    return t;
+                }
+            });
+
+    /**
+     * A report waiting to be published
+     */
+    private static class Pending {
+        final String            m_delegate;
+        final ReportType        m_type;
+        final RainbowComponentT m_component;
+        final String            m_message;
+        String                  m_additionalInfo;
+        int                     m_count = 1;
+
+        Pending (String delegate, ReportType type, RainbowComponentT component, String message) {
+            m_delegate = delegate;
+            m_type = type;
+            m_component = component;
+            m_message = message;
+        }
+
+        @Override
+        public boolean equals (Object o) {
+            if (!(o instanceof Pending)) return false;
+            Pending p = (Pending )o;
+            return m_type == p.m_type && m_component == p.m_component && m_delegate.equals (p.m_delegate)
+                    && m_message.equals (p.m_message);
+        }
+
+        @Override
+        public int hashCode () {
+            return (m_delegate.hashCode () * 31 + m_message.hashCode ()) * 31 + m_component.hashCode () * 7
+                    + m_type.hashCode ();
+        }
+    }
+
+    private final ESEBConnector                                   m_connector;
+    private final long                                            m_window;
+    private final int                                             m_limit;
+    /** The components and report types wanted by each subscriber **/
+    private final Map<String, Map<RainbowComponentT, EnumSet<ReportType>>> m_interests = new HashMap<> ();
+    /** The report types wanted by any subscriber, by component **/
+    private volatile Map<RainbowComponentT, EnumSet<ReportType>> m_wanted = new EnumMap<> (RainbowComponentT.class);
+
+    private final Map<Pending, Pending> m_pending        = new LinkedHashMap<> ();
+    private int                         m_dropped        = 0;
+    private boolean                     m_flushScheduled = false;
+    private volatile boolean            m_closed         = false;
+
+    private final Runnable m_flush = new Runnable () {
+
+        @Override
+        public void run () {
+            flush ();
+        }
+    };
+
+    /**
+     * @param connector
+     *            a connector on the UIREPORT channel
+     */
+    public ESEBUIReportPublisher (ESEBConnector connector) {
+        this (connector, longProperty (RainbowConstants.PROPKEY_UI_REPORT_WINDOW, DEFAULT_WINDOW),
+                (int )longProperty (RainbowConstants.PROPKEY_UI_REPORT_LIMIT, DEFAULT_LIMIT));
+    }
+
+    ESEBUIReportPublisher (ESEBConnector connector, long window, int limit) {
+        m_connector = connector;
+        m_window = window;
+        m_limit = limit;
+        if (m_connector != null) {
+            m_connector.addListener (new IESEBListener () {
+
+                @Override
+                public void receive (RainbowESEBMessage msg) {
+                    if (ESEBConstants.MSG_TYPE_UI_REPORT_INTEREST.equals (msg.getProperty (ESEBConstants.MSG_TYPE_KEY))) {
+                        interestAnnounced ((String )msg.getProperty (ESEBConstants.REPORT_SUBSCRIBER_KEY),
+                                (String )msg.getProperty (ESEBConstants.REPORT_COMPONENTS_KEY),
+                                (String )msg.getProperty (ESEBConstants.REPORT_TYPES_KEY));
+                    }
+                }
+            });
+            RainbowESEBMessage query = m_connector.createMessage ();
+            query.setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_UI_REPORT_INTEREST_QUERY);
+            m_connector.publish (query);
+        }
+    }
+
+    private static long longProperty (String key, long defaultValue) {
+        String value = Rainbow.instance ().getProperty (key);
+        if (value != null) {
+            try {
+                return Long.parseLong (value.trim ());
+            }
+            catch (NumberFormatException e) {
+                ESEBConnector.LOGGER.warn (MessageFormat.format ("Ignoring invalid value of {0}: {1}", key, value));
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Records what a subscriber wants. A subscriber that wants no components or no report types is forgotten.
+     *
+     * @param subscriber
+     *            the id of the subscriber
+     * @param components
+     *            comma separated names of RainbowComponentT
+     * @param types
+     *            comma separated names of ReportType
+     */
+    void interestAnnounced (String subscriber, String components, String types) {
+        if (subscriber == null) return;
+        EnumSet<ReportType> reportTypes = EnumSet.noneOf (ReportType.class);
+        for (String t : split (types)) {
+            try {
+                reportTypes.add (ReportType.valueOf (t));
+            }
+            catch (IllegalArgumentException e) {
+            }
+        }
+        Map<RainbowComponentT, EnumSet<ReportType>> interest = new EnumMap<> (RainbowComponentT.class);
+        if (!reportTypes.isEmpty ()) {
+            for (String c : split (components)) {
+                try {
+                    interest.put (RainbowComponentT.valueOf (c), reportTypes);
+                }
+                catch (IllegalArgumentException e) {
+                }
+            }
+        }
+        synchronized (m_interests) {
+            if (interest.isEmpty ()) {
+                m_interests.remove (subscriber);
+            }
+            else {
+                m_interests.put (subscriber, interest);
+            }
+            Map<RainbowComponentT, EnumSet<ReportType>> wanted = new EnumMap<> (RainbowComponentT.class);
+            for (Map<RainbowComponentT, EnumSet<ReportType>> i : m_interests.values ()) {
+                for (Entry<RainbowComponentT, EnumSet<ReportType>> e : i.entrySet ()) {
+                    EnumSet<ReportType> w = wanted.get (e.getKey ());
+                    if (w == null) {
+                        wanted.put (e.getKey (), EnumSet.copyOf (e.getValue ()));
+                    }
+                    else {
+                        w.addAll (e.getValue ());
+                    }
+                }
+            }
+            m_wanted = wanted;
+        }
+    }
+
+    private static String[] split (String list) {
+        return list == null || list.isEmpty () ? new String[0] : list.split (",");
+    }
+
+    /**
+     * @return whether any subscriber wants reports of a type from a component
+     */
+    public boolean isReported (RainbowComponentT component, ReportType type) {
+        EnumSet<ReportType> wanted = m_wanted.get (component);
+        return wanted != null && wanted.contains (type);
+    }
+
+    /**
+     * Queues a report to be published, if anybody wants it
+     *
+     * @param additionalInfo
+     *            more detail, such as a stack trace, or null
+     */
+    public void report (String delegateId, ReportType type, RainbowComponentT component, String message,
+            String additionalInfo) {
+        if (m_closed || !isReported (component, type)) return;
+        Pending p = new Pending (delegateId, type, component, message == null ? "" : message);
+        p.m_additionalInfo = additionalInfo;
+        synchronized (m_pending) {
+            Pending existing = m_pending.get (p);
+            if (existing != null) {
+                existing.m_count++;
+                existing.m_additionalInfo = additionalInfo;
+            }
+            else if (m_pending.size () >= m_limit) {
+                m_dropped++;
+            }
+            else {
+                m_pending.put (p, p);
+            }
+            if (!m_flushScheduled) {
+                m_flushScheduled = true;
+                FLUSHER.schedule (m_flush, m_window, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Publishes the reports queued so far
+     */
+    void flush () {
+        List<RainbowESEBMessage> messages = drain ();
+        if (messages.isEmpty () || m_connector == null || m_closed) return;
+        if (messages.size () == 1) {
+            m_connector.publish (messages.get (0));
+        }
+        else {
+            RainbowESEBMessage batch = m_connector.createMessage ();
+            batch.setBatchedMessages (messages);
+            m_connector.publish (batch);
+        }
+    }
+
+    /**
+     * @return the messages for the reports queued so far, which are removed from the queue
+     */
+    List<RainbowESEBMessage> drain () {
+        List<Pending> reports;
+        int dropped;
+        synchronized (m_pending) {
+            m_flushScheduled = false;
+            reports = new ArrayList<> (m_pending.values ());
+            dropped = m_dropped;
+            m_pending.clear ();
+            m_dropped = 0;
+        }
+        if (dropped > 0) {
+            reports.add (new Pending (reports.isEmpty () ? "" : reports.get (0).m_delegate, ReportType.WARNING, RainbowComponentT.MASTER,
+                    MessageFormat.format ("{0} reports were dropped because more than {1} were made in {2} ms",
+                            dropped, m_limit, m_window)));
+        }
+        List<RainbowESEBMessage> messages = new ArrayList<> (reports.size ());
+        for (Pending p : reports) {
+            messages.add (toMessage (p));
+        }
+        return messages;
+    }
+
+    private static RainbowESEBMessage toMessage (Pending p) {
+        RainbowESEBMessage msg = new RainbowESEBMessage ();
+        msg.setProperty (ESEBConstants.MSG_CHANNEL_KEY, ESEBConnector.ChannelT.UIREPORT.name ());
+        msg.setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_UI_REPORT);
+        msg.setProperty (ESEBConstants.COMPONENT_TYPE_KEY, p.m_component.name ());
+        msg.setProperty (ESEBConstants.REPORT_TYPE_KEY, p.m_type.name ());
+        msg.setProperty (ESEBConstants.REPORT_MSG_KEY, p.m_count == 1 ? p.m_message
+                : MessageFormat.format ("{0} (repeated {1} times)", p.m_message, p.m_count));
+        msg.setProperty (ESEBConstants.MSG_DELEGATE_ID_KEY, p.m_delegate);
+        if (p.m_additionalInfo != null) {
+            msg.setProperty (ESEBConstants.REPORT_MSG_ADDITIONAL_INFO, p.m_additionalInfo);
+        }
+        return msg;
+    }
+
+    /**
+     * Publishes the queued reports, and stops publishing. The connector is not closed.
+     */
+    public void close () {
+        flush ();
+        m_closed = true;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.ports.eseb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sa.rainbow.translator.probes.IProbeIdentifier;
+
+import edu.cmu.cs.able.typelib.comp.ListDataType;
+import edu.cmu.cs.able.typelib.comp.ListDataValue;
+import edu.cmu.cs.able.typelib.comp.MapDataValue;
+import edu.cmu.cs.able.typelib.prim.Int32Type;
+import edu.cmu.cs.able.typelib.prim.Int32Value;
+import edu.cmu.cs.able.typelib.prim.Int64Type;
+import edu.cmu.cs.able.typelib.prim.Int64Value;
+import edu.cmu.cs.able.typelib.prim.StringType;
+import edu.cmu.cs.able.typelib.prim.StringValue;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * A batch of probe reports, possibly from several probes, that is sent in a single message. The reports are kept in
+ * columns: each probe is described once, and each report is the index of its probe, the time it was made, and its
+ * data. The columns are put in the message as typelib lists directly, so building and reading a frame does not go
+ * through the Java converter for each report.
+ * <p>
+ * Typelib lists cannot hold nulls, so null strings are sent as empty strings. Frames are not thread safe.
+ */
+public class ProbeReportFrame {
+
+    private static final StringType   STRING          = ESEBProvider.SCOPE.string ();
+    private static final Int32Type    INT32           = ESEBProvider.SCOPE.int32 ();
+    private static final Int64Type    INT64           = ESEBProvider.SCOPE.int64 ();
+    private static final ListDataType LIST_OF_STRINGS = ListDataType.list_of (STRING, ESEBProvider.SCOPE);
+    private static final ListDataType LIST_OF_INT32   = ListDataType.list_of (INT32, ESEBProvider.SCOPE);
+    private static final ListDataType LIST_OF_INT64   = ListDataType.list_of (INT64, ESEBProvider.SCOPE);
+
+    private final List<String>         m_ids        = new ArrayList<> ();
+    private final List<String>         m_types      = new ArrayList<> ();
+    private final List<String>         m_locations  = new ArrayList<> ();
+    private final Map<String, Integer> m_probeIndex = new HashMap<> ();
+
+    private int[]              m_probes = new int[16];
+    private long[]             m_times  = new long[16];
+    private final List<String> m_data   = new ArrayList<> ();
+
+    /**
+     * Adds a report to the frame
+     *
+     * @param probe
+     *            the probe making the report
+     * @param time
+     *            when the report was made, in milliseconds since the epoch
+     * @param data
+     *            the data reported
+     */
+    public void add (IProbeIdentifier probe, long time, String data) {
+        add (probe.id (), probe.type (), probe.location (), time, data);
+    }
+
+    public void add (String id, String type, String location, long time, String data) {
+        Integer probe = m_probeIndex.get (id);
+        if (probe == null) {
+            probe = m_ids.size ();
+            m_probeIndex.put (id, probe);
+            m_ids.add (id);
+            m_types.add (type);
+            m_locations.add (location);
+        }
+        int size = m_data.size ();
+        if (size == m_probes.length) {
+            m_probes = Arrays.copyOf (m_probes, size * 2);
+            m_times = Arrays.copyOf (m_times, size * 2);
+        }
+        m_probes[size] = probe;
+        m_times[size] = time;
+        m_data.add (data);
+    }
+
+    /**
+     * @return the number of reports in the frame
+     */
+    public int size () {
+        return m_data.size ();
+    }
+
+    public boolean isEmpty () {
+        return m_data.isEmpty ();
+    }
+
+    /**
+     * @return the number of probes that made the reports in the frame
+     */
+    public int probeCount () {
+        return m_ids.size ();
+    }
+
+    public String probeId (int probe) {
+        return m_ids.get (probe);
+    }
+
+    public String probeType (int probe) {
+        return m_types.get (probe);
+    }
+
+    public String probeLocation (int probe) {
+        return m_locations.get (probe);
+    }
+
+    /**
+     * @return the index of the probe that made a report
+     */
+    public int probe (int report) {
+        return m_probes[report];
+    }
+
+    public long time (int report) {
+        return m_times[report];
+    }
+
+    public String data (int report) {
+        return m_data.get (report);
+    }
+
+    /**
+     * Empties the frame, so that it can be reused
+     */
+    public void clear () {
+        m_ids.clear ();
+        m_types.clear ();
+        m_locations.clear ();
+        m_probeIndex.clear ();
+        m_data.clear ();
+    }
+
+    /**
+     * Writes the frame into a message, and makes it a MSG_TYPE_PROBE_REPORT_BATCH message
+     */
+    public void writeTo (RainbowESEBMessage msg) {
+        ListDataValue probes = LIST_OF_INT32.make ();
+        ListDataValue times = LIST_OF_INT64.make ();
+        for (int i = 0; i < m_data.size (); i++) {
+            probes.add (INT32.make (m_probes[i]));
+            times.add (INT64.make (m_times[i]));
+        }
+        msg.setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_PROBE_REPORT_BATCH);
+        MapDataValue map = msg.getDataValue ();
+        map.put (STRING.make (ESEBConstants.MSG_FRAME_PROBE_IDS_KEY), strings (m_ids));
+        map.put (STRING.make (ESEBConstants.MSG_FRAME_PROBE_TYPES_KEY), strings (m_types));
+        map.put (STRING.make (ESEBConstants.MSG_FRAME_PROBE_LOCATIONS_KEY), strings (m_locations));
+        map.put (STRING.make (ESEBConstants.MSG_FRAME_REPORT_PROBES_KEY), probes);
+        map.put (STRING.make (ESEBConstants.MSG_FRAME_REPORT_TIMES_KEY), times);
+        map.put (STRING.make (ESEBConstants.MSG_FRAME_REPORT_DATA_KEY), strings (m_data));
+    }
+
+    /**
+     * Reads the frame carried by a message
+     *
+     * @return the frame, or null if the message does not carry a (well formed) frame
+     */
+    public static ProbeReportFrame readFrom (RainbowESEBMessage msg) {
+        MapDataValue map = msg.getDataValue ();
+        ListDataValue ids = list (map, ESEBConstants.MSG_FRAME_PROBE_IDS_KEY);
+        ListDataValue types = list (map, ESEBConstants.MSG_FRAME_PROBE_TYPES_KEY);
+        ListDataValue locations = list (map, ESEBConstants.MSG_FRAME_PROBE_LOCATIONS_KEY);
+        ListDataValue probes = list (map, ESEBConstants.MSG_FRAME_REPORT_PROBES_KEY);
+        ListDataValue times = list (map, ESEBConstants.MSG_FRAME_REPORT_TIMES_KEY);
+        ListDataValue data = list (map, ESEBConstants.MSG_FRAME_REPORT_DATA_KEY);
+        if (ids == null || types == null || locations == null || probes == null || times == null || data == null
+                || types.size () != ids.size () || locations.size () != ids.size ()
+                || times.size () != probes.size () || data.size () != probes.size ())
+            return null;
+
+        ProbeReportFrame frame = new ProbeReportFrame ();
+        for (int i = 0; i < ids.size (); i++) {
+            String id = string (ids.get (i));
+            frame.m_probeIndex.put (id, i);
+            frame.m_ids.add (id);
+            frame.m_types.add (string (types.get (i)));
+            frame.m_locations.add (string (locations.get (i)));
+        }
+        int size = probes.size ();
+        frame.m_probes = new int[Math.max (size, 1)];
+        frame.m_times = new long[Math.max (size, 1)];
+        for (int i = 0; i < size; i++) {
+            int probe = ((Int32Value )probes.get (i)).value ();
+            if (probe < 0 || probe >= ids.size ()) return null;
+            frame.m_probes[i] = probe;
+            frame.m_times[i] = ((Int64Value )times.get (i)).value ();
+            frame.m_data.add (string (data.get (i)));
+        }
+        return frame;
+    }
+
+    private static ListDataValue strings (List<String> strings) {
+        ListDataValue list = LIST_OF_STRINGS.make ();
+        for (String s : strings) {
+            list.add (STRING.make (s == null ? "" : s));
+        }
+        return list;
+    }
+
+    private static ListDataValue list (MapDataValue map, String key) {
+        DataValue dv = map.get (STRING.make (key));
+        return dv instanceof ListDataValue ? (ListDataValue )dv : null;
+    }
+
+    private static String string (DataValue dv) {
+        return dv == null ? null : ((StringValue )dv).value ();
+    }
+}
@@ -23,6 +23,8 @@
  */
 package org.sa.rainbow.core.ports.eseb;
 
+import edu.cmu.cs.able.typelib.comp.ListDataType;
+import edu.cmu.cs.able.typelib.comp.ListDataValue;
 import edu.cmu.cs.able.typelib.comp.MapDataType;
 import edu.cmu.cs.able.typelib.comp.MapDataValue;
 import edu.cmu.cs.able.typelib.jconv.ValueConversionException;
@@ -39,6 +41,8 @@ import java.util.Map.Entry;
 public class RainbowESEBMessage implements IRainbowMessage {
     static final Logger LOGGER = Logger.getLogger (RainbowESEBMessage.class);
     protected static final MapDataType    MAP_STRING_TO_ANY = MapDataType.map_of (ESEBProvider.SCOPE.string (), ESEBProvider.SCOPE.any (), ESEBProvider.SCOPE);
+    /** The type used to carry the messages batched in a single message **/
+    protected static final ListDataType   LIST_OF_MESSAGES  = ListDataType.list_of (MAP_STRING_TO_ANY, ESEBProvider.SCOPE);
     /** The prefix that encodes properties in maps that are sent on the wire **/
     private static final String PROP_PREFIX = "__PROP_";
     private static final int    PROP_PREFIX_LENGTH = PROP_PREFIX.length ();
@@ -89,7 +93,7 @@ public class RainbowESEBMessage implements IRainbowMessage {
     @Override
     public void setProperty (String id, Object prop) throws RainbowException {
         try {
-            m_esebMap.put (ESEBProvider.CONVERTER.from_java (id, ESEBProvider.SCOPE.string ()), ESEBProvider.CONVERTER.from_java (prop, null));
+            m_esebMap.put (ESEBProvider.SCOPE.string ().make (id), ESEBProvider.CONVERTER.from_java (prop, null));
         }
         catch (ValueConversionException e) {
             // Should only happen on the prop
@@ -200,6 +204,37 @@ public class RainbowESEBMessage implements IRainbowMessage {
         return m_esebMap.contains (ESEBProvider.SCOPE.string ().make (key));
     }
 
+    /**
+     * Makes this message carry a list of messages, so that they can be published together. The message type is set
+     * to MSG_TYPE_BATCH.
+     *
+     * @param messages the messages to carry, in order
+     */
+    public void setBatchedMessages (List<RainbowESEBMessage> messages) {
+        ListDataValue list = LIST_OF_MESSAGES.make ();
+        for (RainbowESEBMessage msg : messages) {
+            list.add (msg.getDataValue ());
+        }
+        setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_BATCH);
+        m_esebMap.put (ESEBProvider.SCOPE.string ().make (ESEBConstants.MSG_BATCH_KEY), list);
+    }
+
+    /**
+     * @return the messages carried by this message, in order, or null if this is not a batch
+     */
+    public List<RainbowESEBMessage> getBatchedMessages () {
+        if (!ESEBConstants.MSG_TYPE_BATCH.equals (getProperty (ESEBConstants.MSG_TYPE_KEY))) return null;
+        DataValue dv = m_esebMap.get (ESEBProvider.SCOPE.string ().make (ESEBConstants.MSG_BATCH_KEY));
+        if (!(dv instanceof ListDataValue)) return null;
+        List<RainbowESEBMessage> messages = new ArrayList<> ();
+        for (DataValue v : ((ListDataValue )dv).all ()) {
+            if (v instanceof MapDataValue) {
+                messages.add (new RainbowESEBMessage ((MapDataValue )v));
+            }
+        }
+        return messages;
+    }
+
 
     @Override
     public String toString () {
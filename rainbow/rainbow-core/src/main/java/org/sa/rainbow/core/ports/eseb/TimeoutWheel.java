@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.core.ports.eseb;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timing wheel that expires request IDs. A single daemon thread advances the wheel every tick and only
+ * visits the slot for that tick, so scheduling and expiring are O(1) regardless of how many requests are pending.
+ * Entries for requests that complete or are cancelled should be removed with {@link Timeout#cancel()}, so that the
+ * wheel only holds the requests that are still pending.
+ */
+class TimeoutWheel {
+    static final Logger LOGGER = Logger.getLogger (TimeoutWheel.class);
+
+    /**
+     * Called when an ID expires
+     */
+    interface IExpiryHandler {
+        void expired (long id);
+    }
+
+    /**
+     * A scheduled expiry, which can be cancelled
+     */
+    static class Timeout {
+        final long                   id;
+        final long                   deadline;
+        private final Queue<Timeout> m_slot;
+
+        Timeout (long id, long deadline, Queue<Timeout> slot) {
+            this.id = id;
+            this.deadline = deadline;
+            m_slot = slot;
+        }
+
+        /**
+         * Removes the entry from the wheel, so that the ID does not expire.
+         *
+         * @return false if the ID had already expired or the entry had already been cancelled
+         */
+        boolean cancel () {
+            return m_slot.remove (this);
+        }
+    }
+
+    private final long                     m_tickMillis;
+    private final List<Queue<Timeout>>     m_slots;
+    private final IExpiryHandler           m_handler;
+    private final ScheduledExecutorService m_executor;
+    private volatile long m_tick = 0;
+
+    /**
+     * Creates and starts a wheel.
+     *
+     * @param tickMillis the resolution of the wheel, in milliseconds
+     * @param slots      the number of slots, rounded up to a power of two
+     * @param handler    the handler to call when an ID expires
+     */
+    TimeoutWheel (long tickMillis, int slots, IExpiryHandler handler) {
+        m_tickMillis = tickMillis;
+        m_handler = handler;
+        int size = Integer.highestOneBit (Math.max (slots, 1) * 2 - 1);
+        m_slots = new ArrayList<> (size);
+        for (int i = 0; i < size; i++) {
+            m_slots.add (new ConcurrentLinkedQueue<Timeout> ());
+        }
+        m_executor = Executors.newSingleThreadScheduledExecutor (new ThreadFactory () {
+            @Override
+            public Thread newThread (Runnable r) {
+                Thread t = new Thread (r, "ESEB Reply Timeouts");
+                t.setDaemon (true);
+                return t;
+            }
+        });
+        m_executor.scheduleAtFixedRate (new Runnable () {
+            @Override
+            public void run () {
+                advance ();
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules an ID to expire.
+     *
+     * @param id            the ID
+     * @param timeoutMillis the time after which the ID expires; it expires at most one tick later
+     * @return the entry in the wheel, to cancel if the ID should no longer expire
+     */
+    Timeout schedule (long id, long timeoutMillis) {
+        long ticks = Math.max (1, (timeoutMillis + m_tickMillis - 1) / m_tickMillis);
+        // One extra tick because the current one may be half over
+        long deadline = m_tick + ticks + 1;
+        Queue<Timeout> slot = m_slots.get ((int )(deadline & (m_slots.size () - 1)));
+        Timeout timeout = new Timeout (id, deadline, slot);
+        slot.add (timeout);
+        return timeout;
+    }
+
+    /**
+     * Moves the wheel one tick forward, expiring the entries in the slot for the new tick that are due.
+     */
+    void advance () {
+        long tick = ++m_tick;
+        Iterator<Timeout> it = m_slots.get ((int )(tick & (m_slots.size () - 1))).iterator ();
+        while (it.hasNext ()) {
+            Timeout e = it.next ();
+            // Only the thread that removes the entry expires it, so a concurrent cancel either wins or fails
+            if (e.deadline <= tick && e.cancel ()) {
+                try {
+                    m_handler.expired (e.id);
+                }
+                catch (RuntimeException ex) {
+                    LOGGER.error ("Failed to expire request " + e.id, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of IDs waiting to expire
+     */
+    int size () {
+        int size = 0;
+        for (Queue<Timeout> slot : m_slots) {
+            size += slot.size ();
+        }
+        return size;
+    }
+
+    void stop () {
+        m_executor.shutdownNow ();
+    }
+}
@@ -52,8 +52,8 @@ IESEBEffectorExecutionRemoteInterface {
     }
 
     @Override
-    public Outcome execute (List<String> args) {
-        return m_effector.execute (args);
+    public Outcome execute (String executionId, List<String> args) {
+        return m_effector.execute (executionId, args);
     }
 
 }
@@ -47,9 +47,9 @@ IESEBEffectorExecutionRemoteInterface {
     }
 
     @Override
-    public Outcome execute (List<String> args) {
+    public Outcome execute (String executionId, List<String> args) {
         try {
-            return m_stub.execute (args);
+            return m_stub.execute (executionId, args);
         }
         catch (OperationTimedOutException e) {
             return Outcome.TIMEOUT;
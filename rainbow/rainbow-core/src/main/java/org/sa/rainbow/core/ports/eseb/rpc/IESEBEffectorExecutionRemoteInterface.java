@@ -33,6 +33,6 @@ public interface IESEBEffectorExecutionRemoteInterface extends IEffectorExecutio
 
     @Override
     @ReturnTypeMapping ("outcome")
-    @ParametersTypeMapping ({ "list<string>" })
-    Outcome execute (List<String> args);
+    @ParametersTypeMapping ({ "string", "list<string>" })
+    Outcome execute (String executionId, List<String> args);
 }
@@ -0,0 +1,189 @@
+package org.sa.rainbow.gauges.diagnosis;
+
+import java.util.BitSet;
+
+/**
+ * Ranks diagnosis candidates the way barinel does. Each element of a
+ * candidate has a health: the probability that it behaves correctly when
+ * used. A spectrum that uses some of the candidate's elements succeeds with
+ * the product of their healths and fails otherwise. The healths are set to
+ * the values that make the observed spectra most likely, and the candidate's
+ * score is that likelihood times the prior probability of all its elements,
+ * and only its elements, being faulty.
+ */
+final class BarinelRanker {
+	/**
+	 * Prior probability of an element being faulty.
+	 */
+	static final double FAULT_PRIOR = 0.01;
+	
+	/**
+	 * Healths are kept this far away from <code>0</code> and
+	 * <code>1</code>.
+	 */
+	private static final double HEALTH_EPSILON = 1e-9;
+	
+	/**
+	 * Maximum number of passes over all healths when maximizing the
+	 * likelihood.
+	 */
+	private static final int MAXIMUM_PASSES = 50;
+	
+	/**
+	 * A pass that moves no health by more than this ends the maximization.
+	 */
+	private static final double CONVERGENCE = 1e-6;
+	
+	/**
+	 * Number of bisection steps used to find the best value of a health.
+	 */
+	private static final int BISECTION_STEPS = 40;
+	
+	/**
+	 * Utility class: no constructor.
+	 */
+	private BarinelRanker() {
+	}
+	
+	/**
+	 * Computes the logarithm of the (unnormalized) probability of a
+	 * candidate.
+	 * @param matrix the spectra
+	 * @param candidate the candidate's elements; a candidate has at most
+	 * <code>30</code> elements
+	 * @return the logarithm of the probability
+	 */
+	static double log_score(SpectraMatrix matrix, int[] candidate) {
+		assert matrix != null;
+		assert candidate != null;
+		assert candidate.length > 0 && candidate.length <= 30;
+		
+		/*
+		 * Only which of the candidate's elements a spectrum uses matters, so
+		 * spectra are counted by that subset, encoded as a mask of the
+		 * candidate's elements.
+		 */
+		int masks = 1 << candidate.length;
+		int[] passed = new int[masks];
+		int[] failed = new int[masks];
+		for (int i = 0; i < matrix.spectrum_count(); i++) {
+			BitSet row = matrix.row(i);
+			int mask = 0;
+			for (int j = 0; j < candidate.length; j++) {
+				if (row.get(candidate[j])) {
+					mask |= 1 << j;
+				}
+			}
+			
+			if (matrix.is_correct(i)) {
+				passed[mask]++;
+			} else {
+				failed[mask]++;
+			}
+		}
+		
+		double[] health = new double[candidate.length];
+		for (int j = 0; j < health.length; j++) {
+			health[j] = 0.5;
+		}
+		
+		for (int pass = 0; pass < MAXIMUM_PASSES; pass++) {
+			double moved = 0;
+			for (int j = 0; j < health.length; j++) {
+				double h = best_health(j, health, passed, failed);
+				moved = Math.max(moved, Math.abs(h - health[j]));
+				health[j] = h;
+			}
+			
+			if (moved < CONVERGENCE) {
+				break;
+			}
+		}
+		
+		double log_likelihood = 0;
+		for (int mask = 1; mask < masks; mask++) {
+			if (passed[mask] == 0 && failed[mask] == 0) {
+				continue;
+			}
+			
+			double p = product(health, mask);
+			log_likelihood += passed[mask] * Math.log(p)
+					+ failed[mask] * Math.log(1 - p);
+		}
+		
+		int faulty = candidate.length;
+		return log_likelihood + faulty * Math.log(FAULT_PRIOR)
+				+ (matrix.element_count() - faulty)
+				* Math.log(1 - FAULT_PRIOR);
+	}
+	
+	/**
+	 * Finds the health of one element that maximizes the likelihood with the
+	 * other healths fixed. The likelihood is concave in each health so the
+	 * maximum is where its derivative, which decreases, crosses zero.
+	 * @param j the element's position in the candidate
+	 * @param health the healths
+	 * @param passed number of successes by mask
+	 * @param failed number of failures by mask
+	 * @return the best health
+	 */
+	private static double best_health(int j, double[] health, int[] passed,
+			int[] failed) {
+		double lo = HEALTH_EPSILON;
+		double hi = 1 - HEALTH_EPSILON;
+		for (int step = 0; step < BISECTION_STEPS; step++) {
+			double mid = (lo + hi) / 2;
+			if (derivative(j, mid, health, passed, failed) > 0) {
+				lo = mid;
+			} else {
+				hi = mid;
+			}
+		}
+		
+		return (lo + hi) / 2;
+	}
+	
+	/**
+	 * Computes the derivative of the log-likelihood with respect to the health
+	 * of one element.
+	 * @param j the element's position in the candidate
+	 * @param h the element's health
+	 * @param health the healths of the other elements
+	 * @param passed number of successes by mask
+	 * @param failed number of failures by mask
+	 * @return the derivative
+	 */
+	private static double derivative(int j, double h, double[] health,
+			int[] passed, int[] failed) {
+		int bit = 1 << j;
+		double d = 0;
+		for (int mask = bit; mask < passed.length; mask++) {
+			if ((mask & bit) == 0
+					|| (passed[mask] == 0 && failed[mask] == 0)) {
+				continue;
+			}
+			
+			double others = product(health, mask & ~bit);
+			d += passed[mask] / h - failed[mask] * others / (1 - h * others);
+		}
+		
+		return d;
+	}
+	
+	/**
+	 * Multiplies the healths of the elements in a mask.
+	 * @param health the healths
+	 * @param mask the mask
+	 * @return the product
+	 */
+	private static double product(double[] health, int mask) {
+		double p = 1;
+		for (int j = 0; j < health.length; j++) {
+			if ((mask & (1 << j)) != 0) {
+				p *= health[j];
+			}
+		}
+		
+		return p;
+	}
+}
@@ -0,0 +1,171 @@
+package org.sa.rainbow.gauges.diagnosis;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Generates diagnosis candidates the way staccato does: the candidates are
+ * the minimal hitting sets of the failed spectra, that is, the minimal sets
+ * of elements that include at least one element used by every failure.
+ * Candidates are built incrementally, one failure at a time: candidates that
+ * already explain a failure are kept and each of the others is extended with
+ * one of the failure's elements. To bound the work, only the most likely
+ * candidates (the smallest ones, then the ones whose elements are most
+ * similar to the failures) are kept.
+ */
+final class HittingSetGenerator {
+	/**
+	 * Utility class: no constructor.
+	 */
+	private HittingSetGenerator() {
+	}
+	
+	/**
+	 * Generates the candidates.
+	 * @param matrix the spectra
+	 * @param maximum_candidates maximum number of candidates to keep
+	 * @param maximum_size maximum number of elements in a candidate
+	 * @return the candidates, most likely first
+	 */
+	static List<BitSet> generate(SpectraMatrix matrix,
+			int maximum_candidates, int maximum_size) {
+		assert matrix != null;
+		assert maximum_candidates > 0;
+		assert maximum_size > 0;
+		
+		final double[] similarity = matrix.ochiai();
+		
+		/*
+		 * Small failures constrain candidates the most, so they go first.
+		 */
+		List<BitSet> failures = new ArrayList<>();
+		for (int i = 0; i < matrix.spectrum_count(); i++) {
+			if (!matrix.is_correct(i)) {
+				failures.add(matrix.row(i));
+			}
+		}
+		
+		Collections.sort(failures, new Comparator<BitSet>() {
+			@Override
+			public int compare(BitSet a, BitSet b) {
+				return Integer.compare(a.cardinality(), b.cardinality());
+			}
+		});
+		
+		Comparator<BitSet> likeliest = new Comparator<BitSet>() {
+			@Override
+			public int compare(BitSet a, BitSet b) {
+				int c = Integer.compare(a.cardinality(), b.cardinality());
+				if (c == 0) {
+					c = Double.compare(score(b, similarity),
+							score(a, similarity));
+				}
+				
+				return c;
+			}
+		};
+		
+		List<BitSet> candidates = new ArrayList<>();
+		candidates.add(new BitSet());
+		for (BitSet failure : failures) {
+			List<BitSet> next = new ArrayList<>();
+			List<BitSet> to_extend = new ArrayList<>();
+			for (BitSet c : candidates) {
+				if (c.intersects(failure)) {
+					next.add(c);
+				} else if (c.cardinality() < maximum_size) {
+					to_extend.add(c);
+				}
+			}
+			
+			for (BitSet c : to_extend) {
+				for (int e = failure.nextSetBit(0); e >= 0;
+						e = failure.nextSetBit(e + 1)) {
+					BitSet extended = (BitSet) c.clone();
+					extended.set(e);
+					add_minimal(next, extended);
+				}
+			}
+			
+			if (next.size() > maximum_candidates) {
+				Collections.sort(next, likeliest);
+				next = new ArrayList<>(next.subList(0, maximum_candidates));
+			}
+			
+			candidates = next;
+		}
+		
+		Collections.sort(candidates, likeliest);
+		return candidates;
+	}
+	
+	/**
+	 * Adds a candidate to a list unless a subset of it is already there,
+	 * removing the candidates that are supersets of it.
+	 * @param candidates the list
+	 * @param c the candidate
+	 */
+	private static void add_minimal(List<BitSet> candidates, BitSet c) {
+		for (int i = candidates.size() - 1; i >= 0; i--) {
+			BitSet other = candidates.get(i);
+			if (is_subset(other, c)) {
+				return;
+			}
+			
+			if (is_subset(c, other)) {
+				candidates.remove(i);
+			}
+		}
+		
+		candidates.add(c);
+	}
+	
+	/**
+	 * Checks whether all elements of a set are in another one.
+	 * @param a the set
+	 * @param b the other set
+	 * @return is <code>a</code> a subset of <code>b</code>?
+	 */
+	private static boolean is_subset(BitSet a, BitSet b) {
+		for (int e = a.nextSetBit(0); e >= 0; e = a.nextSetBit(e + 1)) {
+			if (!b.get(e)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Sums the similarity of the elements of a candidate.
+	 * @param c the candidate
+	 * @param similarity the similarity of each element
+	 * @return the sum
+	 */
+	private static double score(BitSet c, double[] similarity) {
+		double s = 0;
+		for (int e = c.nextSetBit(0); e >= 0; e = c.nextSetBit(e + 1)) {
+			s += similarity[e];
+		}
+		
+		return s;
+	}
+	
+	/**
+	 * Lists the elements of a candidate.
+	 * @param c the candidate
+	 * @return the indexes of the elements, in increasing order
+	 */
+	static int[] elements(BitSet c) {
+		int[] elements = new int[c.cardinality()];
+		int i = 0;
+		for (int e = c.nextSetBit(0); e >= 0; e = c.nextSetBit(e + 1)) {
+			elements[i++] = e;
+		}
+		
+		return elements;
+	}
+}
@@ -0,0 +1,152 @@
+package org.sa.rainbow.gauges.diagnosis;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of spectra as a matrix: architectural elements are interned
+ * into indexes (in name order) and each spectrum becomes a bit set with the
+ * indexes of the elements it uses.
+ */
+final class SpectraMatrix {
+	/**
+	 * Names of the elements, by index.
+	 */
+	private final String[] m_elements;
+	
+	/**
+	 * Elements used by each spectrum.
+	 */
+	private final BitSet[] m_rows;
+	
+	/**
+	 * Whether each spectrum is a success.
+	 */
+	private final boolean[] m_correct;
+	
+	/**
+	 * Number of failed spectra.
+	 */
+	private final int m_failures;
+	
+	/**
+	 * Builds the matrix of a snapshot.
+	 * @param snapshot the spectra
+	 */
+	SpectraMatrix(List<Spectrum> snapshot) {
+		assert snapshot != null;
+		
+		Map<String, Integer> index = new TreeMap<>();
+		for (Spectrum s : snapshot) {
+			for (String e : s.elements()) {
+				index.put(e, null);
+			}
+		}
+		
+		m_elements = index.keySet().toArray(new String[index.size()]);
+		for (int i = 0; i < m_elements.length; i++) {
+			index.put(m_elements[i], i);
+		}
+		
+		m_rows = new BitSet[snapshot.size()];
+		m_correct = new boolean[snapshot.size()];
+		int failures = 0;
+		for (int i = 0; i < m_rows.length; i++) {
+			Spectrum s = snapshot.get(i);
+			m_rows[i] = new BitSet(m_elements.length);
+			for (String e : s.elements()) {
+				m_rows[i].set(index.get(e));
+			}
+			
+			m_correct[i] = s.isCorrect();
+			if (!m_correct[i]) {
+				failures++;
+			}
+		}
+		
+		m_failures = failures;
+	}
+	
+	/**
+	 * Obtains the number of architectural elements.
+	 * @return the number of elements
+	 */
+	int element_count() {
+		return m_elements.length;
+	}
+	
+	/**
+	 * Obtains the name of an element.
+	 * @param idx the element's index
+	 * @return the name
+	 */
+	String element(int idx) {
+		return m_elements[idx];
+	}
+	
+	/**
+	 * Obtains the number of spectra.
+	 * @return the number of spectra
+	 */
+	int spectrum_count() {
+		return m_rows.length;
+	}
+	
+	/**
+	 * Obtains the elements used by a spectrum. The bit set must not be
+	 * changed.
+	 * @param idx the spectrum's index
+	 * @return the indexes of the elements
+	 */
+	BitSet row(int idx) {
+		return m_rows[idx];
+	}
+	
+	/**
+	 * Is a spectrum a success?
+	 * @param idx the spectrum's index
+	 * @return is it correct?
+	 */
+	boolean is_correct(int idx) {
+		return m_correct[idx];
+	}
+	
+	/**
+	 * Obtains the number of failed spectra.
+	 * @return the number of failures
+	 */
+	int failure_count() {
+		return m_failures;
+	}
+	
+	/**
+	 * Computes the Ochiai similarity of each element to the failures: how
+	 * often an element is used in failed spectra relative to how often it is
+	 * used at all.
+	 * @return the similarity of each element, between <code>0</code> and
+	 * <code>1</code>
+	 */
+	double[] ochiai() {
+		int[] failed_with = new int[m_elements.length];
+		int[] passed_with = new int[m_elements.length];
+		for (int i = 0; i < m_rows.length; i++) {
+			int[] counts = m_correct[i] ? passed_with : failed_with;
+			for (int e = m_rows[i].nextSetBit(0); e >= 0;
+					e = m_rows[i].nextSetBit(e + 1)) {
+				counts[e]++;
+			}
+		}
+		
+		double[] similarity = new double[m_elements.length];
+		for (int e = 0; e < similarity.length; e++) {
+			if (failed_with[e] > 0) {
+				similarity[e] = failed_with[e] / Math.sqrt((double) m_failures
+						* (failed_with[e] + passed_with[e]));
+			}
+		}
+		
+		return similarity;
+	}
+}
@@ -1,5 +1,6 @@
 package org.sa.rainbow.gauges.diagnosis;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -33,7 +34,8 @@ public class Spectrum {
 			throw new IllegalArgumentException("elements.size() == 0");
 		}
 		
-		this.elements = new HashSet<>(elements);
+		this.elements = Collections.unmodifiableSet(
+				new HashSet<>(elements));
 		this.correct = correct;
 	}
 	
@@ -45,6 +47,15 @@ public class Spectrum {
 		return new HashSet<>(elements);
 	}
 	
+	/**
+	 * Obtains the architectural elements in this spectrum without copying
+	 * them.
+	 * @return the set of elements, which cannot be changed
+	 */
+	Set<String> elements() {
+		return elements;
+	}
+	
 	/**
 	 * Does this spectrum corresponds to a correct computation?
 	 * @return is it correct?
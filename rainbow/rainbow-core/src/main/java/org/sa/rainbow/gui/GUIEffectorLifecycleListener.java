@@ -46,11 +46,13 @@ public class GUIEffectorLifecycleListener implements IEffectorLifecycleBusPort {
         final Outcome outcome;
         final List<String> args;
         final Date executed;
+        final long latency;
 
-        EffectorInformation (Outcome o, List<String> a, Date d) {
+        EffectorInformation (Outcome o, List<String> a, Date d, long l) {
             outcome = o;
             args = a;
             executed = d;
+            latency = l;
 
         }
     }
@@ -78,6 +80,9 @@ public class GUIEffectorLifecycleListener implements IEffectorLifecycleBusPort {
                             msg.append (SDF.format (ei.executed));
                             msg.append (": Outcome: ");
                             msg.append (ei.outcome.name ());
+                            if (ei.latency >= 0) {
+                                msg.append (" (" + ei.latency + " ms)");
+                            }
                             msg.append (", arguments: ");
                             msg.append (Arrays.toString (ei.args.toArray ()));
                             msg.append ("\n");
@@ -102,8 +107,9 @@ public class GUIEffectorLifecycleListener implements IEffectorLifecycleBusPort {
     }
 
     @Override
-    public void reportExecuted (IEffectorIdentifier effector, Outcome outcome, List<String> args) {
-        EffectorInformation ei = new EffectorInformation (outcome, args, new Date ());
+    public void reportExecuted (IEffectorIdentifier effector, String executionId, Outcome outcome, List<String> args,
+            long latency) {
+        EffectorInformation ei = new EffectorInformation (outcome, args, new Date (), latency);
         List<EffectorInformation> info = informationMap.get (effector.id ());
         if (info == null) {
             info = new LinkedList<> ();
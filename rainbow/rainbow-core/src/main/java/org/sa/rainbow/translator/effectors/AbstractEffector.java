@@ -130,7 +130,11 @@ public abstract class AbstractEffector implements IEffector {
     }
 
     void reportExecuted (Outcome r, List<String> args) {
-        m_effectorManagementPort.reportExecuted (this, r, args);
+        reportExecuted (null, r, args, -1);
+    }
+
+    void reportExecuted (String executionId, Outcome r, List<String> args, long latency) {
+        m_effectorManagementPort.reportExecuted (this, executionId, r, args, latency);
     }
 
     @Override
@@ -40,6 +40,8 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class EffectorManager extends AbstractRainbowRunnable implements IEffectorLifecycleBusPort,
 IModelDSBusPublisherPort {
@@ -61,7 +63,10 @@ IModelDSBusPublisherPort {
 
     protected EffectorDescription m_effectors;
 
-    protected Map<String, OutcomeHolder> m_holderMap = new HashMap<> ();
+    /** The executions waiting for their report, keyed by the id given to each execution */
+    protected Map<String, OutcomeHolder> m_holderMap = new ConcurrentHashMap<> ();
+
+    private final AtomicLong m_executionCount = new AtomicLong ();
 
     public EffectorManager (String id) {
         super (id);
@@ -124,21 +129,66 @@ IModelDSBusPublisherPort {
             m_reportingPort.info (RainbowComponentT.EFFECTOR_MANAGER, "Failed E[" + id + "] UNKNOWN");
             return Outcome.UNKNOWN;
         }
-        Outcome result = effector.execute (Arrays.asList (args));
-        if (result == Outcome.TIMEOUT) {
-            OutcomeHolder h = new OutcomeHolder ();
-            m_holderMap.put (id, h);
-            synchronized (h) {
-                try {
-                    h.wait ();
-                    result = h.outcome;
-                } catch (InterruptedException e) {
+        // Registered before executing, so that the report of an execution that times out is not missed. The id of
+        // the execution, which the effector puts in its report, keeps reports of other executions of the same
+        // effector (earlier ones that timed out, or ones running at the same time) from being taken for this one
+        String executionId = id + "#" + m_executionCount.incrementAndGet ();
+        OutcomeHolder h = new OutcomeHolder ();
+        m_holderMap.put (executionId, h);
+        try {
+            Outcome result = effector.execute (executionId, Arrays.asList (args));
+            if (result == Outcome.TIMEOUT) {
+                // The effector may still be running: wait for its report, but no longer than it has to finish
+                long deadline = System.currentTimeMillis () + getEffectorTimeout (effName);
+                synchronized (h) {
+                    try {
+                        long remaining;
+                        while (h.outcome == null && (remaining = deadline - System.currentTimeMillis ()) > 0) {
+                            h.wait (remaining);
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread ().interrupt ();
+                    }
+                    if (h.outcome != null) {
+                        result = h.outcome;
+                    }
                 }
             }
+            //m_reportingPort.info (RainbowComponentT.EFFECTOR_MANAGER, "Returning E[" + id + "] " + result.toString ());
+
+            return result;
         }
-        //m_reportingPort.info (RainbowComponentT.EFFECTOR_MANAGER, "Returning E[" + id + "] " + result.toString ());
+        finally {
+            m_holderMap.remove (executionId);
+        }
+    }
 
-        return result;
+    /**
+     * Returns the time that an effector has to finish, set by the "timeout" entry of its description or else by the
+     * rainbow.effector.timeout property
+     * 
+     * @param effName
+     *            the name of the effector
+     * @return the timeout, in milliseconds
+     */
+    protected long getEffectorTimeout (String effName) {
+        if (m_effectors != null) {
+            for (EffectorAttributes ea : m_effectors.effectors) {
+                if (ea.name.equals (effName)) {
+                    String timeout = ea.getInfo ().get ("timeout");
+                    if (timeout != null) {
+                        try {
+                            return Long.parseLong (timeout.trim ());
+                        }
+                        catch (NumberFormatException e) {
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        return GenericScriptBasedEffector.defaultTimeout ();
     }
 
     @Override
@@ -164,12 +214,17 @@ IModelDSBusPublisherPort {
     }
 
     @Override
-    public void reportExecuted (IEffectorIdentifier effector, Outcome outcome, List<String> args) {
-        final OutcomeHolder h = m_holderMap.get (effector.id ());
+    public void reportExecuted (IEffectorIdentifier effector, String executionId, Outcome outcome, List<String> args,
+            long latency) {
+        if (LOGGER.isDebugEnabled ()) {
+            LOGGER.debug (MessageFormat.format ("EffectorManager: {0} executed: {1} ({2} ms)",
+                    executionId != null ? executionId : effector.id (), outcome, latency));
+        }
+        // Reports of executions that nobody waits for any more, or that were not started here, are ignored
+        final OutcomeHolder h = executionId == null ? null : m_holderMap.remove (executionId);
         if (h != null) {
             synchronized (h) {
                 h.outcome = outcome;
-                m_holderMap.remove (effector.id ());
                 h.notifyAll ();
             }
         }
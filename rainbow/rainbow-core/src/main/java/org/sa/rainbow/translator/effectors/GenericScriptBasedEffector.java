@@ -31,8 +31,16 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sa.rainbow.core.Rainbow;
+import org.sa.rainbow.core.RainbowConstants;
 import org.sa.rainbow.translator.probes.IBashBasedScript;
 import org.sa.rainbow.util.Util;
 
@@ -40,30 +48,47 @@ import org.sa.rainbow.util.Util;
  * This class defines an effector that depends on a shell/Perl script for
  * system-level changes.  It facilitates effector implementation reuse for the
  * Cygwin and Linux environments.  We assume presence of the popular BASH shell.
+ * <p>
+ * The script is given a timeout (by default, {@link #DEFAULT_TIMEOUT}) to exit, after which it is killed. Its output
+ * is logged as it is produced by a task in a pool shared by all script effectors, which also runs the executions
+ * started with {@link #executeAsync(String, List)}.
  *
  * @author Shang-Wen Cheng (zensoul@cs.cmu.edu)
  */
 public class GenericScriptBasedEffector extends AbstractEffector implements IBashBasedScript {
-    public class StreamGobbler extends Thread {
+
+    /** The time, in milliseconds, that a script has to finish if none is configured */
+    public static final long DEFAULT_TIMEOUT = 5000;
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool (new ThreadFactory () {
+        private final AtomicInteger m_count = new AtomicInteger ();
+
+        @Override
+        public Thread newThread (Runnable r) {
+            Thread t = new Thread (r, "Script Effector " + m_count.incrementAndGet ());
+            t.setDaemon (true);
+            return t;
+        }
+    });
+
+    private class OutputLogger implements Runnable {
 
         private final InputStream m_inputStream;
 
-        public StreamGobbler (InputStream inputStream) {
+        public OutputLogger (InputStream inputStream) {
             m_inputStream = inputStream;
         }
 
         @Override
         public void run () {
-            try {
-                InputStreamReader isr = new InputStreamReader (m_inputStream);
-                BufferedReader br = new BufferedReader (isr);
+            try (BufferedReader br = new BufferedReader (new InputStreamReader (m_inputStream))) {
                 String line;
                 while ((line = br.readLine ()) != null) {
                     log (line);
                 }
             }
             catch (IOException ioe) {
-                log (ioe.getMessage ());
+                // The stream is closed when a script that timed out is killed
             }
         }
 
@@ -73,6 +98,10 @@ public class GenericScriptBasedEffector extends AbstractEffector implements IBas
 
     private String m_params = null;
 
+    private final long m_timeout;
+
+    private volatile boolean m_executable = false;
+
     /**
      * Main Constructor.
      * @param refID  the location-unique reference identifier to match this IEffector
@@ -81,10 +110,61 @@ public class GenericScriptBasedEffector extends AbstractEffector implements IBas
      * @param paramStr  the parameters to supply as arguments to the script
      */
     public GenericScriptBasedEffector (String refID, String name, String path, String paramStr) {
+        this (refID, name, path, paramStr, defaultTimeout ());
+    }
+
+    /**
+     * @param refID  the location-unique reference identifier to match this IEffector
+     * @param name   the name used to label this IEffector
+     * @param path   the path to the script
+     * @param paramStr  the parameters to supply as arguments to the script
+     * @param timeout  the time, in milliseconds, that the script has to finish before it is killed
+     */
+    public GenericScriptBasedEffector (String refID, String name, String path, String paramStr, long timeout) {
         super(refID, name, Kind.SCRIPT);
 
         m_path = path;
         m_params = paramStr;
+        m_timeout = timeout;
+    }
+
+    /**
+     * @return the timeout set by the rainbow.effector.timeout property, or {@link #DEFAULT_TIMEOUT}
+     */
+    public static long defaultTimeout () {
+        String timeout = Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_EFFECTOR_TIMEOUT);
+        if (timeout != null) {
+            try {
+                return Long.parseLong (timeout.trim ());
+            }
+            catch (NumberFormatException e) {
+            }
+        }
+        return DEFAULT_TIMEOUT;
+    }
+
+    public long getTimeout () {
+        return m_timeout;
+    }
+
+    /**
+     * Executes the effector in the pool shared by script effectors, so that several executions (of this or other
+     * effectors) can run at the same time.
+     *
+     * @param executionId
+     *            identifies the execution in its report, or null
+     * @param args
+     *            the arguments of the execution
+     * @return the outcome of the execution, once the script finishes or times out
+     */
+    public Future<Outcome> executeAsync (final String executionId, final List<String> args) {
+        return EXECUTOR.submit (new Callable<Outcome> () {
+
+            @Override
+            public Outcome call () throws Exception {
+                return execute (executionId, args);
+            }
+        });
     }
 
     /* (non-Javadoc)
@@ -92,8 +172,8 @@ public class GenericScriptBasedEffector extends AbstractEffector implements IBas
      */
 
     @Override
-    public Outcome execute (List<String> args) {
-        Outcome r;
+    public Outcome execute (String executionId, List<String> args) {
+        Outcome r = null;
         String[] cmds = new String[3];
 
         // do param substitution
@@ -123,12 +203,19 @@ public class GenericScriptBasedEffector extends AbstractEffector implements IBas
             cmds[0] = LINUX_BASH;
             cmds[1] = BASH_OPT;
             cmds[2] = m_path + " " + params;
-            // also set the executable permission of path
-            Util.setExecutablePermission(m_path);
+            // also set the executable permission of path, the first time
+            if (!m_executable) {
+                Util.setExecutablePermission(m_path);
+                m_executable = true;
+            }
             break;
         default:
             r = Outcome.CONFOUNDED;
         }
+        if (r != null) {
+            reportExecuted (executionId, r, args, 0);
+            return r;
+        }
 
         // create a process and execute it
         log("executing " + Arrays.toString(cmds) + "...");
@@ -136,35 +223,31 @@ public class GenericScriptBasedEffector extends AbstractEffector implements IBas
         File workDir = new File(m_path);
         pb.directory(workDir.getParentFile());
         pb.redirectErrorStream(true);
+        long start = System.currentTimeMillis ();
         try {
             Process p = pb.start();
-//            StreamGobbler outputProcessor = new StreamGobbler (p.getInputStream ());
-//            outputProcessor.start ();
+            EXECUTOR.execute (new OutputLogger (p.getInputStream ()));
             try {
-//                p.waitFor (5, TimeUnit.SECONDS);
-                Thread.sleep (5000);
-                p.destroyForcibly ();
+                if (p.waitFor (m_timeout, TimeUnit.MILLISECONDS)) {
+                    log(" = exit status: " + p.exitValue());
+                    r = p.exitValue () == 0 ? Outcome.SUCCESS : Outcome.FAILURE;
+                }
+                else {
+                    LOGGER.warn ("Script did not finish in " + m_timeout + " ms - killing it");
+                    p.destroyForcibly ();
+                    r = Outcome.TIMEOUT;
+                }
             } catch (InterruptedException e) {
-                e.printStackTrace();
-            } finally {
-//                log(" = exit status: " + p.exitValue());
-//                if (p.exitValue() == 0) {
-                r = Outcome.SUCCESS;
-//                } else {
-//                    r = Outcome.FAILURE;
-//                }
+                p.destroyForcibly ();
+                Thread.currentThread ().interrupt ();
+                r = Outcome.CONFOUNDED;
             }
-//            log(" --STDOUT+STDERR-----\n" + Util.getProcessOutput(p));
             log("Done!");
         } catch (IOException e) {
             LOGGER.error ("Process I/O failed!", e);
             r = Outcome.CONFOUNDED;
         }
-        catch (IllegalThreadStateException e) {
-            LOGGER.warn ("Process took too long - can be ignored");
-            r = Outcome.TIMEOUT;
-        }
-        reportExecuted (r, args);
+        reportExecuted (executionId, r, args, System.currentTimeMillis () - start);
         return r;
     }
 
@@ -56,7 +56,7 @@ public interface IEffector extends IEffectorIdentifier, IEffectorExecutionPort {
         }
 
         @Override
-        public Outcome execute (List<String> args) {
+        public Outcome execute (String executionId, List<String> args) {
             return Outcome.UNKNOWN;
         }
 
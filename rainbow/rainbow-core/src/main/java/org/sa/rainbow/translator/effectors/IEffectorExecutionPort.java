@@ -35,10 +35,13 @@ public interface IEffectorExecutionPort extends IDisposablePort {
     /**
      * Executes the effect supplied by this effector, applying any arguments.
      * 
+     * @param executionId
+     *            identifies this execution in the report of its outcome on the effector lifecycle bus, so that the
+     *            report can be matched with the execution; may be null
      * @param args
      *            array of String arguments
      * @return Outcome the execution outcome as defined in the enum
      *         {@link org.sa.rainbow.translator.effectors.IEffector.Outcome <code>Outcome</code>}
      */
-    Outcome execute (List<String> args);
+    Outcome execute (String executionId, List<String> args);
 }
@@ -41,6 +41,10 @@ public interface IEffectorProtocol {
     String NAME = "name";
     String LOCATION = "location";
     String OUTCOME = "outcome";
+    /** Identifies the execution that an effector reports, as given to the effector when it was executed */
+    String EXECUTION_ID = "executionId";
+    /** Execution time of an effector, in milliseconds */
+    String LATENCY = "latency";
     String ARGUMENT = "argument";
     String SIZE = "_size";
     String EFFECTOR_CREATED = "effectorCreated";
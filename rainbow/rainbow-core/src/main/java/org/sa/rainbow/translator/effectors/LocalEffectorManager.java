@@ -94,7 +94,18 @@ public class LocalEffectorManager extends AbstractRainbowRunnable {
                     m_reportingPort.error (RainbowComponentT.EFFECTOR_MANAGER, msg);
                     continue;
                 }
-                effector = new GenericScriptBasedEffector (refId, effAttr.name, path, argument);
+                long timeout = GenericScriptBasedEffector.defaultTimeout ();
+                String timeoutStr = effAttr.getInfo().get ("timeout");
+                if (timeoutStr != null) {
+                    try {
+                        timeout = Long.parseLong (timeoutStr.trim ());
+                    }
+                    catch (NumberFormatException e) {
+                        m_reportingPort.error (RainbowComponentT.EFFECTOR_MANAGER,
+                                MessageFormat.format ("Invalid timeout for effector {0}: {1}", refId, timeoutStr));
+                    }
+                }
+                effector = new GenericScriptBasedEffector (refId, effAttr.name, path, argument, timeout);
                 effector.setReportingPort (m_reportingPort);
                 m_reportingPort.info (getComponentType (), "Script-based IEffector " + effAttr.name + ": " + path + " "
                         + argument);
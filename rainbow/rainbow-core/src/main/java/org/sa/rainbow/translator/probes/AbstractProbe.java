@@ -32,6 +32,7 @@ import org.sa.rainbow.core.ports.*;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -307,6 +308,17 @@ public abstract class AbstractProbe implements IProbe {
         log (data);
     }
 
+    /* (non-Javadoc)
+     * @see org.sa.rainbow.translator.probes.IProbe#reportData(java.util.List)
+     */
+    @Override
+    public void reportData (List<String> data) {
+        m_reportingPort.reportData (this, data);
+        for (String d : data) {
+            log (d);
+        }
+    }
+
     protected void log (String txt) {
         String msg = "P[" + id () + "] " + txt;
         if (m_loggingPort != null) {
@@ -27,49 +27,56 @@
 package org.sa.rainbow.translator.probes;
 
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
 
 import org.sa.rainbow.core.Rainbow;
 import org.sa.rainbow.core.RainbowComponentT;
+import org.sa.rainbow.core.RainbowConstants;
 import org.sa.rainbow.core.util.RainbowLogger;
+import org.sa.rainbow.translator.probes.ScriptProbeHost.IScriptOutputHandler;
 import org.sa.rainbow.util.Util;
 
 /**
  * This class defines a probe that's implemented in a shell/Perl script.
  * It facilitates probe reuse for the Cygwin and Linux environments.
  * We assume presence of the popular BASH shell.
+ * <p>
+ * The output of continual scripts is read by the shared ScriptProbeHost, and
+ * reported in batches. A continual script that fails is restarted, waiting
+ * longer after each failure, up to rainbow.probe.restarts times.
  *
  * @author Shang-Wen Cheng (zensoul@cs.cmu.edu)
  */
 public class GenericScriptBasedProbe extends AbstractProbe implements IBashBasedScript {
 
-    public class StreamGobbler extends Thread {
+    public static final int  DEFAULT_RESTARTS = 10;
+    /** Delay before the first restart of a failed script, doubled for each further restart */
+    private static final long RESTART_DELAY     = 1000;
+    private static final long MAX_RESTART_DELAY = 60000;
 
-        private final InputStream m_inputStream;
+    /**
+     * Reports the output of one run of a continual script. A new handler is
+     * made for each run, so late callbacks from an earlier run are ignored.
+     */
+    private class OutputHandler implements IScriptOutputHandler {
 
-        public StreamGobbler (InputStream inputStream) {
-            m_inputStream = inputStream;
-        }
+        private final long m_started = System.currentTimeMillis ();
 
         @Override
-        public void run () {
-            try {
-                InputStreamReader isr = new InputStreamReader (m_inputStream);
-                BufferedReader br = new BufferedReader (isr);
-                String line;
-                while ((line = br.readLine ()) != null) {
-                    reportData (line);
-                }
-            }
-            catch (IOException ioe) {
-                log (ioe.getMessage ());
+        public void linesRead (List<String> lines) {
+            if (m_handler == this) {
+                reportData (lines);
             }
         }
 
+        @Override
+        public void processExited (int exitValue) {
+            scriptExited (this, exitValue);
+        }
+
     }
 
 
@@ -77,11 +84,19 @@ public class GenericScriptBasedProbe extends AbstractProbe implements IBashBased
 
     private String m_params = null;
 
+    private String[] m_cmds = null;
+
     private Process m_process = null;
     private boolean m_continual;
 
     private boolean m_cleanup = false;
 
+    private volatile OutputHandler m_handler = null;
+    private ScheduledFuture<?>     m_restart = null;
+    private int                    m_restarts = 0;
+    private long                   m_restartDelay = RESTART_DELAY;
+    private volatile boolean       m_dead = false;
+
     /**
      * Main Constructor.
      * @param refID  the location-unique reference identifier to match this IProbe
@@ -119,32 +134,77 @@ public class GenericScriptBasedProbe extends AbstractProbe implements IBashBased
         } else {
             cmds[1] = BASH_OPT;
             cmds[2] = m_path + " " + m_params;
-            // create a process and execute it
-            ProcessBuilder pb = new ProcessBuilder(cmds);
-            File workDir = new File(m_path).getParentFile();
-            pb.directory(workDir);
-            pb.redirectErrorStream(true);
-            try {
-                m_cleanup = false;
-                m_process = pb.start();
-                if (m_continual) {
-                    StreamGobbler outputProcessor = new StreamGobbler (m_process.getInputStream ());
-                    outputProcessor.start ();
-                    m_cleanup = true;
-                }
-                else {
+            m_cmds = cmds;
+            m_restarts = 0;
+            m_restartDelay = RESTART_DELAY;
+            m_dead = false;
+            start (cmds);
+        }
+    }
 
-                    m_process.waitFor ();
-//                    int exitValue = m_process.exitValue ();
-                    reportData (Util.getProcessOutput (m_process));
-//                    dumpOutput();
-                    m_cleanup = true;
-                }
-            } catch (IOException e) {
-                RainbowLogger.error (RainbowComponentT.PROBE, "Process I/O failed!", e, getLoggingPort (), LOGGER);
+    private void start (String[] cmds) {
+        // create a process and execute it
+        ProcessBuilder pb = new ProcessBuilder(cmds);
+        File workDir = new File(m_path).getParentFile();
+        pb.directory(workDir);
+        pb.redirectErrorStream(true);
+        try {
+            m_cleanup = false;
+            m_process = pb.start();
+            if (m_continual) {
+                m_handler = new OutputHandler ();
+                ScriptProbeHost.instance ().register (m_handler, m_process);
+                m_cleanup = true;
             }
-            catch (InterruptedException e) {
+            else {
+
+                m_process.waitFor ();
+//                int exitValue = m_process.exitValue ();
+                reportData (Util.getProcessOutput (m_process));
+//                dumpOutput();
+                m_cleanup = true;
             }
+        } catch (IOException e) {
+            RainbowLogger.error (RainbowComponentT.PROBE, "Process I/O failed!", e, getLoggingPort (), LOGGER);
+            m_dead = m_continual;
+        }
+        catch (InterruptedException e) {
+        }
+    }
+
+    private synchronized void scriptExited (OutputHandler handler, int exitValue) {
+        if (m_handler != handler) return;
+        m_handler = null;
+        m_process = null;
+        if (exitValue == 0) return;
+        int maxRestarts = (int )ScriptProbeHost.longProperty (RainbowConstants.PROPKEY_PROBE_RESTARTS,
+                DEFAULT_RESTARTS);
+        if (!isActive () || m_restarts >= maxRestarts) {
+            log ("- Script exited with " + exitValue + ", not restarting.");
+            m_dead = true;
+            return;
+        }
+        // A script that ran for a while before failing starts the backoff again
+        if (System.currentTimeMillis () - handler.m_started > MAX_RESTART_DELAY) {
+            m_restartDelay = RESTART_DELAY;
+        }
+        m_restarts++;
+        log ("- Script exited with " + exitValue + ", restarting in " + m_restartDelay + "ms (" + m_restarts
+                + "/" + maxRestarts + ").");
+        m_restart = ScriptProbeHost.instance ().schedule (new Runnable () {
+
+            @Override
+            public void run () {
+                restart ();
+            }
+        }, m_restartDelay);
+        m_restartDelay = Math.min (m_restartDelay * 2, MAX_RESTART_DELAY);
+    }
+
+    private synchronized void restart () {
+        m_restart = null;
+        if (isActive () && m_handler == null) {
+            start (m_cmds);
         }
     }
 
@@ -153,6 +213,14 @@ public class GenericScriptBasedProbe extends AbstractProbe implements IBashBased
      */
     @Override
     public synchronized void deactivate() {
+        if (m_restart != null) {
+            m_restart.cancel (false);
+            m_restart = null;
+        }
+        if (m_handler != null) {
+            ScriptProbeHost.instance ().unregister (m_handler);
+            m_handler = null;
+        }
         if (m_process != null) {
             // exhaust output to make sure process completes
             dumpOutput();
@@ -169,10 +237,12 @@ public class GenericScriptBasedProbe extends AbstractProbe implements IBashBased
      */
     @Override
     public boolean isAlive() {
+        if (m_continual) return !m_dead;
         boolean alive = true;
-        if (m_process != null && m_cleanup) {
+        Process process = m_process;
+        if (process != null && m_cleanup) {
             try {
-                if (m_process.exitValue() == 0) {  // done, cleanup
+                if (process.exitValue() == 0) {  // done, cleanup
                     m_process = null;
                 } else {
                     alive = false;
@@ -185,6 +255,15 @@ public class GenericScriptBasedProbe extends AbstractProbe implements IBashBased
         return alive;
     }
 
+    /**
+     * @return statistics about the output of the current run of a continual
+     *         script, or null if it is not running
+     */
+    public ScriptProbeHost.Statistics getStatistics () {
+        OutputHandler handler = m_handler;
+        return handler == null ? null : ScriptProbeHost.instance ().statistics (handler);
+    }
+
     private void dumpOutput () {
         log("- STDOUT+STDERR: ----\n" + Util.getProcessOutput(m_process));
     }
@@ -26,6 +26,7 @@ package org.sa.rainbow.translator.probes;
 import org.sa.rainbow.core.IRainbowRunnable;
 import org.sa.rainbow.core.ports.IRainbowReportingPort;
 
+import java.util.List;
 import java.util.Map;
 
 
@@ -163,6 +164,13 @@ public interface IProbe extends IProbeIdentifier {
      */
     void reportData (String data);
 
+    /**
+     * Reports several lines of data to the Gauge at once, in a single report
+     * where the reporting port allows it.
+     * @param data  the lines of data to report to Gauge(s), in order
+     */
+    void reportData (List<String> data);
+
     void activate ();
 
     void setLoggingPort (IRainbowReportingPort dcp);
@@ -0,0 +1,417 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.translator.probes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.sa.rainbow.core.Rainbow;
+import org.sa.rainbow.core.RainbowConstants;
+import org.sa.rainbow.core.gauges.stats.DecayingRate;
+import org.sa.rainbow.core.gauges.stats.ExponentialAverage;
+
+/**
+ * Reads the output of long-lived script probes. Instead of a thread per probe blocked reading its script's output,
+ * a small, fixed set of reader threads polls the output of all the scripts, and hands the lines of each script to
+ * its handler in batches: lines read within a flush window are delivered together. The host also keeps, for each
+ * script, the rate at which it produces lines and how long lines wait before being delivered.
+ */
+public class ScriptProbeHost {
+
+    private static final Logger LOGGER = Logger.getLogger (ScriptProbeHost.class);
+
+    /** Default number of reader threads */
+    public static final int  DEFAULT_READERS      = 2;
+    /** Default time, in milliseconds, that lines are held to be delivered together */
+    public static final long DEFAULT_FLUSH_WINDOW = 100;
+
+    /** How long readers sleep when none of their scripts has output */
+    private static final long POLL_INTERVAL = 10;
+    /** Half life of the line rates */
+    private static final long RATE_HALF_LIFE = 10000;
+
+    private static ScriptProbeHost s_instance;
+
+    /**
+     * Receives the output of a script
+     */
+    public interface IScriptOutputHandler {
+        /**
+         * Called, in a reader thread, with the lines read from the script in a flush window
+         */
+        void linesRead (List<String> lines);
+
+        /**
+         * Called, in a reader thread, after the script exits and all its output has been delivered
+         */
+        void processExited (int exitValue);
+    }
+
+    /**
+     * Statistics about the output of a script
+     */
+    public static class Statistics {
+        private final long   m_lines;
+        private final double m_linesPerSecond;
+        private final double m_lag;
+
+        Statistics (long lines, double linesPerSecond, double lag) {
+            m_lines = lines;
+            m_linesPerSecond = linesPerSecond;
+            m_lag = lag;
+        }
+
+        /**
+         * @return the number of lines read from the script
+         */
+        public long lines () {
+            return m_lines;
+        }
+
+        /**
+         * @return the recent rate of lines, per second
+         */
+        public double linesPerSecond () {
+            return m_linesPerSecond;
+        }
+
+        /**
+         * @return the average time, in milliseconds, that the oldest line in a batch waited to be delivered
+         */
+        public double lag () {
+            return m_lag;
+        }
+
+        @Override
+        public String toString () {
+            return String.format ("%d lines, %.2f lines/s, %.1f ms lag", m_lines, m_linesPerSecond, m_lag);
+        }
+    }
+
+    private class Channel {
+        final IScriptOutputHandler  m_handler;
+        final Process               m_process;
+        final InputStream           m_input;
+        final ByteArrayOutputStream m_partial = new ByteArrayOutputStream ();
+        List<String>                m_pending = new ArrayList<> ();
+        long                        m_pendingSince;
+        long                        m_lines;
+        final DecayingRate          m_rate    = new DecayingRate (RATE_HALF_LIFE);
+        final ExponentialAverage    m_lag     = new ExponentialAverage (.2);
+
+        Channel (IScriptOutputHandler handler, Process process) {
+            m_handler = handler;
+            m_process = process;
+            m_input = process.getInputStream ();
+        }
+
+        /**
+         * Reads the output that is available, delivers lines whose flush window is over and, if the script has
+         * exited, what is left
+         * 
+         * @return whether any output was read
+         */
+        boolean poll (byte[] buffer, long now) {
+            boolean exited = !m_process.isAlive ();
+            int read = 0;
+            try {
+                int available;
+                while ((available = m_input.available ()) > 0) {
+                    int n = m_input.read (buffer, 0, Math.min (available, buffer.length));
+                    if (n < 0) {
+                        break;
+                    }
+                    read += n;
+                    split (buffer, n, now);
+                }
+            }
+            catch (IOException e) {
+                // The stream was closed: treat it as the end of the output
+                exited = true;
+            }
+            if (exited && m_partial.size () > 0) {
+                addLine (now);
+            }
+            if (!m_pending.isEmpty () && (exited || now - m_pendingSince >= m_flushWindow)) {
+                flush (now);
+            }
+            if (exited) {
+                m_channels.remove (this);
+                for (List<Channel> channels : m_readerChannels) {
+                    channels.remove (this);
+                }
+                close ();
+                int exitValue;
+                try {
+                    exitValue = m_process.exitValue ();
+                }
+                catch (IllegalThreadStateException e) {
+                    exitValue = -1;
+                }
+                m_handler.processExited (exitValue);
+            }
+            return read > 0;
+        }
+
+        private void split (byte[] buffer, int length, long now) {
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    m_partial.write (buffer, start, i - start);
+                    addLine (now);
+                    start = i + 1;
+                }
+            }
+            m_partial.write (buffer, start, length - start);
+        }
+
+        private void addLine (long now) {
+            String line = new String (m_partial.toByteArray (), CHARSET);
+            m_partial.reset ();
+            if (line.endsWith ("\r")) {
+                line = line.substring (0, line.length () - 1);
+            }
+            if (m_pending.isEmpty ()) {
+                m_pendingSince = now;
+            }
+            m_pending.add (line);
+        }
+
+        private void flush (long now) {
+            List<String> lines = m_pending;
+            m_pending = new ArrayList<> ();
+            synchronized (this) {
+                m_lines += lines.size ();
+                m_rate.add (lines.size (), now);
+                m_lag.add (now - m_pendingSince);
+            }
+            try {
+                m_handler.linesRead (lines);
+            }
+            catch (Exception e) {
+                LOGGER.error ("Probe output handler failed", e);
+            }
+        }
+
+        void close () {
+            try {
+                m_input.close ();
+            }
+            catch (IOException e) {
+                LOGGER.warn ("Could not close the output of a probe script", e);
+            }
+        }
+
+        synchronized Statistics statistics () {
+            return new Statistics (m_lines, m_rate.rate (System.currentTimeMillis ()), m_lag.hasValue () ? m_lag.value ()
+                    : 0);
+        }
+    }
+
+    private static final Charset CHARSET = Charset.defaultCharset ();
+
+    private final long                      m_flushWindow;
+    private final List<Channel>             m_channels       = new CopyOnWriteArrayList<> ();
+    private final List<List<Channel>>       m_readerChannels = new ArrayList<> ();
+    private final List<Thread>              m_readers        = new ArrayList<> ();
+    private final ScheduledExecutorService  m_scheduler;
+    private volatile boolean                m_shutdown       = false;
+
+    /**
+     * @param readers
+     *            the number of threads reading the output of the scripts
+     * @param flushWindow
+     *            the time, in milliseconds, that lines are held to be delivered together
+     */
+    public ScriptProbeHost (int readers, long flushWindow) {
+        m_flushWindow = flushWindow;
+        for (int i = 0; i < Math.max (1, readers); i++) {
+            final List<Channel> channels = new CopyOnWriteArrayList<> ();
+            m_readerChannels.add (channels);
+            Thread t = new Thread (new Runnable () {
+
+                @Override
+                public void run () {
+                    read (channels);
+                }
+            }, "Script Probe Reader " + (i + 1));
+            t.setDaemon (true);
+            m_readers.add (t);
+            t.start ();
+        }
+        m_scheduler = Executors.newSingleThreadScheduledExecutor (new ThreadFactory () {
+
+            @Override
+            public Thread newThread (Runnable r) {
+                Thread t = new Thread (r, "Script Probe Restarter");
+                t.setDaemon (true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * @return the host shared by the script probes in this process, configured by the rainbow.probe.readers and
+     *         rainbow.probe.flush properties
+     */
+    public static synchronized ScriptProbeHost instance () {
+        if (s_instance == null) {
+            s_instance = new ScriptProbeHost (
+                    (int )longProperty (RainbowConstants.PROPKEY_PROBE_READERS, DEFAULT_READERS),
+                    longProperty (RainbowConstants.PROPKEY_PROBE_FLUSH_WINDOW, DEFAULT_FLUSH_WINDOW));
+        }
+        return s_instance;
+    }
+
+    static long longProperty (String key, long defaultValue) {
+        String value = Rainbow.instance ().getProperty (key);
+        if (value != null) {
+            try {
+                return Long.parseLong (value.trim ());
+            }
+            catch (NumberFormatException e) {
+                LOGGER.warn ("Ignoring invalid value of " + key + ": " + value);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Starts reading the output of a script
+     * 
+     * @param handler
+     *            receives the output; identifies the script in the host
+     * @param process
+     *            the script, whose error output should be redirected to its output
+     */
+    public void register (IScriptOutputHandler handler, Process process) {
+        Channel c = new Channel (handler, process);
+        m_channels.add (c);
+        List<Channel> least = m_readerChannels.get (0);
+        for (List<Channel> channels : m_readerChannels) {
+            if (channels.size () < least.size ()) {
+                least = channels;
+            }
+        }
+        least.add (c);
+    }
+
+    /**
+     * Stops reading the output of a script. Lines that have not been delivered are discarded.
+     */
+    public void unregister (IScriptOutputHandler handler) {
+        Channel c = channel (handler);
+        if (c != null) {
+            m_channels.remove (c);
+            for (List<Channel> channels : m_readerChannels) {
+                channels.remove (c);
+            }
+        }
+    }
+
+    /**
+     * @return statistics about the output of a script, or null if it is not registered
+     */
+    public Statistics statistics (IScriptOutputHandler handler) {
+        Channel c = channel (handler);
+        return c == null ? null : c.statistics ();
+    }
+
+    /**
+     * Runs a task (e.g., restarting a script) after a delay, in a thread of the host
+     */
+    public ScheduledFuture<?> schedule (Runnable task, long delay) {
+        return m_scheduler.schedule (task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the reader threads and closes the output of the scripts still registered
+     */
+    public void shutdown () {
+        m_shutdown = true;
+        for (Thread t : m_readers) {
+            t.interrupt ();
+        }
+        m_scheduler.shutdownNow ();
+        // Wait for the readers to stop polling before closing the streams they read
+        for (Thread t : m_readers) {
+            try {
+                t.join (1000);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread ().interrupt ();
+                break;
+            }
+        }
+        for (Channel c : m_channels) {
+            c.close ();
+        }
+        m_channels.clear ();
+        for (List<Channel> channels : m_readerChannels) {
+            channels.clear ();
+        }
+    }
+
+    private Channel channel (IScriptOutputHandler handler) {
+        for (Channel c : m_channels) {
+            if (c.m_handler == handler) return c;
+        }
+        return null;
+    }
+
+    private void read (List<Channel> channels) {
+        byte[] buffer = new byte[8192];
+        while (!m_shutdown) {
+            boolean read = false;
+            long now = System.currentTimeMillis ();
+            for (Channel c : channels) {
+                try {
+                    read |= c.poll (buffer, now);
+                }
+                catch (Exception e) {
+                    LOGGER.error ("Failed to read probe output", e);
+                }
+            }
+            if (!read) {
+                try {
+                    Thread.sleep (POLL_INTERVAL);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.util;
+
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram that can be updated concurrently without locking. Latencies are counted in buckets whose
+ * bounds are powers of two microseconds, so percentiles are estimates that are accurate within a factor of two.
+ */
+public class LatencyHistogram {
+
+    /** The number of buckets; the last one counts every latency above 2^(BUCKETS - 2) microseconds */
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray m_buckets = new AtomicLongArray (BUCKETS);
+    private final AtomicLong      m_count   = new AtomicLong ();
+    private final AtomicLong      m_sumNanos = new AtomicLong ();
+    private final AtomicLong      m_maxNanos = new AtomicLong ();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency, in nanoseconds
+     */
+    public void record (long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1000;
+        int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros (micros);
+        m_buckets.incrementAndGet (Math.min (bucket, BUCKETS - 1));
+        m_count.incrementAndGet ();
+        m_sumNanos.addAndGet (nanos);
+        long max;
+        while (nanos > (max = m_maxNanos.get ())) {
+            if (m_maxNanos.compareAndSet (max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return the number of latencies recorded
+     */
+    public long getCount () {
+        return m_count.get ();
+    }
+
+    /**
+     * @return the mean latency, in milliseconds, or 0 if nothing has been recorded
+     */
+    public double getMeanMillis () {
+        long count = m_count.get ();
+        return count == 0 ? 0 : m_sumNanos.get () / (count * 1e6);
+    }
+
+    /**
+     * @return the largest latency recorded, in milliseconds
+     */
+    public double getMaxMillis () {
+        return m_maxNanos.get () / 1e6;
+    }
+
+    /**
+     * Estimates a percentile of the recorded latencies, as the upper bound of the bucket in which it falls.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency, in milliseconds, or 0 if nothing has been recorded
+     */
+    public double getPercentileMillis (double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException ("Percentile must be between 0 and 100: " + percentile);
+        long count = 0;
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = m_buckets.get (i);
+            count += buckets[i];
+        }
+        if (count == 0) return 0;
+
+        long rank = Math.max (1, (long )Math.ceil (count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += buckets[i];
+            if (seen >= rank) return (1L << i) / 1000.0;
+        }
+        return getMaxMillis ();
+    }
+
+    @Override
+    public String toString () {
+        return MessageFormat.format ("count={0}, mean={1,number,0.###}ms, p50={2,number,0.###}ms, "
+                + "p99={3,number,0.###}ms, max={4,number,0.###}ms", getCount (), getMeanMillis (),
+                getPercentileMillis (50), getPercentileMillis (99), getMaxMillis ());
+    }
+}
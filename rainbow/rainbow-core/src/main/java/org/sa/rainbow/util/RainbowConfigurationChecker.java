@@ -38,6 +38,7 @@ import org.sa.rainbow.core.models.ModelReference;
 import org.sa.rainbow.core.models.ProbeDescription;
 import org.sa.rainbow.core.models.ProbeDescription.ProbeAttributes;
 import org.sa.rainbow.core.models.commands.ModelCommandFactory;
+import org.sa.rainbow.core.ports.IMasterConnectionPort.ReportType;
 import org.sa.rainbow.core.ports.IRainbowReportingPort;
 import org.sa.rainbow.core.util.Pair;
 import org.sa.rainbow.core.util.TypedAttribute;
@@ -561,6 +562,11 @@ public class RainbowConfigurationChecker implements IRainbowReportingPort {
 
     }
 
+    @Override
+    public boolean isReported (RainbowComponentT type, ReportType reportType) {
+        return false;
+    }
+
     @Override
     public void dispose () {
         // TODO Auto-generated method stub
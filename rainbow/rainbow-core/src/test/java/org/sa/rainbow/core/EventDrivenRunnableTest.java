@@ -0,0 +1,137 @@
+package org.sa.rainbow.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class EventDrivenRunnableTest {
+
+    @BeforeClass
+    public static void configureTestProperties () throws IOException {
+        File basePath = new File (System.getProperty ("user.dir"));
+        File testMasterDir = new File (basePath, "src/test/resources/RainbowTest/eseb");
+        System.setProperty ("user.dir", testMasterDir.getCanonicalPath ());
+    }
+
+    private static class CountingRunnable extends AbstractRainbowRunnable {
+        private final Semaphore m_runs = new Semaphore (0);
+
+        CountingRunnable (boolean eventDriven, boolean periodic) {
+            super ("Counting Runnable");
+            setEventDriven (eventDriven);
+            setPeriodic (periodic);
+            setSleepTime (IRainbowRunnable.LONG_SLEEP_TIME * 10);
+        }
+
+        @Override
+        protected void log (String txt) {
+        }
+
+        @Override
+        protected void runAction () {
+            m_runs.release ();
+        }
+
+        @Override
+        public RainbowComponentT getComponentType () {
+            return RainbowComponentT.MASTER;
+        }
+
+        @Override
+        public void dispose () {
+        }
+    }
+
+    private void checkWakeUp (boolean eventDriven) throws InterruptedException {
+        CountingRunnable r = new CountingRunnable (eventDriven, false);
+        r.start ();
+        try {
+            assertEquals (eventDriven, r.isEventDriven ());
+            // Nothing to do: the runnable does not run until the end of its (long) period
+            assertFalse (r.m_runs.tryAcquire (200, TimeUnit.MILLISECONDS));
+            r.wakeUp ();
+            assertTrue (r.m_runs.tryAcquire (1, TimeUnit.SECONDS));
+            r.wakeUp ();
+            assertTrue (r.m_runs.tryAcquire (1, TimeUnit.SECONDS));
+            // The run time is recorded when runAction returns
+            for (int i = 0; i < 100 && r.getRunTimeHistogram ().getCount () < 2; i++) {
+                Thread.sleep (10);
+            }
+            assertEquals (2, r.getRunTimeHistogram ().getCount ());
+            assertEquals (2, r.getWakeUpLatencyHistogram ().getCount ());
+            assertTrue (r.getWakeUpLatencyHistogram ().getMaxMillis () < 1000);
+        }
+        finally {
+            r.terminate ();
+        }
+    }
+
+    @Test
+    public void testThreadRunnableWakesUp () throws InterruptedException {
+        checkWakeUp (false);
+    }
+
+    @Test
+    public void testEventDrivenRunnableWakesUp () throws InterruptedException {
+        checkWakeUp (true);
+    }
+
+    @Test
+    public void testThreadRunnableIgnoresWakeUpWhileStopped () throws InterruptedException {
+        CountingRunnable r = new CountingRunnable (false, false);
+        r.start ();
+        try {
+            // A thread runnable applies a stop on its next cycle
+            r.stop ();
+            r.wakeUp ();
+            assertTrue (r.m_runs.tryAcquire (1, TimeUnit.SECONDS));
+            for (int i = 0; i < 100 && r.state () != IRainbowRunnable.State.STOPPED; i++) {
+                Thread.sleep (10);
+            }
+            assertEquals (IRainbowRunnable.State.STOPPED, r.state ());
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean ();
+            long threadId = r.activeThread ().getId ();
+            long cpuBefore = threads.isThreadCpuTimeSupported () ? threads.getThreadCpuTime (threadId) : 0;
+            r.wakeUp ();
+            Thread.sleep (500);
+            if (threads.isThreadCpuTimeSupported ()) {
+                // The thread went back to waiting instead of spinning on the pending wake-up
+                assertTrue (threads.getThreadCpuTime (threadId) - cpuBefore < TimeUnit.MILLISECONDS.toNanos (100));
+            }
+
+            // The wake-up was dropped, so starting again does not run the action before the next wake-up
+            r.start ();
+            assertFalse (r.m_runs.tryAcquire (300, TimeUnit.MILLISECONDS));
+            r.wakeUp ();
+            assertTrue (r.m_runs.tryAcquire (1, TimeUnit.SECONDS));
+        }
+        finally {
+            r.terminate ();
+        }
+    }
+
+    @Test
+    public void testEventDrivenRunnableIsPeriodic () throws InterruptedException {
+        CountingRunnable r = new CountingRunnable (true, true);
+        r.setSleepTime (IRainbowRunnable.SLEEP_TIME);
+        r.start ();
+        try {
+            assertTrue (r.m_runs.tryAcquire (3, 2, TimeUnit.SECONDS));
+        }
+        finally {
+            r.terminate ();
+        }
+        assertEquals (0, r.getWakeUpLatencyHistogram ().getCount ());
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.sa.rainbow.core.RainbowComponentT;
+import org.sa.rainbow.core.ports.IMasterConnectionPort.ReportType;
 import org.sa.rainbow.core.ports.IRainbowReportingPort;
 
 import java.text.MessageFormat;
@@ -53,6 +54,11 @@ public class AdaptationTreeTest extends DefaultTCase {
             L.trace (composeMessage (type, msg));
         }
 
+        @Override
+        public boolean isReported (RainbowComponentT type, ReportType reportType) {
+            return true;
+        }
+
         @Override
         public void info (RainbowComponentT type, String msg) {
             L.info (composeMessage (type, msg));
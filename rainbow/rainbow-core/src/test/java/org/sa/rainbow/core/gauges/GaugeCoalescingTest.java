@@ -0,0 +1,180 @@
+package org.sa.rainbow.core.gauges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sa.rainbow.core.Rainbow;
+import org.sa.rainbow.core.RainbowConstants;
+import org.sa.rainbow.core.error.RainbowException;
+import org.sa.rainbow.core.models.ModelReference;
+import org.sa.rainbow.core.models.commands.IRainbowOperation;
+import org.sa.rainbow.core.ports.IModelUSBusPort;
+import org.sa.rainbow.core.ports.IRainbowConnectionPortFactory;
+import org.sa.rainbow.core.ports.IRainbowReportingPort;
+import org.sa.rainbow.core.ports.RainbowPortFactory;
+import org.sa.rainbow.core.util.TypedAttribute;
+import org.sa.rainbow.core.util.TypedAttributeWithValue;
+
+/**
+ * Checks that a gauge holds the updates it issues for coalescing, sends only the newest value of each property when
+ * it flushes them, and reports the updates it sends rather than those it holds.
+ */
+public class GaugeCoalescingTest {
+
+    private static final ModelReference MODEL = new ModelReference ("testModel", "Acme");
+
+    /** The updates sent by the gauge: operations, or lists of operations sent together */
+    private final List<Object> m_sent    = new ArrayList<> ();
+    /** The messages the gauge reported */
+    private final List<String> m_reports = new ArrayList<> ();
+
+    private Object m_oldFactory;
+    private String m_oldUserDir;
+
+    @Before
+    public void setUp () throws Exception {
+        m_oldUserDir = System.getProperty ("user.dir");
+        File testMasterDir = new File (m_oldUserDir, "src/test/resources/RainbowTest/eseb");
+        System.setProperty ("user.dir", testMasterDir.getCanonicalPath ());
+        Rainbow.instance ().setProperty (RainbowConstants.PROPKEY_GAUGE_COALESCE_INTERVAL, 60000L);
+
+        Field factory = RainbowPortFactory.class.getDeclaredField ("m_instance");
+        factory.setAccessible (true);
+        m_oldFactory = factory.get (null);
+        factory.set (null, stub (IRainbowConnectionPortFactory.class, new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getReturnType () == IModelUSBusPort.class) return stub (IModelUSBusPort.class,
+                        new InvocationHandler () {
+
+                    @Override
+                    public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("updateModel".equals (method.getName ())) {
+                            m_sent.add (args[0] instanceof List ? new ArrayList<> ((List<?> )args[0]) : args[0]);
+                        }
+                        return null;
+                    }
+                });
+                return method.getReturnType ().isInterface () ? stub (method.getReturnType (), null) : null;
+            }
+        }));
+    }
+
+    @After
+    public void tearDown () throws Exception {
+        Field factory = RainbowPortFactory.class.getDeclaredField ("m_instance");
+        factory.setAccessible (true);
+        factory.set (null, m_oldFactory);
+        Rainbow.instance ().setProperty (RainbowConstants.PROPKEY_GAUGE_COALESCE_INTERVAL, 0L);
+        System.setProperty ("user.dir", m_oldUserDir);
+    }
+
+    private static Object stub (Class<?> type, final InvocationHandler handler) {
+        return Proxy.newProxyInstance (type.getClassLoader (), new Class<?>[] {type}, new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                if (handler != null) return handler.invoke (proxy, method, args);
+                Class<?> r = method.getReturnType ();
+                if (r == boolean.class) return false;
+                if (r.isPrimitive () && r != void.class) return 0;
+                return null;
+            }
+        });
+    }
+
+    private AbstractGauge createGauge () throws RainbowException {
+        final IRainbowReportingPort reports = (IRainbowReportingPort )stub (IRainbowReportingPort.class,
+                new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                if ("info".equals (method.getName ())) {
+                    m_reports.add ((String )args[1]);
+                }
+                return null;
+            }
+        });
+        return new AbstractGauge ("G - TEST_GAUGE", "__TEST", 5000, new TypedAttribute ("testGauge", "Test"),
+                new TypedAttribute ("testModel", "Acme"), Collections.<TypedAttributeWithValue> emptyList (),
+                Collections.<String, IRainbowOperation> singletonMap ("load", op ("setLoad", "s", "l"))) {
+            {
+                m_reportingPort = reports;
+            }
+        };
+    }
+
+    private static OperationRepresentation op (String name, String target, String... parameters) {
+        return new OperationRepresentation (name, MODEL, target, parameters);
+    }
+
+    private static String describe (Object update) {
+        IRainbowOperation op = (IRainbowOperation )update;
+        return op.getTarget () + "." + op.getName () + Arrays.toString (op.getParameters ());
+    }
+
+    private List<String> gaugeReports () {
+        List<String> reports = new ArrayList<> ();
+        for (String report : m_reports) {
+            if (report.startsWith ("G[__TEST]")) {
+                reports.add (report);
+            }
+        }
+        return reports;
+    }
+
+    @Test
+    public void heldUpdatesAreCoalescedAndReportedWhenFlushed () throws Exception {
+        AbstractGauge gauge = createGauge ();
+        gauge.issueCommand (op ("setLoad", "Server0", "1"), Collections.<String, String> emptyMap ());
+        gauge.issueCommand (op ("setLoad", "Server0", "2"), Collections.<String, String> emptyMap ());
+        gauge.issueCommand (op ("setLoad", "Server1", "5"), Collections.<String, String> emptyMap ());
+        assertTrue (m_sent.isEmpty ());
+        assertTrue (gaugeReports ().isEmpty ());
+
+        gauge.flushUpdates ();
+        assertEquals (1, m_sent.size ());
+        List<?> batch = (List<?> )m_sent.get (0);
+        assertEquals (2, batch.size ());
+        assertEquals ("Server0.setLoad[2]", describe (batch.get (0)));
+        assertEquals ("Server1.setLoad[5]", describe (batch.get (1)));
+        assertEquals (1, gauge.getCoalescedUpdateCount ());
+        assertEquals (2, gauge.getSentUpdateCount ());
+        List<String> reports = gaugeReports ();
+        assertEquals (2, reports.size ());
+        assertTrue (reports.get (0).endsWith ("Server0.setLoad([2])"));
+        assertTrue (reports.get (1).endsWith ("Server1.setLoad([5])"));
+
+        // Nothing is held any more
+        gauge.flushUpdates ();
+        assertEquals (1, m_sent.size ());
+    }
+
+    @Test
+    public void updateThatCannotBeCoalescedFlushesHeldUpdatesFirst () throws Exception {
+        AbstractGauge gauge = createGauge ();
+        gauge.issueCommand (op ("setLoad", "Server0", "3"), Collections.<String, String> emptyMap ());
+        gauge.issueCommand (op ("enableServer", "Server0", "true"), Collections.<String, String> emptyMap ());
+        assertEquals (2, m_sent.size ());
+        assertEquals ("Server0.setLoad[3]", describe (m_sent.get (0)));
+        assertEquals ("Server0.enableServer[true]", describe (m_sent.get (1)));
+        List<String> reports = gaugeReports ();
+        assertEquals (2, reports.size ());
+        assertTrue (reports.get (0).endsWith ("Server0.setLoad([3])"));
+        assertTrue (reports.get (1).endsWith ("Server0.enableServer([true])"));
+    }
+}
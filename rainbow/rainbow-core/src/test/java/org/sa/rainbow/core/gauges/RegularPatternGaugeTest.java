@@ -0,0 +1,197 @@
+package org.sa.rainbow.core.gauges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sa.rainbow.core.error.RainbowException;
+import org.sa.rainbow.core.models.ModelReference;
+import org.sa.rainbow.core.models.commands.IRainbowOperation;
+import org.sa.rainbow.core.ports.IRainbowConnectionPortFactory;
+import org.sa.rainbow.core.ports.RainbowPortFactory;
+import org.sa.rainbow.core.util.TypedAttribute;
+import org.sa.rainbow.core.util.TypedAttributeWithValue;
+
+/**
+ * Checks that a regular pattern gauge hands each report to the first pattern that matches it, with the groups of that
+ * pattern numbered as they are in the pattern, whether or not the patterns can be combined, and that it keeps only the
+ * newest matches when they are not processed in time.
+ */
+public class RegularPatternGaugeTest {
+
+    private Object m_oldFactory;
+    private String m_oldUserDir;
+
+    @Before
+    public void setUp () throws Exception {
+        m_oldUserDir = System.getProperty ("user.dir");
+        File testMasterDir = new File (m_oldUserDir, "src/test/resources/RainbowTest/eseb");
+        System.setProperty ("user.dir", testMasterDir.getCanonicalPath ());
+
+        Field factory = RainbowPortFactory.class.getDeclaredField ("m_instance");
+        factory.setAccessible (true);
+        m_oldFactory = factory.get (null);
+        factory.set (null, stub (IRainbowConnectionPortFactory.class, new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                return method.getReturnType ().isInterface () ? stub (method.getReturnType (), null) : null;
+            }
+        }));
+    }
+
+    @After
+    public void tearDown () throws Exception {
+        Field factory = RainbowPortFactory.class.getDeclaredField ("m_instance");
+        factory.setAccessible (true);
+        factory.set (null, m_oldFactory);
+        System.setProperty ("user.dir", m_oldUserDir);
+    }
+
+    private static Object stub (Class<?> type, final InvocationHandler handler) {
+        return Proxy.newProxyInstance (type.getClassLoader (), new Class<?>[] {type}, new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                if (handler != null) return handler.invoke (proxy, method, args);
+                Class<?> r = method.getReturnType ();
+                if (r == boolean.class) return false;
+                if (r.isPrimitive () && r != void.class) return 0;
+                return null;
+            }
+        });
+    }
+
+    /**
+     * A gauge that records each match as the pattern name followed by the groups of the match
+     */
+    private static class RecordingGauge extends RegularPatternGauge {
+        final List<String> matches = new ArrayList<> ();
+
+        RecordingGauge (List<TypedAttributeWithValue> setupParams) throws RainbowException {
+            super ("G - TEST_GAUGE", "__TEST", 5000, new TypedAttribute ("testGauge", "Test"),
+                    new TypedAttribute ("testModel", "Acme"), setupParams,
+                    Collections.<String, IRainbowOperation> singletonMap ("load", new OperationRepresentation (
+                            "setLoad", new ModelReference ("testModel", "Acme"), "s", "l")));
+        }
+
+        void pattern (String name, Pattern p) {
+            addPattern (name, p);
+        }
+
+        void report (String... data) {
+            for (String d : data) {
+                reportFromProbe (null, d);
+            }
+        }
+
+        List<String> process () {
+            runAction ();
+            List<String> processed = new ArrayList<> (matches);
+            matches.clear ();
+            return processed;
+        }
+
+        @Override
+        protected void doMatch (String matchName, MatchResult m) {
+            StringBuilder s = new StringBuilder (matchName).append (':').append (m.group ());
+            for (int i = 1; i <= m.groupCount (); i++) {
+                s.append ('|').append (m.group (i)).append ('@').append (m.start (i));
+            }
+            matches.add (s.toString ());
+        }
+    }
+
+    private static RecordingGauge createGauge (TypedAttributeWithValue... setupParams) throws RainbowException {
+        return new RecordingGauge (Arrays.asList (setupParams));
+    }
+
+    @Test
+    public void groupsAreNumberedPerPattern () throws Exception {
+        RecordingGauge gauge = createGauge ();
+        gauge.pattern ("load", Pattern.compile ("load (\\w+) (\\d+)"));
+        gauge.pattern ("up", Pattern.compile ("up (\\w+)"));
+        gauge.pattern ("latency", Pattern.compile ("(\\w+) took (\\d+)(ms|s)"));
+        gauge.report ("up s1", "s2 took 30ms", "load s3 7", "nothing");
+        assertEquals (Arrays.asList ("up:up s1|s1@3", "latency:s2 took 30ms|s2@0|30@8|ms@10", "load:load s3 7|s3@5|7@8"),
+                gauge.process ());
+        assertEquals (1, gauge.getPatternHits ("load"));
+        assertEquals (3, gauge.getPatternMisses ("up"));
+    }
+
+    @Test
+    public void firstMatchingPatternWins () throws Exception {
+        RecordingGauge gauge = createGauge ();
+        gauge.pattern ("specific", Pattern.compile ("load (s1)"));
+        gauge.pattern ("general", Pattern.compile ("load (\\w+)"));
+        gauge.report ("load s1", "load s2");
+        assertEquals (Arrays.asList ("specific:load s1|s1@5", "general:load s2|s2@5"), gauge.process ());
+    }
+
+    @Test
+    public void namedAndNestedGroups () throws Exception {
+        RecordingGauge gauge = createGauge ();
+        gauge.pattern ("nested", Pattern.compile ("((a+)(b+))c(?:d)"));
+        gauge.pattern ("named", Pattern.compile ("(?<host>\\w+):(?<port>\\d+)"));
+        gauge.pattern ("optional", Pattern.compile ("x(y)?z"));
+        gauge.report ("host:80", "aabbbcd", "xz");
+        assertEquals (Arrays.asList ("named:host:80|host@0|80@5", "nested:aabbbcd|aabbb@0|aa@0|bbb@2",
+                "optional:xz|null@-1"), gauge.process ());
+    }
+
+    @Test
+    public void patternsThatCannotBeCombinedAreTriedOneByOne () throws Exception {
+        // Flags and back references change meaning when embedded, and group names must be unique in one pattern
+        RecordingGauge gauge = createGauge ();
+        gauge.pattern ("flags", Pattern.compile ("load (\\w+)", Pattern.CASE_INSENSITIVE));
+        gauge.pattern ("repeat", Pattern.compile ("(\\w+)-\\1"));
+        gauge.report ("LOAD S1", "ab-ab", "ab-cd");
+        assertEquals (Arrays.asList ("flags:LOAD S1|S1@5", "repeat:ab-ab|ab@0"), gauge.process ());
+
+        gauge = createGauge ();
+        gauge.pattern ("a", Pattern.compile ("a (?<v>\\d+)"));
+        gauge.pattern ("b", Pattern.compile ("b (?<v>\\d+)"));
+        gauge.report ("b 2", "a 1");
+        assertEquals (Arrays.asList ("b:b 2|2@2", "a:a 1|1@2"), gauge.process ());
+    }
+
+    @Test
+    public void oldestMatchesAreDroppedWhenTheRingIsFull () throws Exception {
+        RecordingGauge gauge = createGauge (
+                new TypedAttributeWithValue (RegularPatternGauge.MAX_UPDATES_PER_CYCLE, "int", 2),
+                new TypedAttributeWithValue (RegularPatternGauge.MAX_QUEUED_MATCHES, "int", 3));
+        gauge.pattern ("n", Pattern.compile ("\\d+"));
+        gauge.report ("1", "2", "3", "4", "5");
+        assertEquals (2, gauge.getDroppedMatches ());
+        assertEquals (Arrays.asList ("n:3", "n:4"), gauge.process ());
+        gauge.report ("6");
+        assertEquals (Arrays.asList ("n:5", "n:6"), gauge.process ());
+        assertTrue (gauge.process ().isEmpty ());
+        assertEquals (2, gauge.getDroppedMatches ());
+    }
+
+    @Test
+    public void mostRecentFirstKeepsOnlyTheNewestMatches () throws Exception {
+        RecordingGauge gauge = createGauge (
+                new TypedAttributeWithValue (RegularPatternGauge.MOST_RECENT, "boolean", true),
+                new TypedAttributeWithValue (RegularPatternGauge.MAX_UPDATES_PER_CYCLE, "int", 2));
+        gauge.pattern ("n", Pattern.compile ("\\d+"));
+        gauge.report ("1", "2", "3", "4", "5");
+        assertEquals (Arrays.asList ("n:4", "n:5"), gauge.process ());
+        assertEquals (3, gauge.getDroppedMatches ());
+    }
+}
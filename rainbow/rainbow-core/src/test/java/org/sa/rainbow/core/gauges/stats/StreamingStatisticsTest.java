@@ -0,0 +1,88 @@
+package org.sa.rainbow.core.gauges.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StreamingStatisticsTest {
+
+    @Test
+    public void testSlidingWindowKeepsLastValues () {
+        SlidingWindow w = new SlidingWindow (3);
+        assertTrue (Double.isNaN (w.mean ()));
+        assertTrue (Double.isNaN (w.add (1)));
+        w.add (5);
+        w.add (3);
+        assertTrue (w.isFull ());
+        assertEquals (3, w.mean (), 1e-9);
+        assertEquals (1, w.add (4), 1e-9);
+        assertEquals (12, w.sum (), 1e-9);
+        assertEquals (3, w.min (), 1e-9);
+        assertEquals (5, w.max (), 1e-9);
+        assertEquals (4, w.last (), 1e-9);
+        assertEquals (4, w.count ());
+        assertEquals ("[5.0, 3.0, 4.0]", w.toString ());
+    }
+
+    @Test
+    public void testExponentialAverageStartsAtFirstValue () {
+        ExponentialAverage a = new ExponentialAverage (.3);
+        assertFalse (a.hasValue ());
+        assertEquals (10, a.add (10), 1e-9);
+        assertEquals (.7 * 10 + .3 * 20, a.add (20), 1e-9);
+        assertTrue (a.hasValue ());
+    }
+
+    @Test
+    public void testDecayingRateConvergesToSteadyRate () {
+        DecayingRate r = new DecayingRate (1000);
+        // 10 events every 100ms is 100 events per second
+        for (long t = 0; t <= 20000; t += 100) {
+            r.add (10, t);
+        }
+        assertEquals (100, r.rate (20000), 5);
+        // after one half-life without events the rate halves
+        assertEquals (r.rate (20000) / 2, r.rate (21000), 1e-6);
+    }
+
+    @Test
+    public void testQuantileSketchEstimatesQuantiles () {
+        QuantileSketch median = new QuantileSketch (.5);
+        QuantileSketch p95 = new QuantileSketch (.95);
+        assertTrue (Double.isNaN (median.value ()));
+        median.add (3);
+        median.add (1);
+        median.add (2);
+        assertEquals (2, median.value (), 1e-9);
+        Random random = new Random (42);
+        for (int i = 0; i < 100000; i++) {
+            double v = random.nextDouble () * 100;
+            median.add (v);
+            p95.add (v);
+        }
+        assertEquals (50, median.value (), 1);
+        assertEquals (95, p95.value (), 1);
+    }
+
+    @Test
+    public void testStatisticsMapCreatesOncePerKey () {
+        StatisticsMap<SlidingWindow> windows = new StatisticsMap<SlidingWindow> () {
+            @Override
+            protected SlidingWindow create (String key) {
+                return new SlidingWindow (2);
+            }
+        };
+        assertNull (windows.peek ("a"));
+        SlidingWindow a = windows.get ("a");
+        assertSame (a, windows.get ("a"));
+        assertTrue (windows.containsKey ("a"));
+        assertFalse (windows.containsKey ("b"));
+        assertEquals (1, windows.keys ().size ());
+    }
+}
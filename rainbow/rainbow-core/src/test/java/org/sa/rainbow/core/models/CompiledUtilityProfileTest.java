@@ -0,0 +1,165 @@
+package org.sa.rainbow.core.models;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.sa.rainbow.core.models.UtilityPreferenceDescription.UtilityAttributes;
+
+import auxtestlib.DefaultTCase;
+
+/**
+ * Checks that utility functions interpolate between their values, and that compiled profiles score the same way as
+ * weighing the utility functions by name.
+ */
+public class CompiledUtilityProfileTest extends DefaultTCase {
+
+    static UtilityAttributes attributes (String mapping, double... xy) {
+        UtilityAttributes atts = new UtilityAttributes ();
+        atts.label = mapping;
+        atts.mapping = mapping;
+        atts.values = new HashMap<> ();
+        for (int i = 0; i < xy.length; i += 2) {
+            atts.values.put (xy[i], xy[i + 1]);
+        }
+        return atts;
+    }
+
+    /**
+     * @return a description with utilities u0..u(n-1), each with a few values, and a scenario "s" that weighs all but
+     *         the last one
+     */
+    static UtilityPreferenceDescription makeDescription (int n, Random r) {
+        UtilityPreferenceDescription desc = new UtilityPreferenceDescription ();
+        Map<String, Double> weights = new HashMap<> ();
+        for (int u = 0; u < n; u++) {
+            double[] xy = new double[10];
+            for (int i = 0; i < 5; i++) {
+                xy[2 * i] = i * 10 + r.nextInt (5);
+                xy[2 * i + 1] = r.nextDouble ();
+            }
+            desc.addAttributes ("u" + u, attributes ("p" + u, xy));
+            if (u < n - 1) {
+                weights.put ("u" + u, 1.0 / n);
+            }
+        }
+        desc.weights.put ("s", weights);
+        return desc;
+    }
+
+    /** Utility function evaluation as the adaptation manager used to do it, on the sorted map of values */
+    static double interpolate (SortedMap<Double, Double> values, double x) {
+        if (values.containsKey (x)) return values.get (x);
+        if (x < values.firstKey ()) return values.get (values.firstKey ());
+        if (x > values.lastKey ()) return values.get (values.lastKey ());
+        double a = values.headMap (x).lastKey ();
+        double b = values.tailMap (x).firstKey ();
+        double f_a = values.get (a);
+        double f_b = values.get (b);
+        return f_a + ((f_b - f_a) / (b - a)) * (x - a);
+    }
+
+    @Test
+    public void functionInterpolates () throws Exception {
+        UtilityFunction f = new UtilityFunction ("u", "u", "p", "", attributes ("p", 0, 1, 10, 0.5, 20, 0).values);
+        assertEquals (1.0, f.f (-5), 1e-9);
+        assertEquals (1.0, f.f (0), 1e-9);
+        assertEquals (0.75, f.f (5), 1e-9);
+        assertEquals (0.5, f.f (10), 1e-9);
+        assertEquals (0.25, f.f (15), 1e-9);
+        assertEquals (0.0, f.f (20), 1e-9);
+        assertEquals (0.0, f.f (100), 1e-9);
+        assertEquals (0.0, new UtilityFunction ("e", "e", "p", "", new HashMap<> ()).f (3), 1e-9);
+    }
+
+    @Test
+    public void profileResolvesDimensions () throws Exception {
+        UtilityPreferenceDescription desc = makeDescription (3, new Random (1));
+        CompiledUtilityProfile profile = desc.compiledProfile ("s");
+        assertSame (profile, desc.compiledProfile ("s"));
+        assertEquals (3, profile.dimensionCount ());
+        int d = profile.dimension ("u1");
+        assertEquals ("u1", profile.name (d));
+        assertEquals ("p1", profile.mapping (d));
+        assertTrue (profile.isWeighted (d));
+        assertFalse (profile.isWeighted (profile.dimension ("u2")));
+        assertEquals (-1, profile.dimension ("none"));
+        assertFalse (desc.compiledProfile ("other").isWeighted (d));
+    }
+
+    @Test
+    public void scoreAllMatchesScoringByName () throws Exception {
+        Random r = new Random (7);
+        UtilityPreferenceDescription desc = makeDescription (6, r);
+        CompiledUtilityProfile profile = desc.compiledProfile ("s");
+        Map<String, Double> weights = desc.weights.get ("s");
+        double[][] attributes = new double[50][];
+        double[] conditions = new double[profile.dimensionCount ()];
+        for (int d = 0; d < conditions.length; d++) {
+            conditions[d] = r.nextInt (20);
+        }
+        for (int s = 0; s < attributes.length; s++) {
+            attributes[s] = profile.emptyVector ();
+            for (int d = 0; d < conditions.length; d++) {
+                if (r.nextInt (4) != 0) {
+                    attributes[s][d] = r.nextInt (40) - 10;
+                }
+            }
+        }
+        double[][] utilities = new double[attributes.length][conditions.length];
+        double[] scores = profile.scoreAll (attributes, conditions, utilities);
+        for (int s = 0; s < attributes.length; s++) {
+            double expected = 0;
+            double[] items = profile.emptyVector ();
+            for (int d = 0; d < conditions.length; d++) {
+                if (Double.isNaN (attributes[s][d])) {
+                    assertTrue (Double.isNaN (utilities[s][d]));
+                    continue;
+                }
+                String name = profile.name (d);
+                double u = desc.getUtilityFunctions ().get (name).f (attributes[s][d] + conditions[d]);
+                assertEquals (u, utilities[s][d], 1e-12);
+                if (weights.containsKey (name)) {
+                    expected += weights.get (name) * u;
+                }
+                items[d] = attributes[s][d] + conditions[d];
+            }
+            assertEquals (expected, scores[s], 1e-12);
+            assertEquals (expected, profile.score (items), 1e-12);
+        }
+    }
+
+    @Test
+    public void scoreAllMatchesScoringOnSortedMaps () throws Exception {
+        Random r = new Random (3);
+        UtilityPreferenceDescription desc = makeDescription (8, r);
+        CompiledUtilityProfile profile = desc.compiledProfile ("s");
+        Map<String, Double> weights = desc.weights.get ("s");
+        double[][] attributes = new double[100][];
+        double[] conditions = new double[profile.dimensionCount ()];
+        for (int d = 0; d < conditions.length; d++) {
+            conditions[d] = r.nextInt (10);
+        }
+        for (int s = 0; s < attributes.length; s++) {
+            attributes[s] = profile.emptyVector ();
+            for (int d = 0; d < conditions.length; d++) {
+                attributes[s][d] = r.nextDouble () * 40 - 10;
+            }
+        }
+        double[] scores = profile.scoreAll (attributes, conditions, null);
+        for (int s = 0; s < attributes.length; s++) {
+            double expected = 0;
+            for (int d = 0; d < conditions.length; d++) {
+                String name = profile.name (d);
+                SortedMap<Double, Double> values = new TreeMap<> (desc.getUtilityFunctions ().get (name).values ());
+                if (weights.containsKey (name)) {
+                    expected += weights.get (name) * interpolate (values, attributes[s][d] + conditions[d]);
+                }
+            }
+            assertEquals (expected, scores[s], 1e-9);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.sa.rainbow.core.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sa.rainbow.core.gauges.OperationRepresentation;
+import org.sa.rainbow.core.models.commands.IRainbowOperation;
+
+public class ModelOperationJournalTest {
+
+    private static final ModelReference REF = new ModelReference ("m", "Acme");
+
+    private File m_dir;
+
+    @Before
+    public void setUp () throws IOException {
+        m_dir = File.createTempFile ("journal", "");
+        m_dir.delete ();
+        m_dir.mkdirs ();
+    }
+
+    @After
+    public void tearDown () {
+        for (File f : m_dir.listFiles ()) {
+            f.delete ();
+        }
+        m_dir.delete ();
+    }
+
+    private IRainbowOperation op (int i) {
+        OperationRepresentation op = new OperationRepresentation ("setLoad", REF, "s" + i, Integer.toString (i));
+        op.setOrigin ("gauge");
+        return op;
+    }
+
+    private void write (long segmentSize, int count) throws IOException {
+        try (ModelOperationJournal journal = new ModelOperationJournal (m_dir, REF, segmentSize)) {
+            for (int i = 0; i < count; i++) {
+                journal.append (op (i), i % 3 != 2);
+            }
+            journal.sync ();
+        }
+    }
+
+    @Test
+    public void testReplaysSuccessfulOperationsInOrder () throws IOException {
+        write (1024 * 1024, 10);
+        try (ModelOperationJournal journal = new ModelOperationJournal (m_dir, REF, 1024 * 1024)) {
+            List<IRainbowOperation> ops = journal.readOperations ();
+            assertEquals (7, ops.size ());
+            assertEquals ("s0", ops.get (0).getTarget ());
+            assertEquals ("s3", ops.get (2).getTarget ());
+            assertEquals ("3", ops.get (2).getParameters ()[0]);
+            assertEquals ("gauge", ops.get (2).getOrigin ());
+            assertEquals (REF, ops.get (2).getModelReference ());
+            assertNull (journal.getSnapshot ());
+        }
+    }
+
+    @Test
+    public void testRotatesSegments () throws IOException {
+        write (100, 30);
+        try (ModelOperationJournal journal = new ModelOperationJournal (m_dir, REF, 100)) {
+            assertTrue (journal.getSegments ().size () > 2);
+            assertEquals (20, journal.readOperations ().size ());
+        }
+    }
+
+    @Test
+    public void testStopsAtTornRecord () throws IOException {
+        write (1024 * 1024, 4);
+        File segment = m_dir.listFiles ()[0];
+        try (RandomAccessFile raf = new RandomAccessFile (segment, "rw")) {
+            raf.setLength (raf.length () - 2);
+        }
+        try (ModelOperationJournal journal = new ModelOperationJournal (m_dir, REF, 1024 * 1024)) {
+            // The last record (op 3) is torn
+            assertEquals (2, journal.readOperations ().size ());
+        }
+    }
+
+    @Test
+    public void testSnapshotDiscardsOlderSegments () throws IOException {
+        try (ModelOperationJournal journal = new ModelOperationJournal (m_dir, REF, 1024 * 1024)) {
+            journal.append (op (0), true);
+            File snapshot = journal.startSnapshot ();
+            try (RandomAccessFile raf = new RandomAccessFile (snapshot, "rw")) {
+                raf.writeBytes ("model");
+            }
+            journal.snapshotTaken (snapshot);
+            journal.append (op (1), true);
+            journal.sync ();
+            assertTrue (journal.getSnapshot ().exists ());
+            assertFalse (snapshot.exists ());
+        }
+        try (ModelOperationJournal journal = new ModelOperationJournal (m_dir, REF, 1024 * 1024)) {
+            List<IRainbowOperation> ops = journal.readOperations ();
+            assertEquals (1, ops.size ());
+            assertEquals ("s1", ops.get (0).getTarget ());
+            assertTrue (journal.getSnapshot ().exists ());
+        }
+    }
+
+    @Test
+    public void testClearRemovesEverything () throws IOException {
+        write (1024 * 1024, 5);
+        try (ModelOperationJournal journal = new ModelOperationJournal (m_dir, REF, 1024 * 1024)) {
+            journal.clear ();
+            assertTrue (journal.readOperations ().isEmpty ());
+            assertEquals (1, journal.getSegments ().size ());
+        }
+    }
+}
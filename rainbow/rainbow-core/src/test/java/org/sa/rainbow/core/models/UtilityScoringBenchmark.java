@@ -0,0 +1,104 @@
+package org.sa.rainbow.core.models;
+
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Compares scoring a repertoire of strategies the way the adaptation manager used to (by utility name, with the
+ * functions kept in sorted maps) with scoring their attribute vectors in one pass with a compiled profile. Not run as
+ * part of the tests; {@link CompiledUtilityProfileTest} checks that both score the same.
+ */
+public class UtilityScoringBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int STRATEGIES    = 500;
+    private static final int DIMENSIONS    = 8;
+
+    private static double scoreByName (UtilityPreferenceDescription desc,
+            Map<String, SortedMap<Double, Double>> functions, SortedMap<String, Double>[] strategies,
+            Map<String, Double> conditions) {
+        double total = 0;
+        for (SortedMap<String, Double> aggAtt : strategies) {
+            Map<String, Double> weights = desc.weights.get ("s");
+            double score = 0;
+            for (String k : aggAtt.keySet ()) {
+                double v = aggAtt.get (k) + conditions.get (desc.getUtilityFunctions ().get (k).mapping ());
+                if (weights.containsKey (k)) {
+                    score += weights.get (k) * CompiledUtilityProfileTest.interpolate (functions.get (k), v);
+                }
+            }
+            total += score;
+        }
+        return total;
+    }
+
+    private static double scoreCompiled (UtilityPreferenceDescription desc, SortedMap<String, Double>[] strategies,
+            Map<String, Double> conditions) {
+        CompiledUtilityProfile profile = desc.compiledProfile ("s");
+        double[][] attributes = new double[strategies.length][];
+        for (int s = 0; s < strategies.length; s++) {
+            attributes[s] = profile.emptyVector ();
+            for (Map.Entry<String, Double> e : strategies[s].entrySet ()) {
+                attributes[s][profile.dimension (e.getKey ())] = e.getValue ();
+            }
+        }
+        double[] conds = new double[profile.dimensionCount ()];
+        for (int d = 0; d < conds.length; d++) {
+            conds[d] = conditions.get (profile.mapping (d));
+        }
+        double total = 0;
+        for (double score : profile.scoreAll (attributes, conds, null)) {
+            total += score;
+        }
+        return total;
+    }
+
+    /**
+     * Times both ways of scoring a repertoire
+     *
+     * @param args
+     *            optional number of rounds (default 1000)
+     */
+    @SuppressWarnings ("unchecked")
+    public static void main (String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt (args[0]) : 1000;
+        Random r = new Random (3);
+        UtilityPreferenceDescription desc = CompiledUtilityProfileTest.makeDescription (DIMENSIONS, r);
+        Map<String, SortedMap<Double, Double>> functions = new TreeMap<> ();
+        for (Map.Entry<String, UtilityFunction> e : desc.getUtilityFunctions ().entrySet ()) {
+            functions.put (e.getKey (), new TreeMap<> (e.getValue ().values ()));
+        }
+        SortedMap<String, Double>[] strategies = new SortedMap[STRATEGIES];
+        for (int s = 0; s < STRATEGIES; s++) {
+            strategies[s] = new TreeMap<> ();
+            for (int d = 0; d < DIMENSIONS; d++) {
+                strategies[s].put ("u" + d, r.nextDouble () * 40 - 10);
+            }
+        }
+        Map<String, Double> conditions = new TreeMap<> ();
+        for (int d = 0; d < DIMENSIONS; d++) {
+            conditions.put ("p" + d, (double )r.nextInt (10));
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            scoreByName (desc, functions, strategies, conditions);
+            scoreCompiled (desc, strategies, conditions);
+        }
+        long start = System.nanoTime ();
+        for (int i = 0; i < rounds; i++) {
+            scoreByName (desc, functions, strategies, conditions);
+        }
+        double byName = (System.nanoTime () - start) / (rounds * 1000.0);
+        start = System.nanoTime ();
+        for (int i = 0; i < rounds; i++) {
+            scoreCompiled (desc, strategies, conditions);
+        }
+        double compiled = (System.nanoTime () - start) / (rounds * 1000.0);
+
+        System.out.println (MessageFormat.format ("by name: {0} us/repertoire of {1}", byName, STRATEGIES));
+        System.out.println (MessageFormat.format ("compiled: {0} us/repertoire of {1}", compiled, STRATEGIES));
+    }
+}
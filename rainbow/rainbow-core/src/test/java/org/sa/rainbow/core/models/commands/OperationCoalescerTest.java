@@ -0,0 +1,84 @@
+package org.sa.rainbow.core.models.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.sa.rainbow.core.gauges.OperationRepresentation;
+import org.sa.rainbow.core.models.ModelReference;
+
+public class OperationCoalescerTest {
+
+    private static final ModelReference REF = new ModelReference ("ZNewsSys", "Acme");
+
+    private IRainbowOperation op (String name, String target, String value) {
+        return new OperationRepresentation (name, REF, target, value);
+    }
+
+    @Test
+    public void testPendingOperationsKeepNewestValue () {
+        OperationCoalescer coalescer = new OperationCoalescer (OperationCoalescer.DEFAULT_COALESCIBLE_OPERATIONS);
+        IRainbowOperation s0 = op ("setLoad", "s0", "1");
+        IRainbowOperation s1 = op ("setLoad", "s1", "2");
+        IRainbowOperation s0Newer = op ("setLoad", "s0", "3");
+        IRainbowOperation s0Latency = op ("setLatency", "s0", "4");
+        assertFalse (coalescer.hasPending ());
+        coalescer.add (s0);
+        coalescer.add (s1);
+        coalescer.add (s0Newer);
+        coalescer.add (s0Latency);
+        assertTrue (coalescer.hasPending ());
+        assertEquals (Arrays.asList (s1, s0Newer, s0Latency), coalescer.drain ());
+        assertFalse (coalescer.hasPending ());
+        assertEquals (1, coalescer.getCoalescedCount ());
+        assertEquals (3, coalescer.getPassedCount ());
+    }
+
+    @Test
+    public void testOnlyMatchingOperationsAreCoalescible () {
+        OperationCoalescer coalescer = new OperationCoalescer (OperationCoalescer.DEFAULT_COALESCIBLE_OPERATIONS);
+        assertTrue (coalescer.isCoalescible (op ("setLoad", "s0", "1")));
+        assertTrue (coalescer.isCoalescible (op ("SetFidelity", "s0", "1")));
+        assertFalse (coalescer.isCoalescible (op ("connectNewServer", "lbproxy", "s4")));
+        // Setters whose target does not identify what they set are not coalesced by default
+        assertFalse (coalescer.isCoalescible (op ("setExecutingInstruction", "", "l1")));
+        assertFalse (coalescer.isCoalescible (op ("setExecutionFailed", "", "l1")));
+        assertFalse (coalescer.isCoalescible (op ("setLoadBalancer", "s0", "1")));
+    }
+
+    @Test
+    public void testProgressUpdatesAreNotCoalesced () {
+        OperationCoalescer coalescer = new OperationCoalescer (OperationCoalescer.DEFAULT_COALESCIBLE_OPERATIONS);
+        IRainbowOperation l1 = new OperationRepresentation ("setExecutingInstruction", REF, "", "l1", "SUCCESS");
+        IRainbowOperation l2 = new OperationRepresentation ("setExecutingInstruction", REF, "", "l2", "SUCCESS");
+        IRainbowOperation failed = op ("setExecutionFailed", "", "l2");
+        List<Object> queue = new ArrayList<Object> (Arrays.asList (l1, l2, failed));
+        assertEquals (0, coalescer.coalesce (queue));
+        assertEquals (Arrays.<Object> asList (l1, l2, failed), queue);
+    }
+
+    @Test
+    public void testQueueIsNotCoalescedAcrossTransactions () {
+        OperationCoalescer coalescer = new OperationCoalescer (OperationCoalescer.DEFAULT_COALESCIBLE_OPERATIONS);
+        IRainbowOperation a = op ("setLoad", "s0", "1");
+        IRainbowOperation b = op ("setLoad", "s0", "2");
+        IRainbowOperation connect = op ("connectNewServer", "lbproxy", "s4");
+        List<IRainbowOperation> transaction = Arrays.asList (op ("setLoad", "s0", "3"));
+        IRainbowOperation c = op ("setLoad", "s0", "4");
+        IRainbowOperation d = op ("setLoad", "s0", "5");
+        List<Object> queue = new ArrayList<Object> (Arrays.asList (a, connect, b, transaction, c, d));
+        assertEquals (2, coalescer.coalesce (queue));
+        assertEquals (4, queue.size ());
+        assertSame (connect, queue.get (0));
+        assertSame (b, queue.get (1));
+        assertSame (transaction, queue.get (2));
+        assertSame (d, queue.get (3));
+        assertEquals (2, coalescer.getCoalescedCount ());
+    }
+}
@@ -0,0 +1,78 @@
+package org.sa.rainbow.core.ports.eseb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sa.rainbow.core.ports.IModelChangeBusPort;
+
+import auxtestlib.DefaultTCase;
+import edu.cmu.cs.able.typelib.binenc.BinaryEncoding;
+import edu.cmu.cs.able.typelib.comp.MapDataValue;
+import edu.cmu.cs.able.typelib.enc.DataValueEncoding;
+import edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * Checks that model change events batched in one message survive encoding and come out in order.
+ */
+public class BatchedMessageTest extends DefaultTCase {
+
+    private List<RainbowESEBMessage> makeEvents () throws Exception {
+        List<RainbowESEBMessage> events = new ArrayList<> ();
+        for (int i = 0; i < 5; i++) {
+            RainbowESEBMessage msg = new RainbowESEBMessage ();
+            msg.setProperty (ESEBConstants.MSG_CHANNEL_KEY, "MODEL_CHANGE");
+            msg.setProperty (ESEBConstants.MSG_TYPE_KEY, "MODEL_CHANGE");
+            msg.setProperty (IModelChangeBusPort.COMMAND_PROP, "setLoad");
+            msg.setProperty (IModelChangeBusPort.TARGET_PROP, "ZNewsSys.Server" + i);
+            msg.setProperty (IModelChangeBusPort.PARAMETER_PROP + "0", Integer.toString (i));
+            events.add (msg);
+        }
+        return events;
+    }
+
+    private RainbowESEBMessage roundTrip (DataValueEncoding enc, RainbowESEBMessage msg) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        try (DataOutputStream dout = new DataOutputStream (out)) {
+            enc.encode (msg.getDataValue (), dout);
+        }
+        DataValue v = enc.decode (new DataInputStream (new ByteArrayInputStream (out.toByteArray ())),
+                ESEBProvider.SCOPE);
+        return new RainbowESEBMessage ((MapDataValue )v);
+    }
+
+    private void checkBatch (DataValueEncoding enc) throws Exception {
+        List<RainbowESEBMessage> events = makeEvents ();
+        RainbowESEBMessage batch = new RainbowESEBMessage ();
+        batch.setProperty (ESEBConstants.MSG_CHANNEL_KEY, "MODEL_CHANGE");
+        batch.setBatchedMessages (events);
+
+        List<RainbowESEBMessage> received = roundTrip (enc, batch).getBatchedMessages ();
+        assertNotNull (received);
+        assertEquals (events.size (), received.size ());
+        for (int i = 0; i < events.size (); i++) {
+            assertEquals (events.get (i).getDataValue (), received.get (i).getDataValue ());
+            assertEquals ("ZNewsSys.Server" + i, received.get (i).getProperty (IModelChangeBusPort.TARGET_PROP));
+        }
+    }
+
+    @Test
+    public void batchSurvivesTextEncoding () throws Exception {
+        checkBatch (new DefaultTextEncoding (ESEBProvider.SCOPE));
+    }
+
+    @Test
+    public void batchSurvivesBinaryEncoding () throws Exception {
+        checkBatch (new BinaryEncoding (ESEBProvider.SCOPE));
+    }
+
+    @Test
+    public void plainMessageIsNotABatch () throws Exception {
+        assertNull (makeEvents ().get (0).getBatchedMessages ());
+    }
+}
@@ -0,0 +1,69 @@
+package org.sa.rainbow.core.ports.eseb;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sa.rainbow.core.ports.eseb.ESEBConnector.ChannelT;
+
+import auxtestlib.DefaultTCase;
+
+/**
+ * Checks that a message whose channel key differs from the channel of the connector that publishes it is delivered to
+ * the listeners of the channel in the message, and not to those of the publishing connector.
+ */
+public class ChannelOverrideTest extends DefaultTCase {
+
+    private static final short PORT = 12351;
+
+    private static class Collector implements ESEBConnector.IESEBListener {
+        final List<RainbowESEBMessage> received = new CopyOnWriteArrayList<> ();
+
+        @Override
+        public void receive (RainbowESEBMessage msg) {
+            received.add (msg);
+        }
+    }
+
+    @Before
+    public void configureTestProperties () throws Exception {
+        File basePath = new File (System.getProperty ("user.dir"));
+        File testMasterDir = new File (basePath, "src/test/resources/RainbowTest/eseb");
+        System.setProperty ("user.dir", testMasterDir.getCanonicalPath ());
+    }
+
+    @Test
+    public void messageIsPublishedOnItsOwnChannel () throws Exception {
+        ESEBConnector health = new ESEBConnector (PORT, ChannelT.HEALTH);
+        ESEBConnector ui = new ESEBConnector (PORT, ChannelT.UIREPORT);
+        try {
+            Collector healthListener = new Collector ();
+            Collector uiListener = new Collector ();
+            health.addListener (healthListener);
+            ui.addListener (uiListener);
+            Thread.sleep (500);
+
+            RainbowESEBMessage report = health.createMessage ();
+            report.setProperty (ESEBConstants.MSG_CHANNEL_KEY, ChannelT.UIREPORT.name ());
+            report.setProperty (ESEBConstants.MSG_TYPE_KEY, "REPORT");
+            health.publish (report);
+            RainbowESEBMessage heartbeat = health.createMessage ();
+            heartbeat.setProperty (ESEBConstants.MSG_TYPE_KEY, "HEARTBEAT");
+            health.publish (heartbeat);
+
+            for (int i = 0; i < 50 && (uiListener.received.isEmpty () || healthListener.received.isEmpty ()); i++) {
+                Thread.sleep (100);
+            }
+            assertEquals (1, uiListener.received.size ());
+            assertEquals ("REPORT", uiListener.received.get (0).getProperty (ESEBConstants.MSG_TYPE_KEY));
+            assertEquals (1, healthListener.received.size ());
+            assertEquals ("HEARTBEAT", healthListener.received.get (0).getProperty (ESEBConstants.MSG_TYPE_KEY));
+        }
+        finally {
+            ui.close ();
+            health.close ();
+        }
+    }
+}
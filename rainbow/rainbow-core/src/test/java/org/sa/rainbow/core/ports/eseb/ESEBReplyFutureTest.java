@@ -0,0 +1,50 @@
+package org.sa.rainbow.core.ports.eseb;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.sa.rainbow.core.error.RainbowConnectionException;
+
+import auxtestlib.DefaultTCase;
+
+/**
+ * Checks that a reply future settles exactly once, even when it is cancelled or failed while its listener runs.
+ */
+public class ESEBReplyFutureTest extends DefaultTCase {
+
+    @Test
+    public void cancelWhileListenerRunsDoesNotOverrideReply () throws Exception {
+        final ESEBReplyFuture[] future = new ESEBReplyFuture[1];
+        final boolean[] cancelled = new boolean[1];
+        future[0] = new ESEBReplyFuture (new ESEBConnector.IESEBListener () {
+
+            @Override
+            public void receive (RainbowESEBMessage msg) {
+                cancelled[0] = future[0].cancel (false);
+            }
+        });
+        RainbowESEBMessage reply = new RainbowESEBMessage ();
+        assertTrue (future[0].complete (reply));
+        assertFalse (cancelled[0]);
+        assertFalse (future[0].isCancelled ());
+        assertSame (reply, future[0].get (1, TimeUnit.SECONDS));
+        assertFalse (future[0].fail (new RainbowConnectionException ("late")));
+        assertFalse (future[0].complete (new RainbowESEBMessage ()));
+    }
+
+    @Test
+    public void failureIsReportedAsCause () throws Exception {
+        ESEBReplyFuture future = new ESEBReplyFuture (null);
+        RainbowConnectionException failure = new RainbowConnectionException ("no reply");
+        assertTrue (future.fail (failure));
+        assertFalse (future.complete (new RainbowESEBMessage ()));
+        try {
+            future.get ();
+            fail ("A failed future should not return a reply");
+        }
+        catch (ExecutionException e) {
+            assertSame (failure, e.getCause ());
+        }
+    }
+}
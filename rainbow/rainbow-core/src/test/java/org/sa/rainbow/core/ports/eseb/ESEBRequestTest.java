@@ -0,0 +1,112 @@
+package org.sa.rainbow.core.ports.eseb;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sa.rainbow.core.ports.eseb.ESEBConnector.ChannelT;
+
+import auxtestlib.DefaultTCase;
+
+/**
+ * Checks that a blocking request without a timeout waits for its reply, and that requests that are answered or
+ * cancelled do not leave their timeout in the timing wheel.
+ */
+public class ESEBRequestTest extends DefaultTCase {
+
+    private static final short PORT  = 12353;
+    private static final long  DELAY = 300;
+
+    private static class Collector implements ESEBConnector.IESEBListener {
+        final List<RainbowESEBMessage> received = new CopyOnWriteArrayList<> ();
+
+        @Override
+        public void receive (RainbowESEBMessage msg) {
+            received.add (msg);
+        }
+    }
+
+    private ESEBConnector m_requester;
+    private ESEBConnector m_responder;
+
+    @Before
+    public void setUp () throws Exception {
+        File basePath = new File (System.getProperty ("user.dir"));
+        File testMasterDir = new File (basePath, "src/test/resources/RainbowTest/eseb");
+        System.setProperty ("user.dir", testMasterDir.getCanonicalPath ());
+        m_requester = new ESEBConnector (PORT, ChannelT.HEALTH);
+        m_responder = new ESEBConnector (PORT, ChannelT.HEALTH);
+    }
+
+    @After
+    public void tearDown () throws Exception {
+        m_responder.close ();
+        m_requester.close ();
+    }
+
+    /**
+     * Replies to each request after a delay
+     */
+    private void respond () throws Exception {
+        m_responder.addListener (new ESEBConnector.IESEBListener () {
+
+            @Override
+            public void receive (final RainbowESEBMessage msg) {
+                new Thread () {
+                    @Override
+                    public void run () {
+                        try {
+                            Thread.sleep (DELAY);
+                        }
+                        catch (InterruptedException e) {
+                            return;
+                        }
+                        m_responder.replyToMessage (msg, "pong");
+                    }
+                }.start ();
+            }
+        });
+        Thread.sleep (500);
+    }
+
+    private RainbowESEBMessage request () {
+        RainbowESEBMessage msg = m_requester.createMessage ();
+        msg.setProperty (ESEBConstants.MSG_TYPE_KEY, "PING");
+        return msg;
+    }
+
+    @Test
+    public void blockingRequestWithoutTimeoutWaitsForTheReply () throws Exception {
+        respond ();
+        Collector replies = new Collector ();
+        long start = System.currentTimeMillis ();
+        m_requester.blockingSendAndReceive (request (), replies, ESEBConnector.NO_REPLY_TIMEOUT);
+        assertTrue (System.currentTimeMillis () - start >= DELAY);
+        assertEquals (1, replies.received.size ());
+        assertEquals ("pong", replies.received.get (0).getProperty (ESEBConstants.MSG_REPLY_VALUE));
+    }
+
+    @Test
+    public void answeredAndCancelledRequestsLeaveNoTimeout () throws Exception {
+        int pending = ESEBConnector.getPendingRequestCount ();
+        int scheduled = ESEBConnector.getScheduledTimeoutCount ();
+
+        Future<RainbowESEBMessage> unanswered = m_requester.sendRequest (request (), null, 60000);
+        assertEquals (pending + 1, ESEBConnector.getPendingRequestCount ());
+        assertEquals (scheduled + 1, ESEBConnector.getScheduledTimeoutCount ());
+        assertTrue (unanswered.cancel (false));
+        assertEquals (pending, ESEBConnector.getPendingRequestCount ());
+        assertEquals (scheduled, ESEBConnector.getScheduledTimeoutCount ());
+
+        respond ();
+        Future<RainbowESEBMessage> answered = m_requester.sendRequest (request (), null, 60000);
+        assertEquals ("pong", answered.get (10, TimeUnit.SECONDS).getProperty (ESEBConstants.MSG_REPLY_VALUE));
+        assertEquals (pending, ESEBConnector.getPendingRequestCount ());
+        assertEquals (scheduled, ESEBConnector.getScheduledTimeoutCount ());
+    }
+}
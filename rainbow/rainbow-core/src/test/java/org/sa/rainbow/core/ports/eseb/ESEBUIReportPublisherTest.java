@@ -0,0 +1,71 @@
+package org.sa.rainbow.core.ports.eseb;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.sa.rainbow.core.RainbowComponentT;
+import org.sa.rainbow.core.ports.IMasterConnectionPort.ReportType;
+
+import auxtestlib.DefaultTCase;
+
+/**
+ * Checks that the UI report publisher only keeps the reports that subscribers want, and that it merges repeated
+ * reports and limits how many it sends.
+ */
+public class ESEBUIReportPublisherTest extends DefaultTCase {
+
+    /** Long enough that the scheduled flush does not run during a test **/
+    private static final long WINDOW = 60000;
+
+    @Test
+    public void reportsNobodyWantsAreDropped () throws Exception {
+        ESEBUIReportPublisher publisher = new ESEBUIReportPublisher (null, WINDOW, 10);
+        assertFalse (publisher.isReported (RainbowComponentT.MODEL, ReportType.INFO));
+        publisher.report ("master", ReportType.INFO, RainbowComponentT.MODEL, "Executing x", null);
+        assertTrue (publisher.drain ().isEmpty ());
+
+        publisher.interestAnnounced ("ui", "MODEL,ANALYSIS", "WARNING,ERROR");
+        assertTrue (publisher.isReported (RainbowComponentT.MODEL, ReportType.ERROR));
+        assertFalse (publisher.isReported (RainbowComponentT.MODEL, ReportType.INFO));
+        assertFalse (publisher.isReported (RainbowComponentT.GAUGE, ReportType.ERROR));
+
+        publisher.interestAnnounced ("cli", "GAUGE", "INFO");
+        assertTrue (publisher.isReported (RainbowComponentT.GAUGE, ReportType.INFO));
+        assertTrue (publisher.isReported (RainbowComponentT.MODEL, ReportType.WARNING));
+
+        publisher.interestAnnounced ("ui", "", "");
+        assertFalse (publisher.isReported (RainbowComponentT.MODEL, ReportType.WARNING));
+        assertTrue (publisher.isReported (RainbowComponentT.GAUGE, ReportType.INFO));
+    }
+
+    @Test
+    public void repeatedReportsAreMerged () throws Exception {
+        ESEBUIReportPublisher publisher = new ESEBUIReportPublisher (null, WINDOW, 10);
+        publisher.interestAnnounced ("ui", "MODEL", "INFO");
+        for (int i = 0; i < 3; i++) {
+            publisher.report ("master", ReportType.INFO, RainbowComponentT.MODEL, "Executing x", null);
+        }
+        publisher.report ("master", ReportType.INFO, RainbowComponentT.MODEL, "Executing y", null);
+        List<RainbowESEBMessage> messages = publisher.drain ();
+        assertEquals (2, messages.size ());
+        assertEquals ("Executing x (repeated 3 times)", messages.get (0).getProperty (ESEBConstants.REPORT_MSG_KEY));
+        assertEquals ("Executing y", messages.get (1).getProperty (ESEBConstants.REPORT_MSG_KEY));
+        assertEquals ("MODEL", messages.get (0).getProperty (ESEBConstants.COMPONENT_TYPE_KEY));
+        assertTrue (publisher.drain ().isEmpty ());
+    }
+
+    @Test
+    public void reportsOverTheLimitAreCounted () throws Exception {
+        ESEBUIReportPublisher publisher = new ESEBUIReportPublisher (null, WINDOW, 2);
+        publisher.interestAnnounced ("ui", "MODEL", "INFO");
+        for (int i = 0; i < 5; i++) {
+            publisher.report ("master", ReportType.INFO, RainbowComponentT.MODEL, "Report " + i, null);
+        }
+        List<RainbowESEBMessage> messages = publisher.drain ();
+        assertEquals (3, messages.size ());
+        assertEquals ("Report 0", messages.get (0).getProperty (ESEBConstants.REPORT_MSG_KEY));
+        assertEquals ("Report 1", messages.get (1).getProperty (ESEBConstants.REPORT_MSG_KEY));
+        assertEquals ("WARNING", messages.get (2).getProperty (ESEBConstants.REPORT_TYPE_KEY));
+        assertTrue (((String )messages.get (2).getProperty (ESEBConstants.REPORT_MSG_KEY)).startsWith ("3 reports"));
+    }
+}
@@ -0,0 +1,50 @@
+package org.sa.rainbow.core.ports.eseb;
+
+import java.text.MessageFormat;
+
+import edu.cmu.cs.able.typelib.binenc.BinaryEncoding;
+import edu.cmu.cs.able.typelib.comp.MapDataValue;
+import edu.cmu.cs.able.typelib.enc.DataValueEncoding;
+import edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * Benchmark comparing the size and the encode/decode time of the text and binary encodings on the messages of
+ * {@link MessageEncodingTest}. Not run as part of the tests.
+ */
+public class EncodingBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2000;
+
+    private static double run (DataValueEncoding enc, DataValue v, int rounds) throws Exception {
+        long start = System.nanoTime ();
+        for (int i = 0; i < rounds; i++) {
+            MessageEncodingTest.decode (enc, MessageEncodingTest.encode (enc, v));
+        }
+        return (System.nanoTime () - start) / (rounds * 1000.0);
+    }
+
+    /**
+     * Times both encodings on a message with a batch of operations
+     *
+     * @param args
+     *            optional number of operations in the message (default 10) and number of rounds (default 10000)
+     */
+    public static void main (String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt (args[0]) : 10;
+        int rounds = args.length > 1 ? Integer.parseInt (args[1]) : 10000;
+        MapDataValue msg = MessageEncodingTest.makeMessage (operations);
+        DataValueEncoding text = new DefaultTextEncoding (ESEBProvider.SCOPE);
+        DataValueEncoding binary = new BinaryEncoding (ESEBProvider.SCOPE);
+
+        run (text, msg, WARMUP_ROUNDS);
+        run (binary, msg, WARMUP_ROUNDS);
+        double textTime = run (text, msg, rounds);
+        double binaryTime = run (binary, msg, rounds);
+
+        System.out.println (MessageFormat.format ("text: {0} bytes, {1} us/message",
+                                                  MessageEncodingTest.encode (text, msg).length, textTime));
+        System.out.println (MessageFormat.format ("binary: {0} bytes, {1} us/message",
+                                                  MessageEncodingTest.encode (binary, msg).length, binaryTime));
+    }
+}
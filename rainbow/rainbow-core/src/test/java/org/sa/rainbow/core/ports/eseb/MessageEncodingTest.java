@@ -0,0 +1,68 @@
+package org.sa.rainbow.core.ports.eseb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.junit.Test;
+
+import auxtestlib.DefaultTCase;
+import edu.cmu.cs.able.typelib.binenc.BinaryEncoding;
+import edu.cmu.cs.able.typelib.comp.MapDataValue;
+import edu.cmu.cs.able.typelib.enc.DataValueEncoding;
+import edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * Checks that messages shaped like the ones Rainbow sends on the bus (a batch of model operations as produced by
+ * ESEBCommandHelper, plus the connector properties) survive the text and binary encodings, and that the binary
+ * encoding is the smaller one.
+ */
+public class MessageEncodingTest extends DefaultTCase {
+
+    static MapDataValue makeMessage (int operations) throws Exception {
+        RainbowESEBMessage msg = new RainbowESEBMessage ();
+        msg.setProperty (ESEBConstants.MSG_CHANNEL_KEY, "MODEL_US");
+        msg.setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_UPDATE_MODEL);
+        msg.setProperty (ESEBConstants.MSG_SENT, System.currentTimeMillis ());
+        msg.setProperty (ESEBConstants.MSG_REPLY_KEY, "127.0.0.1:1234-5678");
+        msg.setProperty (ESEBConstants.COMMAND_ORIGIN, "loadGauge@172.16.0.12");
+        for (int i = 0; i < operations; i++) {
+            String suffix = "_" + i;
+            msg.setProperty (ESEBConstants.MODEL_NAME_KEY + suffix, "ZNewsSys");
+            msg.setProperty (ESEBConstants.COMMAND_NAME_KEY + suffix, "setLoad");
+            msg.setProperty (ESEBConstants.MODEL_TYPE_KEY + suffix, "Acme");
+            msg.setProperty (ESEBConstants.COMMAND_TARGET_KEY + suffix, "ZNewsSys.Server" + i);
+            msg.setProperty (ESEBConstants.COMMAND_PARAMETER_KEY + suffix + "_size", 1);
+            msg.setProperty (ESEBConstants.COMMAND_PARAMETER_KEY + suffix + 0, Double.toString (Math.random ()));
+        }
+        return msg.getDataValue ();
+    }
+
+    static byte[] encode (DataValueEncoding enc, DataValue v) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        try (DataOutputStream dout = new DataOutputStream (out)) {
+            enc.encode (v, dout);
+        }
+        return out.toByteArray ();
+    }
+
+    static DataValue decode (DataValueEncoding enc, byte[] bytes) throws Exception {
+        return enc.decode (new DataInputStream (new ByteArrayInputStream (bytes)), ESEBProvider.SCOPE);
+    }
+
+    @Test
+    public void textAndBinaryEncodingsKeepMessages () throws Exception {
+        DataValueEncoding text = new DefaultTextEncoding (ESEBProvider.SCOPE);
+        DataValueEncoding binary = new BinaryEncoding (ESEBProvider.SCOPE);
+        for (int operations : new int[] { 0, 1, 10 }) {
+            MapDataValue msg = makeMessage (operations);
+            byte[] textBytes = encode (text, msg);
+            byte[] binaryBytes = encode (binary, msg);
+            assertEquals (msg, decode (text, textBytes));
+            assertEquals (msg, decode (binary, binaryBytes));
+            assertTrue (binaryBytes.length < textBytes.length);
+        }
+    }
+}
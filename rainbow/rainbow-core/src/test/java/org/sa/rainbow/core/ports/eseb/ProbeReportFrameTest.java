@@ -0,0 +1,155 @@
+package org.sa.rainbow.core.ports.eseb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.sa.rainbow.core.ports.IProbeReportPort;
+import org.sa.rainbow.translator.probes.IProbeIdentifier;
+
+import auxtestlib.DefaultTCase;
+import edu.cmu.cs.able.typelib.binenc.BinaryEncoding;
+import edu.cmu.cs.able.typelib.comp.MapDataValue;
+import edu.cmu.cs.able.typelib.enc.DataValueEncoding;
+import edu.cmu.cs.able.typelib.txtenc.typelib.DefaultTextEncoding;
+import edu.cmu.cs.able.typelib.type.DataValue;
+
+/**
+ * Checks that probe report frames survive encoding, and that the dispatcher delivers their reports to the subscribed
+ * ports only.
+ */
+public class ProbeReportFrameTest extends DefaultTCase {
+
+    /** Records the reports it receives, as "id@location:data" **/
+    private static class RecordingCallback implements IProbeReportPort {
+        final List<String> m_reports = new ArrayList<> ();
+        int                m_calls   = 0;
+
+        @Override
+        public void dispose () {
+        }
+
+        @Override
+        public void reportData (IProbeIdentifier probe, String data) {
+            reportData (probe, Arrays.asList (data));
+        }
+
+        @Override
+        public void reportData (IProbeIdentifier probe, List<String> data) {
+            m_calls++;
+            for (String d : data) {
+                m_reports.add (probe.id () + "@" + probe.location () + ":" + d);
+            }
+        }
+    }
+
+    private ProbeReportFrame makeFrame () {
+        ProbeReportFrame frame = new ProbeReportFrame ();
+        frame.add ("load1", "load", "host1", 10, "a");
+        frame.add ("load2", "load", "host2", 11, "b");
+        frame.add ("load1", "load", "host1", 12, "c");
+        frame.add ("ping1", "ping", "host1", 13, "");
+        return frame;
+    }
+
+    private RainbowESEBMessage roundTrip (DataValueEncoding enc, RainbowESEBMessage msg) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        try (DataOutputStream dout = new DataOutputStream (out)) {
+            enc.encode (msg.getDataValue (), dout);
+        }
+        DataValue v = enc.decode (new DataInputStream (new ByteArrayInputStream (out.toByteArray ())),
+                ESEBProvider.SCOPE);
+        return new RainbowESEBMessage ((MapDataValue )v);
+    }
+
+    private void checkFrame (DataValueEncoding enc) throws Exception {
+        RainbowESEBMessage msg = new RainbowESEBMessage ();
+        makeFrame ().writeTo (msg);
+        RainbowESEBMessage received = roundTrip (enc, msg);
+        assertEquals (ESEBConstants.MSG_TYPE_PROBE_REPORT_BATCH, received.getProperty (ESEBConstants.MSG_TYPE_KEY));
+        ProbeReportFrame frame = ProbeReportFrame.readFrom (received);
+        assertNotNull (frame);
+        assertEquals (4, frame.size ());
+        assertEquals (3, frame.probeCount ());
+        assertEquals ("load2", frame.probeId (frame.probe (1)));
+        assertEquals ("host2", frame.probeLocation (frame.probe (1)));
+        assertEquals (frame.probe (0), frame.probe (2));
+        assertEquals ("ping", frame.probeType (frame.probe (3)));
+        assertEquals (12, frame.time (2));
+        assertEquals ("c", frame.data (2));
+        assertEquals ("", frame.data (3));
+    }
+
+    @Test
+    public void frameSurvivesTextEncoding () throws Exception {
+        checkFrame (new DefaultTextEncoding (ESEBProvider.SCOPE));
+    }
+
+    @Test
+    public void frameSurvivesBinaryEncoding () throws Exception {
+        checkFrame (new BinaryEncoding (ESEBProvider.SCOPE));
+    }
+
+    @Test
+    public void plainMessageIsNotAFrame () throws Exception {
+        RainbowESEBMessage msg = new RainbowESEBMessage ();
+        msg.setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_PROBE_REPORT);
+        assertNull (ProbeReportFrame.readFrom (msg));
+    }
+
+    @Test
+    public void framesAreDeliveredPerProbeToSubscribers () throws Exception {
+        ESEBProbeReportDispatcher dispatcher = new ESEBProbeReportDispatcher ();
+        RecordingCallback allLoads = new RecordingCallback ();
+        RecordingCallback host1Loads = new RecordingCallback ();
+        RecordingCallback pings = new RecordingCallback ();
+        new ESEBProbeReportSubscriberPort (allLoads, dispatcher).subscribeToProbe ("load", null);
+        new ESEBProbeReportSubscriberPort (host1Loads, dispatcher).subscribeToProbe ("load", "host1");
+        new ESEBProbeReportSubscriberPort (pings, dispatcher).subscribeToProbe ("ping", "host2");
+
+        RainbowESEBMessage msg = new RainbowESEBMessage ();
+        makeFrame ().writeTo (msg);
+        dispatcher.dispatch (msg);
+
+        assertEquals (Arrays.asList ("load1@host1:a", "load1@host1:c", "load2@host2:b"), allLoads.m_reports);
+        assertEquals (2, allLoads.m_calls);
+        assertEquals (Arrays.asList ("load1@host1:a", "load1@host1:c"), host1Loads.m_reports);
+        assertEquals (1, host1Loads.m_calls);
+        assertTrue (pings.m_reports.isEmpty ());
+    }
+
+    @Test
+    public void singleReportsAreRouted () throws Exception {
+        ESEBProbeReportDispatcher dispatcher = new ESEBProbeReportDispatcher ();
+        RecordingCallback callback = new RecordingCallback ();
+        ESEBProbeReportSubscriberPort port = new ESEBProbeReportSubscriberPort (callback, dispatcher);
+        port.subscribeToProbe ("load", "host1");
+
+        RainbowESEBMessage msg = new RainbowESEBMessage ();
+        msg.setProperty (ESEBConstants.MSG_TYPE_KEY, ESEBConstants.MSG_TYPE_PROBE_REPORT);
+        msg.setProperty (ESEBConstants.MSG_PROBE_ID_KEY, "load1");
+        msg.setProperty (ESEBConstants.MSG_PROBE_TYPE_KEY, "load");
+        msg.setProperty (ESEBConstants.MSG_PROBE_LOCATION_KEY, "host1");
+        msg.setProperty (ESEBConstants.MSG_DATA_KEY, "0.5");
+        dispatcher.dispatch (msg);
+        msg.setProperty (ESEBConstants.MSG_PROBE_LOCATION_KEY, "host2");
+        dispatcher.dispatch (msg);
+        assertEquals (Arrays.asList ("load1@host1:0.5"), callback.m_reports);
+
+        // Unsubscribing recompiles the lookup
+        port.unsubscribeToProbe ("load", "host1");
+        msg.setProperty (ESEBConstants.MSG_PROBE_LOCATION_KEY, "host1");
+        dispatcher.dispatch (msg);
+        assertEquals (1, callback.m_reports.size ());
+
+        port.dispose ();
+        port.subscribeToProbe ("load", null);
+        dispatcher.dispatch (msg);
+        assertEquals (1, callback.m_reports.size ());
+    }
+}
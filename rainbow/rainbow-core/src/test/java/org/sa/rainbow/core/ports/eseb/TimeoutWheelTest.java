@@ -0,0 +1,79 @@
+package org.sa.rainbow.core.ports.eseb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimeoutWheelTest {
+
+    private final List<Long> m_expired = new ArrayList<> ();
+    private TimeoutWheel m_wheel;
+
+    @Before
+    public void setUp () {
+        // A long tick so that the test advances the wheel by itself
+        m_wheel = new TimeoutWheel (100000, 4, new TimeoutWheel.IExpiryHandler () {
+
+            @Override
+            public void expired (long id) {
+                m_expired.add (id);
+            }
+        });
+    }
+
+    @After
+    public void tearDown () {
+        m_wheel.stop ();
+    }
+
+    @Test
+    public void testExpiresAfterTimeout () {
+        m_wheel.schedule (1, 100000);
+        m_wheel.schedule (2, 300000);
+        m_wheel.advance ();
+        assertTrue (m_expired.isEmpty ());
+        m_wheel.advance ();
+        assertEquals (1, m_expired.size ());
+        assertEquals (1L, (long )m_expired.get (0));
+        m_wheel.advance ();
+        m_wheel.advance ();
+        assertEquals (2, m_expired.size ());
+        assertEquals (2L, (long )m_expired.get (1));
+    }
+
+    @Test
+    public void testCancelledEntriesAreRemoved () {
+        TimeoutWheel.Timeout first = m_wheel.schedule (1, 100000);
+        m_wheel.schedule (2, 100000);
+        assertEquals (2, m_wheel.size ());
+        assertTrue (first.cancel ());
+        assertFalse (first.cancel ());
+        assertEquals (1, m_wheel.size ());
+        m_wheel.advance ();
+        m_wheel.advance ();
+        assertEquals (1, m_expired.size ());
+        assertEquals (2L, (long )m_expired.get (0));
+        assertEquals (0, m_wheel.size ());
+    }
+
+    @Test
+    public void testTimeoutsLongerThanTheWheel () {
+        // 10 ticks on a wheel of 4 slots: the entry is visited twice before it expires
+        m_wheel.schedule (7, 1000000);
+        for (int i = 0; i < 10; i++) {
+            m_wheel.advance ();
+        }
+        assertTrue (m_expired.isEmpty ());
+        m_wheel.advance ();
+        assertEquals (1, m_expired.size ());
+        m_wheel.advance ();
+        assertEquals (1, m_expired.size ());
+    }
+}
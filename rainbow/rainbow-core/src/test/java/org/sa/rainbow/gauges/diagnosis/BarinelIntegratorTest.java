@@ -0,0 +1,134 @@
+package org.sa.rainbow.gauges.diagnosis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class BarinelIntegratorTest {
+	private static Spectrum spectrum(boolean correct, String... elements) {
+		return new Spectrum(new HashSet<>(Arrays.asList(elements)), correct);
+	}
+	
+	private static Set<String> set(String... elements) {
+		return new HashSet<>(Arrays.asList(elements));
+	}
+	
+	private static Map<Set<String>, Float> probabilities(DiagnosisReport r) {
+		Map<Set<String>, Float> p = new HashMap<>();
+		for (FaultCandidate fc : r.getCandidates()) {
+			p.put(fc.getElements(), fc.getProbability());
+		}
+		
+		return p;
+	}
+	
+	private static Set<String> best(DiagnosisReport r) {
+		FaultCandidate best = null;
+		for (FaultCandidate fc : r.getCandidates()) {
+			if (best == null || fc.getProbability() > best.getProbability()) {
+				best = fc;
+			}
+		}
+		
+		return best.getElements();
+	}
+	
+	@Test
+	public void no_failures_has_no_candidates() throws Exception {
+		BarinelIntegrator bi = new BarinelIntegrator();
+		final List<String> events = new ArrayList<>();
+		bi.addBarinelIntegratorListener(new BarinelIntegratorListener() {
+			@Override
+			public void staccato_started(int r_id, int successes,
+					int failures) {
+				events.add("staccato " + r_id + " " + successes + " "
+						+ failures);
+			}
+			
+			@Override
+			public void barinel_started(int r_id) {
+				events.add("barinel " + r_id);
+			}
+			
+			@Override
+			public void diagnosis_completed(int r_id, int candidates) {
+				events.add("completed " + r_id + " " + candidates);
+			}
+		});
+		
+		DiagnosisReport r = bi.evaluate(Arrays.asList(spectrum(true, "a"),
+				spectrum(true, "a", "b")));
+		assertTrue(r.getCandidates().isEmpty());
+		assertEquals(Arrays.asList("staccato 1 2 0", "barinel 1",
+				"completed 1 0"), events);
+	}
+	
+	@Test
+	public void element_in_all_failures_is_most_likely() throws Exception {
+		DiagnosisReport r = new BarinelIntegrator().evaluate(Arrays.asList(
+				spectrum(false, "a", "b"), spectrum(false, "a", "c"),
+				spectrum(true, "b", "c"), spectrum(true, "a", "b", "c")));
+		assertEquals(set("a"), best(r));
+		Map<Set<String>, Float> p = probabilities(r);
+		assertTrue(p.containsKey(set("b", "c")));
+		assertTrue(p.get(set("a")) > p.get(set("b", "c")));
+	}
+	
+	@Test
+	public void independent_failures_need_multiple_faults()
+			throws Exception {
+		DiagnosisReport r = new BarinelIntegrator().evaluate(Arrays.asList(
+				spectrum(false, "a"), spectrum(false, "b"),
+				spectrum(true, "c"), spectrum(true, "a", "c")));
+		assertEquals(1, r.getCandidates().size());
+		assertEquals(set("a", "b"), best(r));
+	}
+	
+	@Test
+	public void parallel_scoring_gives_the_same_report() throws Exception {
+		Random rnd = new Random(7);
+		List<Spectrum> snapshot = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			Set<String> elements = new HashSet<>();
+			for (int e = 0; e < 20; e++) {
+				if (rnd.nextInt(4) == 0) {
+					elements.add("e" + e);
+				}
+			}
+			
+			if (elements.isEmpty()) {
+				continue;
+			}
+			
+			boolean faulty = (elements.contains("e3") && rnd.nextInt(3) > 0)
+					|| (elements.contains("e11") && rnd.nextInt(2) > 0);
+			snapshot.add(new Spectrum(elements, !faulty));
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			DiagnosisReport sequential =
+					new BarinelIntegrator().evaluate(snapshot);
+			DiagnosisReport parallel = new BarinelIntegrator(executor, 4)
+					.evaluate(snapshot);
+			assertTrue(sequential.getCandidates().size() > 1);
+			assertEquals(probabilities(sequential), probabilities(parallel));
+			assertTrue(best(sequential).contains("e3")
+					|| best(sequential).contains("e11"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package org.sa.rainbow.translator.effectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sa.rainbow.core.models.EffectorDescription;
+import org.sa.rainbow.core.models.EffectorDescription.EffectorAttributes;
+import org.sa.rainbow.core.models.commands.IRainbowOperation;
+import org.sa.rainbow.core.ports.IRainbowConnectionPortFactory;
+import org.sa.rainbow.core.ports.IRainbowReportingPort;
+import org.sa.rainbow.core.ports.RainbowPortFactory;
+import org.sa.rainbow.translator.effectors.IEffectorExecutionPort.Outcome;
+
+/**
+ * Checks that the effector manager matches the reports of executions that time out with the execution that waits for
+ * them, and waits for them no longer than the effector's timeout.
+ */
+public class EffectorManagerTest {
+
+    private static final String EFFECTOR = "testEffector";
+    private static final String TARGET   = "127.0.0.1";
+    private static final long   TIMEOUT  = 1000;
+
+    /** The ids of the executions started on the effector, in order */
+    private final BlockingQueue<String> m_executions = new LinkedBlockingQueue<> ();
+
+    private Object               m_oldFactory;
+    private String               m_oldUserDir;
+    private EffectorManager      m_manager;
+    private IEffectorIdentifier  m_effector;
+
+    /**
+     * An execution port whose executions all time out, leaving the outcome to be reported later
+     */
+    private class TimingOutPort implements IEffectorExecutionPort {
+
+        @Override
+        public Outcome execute (String executionId, List<String> args) {
+            m_executions.add (executionId);
+            return Outcome.TIMEOUT;
+        }
+
+        @Override
+        public void dispose () {
+        }
+    }
+
+    @Before
+    public void setUp () throws Exception {
+        m_oldUserDir = System.getProperty ("user.dir");
+        File testMasterDir = new File (m_oldUserDir, "src/test/resources/RainbowTest/eseb");
+        System.setProperty ("user.dir", testMasterDir.getCanonicalPath ());
+
+        Field factory = RainbowPortFactory.class.getDeclaredField ("m_instance");
+        factory.setAccessible (true);
+        m_oldFactory = factory.get (null);
+        factory.set (null, Proxy.newProxyInstance (getClass ().getClassLoader (),
+                new Class<?>[] {IRainbowConnectionPortFactory.class}, new InvocationHandler () {
+
+            @Override
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getReturnType () == IEffectorExecutionPort.class) return new TimingOutPort ();
+                return null;
+            }
+        }));
+
+        m_manager = new EffectorManager ("Test Effector Manager") {
+            {
+                m_reportingPort = (IRainbowReportingPort )Proxy.newProxyInstance (getClass ().getClassLoader (),
+                        new Class<?>[] {IRainbowReportingPort.class}, new InvocationHandler () {
+
+                    @Override
+                    public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                        return null;
+                    }
+                });
+            }
+
+            @Override
+            public OperationResult publishOperation (IRainbowOperation cmd) {
+                return null;
+            }
+        };
+        EffectorDescription effectors = new EffectorDescription ();
+        EffectorAttributes ea = new EffectorAttributes ();
+        ea.name = EFFECTOR;
+        ea.setLocation (TARGET);
+        ea.putInfo ("timeout", Long.toString (TIMEOUT));
+        effectors.effectors.add (ea);
+        m_manager.setEffectors (effectors);
+
+        m_effector = new IEffectorIdentifier () {
+
+            @Override
+            public String id () {
+                return EFFECTOR + "@" + TARGET;
+            }
+
+            @Override
+            public String service () {
+                return EFFECTOR;
+            }
+
+            @Override
+            public Kind kind () {
+                return Kind.SCRIPT;
+            }
+        };
+        m_manager.reportCreated (m_effector);
+    }
+
+    @After
+    public void tearDown () throws Exception {
+        Field factory = RainbowPortFactory.class.getDeclaredField ("m_instance");
+        factory.setAccessible (true);
+        factory.set (null, m_oldFactory);
+        System.setProperty ("user.dir", m_oldUserDir);
+    }
+
+    private Future<Outcome> execute (ExecutorService executor, final String arg) {
+        return executor.submit (new Callable<Outcome> () {
+
+            @Override
+            public Outcome call () throws Exception {
+                return m_manager.executeEffector (EFFECTOR, TARGET, new String[] {arg});
+            }
+        });
+    }
+
+    private void report (String executionId, Outcome outcome) {
+        m_manager.reportExecuted (m_effector, executionId, outcome, Collections.<String> emptyList (), 10);
+    }
+
+    @Test
+    public void testWaitIsBoundedByTheEffectorTimeout () throws Exception {
+        assertEquals (TIMEOUT, m_manager.getEffectorTimeout (EFFECTOR));
+        long start = System.currentTimeMillis ();
+        assertEquals (Outcome.TIMEOUT, m_manager.executeEffector (EFFECTOR, TARGET, new String[] {"a"}));
+        long waited = System.currentTimeMillis () - start;
+        assertTrue ("waited " + waited + " ms", waited >= TIMEOUT && waited < TIMEOUT + 2000);
+        assertTrue (m_manager.m_holderMap.isEmpty ());
+    }
+
+    @Test
+    public void testLateReportIsNotTakenForTheNextExecution () throws Exception {
+        assertEquals (Outcome.TIMEOUT, m_manager.executeEffector (EFFECTOR, TARGET, new String[] {"a"}));
+        String first = m_executions.take ();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor ();
+        try {
+            Future<Outcome> next = execute (executor, "b");
+            String second = m_executions.poll (5, TimeUnit.SECONDS);
+            assertFalse (first.equals (second));
+            // The report of the first execution arrives while the second waits
+            report (first, Outcome.SUCCESS);
+            Thread.sleep (50);
+            assertFalse (next.isDone ());
+            report (second, Outcome.FAILURE);
+            assertEquals (Outcome.FAILURE, next.get (5, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdownNow ();
+        }
+        assertTrue (m_manager.m_holderMap.isEmpty ());
+    }
+
+    @Test
+    public void testConcurrentExecutionsGetTheirOwnOutcome () throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool (2);
+        try {
+            Future<Outcome> a = execute (executor, "a");
+            String first = m_executions.poll (5, TimeUnit.SECONDS);
+            Future<Outcome> b = execute (executor, "b");
+            String second = m_executions.poll (5, TimeUnit.SECONDS);
+            assertFalse (first.equals (second));
+            assertEquals (2, m_manager.m_holderMap.size ());
+
+            report (second, Outcome.FAILURE);
+            assertEquals (Outcome.FAILURE, b.get (5, TimeUnit.SECONDS));
+            assertFalse (a.isDone ());
+            report (first, Outcome.SUCCESS);
+            assertEquals (Outcome.SUCCESS, a.get (5, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdownNow ();
+        }
+        assertTrue (m_manager.m_holderMap.isEmpty ());
+    }
+
+    @Test
+    public void testReportsWithoutAWaitingExecutionAreIgnored () throws Exception {
+        report (null, Outcome.SUCCESS);
+        report (m_effector.id () + "#0", Outcome.SUCCESS);
+        assertTrue (m_manager.m_holderMap.isEmpty ());
+        assertEquals (Outcome.TIMEOUT, m_manager.executeEffector (EFFECTOR, TARGET, new String[] {"a"}));
+    }
+}
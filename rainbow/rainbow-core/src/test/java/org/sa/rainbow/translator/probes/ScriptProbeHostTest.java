@@ -0,0 +1,142 @@
+package org.sa.rainbow.translator.probes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sa.rainbow.translator.probes.ScriptProbeHost.IScriptOutputHandler;
+
+public class ScriptProbeHostTest {
+
+    private static class RecordingHandler implements IScriptOutputHandler {
+        final List<String>       m_lines   = new ArrayList<> ();
+        final List<Integer>      m_batches = new ArrayList<> ();
+        final CountDownLatch     m_exited  = new CountDownLatch (1);
+        volatile int             m_exitValue;
+
+        @Override
+        public synchronized void linesRead (List<String> lines) {
+            m_lines.addAll (lines);
+            m_batches.add (lines.size ());
+        }
+
+        @Override
+        public void processExited (int exitValue) {
+            m_exitValue = exitValue;
+            m_exited.countDown ();
+        }
+    }
+
+    private ScriptProbeHost m_host;
+
+    @Before
+    public void setUp () {
+        m_host = new ScriptProbeHost (2, 200);
+    }
+
+    @After
+    public void tearDown () {
+        m_host.shutdown ();
+    }
+
+    private static Process bash (String script) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder ("bash", "-c", script);
+        pb.redirectErrorStream (true);
+        return pb.start ();
+    }
+
+    @Test
+    public void testLinesAreDeliveredInOrderAndBatched () throws Exception {
+        RecordingHandler h = new RecordingHandler ();
+        m_host.register (h, bash ("for i in $(seq 1 100); do echo line$i; done"));
+        assertTrue (h.m_exited.await (10, TimeUnit.SECONDS));
+        assertEquals (0, h.m_exitValue);
+        synchronized (h) {
+            assertEquals (100, h.m_lines.size ());
+            for (int i = 0; i < 100; i++) {
+                assertEquals ("line" + (i + 1), h.m_lines.get (i));
+            }
+            assertTrue ("output written at once should arrive in few batches", h.m_batches.size () < 10);
+        }
+        // The script is forgotten once it exits
+        assertNull (m_host.statistics (h));
+    }
+
+    @Test
+    public void testScriptsShareReadersAndReportFailures () throws Exception {
+        RecordingHandler[] handlers = new RecordingHandler[6];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = new RecordingHandler ();
+            m_host.register (handlers[i], bash ("echo start; sleep 0.3; echo 'partial\r'; exit " + i));
+        }
+        for (int i = 0; i < handlers.length; i++) {
+            RecordingHandler h = handlers[i];
+            assertTrue (h.m_exited.await (10, TimeUnit.SECONDS));
+            assertEquals (i, h.m_exitValue);
+            synchronized (h) {
+                assertEquals ("start", h.m_lines.get (0));
+                assertEquals ("partial", h.m_lines.get (1));
+            }
+        }
+    }
+
+    @Test
+    public void testUnregisteredScriptsAreNotReported () throws Exception {
+        RecordingHandler h = new RecordingHandler ();
+        Process p = bash ("sleep 0.5; echo late");
+        m_host.register (h, p);
+        assertTrue (m_host.statistics (h) != null);
+        m_host.unregister (h);
+        p.waitFor ();
+        Thread.sleep (300);
+        assertEquals (1, h.m_exited.getCount ());
+        synchronized (h) {
+            assertTrue (h.m_lines.isEmpty ());
+        }
+    }
+
+    private static void assertClosed (Process p) {
+        try {
+            p.getInputStream ().read ();
+            fail ("The output of the script is still open");
+        }
+        catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void testOutputIsClosedWhenTheScriptExits () throws Exception {
+        RecordingHandler h = new RecordingHandler ();
+        Process p = bash ("echo done");
+        m_host.register (h, p);
+        assertTrue (h.m_exited.await (10, TimeUnit.SECONDS));
+        assertClosed (p);
+    }
+
+    @Test
+    public void testOutputIsClosedWhenTheHostStops () throws Exception {
+        RecordingHandler h = new RecordingHandler ();
+        Process p = bash ("sleep 30");
+        try {
+            m_host.register (h, p);
+            m_host.shutdown ();
+            assertClosed (p);
+            assertNull (m_host.statistics (h));
+            assertEquals (1, h.m_exited.getCount ());
+        }
+        finally {
+            p.destroy ();
+        }
+    }
+}
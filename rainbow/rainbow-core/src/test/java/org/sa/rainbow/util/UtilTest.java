@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.SimpleLayout;
 import org.apache.log4j.WriterAppender;
@@ -70,4 +71,22 @@ public class UtilTest {
         assertTrue (logMsg.contains ("Undefined") && logMsg.contains ("ERROR"));
     }
 
+    @Test
+    public void testLatencyHistogramPercentiles () {
+        LatencyHistogram h = new LatencyHistogram ();
+        assertEquals (0, h.getPercentileMillis (50), 0);
+        for (int i = 0; i < 99; i++) {
+            h.record (TimeUnit.MICROSECONDS.toNanos (100));
+        }
+        h.record (TimeUnit.MILLISECONDS.toNanos (50));
+
+        assertEquals (100, h.getCount ());
+        assertEquals (50, h.getMaxMillis (), 0);
+        assertEquals ((99 * 0.1 + 50) / 100, h.getMeanMillis (), 1e-9);
+        // Percentiles are within a factor of two of the latencies
+        assertTrue (h.getPercentileMillis (50) >= 0.1 && h.getPercentileMillis (50) <= 0.2);
+        assertTrue (h.getPercentileMillis (99) <= 0.2);
+        assertTrue (h.getPercentileMillis (100) >= 50 && h.getPercentileMillis (100) <= 100);
+    }
+
 }
@@ -33,16 +33,24 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.acmestudio.acme.element.IAcmeSystem;
 import org.apache.commons.lang.time.StopWatch;
@@ -56,6 +64,7 @@ import org.sa.rainbow.core.adaptation.IAdaptationManager;
 import org.sa.rainbow.core.error.RainbowConnectionException;
 import org.sa.rainbow.core.event.IRainbowMessage;
 import org.sa.rainbow.core.health.IRainbowHealthProtocol;
+import org.sa.rainbow.core.models.CompiledUtilityProfile;
 import org.sa.rainbow.core.models.IModelInstance;
 import org.sa.rainbow.core.models.ModelReference;
 import org.sa.rainbow.core.models.UtilityFunction;
@@ -77,6 +86,7 @@ import org.sa.rainbow.stitch.error.DummyStitchProblemHandler;
 import org.sa.rainbow.stitch.error.IStitchProblem;
 import org.sa.rainbow.stitch.visitor.Stitch;
 import org.sa.rainbow.util.Beacon;
+import org.sa.rainbow.util.LatencyHistogram;
 import org.sa.rainbow.util.Util;
 
 /**
@@ -128,6 +138,17 @@ public final class AdaptationManager extends AbstractRainbowRunnable
     private IModelsManagerPort                      m_modelsManagerPort    = null;
     private String m_modelRef;
     private FileChannel                   m_strategyLog              = null;
+
+    /**
+     * Evaluates the strategies of different scripts concurrently; null if they are evaluated one after another
+     */
+    private ExecutorService m_selectionExecutor = null;
+
+    // time spent in each part of strategy selection, per adaptation cycle
+    private final LatencyHistogram m_applicabilityTime = new LatencyHistogram ();
+    private final LatencyHistogram m_scoringTime       = new LatencyHistogram ();
+    private final LatencyHistogram m_historyTime       = new LatencyHistogram ();
+    private long m_cycleHistoryNanos;
     private IRainbowChangeBusSubscription m_modelTypecheckingChanged = new IRainbowChangeBusSubscription () {
 
         @Override
@@ -166,6 +187,21 @@ public final class AdaptationManager extends AbstractRainbowRunnable
         } else {
             m_minUtilityThreshold = Double.valueOf (thresholdStr);
         }
+        int threads = Integer.parseInt (Rainbow.instance ().getProperty (
+                RainbowConstants.PROPKEY_ADAPTATION_SELECTION_THREADS,
+                String.valueOf (Runtime.getRuntime ().availableProcessors ())).trim ());
+        if (threads > 1) {
+            m_selectionExecutor = Executors.newFixedThreadPool (threads, new ThreadFactory () {
+                private final AtomicInteger m_count = new AtomicInteger ();
+
+                @Override
+                public Thread newThread (Runnable r) {
+                    Thread t = new Thread (r, "Strategy Selection " + m_count.incrementAndGet ());
+                    t.setDaemon (true);
+                    return t;
+                }
+            });
+        }
         setSleepTime (SLEEP_TIME);
 
     }
@@ -246,6 +282,9 @@ public final class AdaptationManager extends AbstractRainbowRunnable
             m_enqueuePort.dispose ();
         }
         m_modelChangePort.dispose ();
+        if (m_selectionExecutor != null) {
+            m_selectionExecutor.shutdownNow ();
+        }
 
         // null-out data members
         m_repertoire = null;
@@ -337,35 +376,24 @@ public final class AdaptationManager extends AbstractRainbowRunnable
      * @return double the instantaneous utility of current conditions
      */
     public double computeSystemInstantUtility () {
-        Map<String, Double> weights = m_utilityModel.weights
-                .get (Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_SCENARIO));
-        double[] conds = new double[m_utilityModel.getUtilityFunctions ().size ()];
-        int i = 0;
+        CompiledUtilityProfile profile = m_utilityModel
+                .compiledProfile (Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_SCENARIO));
         double score = 0.0;
-        for (String k : new ArrayList<String> (m_utilityModel.getUtilityFunctions ().keySet ())) {
+        for (int d = 0; d < profile.dimensionCount (); d++) {
+            // only weighted utilities count
+            if (!profile.isWeighted (d)) {
+                continue;
+            }
             double v = 0.0;
-            // find the applicable utility function
-            UtilityFunction u = m_utilityModel.getUtilityFunctions ().get (k);
             // add attribute value from current condition to accumulated agg
             // value
-            Object condVal = m_model.getProperty (u.mapping ());
+            Object condVal = m_model.getProperty (profile.mapping (d));
             if (condVal != null) {
-                double val = 0.0;
-                if (condVal instanceof Double) {
-                    val = (Double) condVal;
-                } else if (condVal instanceof Float) {
-                    val = ((Float) condVal).doubleValue ();
-                } else if (condVal instanceof Integer) {
-                    val = ((Integer) condVal).doubleValue ();
-                }
-                m_reportingPort.trace (getComponentType (), "Avg value of prop: " + u.mapping () + " == " + condVal);
-                conds[i] = val;
-                v += conds[i];
+                m_reportingPort.trace (getComponentType (), "Avg value of prop: " + profile.mapping (d) + " == " + condVal);
+                v += toDouble (condVal);
             }
             // now compute the utility, apply weight, and accumulate to sum
-            if (weights.containsKey (k)) { // but only if weight is defined
-                score += weights.get (k) * u.f (v);
-            }
+            score += profile.weight (d) * profile.utility (d, v);
         }
         return score;
     }
@@ -454,6 +482,48 @@ public final class AdaptationManager extends AbstractRainbowRunnable
         defineAttributes (stitch, attrVectorMap);
     }
 
+    /**
+     * @return the time spent in each part of strategy selection in each adaptation cycle: checking the applicability
+     * of strategies, scoring them, and looking up their failure history
+     */
+    public Map<String, LatencyHistogram> getSelectionTimings () {
+        Map<String, LatencyHistogram> timings = new LinkedHashMap<String, LatencyHistogram> ();
+        timings.put ("applicability", m_applicabilityTime);
+        timings.put ("scoring", m_scoringTime);
+        timings.put ("history", m_historyTime);
+        return timings;
+    }
+
+    /**
+     * Selects the strategy to execute. The model properties that strategies are scored on are read once per cycle, so
+     * that every strategy is scored against the same state. The model is only locked while they are read (see
+     * {@link #readConditions(CompiledUtilityProfile)}), not while strategies are evaluated, so that the Models Manager
+     * can keep updating the model during selection.
+     */
+    private Strategy checkAdaptation () {
+        return selectStrategy ();
+    }
+
+    /**
+     * Reads the current value of the model property that each utility dimension maps to. The values are read holding
+     * the model's monitor, as the Models Manager does to change the model, so that they all come from the same state.
+     *
+     * @return the value of the property of each dimension of the profile, or 0 if the model has no value for it
+     */
+    double[] readConditions (CompiledUtilityProfile profile) {
+        double[] conds = new double[profile.dimensionCount ()];
+        if (m_model == null) return conds;
+        synchronized (m_model.getModelInstance ()) {
+            for (int d = 0; d < conds.length; d++) {
+                Object condVal = m_model.getProperty (profile.mapping (d));
+                if (condVal != null) {
+                    conds[d] = toDouble (condVal);
+                }
+            }
+        }
+        return conds;
+    }
+
     /*
      * Algorithm: - Iterate through repertoire searching for enabled strategies,
      * where "enabled" means applicable to current system condition NOTE: A
@@ -463,39 +533,65 @@ public final class AdaptationManager extends AbstractRainbowRunnable
      * meta-information of the tactics in each strategy - Select and execute the
      * highest scoring strategy
      */
-    private Strategy checkAdaptation () {
+    private Strategy selectStrategy () {
         log ("Checking if adaptation is required.");
         if (_stopWatchForTesting != null) {
             _stopWatchForTesting.start ();
         }
+        long start = System.nanoTime ();
+        m_cycleHistoryNanos = 0;
 
         int availCnt = 0;
-        Map<String, Strategy> appSubsetByName = new HashMap<String, Strategy> ();
+        // keep the strategies in repertoire order, which breaks ties between equal scores
+        Map<String, Strategy> appSubsetByName = new LinkedHashMap<String, Strategy> ();
+        List<Callable<List<Strategy>>> applicabilityChecks = new ArrayList<Callable<List<Strategy>>> ();
         for (Stitch stitch : m_repertoire) {
             if (!stitch.script.isApplicableForSystem (m_model)) {
                 m_reportingPort.trace (getComponentType (), "x. skipping " + stitch.script.getName ());
                 continue; // skip checking this script
             }
+            final List<Strategy> candidates = new ArrayList<Strategy> ();
+            long history = System.nanoTime ();
             for (Strategy strategy : stitch.script.strategies) {
                 ++availCnt;
                 // check first for prior failures
                 if (getFailureRate (strategy) > FAILURE_RATE_THRESHOLD) {
                     continue; // don't consider this Strategy
                 }
-                // get estimated time cost for predicted property
-                long dur = 0L;
-//                if (Rainbow.predictionEnabled ()) { // provide future duration
-//                    dur = strategy.estimateAvgTimeCost ();
-//                }
-                Map<String, Object> moreVars = new HashMap<String, Object> ();
-                moreVars.put ("_dur_", dur);
-                // check condition of Strategy applicability
-                if (strategy.isApplicable (moreVars)) {
-                    appSubsetByName.put (strategy.getName (), strategy);
+                candidates.add (strategy);
+            }
+            m_cycleHistoryNanos += System.nanoTime () - history;
+            applicabilityChecks.add (new Callable<List<Strategy>> () {
+
+                @Override
+                public List<Strategy> call () throws Exception {
+                    List<Strategy> applicable = new ArrayList<Strategy> ();
+                    for (Strategy strategy : candidates) {
+                        // get estimated time cost for predicted property
+                        long dur = 0L;
+//                        if (Rainbow.predictionEnabled ()) { // provide future duration
+//                            dur = strategy.estimateAvgTimeCost ();
+//                        }
+                        Map<String, Object> moreVars = new HashMap<String, Object> ();
+                        moreVars.put ("_dur_", dur);
+                        // check condition of Strategy applicability
+                        if (strategy.isApplicable (moreVars)) {
+                            applicable.add (strategy);
+                        }
+                    }
+                    return applicable;
                 }
+            });
+        }
+        for (List<Strategy> applicable : evaluateByScript (applicabilityChecks, "applicability")) {
+            for (Strategy strategy : applicable) {
+                appSubsetByName.put (strategy.getName (), strategy);
             }
         }
+        long applicabilityNanos = System.nanoTime () - start - m_cycleHistoryNanos;
+        m_applicabilityTime.record (applicabilityNanos);
         if (appSubsetByName.size () == 0) { // can't do adaptation
+            m_historyTime.record (m_cycleHistoryNanos);
             log ("No applicable Strategies to do an adaptation!");
             m_adaptNeeded = false;
 //            m_model.clearConstraintViolated ();
@@ -531,13 +627,22 @@ public final class AdaptationManager extends AbstractRainbowRunnable
         }
         log (">> repertoire: " + appSubsetByName.size () + " / " + availCnt + " strategy"
                      + (availCnt > 1 ? "ies" : "y"));
-        SortedMap<Double, Strategy> scoredStrategies = scoreStrategies (appSubsetByName);
+        long historyNanos = m_cycleHistoryNanos;
+        long scoring = System.nanoTime ();
+        List<ScoredStrategy> scoredStrategies = scoreStrategies (appSubsetByName);
+        long scoringNanos = System.nanoTime () - scoring - (m_cycleHistoryNanos - historyNanos);
+        m_scoringTime.record (scoringNanos);
+        m_historyTime.record (m_cycleHistoryNanos);
+        log (MessageFormat.format ("Strategy selection took {0,number,0.###} ms: applicability {1,number,0.###} ms, "
+                                           + "scoring {2,number,0.###} ms, history {3,number,0.###} ms",
+                                   (System.nanoTime () - start) / 1e6, applicabilityNanos / 1e6, scoringNanos / 1e6,
+                                   m_cycleHistoryNanos / 1e6));
         if (Util.dataLogger ().isInfoEnabled ()) {
             StringBuffer buf = new StringBuffer ();
             buf.append ("  [\n");
-            for (Map.Entry<Double, Strategy> entry : scoredStrategies.entrySet ()) {
-                buf.append ("   ").append (entry.getValue ().getName ()).append (":");
-                buf.append (entry.getKey ()).append ("\n");
+            for (ScoredStrategy scored : scoredStrategies) {
+                buf.append ("   ").append (scored.strategy.getName ()).append (":");
+                buf.append (scored.score).append ("\n");
             }
             buf.append ("  ]\n");
             log (buf.toString ());
@@ -548,7 +653,7 @@ public final class AdaptationManager extends AbstractRainbowRunnable
             _stopWatchForTesting.stop ();
         }
         if (scoredStrategies.size () > 0) {
-            Strategy selectedStrategy = scoredStrategies.get (scoredStrategies.lastKey ());
+            Strategy selectedStrategy = scoredStrategies.get (0).strategy;
             return selectedStrategy;
         } else {
             Util.dataLogger ().info (IRainbowHealthProtocol.DATA_ADAPTATION_END);
@@ -558,14 +663,71 @@ public final class AdaptationManager extends AbstractRainbowRunnable
         }
     }
 
+    /**
+     * Runs tasks that each evaluate the strategies of one Stitch script, concurrently if there is a selection
+     * executor. The strategies of a script are always evaluated by the same task, because they share the evaluator and
+     * variables of the script.
+     *
+     * @param tasks the tasks to run
+     * @param what  what is being evaluated, for reporting failures
+     * @return the results of the tasks that succeeded, in the order of the tasks
+     */
+    private <T> List<T> evaluateByScript (List<Callable<T>> tasks, String what) {
+        List<T> results = new ArrayList<T> (tasks.size ());
+        if (m_selectionExecutor == null || tasks.size () < 2) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add (task.call ());
+                } catch (Exception e) {
+                    m_reportingPort.error (getComponentType (), "Failed to evaluate strategy " + what, e);
+                }
+            }
+            return results;
+        }
+        try {
+            for (Future<T> result : m_selectionExecutor.invokeAll (tasks)) {
+                try {
+                    results.add (result.get ());
+                } catch (ExecutionException e) {
+                    m_reportingPort.error (getComponentType (), "Failed to evaluate strategy " + what, e.getCause ());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+        }
+        return results;
+    }
+
+    /**
+     * A strategy and its score. Scored strategies sort best first; strategies with the same score keep the order in
+     * which they were scored.
+     */
+    static class ScoredStrategy implements Comparable<ScoredStrategy> {
+        final Strategy strategy;
+        final double   score;
+        final int      order;
+
+        ScoredStrategy (Strategy strategy, double score, int order) {
+            this.strategy = strategy;
+            this.score = score;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo (ScoredStrategy o) {
+            int c = Double.compare (o.score, score);
+            return c != 0 ? c : Integer.compare (order, o.order);
+        }
+    }
+
     /**
      * Iterate through the supplied set of strategies, compute aggregate attributes, and use the aggregate values plus
      * stakeholder utility preferences to compute an integer score for each Strategy, between 0 and 100.
      *
      * @param subset the subset of condition-applicable Strategies to score, in the form of a name-strategy map
-     * @return a map of score-strategy pairs, sorted in increasing order by score.
+     * @return the strategies with a score above the threshold, best first
      */
-    private SortedMap<Double, Strategy> scoreStrategies (Map<String, Strategy> subset) {
+    private List<ScoredStrategy> scoreStrategies (Map<String, Strategy> subset) {
         String scenario = Rainbow.instance ().getProperty (RainbowConstants.PROPKEY_SCENARIO);
 //        Set<String> scenarios = Rainbow.instance ().getRainbowMaster ().preferenceDesc ().weights.keySet ();
 //        for (String s : scenarios) {
@@ -576,128 +738,203 @@ public final class AdaptationManager extends AbstractRainbowRunnable
 //            scoreForScenario (s, subset);
 //            log ("--------- done hypothetical");
 //        }
-        return scoreForScenario (scenario, subset);
+        return scoreForScenario (scenario, subset, readConditions (m_utilityModel.compiledProfile (scenario)));
     }
 
-    SortedMap<Double, Strategy> scoreForScenario (String scenario, Map<String, Strategy> subset) {
-        Map<String, Double> weights = m_utilityModel.weights.get (scenario);
-        SortedMap<Double, Strategy> scored = new TreeMap<Double, Strategy> ();
+    List<ScoredStrategy> scoreForScenario (String scenario, Map<String, Strategy> subset, double[] conditions) {
+        CompiledUtilityProfile profile = m_utilityModel.compiledProfile (scenario);
+        int dims = profile.dimensionCount ();
+        List<ScoredStrategy> scored = new ArrayList<ScoredStrategy> ();
         boolean predictionEnabled = false; //Rainbow.predictionEnabled () && Rainbow.utilityPredictionDuration () > 0;
-        double[] conds = null; // store the conditions to output for diagnosis
-        double[] condsPred = null; // store predicted conditions
-        // find the weights of the applicable scenario
         log ("Scoring for " + scenario);
-        for (Strategy strategy : subset.values ()) {
-            SortedMap<String, Double> aggAtt = strategy.computeAggregateAttributes ();
+        /*
+         * collect the aggregate attributes of every strategy, by utility dimension, so that they can be scored
+         * together
+         */
+        List<Strategy> strategies = new ArrayList<> (subset.values ());
+        List<SortedMap<String, Double>> aggregates = computeAggregateAttributes (strategies);
+        for (int s = strategies.size () - 1; s >= 0; s--) {
+            if (aggregates.get (s) == null) {
+                // the attributes could not be computed, so the strategy cannot be scored
+                strategies.remove (s);
+                aggregates.remove (s);
+            }
+        }
+        double[][] attributes = new double[strategies.size ()][];
+        boolean[] used = new boolean[dims];
+        for (int s = 0; s < strategies.size (); s++) {
+            Strategy strategy = strategies.get (s);
+            SortedMap<String, Double> aggAtt = aggregates.get (s);
             // add the strategy failure history as another attribute
+            long history = System.nanoTime ();
             accountForStrategyHistory (aggAtt, strategy);
-            String s = strategy.getName () + aggAtt;
-            Util.dataLogger ().info (IRainbowHealthProtocol.DATA_ADAPTATION_STRATEGY_ATTR + s);
-            log ("aggAttr: " + s);
-            /*
-             * compute utility values from attributes that combines values
-             * representing current condition, then accumulate the weighted
-             * utility sum
-             */
-            double[] items = new double[aggAtt.size ()];
-            double[] itemsPred = new double[aggAtt.size ()];
-            double[] utilityOfItem = new double[aggAtt.size ()];
-            double[] currentUtility = new double[aggAtt.size ()];
-            if (conds == null) {
-                conds = new double[aggAtt.size ()];
-            }
-            if (condsPred == null) {
-                condsPred = new double[aggAtt.size ()];
-            }
-            int i = 0;
-            double score = 0.0;
-            double scorePred = 0.0; // score based on predictions
-            for (String k : aggAtt.keySet ()) {
-                double v = aggAtt.get (k);
+            m_cycleHistoryNanos += System.nanoTime () - history;
+            String str = strategy.getName () + aggAtt;
+            Util.dataLogger ().info (IRainbowHealthProtocol.DATA_ADAPTATION_STRATEGY_ATTR + str);
+            log ("aggAttr: " + str);
+            double[] v = profile.emptyVector ();
+            for (Map.Entry<String, Double> e : aggAtt.entrySet ()) {
                 // find the applicable utility function
-                UtilityFunction u = m_utilityModel.getUtilityFunctions ().get (k);
-                if (u == null) {
-                    log ("Error: attempting to calculate for not existent function: " + k);
+                int d = profile.dimension (e.getKey ());
+                if (d < 0) {
+                    log ("Error: attempting to calculate for not existent function: " + e.getKey ());
                     continue;
                 }
-                Object condVal = null;
-                Object condValPred = null;
-                // add attribute value from CURRENT condition to accumulated agg
-                // value
-                condVal = m_model.getProperty (u.mapping ());
-                items[i] = v;
-                if (condVal != null) {
-                    double val = 0.0;
-                    if (condVal instanceof Double) {
-                        val = (Double) condVal;
-                    } else if (condVal instanceof Float) {
-                        val = ((Float) condVal).doubleValue ();
-                    } else if (condVal instanceof Integer) {
-                        val = ((Integer) condVal).doubleValue ();
-                    }
+                v[d] = e.getValue ();
+                used[d] = true;
+            }
+            attributes[s] = v;
+        }
 
-                    m_reportingPort.trace (getComponentType (),
-                                           "Avg value of prop: " + u.mapping () + " == " + condVal);
-                    conds[i] = val;
-                    items[i] += conds[i];
-                }
-                // now compute the utility, apply weight, and accumulate to sum
-                utilityOfItem[i] = u.f (items[i]);
-                currentUtility[i] = u.f (conds[i]);
-                score += weights.get (k) * utilityOfItem[i];
-
-                // if applicable, process the same set of info using predicted
-                // values
-                if (predictionEnabled) {
-                    // add attribute value from FUTURE condition to accumulated
-                    // agg value
-                    condValPred = m_model.predictProperty (u.mapping (), 0L/*Rainbow.utilityPredictionDuration ()*/);
-                    itemsPred[i] = v;
-                    if (condValPred != null && condValPred instanceof Double) {
-                        // if (m_logger.isTraceEnabled())
-                        log ("Avg value of predicted prop: " + u.mapping () + " == " + condValPred);
-                        condsPred[i] = (Double) condValPred;
-                        itemsPred[i] += condsPred[i];
-                    }
-                    // now compute the utility, apply weight, and accumulate to
-                    // sum
-                    scorePred += weights.get (k) * u.f (itemsPred[i]);
+        // use the CURRENT conditions read for the cycle (and, if applicable, read the FUTURE ones) for all strategies
+        double[] conds = new double[dims]; // store the conditions to output for diagnosis
+        double[] condsPred = new double[dims]; // store predicted conditions
+        double[] currentUtility = new double[dims];
+        for (int d = 0; d < dims; d++) {
+            if (!used[d]) {
+                continue;
+            }
+            conds[d] = conditions[d];
+            m_reportingPort.trace (getComponentType (),
+                                   "Avg value of prop: " + profile.mapping (d) + " == " + conds[d]);
+            currentUtility[d] = profile.utility (d, conds[d]);
+            if (predictionEnabled) {
+                Object condValPred = m_model.predictProperty (profile.mapping (d), 0L/*Rainbow.utilityPredictionDuration ()*/);
+                if (condValPred != null && condValPred instanceof Double) {
+                    log ("Avg value of predicted prop: " + profile.mapping (d) + " == " + condValPred);
+                    condsPred[d] = (Double) condValPred;
                 }
-                ++i;
             }
+        }
 
+        /*
+         * compute utility values from attributes that combines values
+         * representing current condition, then accumulate the weighted
+         * utility sum
+         */
+        double[][] utilityOfItems = new double[strategies.size ()][dims];
+        double[] scores = profile.scoreAll (attributes, conds, utilityOfItems);
+        double[] scoresPred = predictionEnabled ? profile.scoreAll (attributes, condsPred, null) : null;
+
+        for (int s = 0; s < strategies.size (); s++) {
+            Strategy strategy = strategies.get (s);
+            double score = scores[s];
+            double[] items = new double[dims];
+            for (int d = 0; d < dims; d++) {
+                items[d] = attributes[s][d] + conds[d];
+            }
             if (predictionEnabled) {
                 // compare and pick higher score
-                if (scorePred > .9 * score) { // score based on prediction
+                if (scoresPred[s] > .9 * score) { // score based on prediction
                     // prevails
-                    log ("cur-cond score " + score + " was lower, discarding: " + Arrays.toString (items));
-                    score = scorePred;
-                    items = itemsPred;
+                    log ("cur-cond score " + score + " was lower, discarding: "
+                                 + Arrays.toString (present (items, attributes[s])));
+                    score = scoresPred[s];
+                    for (int d = 0; d < dims; d++) {
+                        items[d] = attributes[s][d] + condsPred[d];
+                    }
                 }
             }
 
             // log this
-            s = Arrays.toString (items);
+            String str = Arrays.toString (present (items, attributes[s]));
             if (score < m_minUtilityThreshold) {
                 // utility score too low, don't consider for adaptation
-                log ("score " + score + " below threshold, discarding: " + s);
+                log ("score " + score + " below threshold, discarding: " + str);
             } else {
-                scored.put (score, strategy);
+                scored.add (new ScoredStrategy (strategy, score, s));
             }
-            log ("current model properties: " + Arrays.toString (conds));
-            log ("current model utilities: " + Arrays.toString (currentUtility));
-            log (strategy.getName () + ": predicted utilities: " + Arrays.toString (utilityOfItem));
+            log ("current model properties: " + Arrays.toString (present (conds, attributes[s])));
+            log ("current model utilities: " + Arrays.toString (present (currentUtility, attributes[s])));
+            log (strategy.getName () + ": predicted utilities: "
+                         + Arrays.toString (present (utilityOfItems[s], attributes[s])));
             log (strategy.getName () + ": score = " + score);
-            Util.dataLogger ().info (IRainbowHealthProtocol.DATA_ADAPTATION_STRATEGY_ATTR2 + s);
-            log ("aggAtt': " + s);
+            Util.dataLogger ().info (IRainbowHealthProtocol.DATA_ADAPTATION_STRATEGY_ATTR2 + str);
+            log ("aggAtt': " + str);
         }
         log ("cond   : " + Arrays.toString (conds));
         if (predictionEnabled) {
             log ("condP! : " + Arrays.toString (condsPred));
         }
+        Collections.sort (scored);
         return scored;
     }
 
+    /**
+     * Computes the aggregate attributes of strategies, the strategies of different scripts concurrently
+     *
+     * @return the aggregate attributes of each strategy, in the same order; null for a strategy whose attributes could
+     * not be computed
+     */
+    private List<SortedMap<String, Double>> computeAggregateAttributes (List<Strategy> strategies) {
+        Map<Stitch, List<Integer>> byScript = new LinkedHashMap<Stitch, List<Integer>> ();
+        for (int s = 0; s < strategies.size (); s++) {
+            Stitch stitch = strategies.get (s).stitchState ();
+            List<Integer> indices = byScript.get (stitch);
+            if (indices == null) {
+                indices = new ArrayList<Integer> ();
+                byScript.put (stitch, indices);
+            }
+            indices.add (s);
+        }
+        final List<Strategy> all = strategies;
+        List<Callable<Map<Integer, SortedMap<String, Double>>>> tasks = new ArrayList<> ();
+        for (final List<Integer> indices : byScript.values ()) {
+            tasks.add (new Callable<Map<Integer, SortedMap<String, Double>>> () {
+
+                @Override
+                public Map<Integer, SortedMap<String, Double>> call () throws Exception {
+                    Map<Integer, SortedMap<String, Double>> aggregates = new HashMap<Integer, SortedMap<String,
+                            Double>> ();
+                    for (Integer s : indices) {
+                        aggregates.put (s, all.get (s).computeAggregateAttributes ());
+                    }
+                    return aggregates;
+                }
+            });
+        }
+        List<SortedMap<String, Double>> aggregates = new ArrayList<SortedMap<String, Double>> (
+                Collections.<SortedMap<String, Double>>nCopies (strategies.size (), null));
+        for (Map<Integer, SortedMap<String, Double>> result : evaluateByScript (tasks, "attributes")) {
+            for (Map.Entry<Integer, SortedMap<String, Double>> e : result.entrySet ()) {
+                aggregates.set (e.getKey (), e.getValue ());
+            }
+        }
+        return aggregates;
+    }
+
+    /**
+     * @return the values of the dimensions that are set (not NaN) in a vector of attributes, in dimension order
+     */
+    private static double[] present (double[] values, double[] attributes) {
+        int n = 0;
+        for (double a : attributes) {
+            if (a == a) {
+                n++;
+            }
+        }
+        double[] present = new double[n];
+        int i = 0;
+        for (int d = 0; d < attributes.length; d++) {
+            if (attributes[d] == attributes[d]) {
+                present[i++] = values[d];
+            }
+        }
+        return present;
+    }
+
+    private static double toDouble (Object condVal) {
+        double val = 0.0;
+        if (condVal instanceof Double) {
+            val = (Double) condVal;
+        } else if (condVal instanceof Float) {
+            val = ((Float) condVal).doubleValue ();
+        } else if (condVal instanceof Integer) {
+            val = ((Integer) condVal).doubleValue ();
+        }
+        return val;
+    }
+
     /**
      * Retrieves the adaptation repertoire; for each tactic, store the respective tactic attribute vectors.
      */
@@ -870,7 +1107,7 @@ public final class AdaptationManager extends AbstractRainbowRunnable
         Boolean typechecks = Boolean.valueOf (typecheckSt);
         // Cause the thread to wake up if it is sleeping
         if (!typechecks) {
-            activeThread ().interrupt ();
+            wakeUp ();
         }
     }
 
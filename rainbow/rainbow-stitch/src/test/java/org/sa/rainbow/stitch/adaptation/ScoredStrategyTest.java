@@ -0,0 +1,59 @@
+package org.sa.rainbow.stitch.adaptation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sa.rainbow.stitch.adaptation.AdaptationManager.ScoredStrategy;
+
+/**
+ * Checks that scored strategies sort best first, and that strategies with the same score keep their order in the
+ * repertoire, whatever order they were scored in.
+ */
+public class ScoredStrategyTest {
+
+    private static List<Integer> orders (List<ScoredStrategy> scored) {
+        List<Integer> orders = new ArrayList<> ();
+        for (ScoredStrategy s : scored) {
+            orders.add (s.order);
+        }
+        return orders;
+    }
+
+    @Test
+    public void equalScoresKeepRepertoireOrder () throws Exception {
+        double[] scores = { 0.5, 0.9, 0.5, 0.9, 0.1, 0.5, 0.0, 0.9 };
+        List<ScoredStrategy> repertoire = new ArrayList<> ();
+        for (int i = 0; i < scores.length; i++) {
+            repertoire.add (new ScoredStrategy (null, scores[i], i));
+        }
+        List<Integer> expected = new ArrayList<> ();
+        Collections.addAll (expected, 1, 3, 7, 0, 2, 5, 4, 6);
+
+        List<ScoredStrategy> sorted = new ArrayList<> (repertoire);
+        Collections.sort (sorted);
+        assertEquals (expected, orders (sorted));
+
+        // The selection must not depend on the order in which the scores were collected
+        Random r = new Random (25);
+        for (int i = 0; i < 50; i++) {
+            List<ScoredStrategy> shuffled = new ArrayList<> (repertoire);
+            Collections.shuffle (shuffled, r);
+            Collections.sort (shuffled);
+            assertEquals (expected, orders (shuffled));
+        }
+    }
+
+    @Test
+    public void sameScoreAndOrderCompareEqual () throws Exception {
+        ScoredStrategy a = new ScoredStrategy (null, 0.7, 3);
+        ScoredStrategy b = new ScoredStrategy (null, 0.7, 3);
+        assertEquals (0, a.compareTo (b));
+        assertEquals (-1, Integer.signum (a.compareTo (new ScoredStrategy (null, 0.7, 4))));
+        assertEquals (1, Integer.signum (a.compareTo (new ScoredStrategy (null, 0.8, 4))));
+    }
+}
@@ -39,8 +39,8 @@ import org.sa.rainbow.core.RainbowConstants;
 import org.sa.rainbow.core.analysis.IRainbowAnalysis;
 import org.sa.rainbow.core.error.RainbowConnectionException;
 import org.sa.rainbow.core.event.IRainbowMessage;
+import org.sa.rainbow.core.models.CompiledUtilityProfile;
 import org.sa.rainbow.core.models.ModelReference;
-import org.sa.rainbow.core.models.UtilityFunction;
 import org.sa.rainbow.core.models.UtilityPreferenceDescription;
 import org.sa.rainbow.core.models.commands.IRainbowOperation;
 import org.sa.rainbow.core.ports.IModelChangeBusPort;
@@ -179,17 +179,18 @@ public class UtilityEvaluator extends AbstractRainbowRunnable implements IRainbo
     private Map<String, Double> computeSystemInstantUtility (UtilityPreferenceDescription utilityModel,
             AcmeModelInstance acmeModel,
             IRainbowReportingPort reportingPort) {
-        Map<String, Double> weights = utilityModel.weights
-                .get (Rainbow.getProperty (RainbowConstants.PROPKEY_SCENARIO));
+        CompiledUtilityProfile profile = utilityModel
+                .compiledProfile (Rainbow.getProperty (RainbowConstants.PROPKEY_SCENARIO));
         Map<String, Double> utilities = new HashMap<> ();
-        double[] conds = new double[utilityModel.getUtilities ().size ()];
-        int i = 0;
         double score = 0.0;
-        for (Entry<String, UtilityFunction> e : utilityModel.getUtilityFunctions ().entrySet ()) {
+        for (int d = 0; d < profile.dimensionCount (); d++) {
+            // only weighted utilities count
+            if (!profile.isWeighted (d)) {
+                continue;
+            }
             double v = 0.0;
-            UtilityFunction u = e.getValue ();
             // add attribute value from current condition to accumulated agg value
-            Object condVal = acmeModel.getProperty (u.mapping ());
+            Object condVal = acmeModel.getProperty (profile.mapping (d));
             if (condVal != null) {
                 double val = 0.0;
                 if (condVal instanceof Double) {
@@ -201,15 +202,12 @@ public class UtilityEvaluator extends AbstractRainbowRunnable implements IRainbo
                 else if (condVal instanceof Integer) {
                     val = ((Integer )condVal).doubleValue ();
                 }
-                conds[i] = val;
-                v += conds[i];
+                v += val;
             }
             // now compute the utility, apply weight, and accumulate to sum
-            if (weights.containsKey (e.getKey ())) {
-                double utility = u.f (v);
-                utilities.put (e.getKey (), utility);
-                score += weights.get (e.getKey ()) * utility;
-            }
+            double utility = profile.utility (d, v);
+            utilities.put (profile.name (d), utility);
+            score += profile.weight (d) * utility;
         }
         utilities.put (OVERALL_UTILITY_KEY, score);
         return utilities;
@@ -225,6 +223,7 @@ public class UtilityEvaluator extends AbstractRainbowRunnable implements IRainbo
         synchronized (m_modelQ) {
             if (!m_modelQ.contains (reference)) {
                 m_modelQ.offer (reference);
+                wakeUp ();
             }
         }
     }
@@ -58,6 +58,9 @@ public class AddUtilityMeasureCmd extends AbstractRainbowModelOperation<Double,
 
     @Override
     protected void subExecute () throws RainbowException {
+        if (m_timestampRecorded == 0) {
+            m_timestampRecorded = System.currentTimeMillis ();
+        }
         getModelContext ().getModelInstance ().add (getTarget (), m_timestampRecorded, m_utility);
     }
 
@@ -70,7 +73,7 @@ public class AddUtilityMeasureCmd extends AbstractRainbowModelOperation<Double,
 
     @Override
     protected void subUndo () throws RainbowException {
-        getModelContext ().getModelInstance ().forget (m_timestampRecorded);
+        getModelContext ().getModelInstance ().forget (getTarget (), m_timestampRecorded);
     }
 
 
@@ -23,9 +23,11 @@
  */
 package org.sa.rainbow.model.utility;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.Map.Entry;
 
 import org.sa.rainbow.core.error.RainbowException;
 import org.sa.rainbow.core.models.IModelsManager;
@@ -53,18 +55,19 @@ public class SaveUtilityHistoryCmd extends AbstractSaveModelCmd<UtilityHistory>
     protected void subExecute () throws RainbowException {
         UtilityHistory model = getModelContext ().getModelInstance ();
 
-        PrintStream ps = new PrintStream (getStream ());
-        for (String key : model.getUtilityKeys ()) {
-            for (Entry<Long, Double> entry : model.getUtilityHistory (key).entrySet ()) {
-                ps.print (key);
-                ps.print (",");
-                ps.print (entry.getKey ());
-                ps.print (",");
-                ps.print (entry.getValue ());
-                ps.println ();
-            }
+        // Locations named .csv keep getting the text format, for the tools that read it
+        if (getTarget () != null && getTarget ().toLowerCase ().endsWith (".csv")) {
+            PrintStream ps = new PrintStream (getStream ());
+            model.writeCsv (ps);
+            ps.close ();
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream (new BufferedOutputStream (getStream ()))) {
+            model.writeTo (out);
+        }
+        catch (IOException e) {
+            throw new RainbowException ("Could not save the utility history", e);
         }
-        ps.close ();
     }
 
     @Override
@@ -23,6 +23,15 @@
  */
 package org.sa.rainbow.model.utility;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -32,70 +41,203 @@ import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import org.sa.rainbow.core.Rainbow;
 import org.sa.rainbow.core.models.ModelReference;
+import org.sa.rainbow.model.utility.UtilityTimeSeries.Policy;
 
+/**
+ * The history of the values of each utility dimension, kept as UtilityTimeSeries. How long values are kept is set by
+ * the properties below (in milliseconds); by default everything is kept, uncompressed.
+ */
 public class UtilityHistory {
 
-    private Map<String, SortedMap<Long, Double>> m_utilityHistory;
+    /** Values older than this are dropped **/
+    public static final String PROPKEY_RETENTION           = "rainbow.utility.history.retention";
+    /** Values older than this are averaged into buckets of PROPKEY_DOWNSAMPLE_INTERVAL **/
+    public static final String PROPKEY_DOWNSAMPLE_AGE      = "rainbow.utility.history.downsample.age";
+    public static final String PROPKEY_DOWNSAMPLE_INTERVAL = "rainbow.utility.history.downsample.interval";
+    /** Whether old values are kept compressed (true or false) **/
+    public static final String PROPKEY_COMPRESS            = "rainbow.utility.history.compress";
+
+    /** The first int of a saved history **/
+    private static final int FORMAT_MAGIC = 0x52554831; // "RUH1"
+
+    private Map<String, UtilityTimeSeries> m_utilityHistory;
     private ModelReference          m_model;
+    private final Policy            m_policy;
 
     public UtilityHistory (ModelReference model) {
+        this (model, policyFromProperties ());
+    }
+
+    public UtilityHistory (ModelReference model, Policy policy) {
         m_model = model;
+        m_policy = policy;
         m_utilityHistory = new HashMap<> ();
     }
 
     UtilityHistory (Map<String, SortedMap<Long, Double>> history, ModelReference ref) {
         this (ref);
         for (Entry<String, SortedMap<Long, Double>> entry : history.entrySet ()) {
-            SortedMap<Long, Double> m = new TreeMap<> ();
-            m.putAll (entry.getValue ());
-            m_utilityHistory.put (entry.getKey (), m);
+            for (Entry<Long, Double> e : entry.getValue ().entrySet ()) {
+                add (entry.getKey (), e.getKey (), e.getValue ());
+            }
         }
     }
 
-    public UtilityHistory copy () {
-        UtilityHistory c = new UtilityHistory (m_model);
-        c.m_utilityHistory = new HashMap<> ();
-        for (String key : getUtilityKeys ()) {
-            SortedMap<Long, Double> m = new TreeMap<> ();
-            c.m_utilityHistory.put (key, m);
-            for (Entry<Long, Double> e : m_utilityHistory.get (key).entrySet ()) {
-                m.put (e.getKey (), e.getValue ());
-            }
+    private static Policy policyFromProperties () {
+        return new Policy (longProperty (PROPKEY_RETENTION), longProperty (PROPKEY_DOWNSAMPLE_AGE),
+                longProperty (PROPKEY_DOWNSAMPLE_INTERVAL),
+                Boolean.parseBoolean (Rainbow.instance ().getProperty (PROPKEY_COMPRESS, "false")));
+    }
+
+    private static long longProperty (String key) {
+        try {
+            return Long.parseLong (Rainbow.instance ().getProperty (key, "0").trim ());
+        }
+        catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return a copy of the history; the copy shares the sealed chunks of each series with this history
+     */
+    public synchronized UtilityHistory copy () {
+        UtilityHistory c = new UtilityHistory (m_model, m_policy);
+        for (Entry<String, UtilityTimeSeries> e : m_utilityHistory.entrySet ()) {
+            c.m_utilityHistory.put (e.getKey (), e.getValue ().copy ());
         }
         return c;
     }
 
-    public void add (String utility, long timestamp, double utilityValue) {
-        SortedMap<Long, Double> values = m_utilityHistory.get (utility);
+    /**
+     * Records a value of a utility. Values older than the newest value of the utility are dropped (see
+     * UtilityTimeSeries.add).
+     */
+    public synchronized void add (String utility, long timestamp, double utilityValue) {
+        UtilityTimeSeries values = m_utilityHistory.get (utility);
         if (values == null) {
-            values = new TreeMap<> ();
+            values = new UtilityTimeSeries (m_policy);
             m_utilityHistory.put (utility, values);
         }
-        values.put (timestamp, utilityValue);
+        values.add (timestamp, utilityValue);
     }
 
     public void add (String utility, double utilityValue) {
         add (utility, new Date ().getTime (), utilityValue);
     }
 
+    /**
+     * @return the series of values of a utility, or null if none have been recorded
+     */
+    public synchronized UtilityTimeSeries getSeries (String utility) {
+        return m_utilityHistory.get (utility);
+    }
+
+    /**
+     * @return the values of a utility, by time. This builds a map of all the values; use getSeries for ranges and
+     *         aggregates.
+     */
     public SortedMap<Long, Double> getUtilityHistory (String utility) {
-        SortedMap<Long, Double> history = m_utilityHistory.get (utility);
+        UtilityTimeSeries history = getSeries (utility);
         if (history != null)
-            return Collections.unmodifiableSortedMap (history);
+            return Collections.unmodifiableSortedMap (history.toMap ());
         else
             return new TreeMap<> ();
     }
 
-    public Collection<String> getUtilityKeys () {
-        return m_utilityHistory.keySet ();
+    public synchronized Collection<String> getUtilityKeys () {
+        return Collections.unmodifiableSet (m_utilityHistory.keySet ());
     }
 
     public ModelReference getModelReference () {
         return m_model;
     }
 
-    public void forget (long timestampRecorded) {
-        m_utilityHistory.remove (timestampRecorded);
+    /**
+     * Forgets the newest value of a utility, if it was recorded at the given time
+     */
+    public synchronized void forget (String utility, long timestampRecorded) {
+        UtilityTimeSeries values = m_utilityHistory.get (utility);
+        if (values != null) {
+            values.removeLast (timestampRecorded);
+        }
+    }
+
+    /**
+     * Writes the history in binary: a magic number, the number of utilities, then the name and series of each
+     */
+    public synchronized void writeTo (DataOutputStream out) throws IOException {
+        out.writeInt (FORMAT_MAGIC);
+        out.writeInt (m_utilityHistory.size ());
+        for (Entry<String, UtilityTimeSeries> e : m_utilityHistory.entrySet ()) {
+            out.writeUTF (e.getKey ());
+            e.getValue ().writeTo (out);
+        }
+        out.flush ();
+    }
+
+    /**
+     * Writes the history as text, a "utility,timestamp,value" line per value
+     */
+    public synchronized void writeCsv (PrintStream ps) {
+        for (Entry<String, UtilityTimeSeries> e : m_utilityHistory.entrySet ()) {
+            for (Entry<Long, Double> entry : e.getValue ().toMap ().entrySet ()) {
+                ps.print (e.getKey ());
+                ps.print (",");
+                ps.print (entry.getKey ());
+                ps.print (",");
+                ps.print (entry.getValue ());
+                ps.println ();
+            }
+        }
+        ps.flush ();
+    }
+
+    /**
+     * Reads a history written by writeTo or by writeCsv. An empty stream is an empty history.
+     */
+    public static UtilityHistory load (InputStream in, ModelReference model) throws IOException {
+        return load (in, model, policyFromProperties ());
+    }
+
+    /**
+     * Reads a history written by writeTo or by writeCsv, keeping its values according to a policy
+     */
+    public static UtilityHistory load (InputStream in, ModelReference model, Policy policy) throws IOException {
+        BufferedInputStream bin = new BufferedInputStream (in);
+        bin.mark (4);
+        DataInputStream din = new DataInputStream (bin);
+        UtilityHistory h = new UtilityHistory (model, policy);
+        try {
+            if (din.readInt () == FORMAT_MAGIC) {
+                int utilities = din.readInt ();
+                for (int i = 0; i < utilities; i++) {
+                    String utility = din.readUTF ();
+                    h.m_utilityHistory.put (utility, UtilityTimeSeries.readFrom (din, h.m_policy));
+                }
+                return h;
+            }
+        }
+        catch (EOFException e) {
+            // too short to be binary; read it as text
+        }
+        bin.reset ();
+        BufferedReader reader = new BufferedReader (new InputStreamReader (bin));
+        String line;
+        while ((line = reader.readLine ()) != null) {
+            String[] fields = line.split (",");
+            if (fields.length != 3) {
+                continue;
+            }
+            try {
+                h.add (fields[0], Long.parseLong (fields[1].trim ()), Double.parseDouble (fields[2].trim ()));
+            }
+            catch (NumberFormatException e) {
+                throw new IOException ("Bad utility history line: " + line, e);
+            }
+        }
+        return h;
     }
 }
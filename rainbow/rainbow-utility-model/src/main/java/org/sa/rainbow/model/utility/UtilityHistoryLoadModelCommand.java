@@ -23,6 +23,7 @@
  */
 package org.sa.rainbow.model.utility;
 
+import java.io.IOException;
 import java.io.InputStream;
 
 import org.sa.rainbow.core.error.RainbowException;
@@ -55,7 +56,20 @@ public class UtilityHistoryLoadModelCommand extends AbstractLoadModelCmd<Utility
 
     @Override
     protected void subExecute () throws RainbowException {
-        UtilityHistory h = new UtilityHistory (new ModelReference (getModelReference ().getModelName (), "Acme"));
+        ModelReference ref = new ModelReference (getModelReference ().getModelName (), "Acme");
+        UtilityHistory h;
+        if (m_stream == null) {
+            h = new UtilityHistory (ref);
+        }
+        else {
+            // The stream holds a history saved by SaveUtilityHistoryCmd, or nothing
+            try {
+                h = UtilityHistory.load (m_stream, ref);
+            }
+            catch (IOException e) {
+                throw new RainbowException ("Could not load the utility history", e);
+            }
+        }
         m_result = new UtilityHistoryModelInstance (h, getOriginalSource ());
         doPostExecute ();
     }
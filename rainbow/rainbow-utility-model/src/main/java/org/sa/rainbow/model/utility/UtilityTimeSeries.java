@@ -0,0 +1,514 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 CMU ABLE Group.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.sa.rainbow.model.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An append-only series of (timestamp, value) points, kept in chunks of primitive arrays. When the newest chunk is
+ * full it is sealed, and never changes again: copies of the series share the sealed chunks, and they may be kept
+ * compressed (timestamps as delta-of-deltas, values XORed with the previous value). Each sealed chunk also keeps the
+ * minimum, maximum and sum of its values, so aggregates over windows that cover it do not look at its points.
+ * <p>
+ * A Policy says how long points are kept and whether old points are averaged into coarser buckets. Both are applied
+ * when a chunk is sealed, and a whole chunk at a time.
+ */
+public class UtilityTimeSeries {
+
+    public static final int CHUNK_SIZE = 256;
+
+    /**
+     * How long the points of a series are kept, and how they are stored
+     */
+    public static class Policy {
+
+        public static final Policy KEEP_ALL = new Policy (0, 0, 0, false);
+
+        /** Chunks whose points are all older than this (ms before the newest point) are dropped; 0 keeps them all **/
+        public final long    retention;
+        /** Chunks whose points are all older than this (ms before the newest point) are downsampled; 0 never **/
+        public final long    downsampleAge;
+        /** The width (ms) of the buckets whose points are replaced by their mean when downsampling **/
+        public final long    downsampleInterval;
+        /** Whether sealed chunks are compressed **/
+        public final boolean compress;
+
+        public Policy (long retention, long downsampleAge, long downsampleInterval, boolean compress) {
+            this.retention = retention;
+            this.downsampleAge = downsampleInterval > 0 ? downsampleAge : 0;
+            this.downsampleInterval = downsampleInterval;
+            this.compress = compress;
+        }
+    }
+
+    /**
+     * A sealed chunk of points
+     */
+    private static final class Chunk {
+        final int      m_count;
+        final long     m_first;
+        final long     m_last;
+        final double   m_min;
+        final double   m_max;
+        final double   m_sum;
+        final boolean  m_downsampled;
+        /** The points, unless the chunk is compressed **/
+        private final long[]   m_times;
+        private final double[] m_values;
+        /** The compressed points, or null **/
+        private final byte[]   m_bytes;
+
+        Chunk (long[] times, double[] values, int count, boolean downsampled, boolean compress) {
+            m_count = count;
+            m_first = times[0];
+            m_last = times[count - 1];
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                min = Math.min (min, values[i]);
+                max = Math.max (max, values[i]);
+                sum += values[i];
+            }
+            m_min = min;
+            m_max = max;
+            m_sum = sum;
+            m_downsampled = downsampled;
+            if (compress) {
+                m_bytes = encode (times, values, count);
+                m_times = null;
+                m_values = null;
+            }
+            else {
+                m_bytes = null;
+                m_times = Arrays.copyOf (times, count);
+                m_values = Arrays.copyOf (values, count);
+            }
+        }
+
+        /**
+         * Copies the points into arrays of at least m_count elements
+         */
+        void read (long[] times, double[] values) {
+            if (m_bytes == null) {
+                System.arraycopy (m_times, 0, times, 0, m_count);
+                System.arraycopy (m_values, 0, values, 0, m_count);
+            }
+            else {
+                decode (m_bytes, m_count, times, values);
+            }
+        }
+
+        byte[] bytes () {
+            return m_bytes == null ? encode (m_times, m_values, m_count) : m_bytes;
+        }
+    }
+
+    private final Policy      m_policy;
+    private final List<Chunk> m_chunks;
+    /** The newest points, which are not sealed yet **/
+    private long[]            m_times;
+    private double[]          m_values;
+    private int               m_count;
+
+    public UtilityTimeSeries (Policy policy) {
+        m_policy = policy;
+        m_chunks = new ArrayList<> ();
+        m_times = new long[CHUNK_SIZE];
+        m_values = new double[CHUNK_SIZE];
+    }
+
+    private UtilityTimeSeries (UtilityTimeSeries s) {
+        m_policy = s.m_policy;
+        m_chunks = new ArrayList<> (s.m_chunks);
+        m_times = Arrays.copyOf (s.m_times, CHUNK_SIZE);
+        m_values = Arrays.copyOf (s.m_values, CHUNK_SIZE);
+        m_count = s.m_count;
+    }
+
+    /**
+     * @return a copy of the series, which shares the sealed chunks with this one
+     */
+    public synchronized UtilityTimeSeries copy () {
+        return new UtilityTimeSeries (this);
+    }
+
+    /**
+     * Adds a point. A point with the same timestamp as the newest point replaces its value. A point older than the
+     * newest point is dropped: the series is append-only, and recording it at another time, or over the newest value,
+     * would keep a value that was never measured at that time.
+     *
+     * @return whether the point was recorded
+     */
+    public synchronized boolean add (long timestamp, double value) {
+        if (m_count == 0 && !m_chunks.isEmpty ()) {
+            long last = m_chunks.get (m_chunks.size () - 1).m_last;
+            if (timestamp < last) return false;
+            if (timestamp == last) {
+                unsealLast ();
+            }
+        }
+        if (m_count > 0 && timestamp < m_times[m_count - 1]) return false;
+        if (m_count > 0 && timestamp == m_times[m_count - 1]) {
+            m_values[m_count - 1] = value;
+        }
+        else {
+            m_times[m_count] = timestamp;
+            m_values[m_count] = value;
+            m_count++;
+        }
+        if (m_count == CHUNK_SIZE) {
+            m_chunks.add (new Chunk (m_times, m_values, m_count, false, m_policy.compress));
+            m_count = 0;
+            applyPolicy (m_times[CHUNK_SIZE - 1]);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the newest point, if it was recorded at a time
+     *
+     * @return whether the point was removed
+     */
+    public synchronized boolean removeLast (long timestamp) {
+        if (m_count == 0 && !m_chunks.isEmpty ()) {
+            if (m_chunks.get (m_chunks.size () - 1).m_last != timestamp) return false;
+            unsealLast ();
+        }
+        if (m_count == 0 || m_times[m_count - 1] != timestamp) return false;
+        m_count--;
+        return true;
+    }
+
+    /**
+     * Moves the newest sealed chunk back into the unsealed points, which must be empty
+     */
+    private void unsealLast () {
+        Chunk c = m_chunks.remove (m_chunks.size () - 1);
+        c.read (m_times, m_values);
+        m_count = c.m_count;
+    }
+
+    /**
+     * Drops and downsamples old sealed chunks
+     */
+    private void applyPolicy (long newest) {
+        if (m_policy.retention > 0) {
+            int drop = 0;
+            while (drop < m_chunks.size () && m_chunks.get (drop).m_last < newest - m_policy.retention) {
+                drop++;
+            }
+            m_chunks.subList (0, drop).clear ();
+        }
+        if (m_policy.downsampleAge > 0) {
+            long[] times = new long[CHUNK_SIZE * 2];
+            double[] values = new double[CHUNK_SIZE * 2];
+            for (int i = 0; i < m_chunks.size (); i++) {
+                Chunk c = m_chunks.get (i);
+                if (c.m_last >= newest - m_policy.downsampleAge) {
+                    break;
+                }
+                if (c.m_downsampled) {
+                    continue;
+                }
+                c.read (times, values);
+                int n = downsample (times, values, c.m_count, m_policy.downsampleInterval);
+                // merge with the previous chunk if it was downsampled and both fit in one chunk
+                if (i > 0 && m_chunks.get (i - 1).m_downsampled && m_chunks.get (i - 1).m_count + n <= CHUNK_SIZE) {
+                    Chunk p = m_chunks.get (i - 1);
+                    System.arraycopy (times, 0, times, p.m_count, n);
+                    System.arraycopy (values, 0, values, p.m_count, n);
+                    p.read (times, values);
+                    m_chunks.set (i - 1, new Chunk (times, values, p.m_count + n, true, m_policy.compress));
+                    m_chunks.remove (i);
+                    i--;
+                }
+                else {
+                    m_chunks.set (i, new Chunk (times, values, n, true, m_policy.compress));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the points in each bucket of time by one point at the start of the bucket with their mean. The first
+     * bucket may have started in the previous chunk, whose points are all earlier; its point is at the first time
+     * instead, so that no two points of the series have the same time.
+     *
+     * @return the number of points left
+     */
+    private static int downsample (long[] times, double[] values, int count, long interval) {
+        int n = 0;
+        int i = 0;
+        while (i < count) {
+            long bucket = times[i] - ((times[i] % interval) + interval) % interval;
+            double sum = 0;
+            int k = 0;
+            while (i < count && times[i] < bucket + interval) {
+                sum += values[i++];
+                k++;
+            }
+            times[n] = Math.max (bucket, times[0]);
+            values[n] = sum / k;
+            n++;
+        }
+        return n;
+    }
+
+    public synchronized int size () {
+        int size = m_count;
+        for (Chunk c : m_chunks) {
+            size += c.m_count;
+        }
+        return size;
+    }
+
+    public synchronized boolean isEmpty () {
+        return m_count == 0 && m_chunks.isEmpty ();
+    }
+
+    /**
+     * @return the points between two times (inclusive), in time order
+     */
+    public synchronized SortedMap<Long, Double> range (long from, long to) {
+        SortedMap<Long, Double> range = new TreeMap<> ();
+        long[] times = new long[CHUNK_SIZE];
+        double[] values = new double[CHUNK_SIZE];
+        for (Chunk c : m_chunks) {
+            if (c.m_last < from || c.m_first > to) {
+                continue;
+            }
+            c.read (times, values);
+            collect (times, values, c.m_count, from, to, range);
+        }
+        collect (m_times, m_values, m_count, from, to, range);
+        return range;
+    }
+
+    private static void collect (long[] times, double[] values, int count, long from, long to,
+            SortedMap<Long, Double> range) {
+        for (int i = 0; i < count; i++) {
+            if (times[i] >= from && times[i] <= to) {
+                range.put (times[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return all the points, in time order
+     */
+    public SortedMap<Long, Double> toMap () {
+        return range (Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the smallest value between two times (inclusive), or NaN if there are no points between them
+     */
+    public double min (long from, long to) {
+        return aggregate (from, to)[1];
+    }
+
+    /**
+     * @return the largest value between two times (inclusive), or NaN if there are no points between them
+     */
+    public double max (long from, long to) {
+        return aggregate (from, to)[2];
+    }
+
+    /**
+     * @return the mean of the values between two times (inclusive), or NaN if there are no points between them
+     */
+    public double mean (long from, long to) {
+        double[] a = aggregate (from, to);
+        return a[0] == 0 ? Double.NaN : a[3] / a[0];
+    }
+
+    /**
+     * @return the count, min, max and sum of the values between two times
+     */
+    private synchronized double[] aggregate (long from, long to) {
+        double[] a = { 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0 };
+        long[] times = null;
+        double[] values = null;
+        for (Chunk c : m_chunks) {
+            if (c.m_last < from || c.m_first > to) {
+                continue;
+            }
+            if (c.m_first >= from && c.m_last <= to) {
+                a[0] += c.m_count;
+                a[1] = Math.min (a[1], c.m_min);
+                a[2] = Math.max (a[2], c.m_max);
+                a[3] += c.m_sum;
+            }
+            else {
+                if (times == null) {
+                    times = new long[CHUNK_SIZE];
+                    values = new double[CHUNK_SIZE];
+                }
+                c.read (times, values);
+                aggregate (times, values, c.m_count, from, to, a);
+            }
+        }
+        aggregate (m_times, m_values, m_count, from, to, a);
+        if (a[0] == 0) {
+            a[1] = Double.NaN;
+            a[2] = Double.NaN;
+        }
+        return a;
+    }
+
+    private static void aggregate (long[] times, double[] values, int count, long from, long to, double[] a) {
+        for (int i = 0; i < count; i++) {
+            if (times[i] >= from && times[i] <= to) {
+                a[0]++;
+                a[1] = Math.min (a[1], values[i]);
+                a[2] = Math.max (a[2], values[i]);
+                a[3] += values[i];
+            }
+        }
+    }
+
+    /**
+     * Writes the series: the number of chunks, then for each chunk its number of points, whether it was downsampled,
+     * and its compressed points
+     */
+    public synchronized void writeTo (DataOutputStream out) throws IOException {
+        out.writeInt (m_chunks.size () + (m_count > 0 ? 1 : 0));
+        for (Chunk c : m_chunks) {
+            writeChunk (out, c.m_count, c.m_downsampled, c.bytes ());
+        }
+        if (m_count > 0) {
+            writeChunk (out, m_count, false, encode (m_times, m_values, m_count));
+        }
+    }
+
+    private static void writeChunk (DataOutputStream out, int count, boolean downsampled, byte[] bytes)
+            throws IOException {
+        out.writeInt (count);
+        out.writeBoolean (downsampled);
+        out.writeInt (bytes.length);
+        out.write (bytes);
+    }
+
+    /**
+     * Reads a series written by writeTo
+     */
+    public static UtilityTimeSeries readFrom (DataInputStream in, Policy policy) throws IOException {
+        UtilityTimeSeries s = new UtilityTimeSeries (policy);
+        int chunks = in.readInt ();
+        for (int i = 0; i < chunks; i++) {
+            int count = in.readInt ();
+            boolean downsampled = in.readBoolean ();
+            byte[] bytes = new byte[in.readInt ()];
+            in.readFully (bytes);
+            if (count <= 0 || count > CHUNK_SIZE) throw new IOException ("Bad utility history chunk size: " + count);
+            decode (bytes, count, s.m_times, s.m_values);
+            s.m_chunks.add (new Chunk (s.m_times, s.m_values, count, downsampled, policy.compress));
+        }
+        return s;
+    }
+
+    private static byte[] encode (long[] times, double[] values, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream (count * 4);
+        long prevTime = 0;
+        long prevDelta = 0;
+        long prevBits = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = times[i] - prevTime;
+            long dod = delta - prevDelta;
+            writeVarLong (out, (dod << 1) ^ (dod >> 63));
+            prevTime = times[i];
+            prevDelta = delta;
+            long bits = Double.doubleToRawLongBits (values[i]);
+            long xor = bits ^ prevBits;
+            prevBits = bits;
+            if (xor == 0) {
+                out.write (0);
+            }
+            else {
+                // the bytes of the XOR between its leading and trailing zero bytes
+                int lead = Long.numberOfLeadingZeros (xor) / 8;
+                int trail = Long.numberOfTrailingZeros (xor) / 8;
+                out.write (0x80 | lead << 3 | trail);
+                for (int b = trail; b < 8 - lead; b++) {
+                    out.write ((int )(xor >>> (8 * b)) & 0xff);
+                }
+            }
+        }
+        return out.toByteArray ();
+    }
+
+    private static void decode (byte[] bytes, int count, long[] times, double[] values) {
+        int[] pos = { 0 };
+        long prevTime = 0;
+        long prevDelta = 0;
+        long prevBits = 0;
+        for (int i = 0; i < count; i++) {
+            long zz = readVarLong (bytes, pos);
+            long delta = prevDelta + ((zz >>> 1) ^ -(zz & 1));
+            times[i] = prevTime + delta;
+            prevTime = times[i];
+            prevDelta = delta;
+            int header = bytes[pos[0]++] & 0xff;
+            long xor = 0;
+            if (header != 0) {
+                int lead = (header >> 3) & 0x7;
+                int trail = header & 0x7;
+                for (int b = trail; b < 8 - lead; b++) {
+                    xor |= (long )(bytes[pos[0]++] & 0xff) << (8 * b);
+                }
+            }
+            prevBits ^= xor;
+            values[i] = Double.longBitsToDouble (prevBits);
+        }
+    }
+
+    private static void writeVarLong (ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7fL) != 0) {
+            out.write ((int )(v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write ((int )v);
+    }
+
+    private static long readVarLong (byte[] bytes, int[] pos) {
+        long v = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = bytes[pos[0]++] & 0xff;
+            v |= (long )(b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+}
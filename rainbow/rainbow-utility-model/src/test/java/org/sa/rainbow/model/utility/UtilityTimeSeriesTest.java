@@ -0,0 +1,259 @@
+package org.sa.rainbow.model.utility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.PrintStream;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.sa.rainbow.core.models.ModelReference;
+import org.sa.rainbow.model.utility.UtilityTimeSeries.Policy;
+
+/**
+ * Checks that utility time series keep their points through sealing, compression, saving and loading, and that
+ * retention, downsampling and aggregates work across chunks.
+ */
+public class UtilityTimeSeriesTest {
+
+    private static final Policy COMPRESS = new Policy (0, 0, 0, true);
+    private static final int    CHUNK    = UtilityTimeSeries.CHUNK_SIZE;
+
+    /**
+     * @return points that are hard to encode: NaN, infinities, negative and signed zero values, runs of equal values,
+     *         and timestamps with gaps from one millisecond to most of the range of a long
+     */
+    private static SortedMap<Long, Double> awkwardPoints () {
+        SortedMap<Long, Double> points = new TreeMap<> ();
+        Random r = new Random (23);
+        long t = Long.MIN_VALUE / 2;
+        double[] specials = { Double.NaN, -1.5, -0.0, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, -Double.MAX_VALUE };
+        for (int i = 0; i < 3 * CHUNK + 17; i++) {
+            double v;
+            if (i % 10 < 3) {
+                v = 0.25; // equal to the previous value
+            }
+            else if (i % 10 == 3) {
+                v = specials[(i / 10) % specials.length];
+            }
+            else {
+                v = -r.nextDouble () * 1000;
+            }
+            points.put (t, v);
+            if (i % 50 == 0) {
+                t += Long.MAX_VALUE / 32;
+            }
+            else {
+                t += 1 + r.nextInt (i % 7 == 0 ? 1000000 : 3);
+            }
+        }
+        return points;
+    }
+
+    private static UtilityTimeSeries series (Policy policy, SortedMap<Long, Double> points) {
+        UtilityTimeSeries s = new UtilityTimeSeries (policy);
+        for (Entry<Long, Double> e : points.entrySet ()) {
+            assertTrue (s.add (e.getKey (), e.getValue ()));
+        }
+        return s;
+    }
+
+    private static UtilityTimeSeries writeAndRead (UtilityTimeSeries s, Policy policy) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+        DataOutputStream out = new DataOutputStream (bytes);
+        s.writeTo (out);
+        out.flush ();
+        return UtilityTimeSeries.readFrom (new DataInputStream (new ByteArrayInputStream (bytes.toByteArray ())),
+                policy);
+    }
+
+    @Test
+    public void compressedChunksKeepAwkwardPoints () throws Exception {
+        SortedMap<Long, Double> points = awkwardPoints ();
+        UtilityTimeSeries s = series (COMPRESS, points);
+        // Double.equals compares bits, so NaN and -0.0 must come back exactly
+        assertEquals (points, s.toMap ());
+        assertEquals (points.size (), s.size ());
+        assertEquals (points, series (Policy.KEEP_ALL, points).toMap ());
+    }
+
+    @Test
+    public void writeAndReadKeepPoints () throws Exception {
+        SortedMap<Long, Double> points = awkwardPoints ();
+        for (Policy policy : new Policy[] { Policy.KEEP_ALL, COMPRESS }) {
+            UtilityTimeSeries read = writeAndRead (series (policy, points), policy);
+            assertEquals (points, read.toMap ());
+            // the series read can be added to, and its last chunk sealed
+            long last = points.lastKey ();
+            for (int i = 1; i <= CHUNK; i++) {
+                assertTrue (read.add (last + i, i));
+            }
+            assertEquals (points.size () + CHUNK, read.size ());
+            assertEquals (1.0, read.range (last + 1, last + 1).get (last + 1), 0);
+        }
+        assertTrue (writeAndRead (new UtilityTimeSeries (COMPRESS), COMPRESS).isEmpty ());
+    }
+
+    @Test
+    public void historyLoadsBinaryAndCsv () throws Exception {
+        ModelReference ref = new ModelReference ("test", "UtilityHistory");
+        UtilityHistory h = new UtilityHistory (ref, COMPRESS);
+        for (int i = 0; i < CHUNK + 10; i++) {
+            h.add ("uR", 1000 + i * 10, i % 3 == 0 ? Double.NaN : -i / 4.0);
+            h.add ("uC", 5000 + i, 0.5);
+        }
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream ();
+        h.writeTo (new DataOutputStream (binary));
+        ByteArrayOutputStream csv = new ByteArrayOutputStream ();
+        h.writeCsv (new PrintStream (csv));
+
+        for (ByteArrayOutputStream saved : new ByteArrayOutputStream[] { binary, csv }) {
+            UtilityHistory loaded = UtilityHistory.load (new ByteArrayInputStream (saved.toByteArray ()), ref,
+                    COMPRESS);
+            assertEquals (h.getUtilityKeys (), loaded.getUtilityKeys ());
+            for (String u : h.getUtilityKeys ()) {
+                assertEquals (h.getUtilityHistory (u), loaded.getUtilityHistory (u));
+            }
+        }
+        assertTrue (UtilityHistory.load (new ByteArrayInputStream (new byte[0]), ref, COMPRESS).getUtilityKeys ()
+                .isEmpty ());
+    }
+
+    @Test
+    public void retentionDropsWholeChunks () throws Exception {
+        UtilityTimeSeries s = new UtilityTimeSeries (new Policy (1000, 0, 0, false));
+        for (int i = 0; i < 10 * CHUNK; i++) {
+            s.add (i, i);
+        }
+        // The last seal was at 2559, so chunks ending before 1559 are gone. The chunk [1536, 1791] has points older
+        // than that, but is kept whole.
+        SortedMap<Long, Double> points = s.toMap ();
+        assertEquals (1536L, (long )points.firstKey ());
+        assertEquals (4 * CHUNK, s.size ());
+        assertEquals (1536.0, s.min (Long.MIN_VALUE, Long.MAX_VALUE), 0);
+    }
+
+    @Test
+    public void downsamplingAveragesOldChunks () throws Exception {
+        UtilityTimeSeries s = new UtilityTimeSeries (new Policy (0, 1000, 16, true));
+        for (int i = 0; i < 10 * CHUNK; i++) {
+            s.add (i, i);
+        }
+        // Chunks ending before 1559 are averaged into buckets of 16 and merged into one chunk
+        SortedMap<Long, Double> points = s.toMap ();
+        assertEquals (6 * CHUNK / 16 + 4 * CHUNK, s.size ());
+        assertEquals (7.5, points.get (0L), 0);
+        assertEquals (23.5, points.get (16L), 0);
+        assertEquals (1527.5, points.get (1520L), 0);
+        assertFalse (points.containsKey (1521L));
+        assertEquals (1536.0, points.get (1536L), 0);
+        assertEquals (1537.0, points.get (1537L), 0);
+        assertEquals (767.5, s.mean (0, 1535), 1e-9);
+    }
+
+    @Test
+    public void downsamplingBucketsAcrossChunks () throws Exception {
+        // Buckets of 100 do not line up with chunks of 256
+        UtilityTimeSeries s = new UtilityTimeSeries (new Policy (0, 1000, 100, false));
+        for (int i = 0; i < 10 * CHUNK; i++) {
+            s.add (i, i);
+        }
+        SortedMap<Long, Double> points = s.toMap ();
+        // [200, 299] is split by the chunk boundary at 256: a point for each part, none repeated
+        assertEquals (227.5, points.get (200L), 0);
+        assertEquals (277.5, points.get (256L), 0);
+        assertEquals (349.5, points.get (300L), 0);
+        assertEquals (points.size (), s.size ());
+        long previous = Long.MIN_VALUE;
+        for (long t : points.keySet ()) {
+            assertTrue (t > previous);
+            previous = t;
+        }
+    }
+
+    @Test
+    public void removeLastAfterSeal () throws Exception {
+        for (Policy policy : new Policy[] { Policy.KEEP_ALL, COMPRESS }) {
+            UtilityTimeSeries s = new UtilityTimeSeries (policy);
+            for (int i = 0; i < CHUNK; i++) {
+                s.add (i * 10, i);
+            }
+            // the chunk has just been sealed
+            assertFalse (s.removeLast (10));
+            assertEquals (CHUNK, s.size ());
+            assertTrue (s.removeLast ((CHUNK - 1) * 10));
+            assertEquals (CHUNK - 1, s.size ());
+            assertEquals ((CHUNK - 2) * 10, (long )s.toMap ().lastKey ());
+            assertTrue (s.add ((CHUNK - 1) * 10, -1));
+            assertTrue (s.add (CHUNK * 10, -2));
+            assertEquals (CHUNK + 1, s.size ());
+            assertEquals (-2.0, s.min (0, Long.MAX_VALUE), 0);
+            // a point added after a failed removal is appended as usual
+            assertFalse (s.removeLast (0));
+            assertTrue (s.add (CHUNK * 20, -3));
+            assertEquals (CHUNK + 2, s.size ());
+        }
+    }
+
+    @Test
+    public void outOfOrderPointsAreDropped () throws Exception {
+        UtilityTimeSeries s = new UtilityTimeSeries (COMPRESS);
+        assertTrue (s.add (100, 1));
+        assertFalse (s.add (50, 2));
+        assertTrue (s.add (100, 3));
+        assertEquals (1, s.size ());
+        assertEquals (3.0, s.toMap ().get (100L), 0);
+
+        for (int i = 1; i < CHUNK; i++) {
+            s.add (100 + i, i);
+        }
+        // all points are sealed; an older point must not unseal or change them
+        assertFalse (s.add (100, 7));
+        assertFalse (s.add (99, 7));
+        assertEquals (CHUNK, s.size ());
+        assertEquals (3.0, s.toMap ().get (100L), 0);
+        assertTrue (s.add (100 + CHUNK - 1, 8));
+        assertEquals (8.0, s.toMap ().get ((long )(100 + CHUNK - 1)), 0);
+    }
+
+    @Test
+    public void aggregatesOverPartialChunks () throws Exception {
+        for (Policy policy : new Policy[] { Policy.KEEP_ALL, COMPRESS }) {
+            UtilityTimeSeries s = new UtilityTimeSeries (policy);
+            Random r = new Random (5);
+            SortedMap<Long, Double> points = new TreeMap<> ();
+            for (int i = 0; i < 3 * CHUNK + 100; i++) {
+                double v = r.nextGaussian ();
+                s.add (i * 10, v);
+                points.put ((long )i * 10, v);
+            }
+            long[][] windows = { { 0, 8500 }, { 1000, 3000 }, { 2555, 2565 }, { 2565, 5125 }, { 7000, 100000 },
+                    { -100, 5 }, { 3, 7 }, { 100000, 200000 } };
+            for (long[] w : windows) {
+                double min = Double.NaN;
+                double max = Double.NaN;
+                double sum = 0;
+                int n = 0;
+                for (double v : points.subMap (w[0], w[1] + 1).values ()) {
+                    min = n == 0 ? v : Math.min (min, v);
+                    max = n == 0 ? v : Math.max (max, v);
+                    sum += v;
+                    n++;
+                }
+                assertEquals (min, s.min (w[0], w[1]), 0);
+                assertEquals (max, s.max (w[0], w[1]), 0);
+                assertEquals (n == 0 ? Double.NaN : sum / n, s.mean (w[0], w[1]), 1e-9);
+            }
+        }
+    }
+}